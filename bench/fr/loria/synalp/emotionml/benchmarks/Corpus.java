@@ -0,0 +1,110 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.generator.EmotionMLGenerator;
+import fr.loria.synalp.emotionml.processors.EmotionMLImporter;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+import fr.loria.synalp.emotionml.processors.json.JsonEmotionMLExporter;
+import fr.loria.synalp.emotionml.vocabularies.VocabularyType;
+
+/**
+ * A Corpus is the document a benchmark processes, in all the forms the pipeline stages take as
+ * input: the XML and JSON bytes, the DOM Element and the EmotionMLDocument. The corpora are the
+ * documents of the tests directory, plus two documents of the EmotionMLGenerator: one with its
+ * default mix of content, and one whose emotions carry long traces.
+ * @author Alexandre Denis
+ */
+@State(Scope.Benchmark)
+public class Corpus
+{
+	public static final String SYNTHETIC = "synthetic";
+	public static final String LONG_TRACES = "long_traces";
+	private static final int SYNTHETIC_EMOTIONS = 1000;
+	private static final int TRACE_EMOTIONS = 100;
+	private static final int TRACE_SAMPLES = 1000;
+
+	@Param({ "many_examples", "automatic_recognition_of_emotions", SYNTHETIC, LONG_TRACES })
+	public String corpus;
+
+	byte[] xml;
+	byte[] json;
+	Element element;
+	EmotionMLDocument document;
+
+
+	@Setup
+	public void setup() throws Exception
+	{
+		if (corpus.equals(SYNTHETIC) || corpus.equals(LONG_TRACES))
+			xml = generate(corpus);
+		else xml = readFile(new File("tests", corpus + ".emotionml"));
+
+		document = new EmotionMLImporter().importDocument(new ByteArrayInputStream(xml));
+		element = new XMLEmotionMLReader().read(new ByteArrayInputStream(xml));
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new JsonEmotionMLExporter().export(document, stream);
+		json = stream.toByteArray();
+	}
+
+
+	/**
+	 * Returns a stream over the XML bytes.
+	 */
+	InputStream getXML()
+	{
+		return new ByteArrayInputStream(xml);
+	}
+
+
+	/**
+	 * Returns a stream over the JSON bytes.
+	 */
+	InputStream getJSON()
+	{
+		return new ByteArrayInputStream(json);
+	}
+
+
+	/**
+	 * Returns the bytes of the synthetic corpus of given name.
+	 */
+	private static byte[] generate(String corpus) throws Exception
+	{
+		EmotionMLGenerator generator = new EmotionMLGenerator(0).setInfoSize(0); // the JAXB importer rejects unbound info
+		if (corpus.equals(LONG_TRACES))
+			generator.setEmotionCount(TRACE_EMOTIONS).setProbability(VocabularyType.DIMENSION, 1).setTraceProbability(1).setTraceLength(TRACE_SAMPLES);
+		else generator.setEmotionCount(SYNTHETIC_EMOTIONS);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		generator.generate(stream);
+		return stream.toByteArray();
+	}
+
+
+	/**
+	 * Reads all the bytes of the given File.
+	 */
+	private static byte[] readFile(File file) throws IOException
+	{
+		InputStream stream = new FileInputStream(file);
+		try
+		{
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while((read = stream.read(buffer)) != -1)
+				ret.write(buffer, 0, read);
+			return ret.toByteArray();
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.loria.synalp.emotionml.generator.EmotionMLGenerator;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * Measures the import of a corpus of synthetic files by a CorpusImporter for several numbers of
+ * workers, to check how the throughput scales with the cores. The files are written in a temporary
+ * directory which is deleted at the end of the trial.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CorpusImportBenchmark
+{
+	private static final int FILES = 64;
+	private static final int EMOTIONS = 100;
+
+	@Param({ "1", "2", "4", "8", "16" })
+	public int parallelism;
+
+	private File directory;
+	private List<File> files;
+	private CorpusImporter importer;
+
+
+	@Setup
+	public void setup() throws Exception
+	{
+		directory = File.createTempFile("corpus", "");
+		directory.delete();
+		directory.mkdir();
+		files = new ArrayList<File>();
+		for(int i = 0; i < FILES; i++)
+		{
+			File file = new File(directory, "corpus" + i + ".emotionml");
+			new EmotionMLGenerator(i).setEmotionCount(EMOTIONS).generate(file);
+			files.add(file);
+		}
+		importer = new CorpusImporter(parallelism);
+	}
+
+
+	@TearDown
+	public void tearDown()
+	{
+		importer.close();
+		for(File file : files)
+			file.delete();
+		directory.delete();
+	}
+
+
+	@Benchmark
+	public int importCorpus()
+	{
+		int ret = 0;
+		for(CorpusIterator i = importer.importFiles(files, false); i.hasNext();)
+			if (i.next().isImported())
+				ret++;
+		return ret;
+	}
+}
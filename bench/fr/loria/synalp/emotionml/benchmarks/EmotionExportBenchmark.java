@@ -0,0 +1,72 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.Emotion;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.*;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLExporter;
+
+/**
+ * Measures the export of a single small emotion, where the fixed cost of each write dominates: the
+ * writing of its DOM Element alone, and its whole export, validation included.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class EmotionExportBenchmark
+{
+	private static final String EMOTION = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\" category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\" start=\"0\" end=\"1000\">"
+			+ "<category name=\"happiness\" value=\"0.8\"/></emotion>";
+
+	private Emotion emotion;
+	private Element element;
+	private EmotionMLWriter writer;
+	private EmotionMLExporter domExporter;
+	private EmotionMLExporter staxExporter;
+	private ByteArrayOutputStream stream;
+
+
+	@Setup
+	public void setup() throws Exception
+	{
+		emotion = new EmotionMLImporter().importEmotion(EMOTION);
+		writer = new XMLEmotionMLWriter();
+		domExporter = new EmotionMLExporter();
+		staxExporter = new StaxEmotionMLExporter();
+		stream = new ByteArrayOutputStream();
+		element = new XMLEmotionMLReader().read(new ByteArrayInputStream(EMOTION.getBytes("UTF-8")));
+	}
+
+
+	@Benchmark
+	public int write() throws Exception
+	{
+		stream.reset();
+		writer.write(element, stream);
+		return stream.size();
+	}
+
+
+	@Benchmark
+	public int exportDOM() throws Exception
+	{
+		stream.reset();
+		domExporter.export(emotion, stream);
+		return stream.size();
+	}
+
+
+	@Benchmark
+	public int exportStax() throws Exception
+	{
+		stream.reset();
+		staxExporter.export(emotion, stream);
+		return stream.size();
+	}
+}
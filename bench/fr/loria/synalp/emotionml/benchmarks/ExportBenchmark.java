@@ -0,0 +1,74 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.loria.synalp.emotionml.processors.EmotionMLExporter;
+import fr.loria.synalp.emotionml.processors.jaxb.JaxbEmotionMLExporter;
+import fr.loria.synalp.emotionml.processors.json.JsonEmotionMLExporter;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLExporter;
+
+/**
+ * Measures the export of a whole document, validation included, by each exporter.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ExportBenchmark
+{
+	private EmotionMLExporter domExporter;
+	private EmotionMLExporter staxExporter;
+	private EmotionMLExporter jsonExporter;
+	private EmotionMLExporter jaxbExporter;
+	private ByteArrayOutputStream stream;
+
+
+	@Setup
+	public void setup()
+	{
+		domExporter = new EmotionMLExporter();
+		staxExporter = new StaxEmotionMLExporter();
+		jsonExporter = new JsonEmotionMLExporter();
+		jaxbExporter = new JaxbEmotionMLExporter();
+		stream = new ByteArrayOutputStream();
+	}
+
+
+	@Benchmark
+	public int exportDOM(Corpus corpus) throws Exception
+	{
+		stream.reset();
+		domExporter.export(corpus.document, stream);
+		return stream.size();
+	}
+
+
+	@Benchmark
+	public int exportStax(Corpus corpus) throws Exception
+	{
+		stream.reset();
+		staxExporter.export(corpus.document, stream);
+		return stream.size();
+	}
+
+
+	@Benchmark
+	public int exportJSON(Corpus corpus) throws Exception
+	{
+		stream.reset();
+		jsonExporter.export(corpus.document, stream);
+		return stream.size();
+	}
+
+
+	@Benchmark
+	public int exportJAXB(Corpus corpus) throws Exception
+	{
+		stream.reset();
+		jaxbExporter.export(corpus.document, stream);
+		return stream.size();
+	}
+}
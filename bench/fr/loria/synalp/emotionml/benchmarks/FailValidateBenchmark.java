@@ -0,0 +1,83 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.EmotionMLValidator;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+/**
+ * Measures the validation of the invalid documents of the tests/fail directory compared to the
+ * valid documents of the tests directory, with and without the fast-fail mode of the validator, to
+ * check that rejecting a document does not cost more than accepting one. Each operation validates
+ * one document, the documents of the directory being validated in turn, such that the times of both
+ * directories are per document although they do not contain as many documents.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class FailValidateBenchmark
+{
+	@Param({ "tests/fail", "tests" })
+	public String directory;
+
+	@Param({ "false", "true" })
+	public boolean fastFail;
+
+	private List<Element> elements;
+	private EmotionMLValidator validator;
+	private int next;
+
+
+	@Setup
+	public void setup() throws Exception
+	{
+		validator = new EmotionMLValidator().setFastFail(fastFail);
+		XMLEmotionMLReader reader = new XMLEmotionMLReader();
+		elements = new ArrayList<Element>();
+		for(File file : new File(directory).listFiles())
+		{
+			if (!file.isFile())
+				continue;
+
+			InputStream stream = new FileInputStream(file);
+			try
+			{
+				Element element = reader.read(stream);
+				if (element.getLocalName().equals("emotionml"))
+					elements.add(element);
+			}
+			catch (EmotionMLException e) // not well-formed
+			{
+
+			}
+			stream.close();
+		}
+	}
+
+
+	/**
+	 * Validates the next document and returns whether it is rejected.
+	 */
+	@Benchmark
+	public boolean validate()
+	{
+		Element element = elements.get(next);
+		next = (next + 1) % elements.size();
+		try
+		{
+			validator.validateDocument(element);
+			return false;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return true;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.processors.EmotionMLImporter;
+import fr.loria.synalp.emotionml.processors.jaxb.JaxbEmotionMLImporter;
+import fr.loria.synalp.emotionml.processors.json.JsonEmotionMLImporter;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLImporter;
+
+/**
+ * Measures the import of a whole document, validation included, by each importer.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ImportBenchmark
+{
+	private EmotionMLImporter domImporter;
+	private EmotionMLImporter fusedImporter;
+	private EmotionMLImporter staxImporter;
+	private EmotionMLImporter jsonImporter;
+	private EmotionMLImporter jaxbImporter;
+
+
+	@Setup
+	public void setup()
+	{
+		domImporter = new EmotionMLImporter();
+		fusedImporter = new EmotionMLImporter().setFused(true);
+		staxImporter = new StaxEmotionMLImporter();
+		jsonImporter = new JsonEmotionMLImporter();
+		jaxbImporter = new JaxbEmotionMLImporter();
+	}
+
+
+	@Benchmark
+	public EmotionMLDocument importDOM(Corpus corpus) throws Exception
+	{
+		return domImporter.importDocument(corpus.getXML());
+	}
+
+
+	@Benchmark
+	public EmotionMLDocument importFused(Corpus corpus) throws Exception
+	{
+		return fusedImporter.importDocument(corpus.getXML());
+	}
+
+
+	@Benchmark
+	public EmotionMLDocument importStax(Corpus corpus) throws Exception
+	{
+		return staxImporter.importDocument(corpus.getXML());
+	}
+
+
+	@Benchmark
+	public EmotionMLDocument importJSON(Corpus corpus) throws Exception
+	{
+		return jsonImporter.importDocument(corpus.getJSON());
+	}
+
+
+	@Benchmark
+	public EmotionMLDocument importJAXB(Corpus corpus) throws Exception
+	{
+		return jaxbImporter.importDocument(corpus.getXML());
+	}
+}
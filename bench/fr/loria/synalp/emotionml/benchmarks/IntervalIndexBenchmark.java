@@ -0,0 +1,77 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.Timestamp;
+
+/**
+ * Measures the overlap queries of an EmotionIntervalIndex against a scan of the emotions, over
+ * emotions of random start and length.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class IntervalIndexBenchmark
+{
+	private static final int MAX_LENGTH = 1000;
+	private static final int WINDOW = 100;
+
+	@Param({ "1000000" })
+	public int size;
+
+	private EmotionMLDocument document;
+	private EmotionIntervalIndex index;
+	private Random random;
+
+
+	@Setup
+	public void setup()
+	{
+		random = new Random(0);
+		document = new EmotionMLDocument();
+		for(int i = 0; i < size; i++)
+		{
+			Emotion emotion = new Emotion();
+			long start = random.nextInt(size * 10);
+			emotion.getTimestamp().setStart(start);
+			emotion.getTimestamp().setEnd(start + random.nextInt(MAX_LENGTH));
+			document.add(emotion);
+		}
+		index = new EmotionIntervalIndex(document);
+	}
+
+
+	@Benchmark
+	public EmotionIntervalIndex build()
+	{
+		return new EmotionIntervalIndex(document);
+	}
+
+
+	@Benchmark
+	public List<Emotion> query()
+	{
+		long from = random.nextInt(size * 10);
+		return index.getOverlapping(from, from + WINDOW);
+	}
+
+
+	@Benchmark
+	public List<Emotion> scan()
+	{
+		long from = random.nextInt(size * 10);
+		List<Emotion> ret = new ArrayList<Emotion>();
+		for(Emotion emotion : document.getEmotions())
+		{
+			Timestamp timestamp = emotion.getTimestamp();
+			if (timestamp.getStartAsLong() <= from + WINDOW && timestamp.getEndAsLong() >= from)
+				ret.add(emotion);
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,58 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.generator.EmotionMLGenerator;
+import fr.loria.synalp.emotionml.processors.EmotionMLValidator;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+/**
+ * Measures the validation of a large synthetic document when its emotions are validated
+ * sequentially (parallelism 0) or split across a ForkJoinPool of several workers. The schema
+ * validation is sequential in both cases.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParallelValidateBenchmark
+{
+	private static final int EMOTIONS = 10000;
+
+	@Param({ "0", "2", "4", "8" })
+	public int parallelism;
+
+	private Element element;
+	private ForkJoinPool pool;
+	private EmotionMLValidator validator;
+
+
+	@Setup
+	public void setup() throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new EmotionMLGenerator(42).setEmotionCount(EMOTIONS).setLocalVocabularyCount(4).generate(out);
+		element = new XMLEmotionMLReader().read(new ByteArrayInputStream(out.toByteArray()));
+		pool = parallelism == 0 ? null : new ForkJoinPool(parallelism);
+		validator = new EmotionMLValidator().setPool(pool);
+	}
+
+
+	@TearDown
+	public void tearDown()
+	{
+		if (pool != null)
+			pool.shutdown();
+	}
+
+
+	@Benchmark
+	public Element validate() throws Exception
+	{
+		return validator.validateDocument(element);
+	}
+}
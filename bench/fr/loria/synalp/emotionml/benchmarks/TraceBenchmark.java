@@ -0,0 +1,82 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import fr.loria.synalp.emotionml.processors.TraceCodec;
+
+/**
+ * Measures the parsing and the formatting of the samples attribute of a trace by the TraceCodec
+ * against String.split with Float.parseFloat and String.valueOf for each sample. The bytes
+ * allocated per operation are reported with "-prof gc": the TraceCodec only allocates the returned
+ * array when parsing, and the resulting String when formatting.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TraceBenchmark
+{
+	@Param({ "100", "50000" })
+	public int length;
+
+	private float[] samples;
+	private String samplesStr;
+	private TraceCodec codec;
+
+
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(0);
+		samples = new float[length];
+		for(int i = 0; i < length; i++)
+			samples[i] = random.nextInt(1000) / 1000f;
+		samplesStr = TraceCodec.format(samples);
+		codec = new TraceCodec();
+	}
+
+
+	@Benchmark
+	public float[] parse()
+	{
+		codec.parse(samplesStr);
+		if (!codec.isValid())
+			throw new IllegalStateException(codec.getInvalidSample());
+		return codec.getSamples();
+	}
+
+
+	@Benchmark
+	public float[] parseSplit()
+	{
+		String[] parts = samplesStr.split(" ");
+		float[] ret = new float[parts.length];
+		for(int i = 0; i < parts.length; i++)
+		{
+			ret[i] = Float.parseFloat(parts[i]);
+			if (ret[i] < 0 || ret[i] > 1)
+				throw new IllegalStateException(parts[i]);
+		}
+		return ret;
+	}
+
+
+	@Benchmark
+	public String format()
+	{
+		return TraceCodec.format(samples);
+	}
+
+
+	@Benchmark
+	public String formatValueOf()
+	{
+		StringBuilder ret = new StringBuilder(String.valueOf(samples[0]));
+		for(int i = 1; i < samples.length; i++)
+			ret.append(" ").append(String.valueOf(samples[i]));
+		return ret.toString();
+	}
+}
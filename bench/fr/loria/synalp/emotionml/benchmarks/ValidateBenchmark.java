@@ -0,0 +1,44 @@
+package fr.loria.synalp.emotionml.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.processors.EmotionMLValidator;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+/**
+ * Measures the parsing of a document into a DOM Element and its validation, separately.
+ * @author Alexandre Denis
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+public class ValidateBenchmark
+{
+	private XMLEmotionMLReader reader;
+	private EmotionMLValidator validator;
+
+
+	@Setup
+	public void setup()
+	{
+		reader = new XMLEmotionMLReader();
+		validator = new EmotionMLValidator();
+	}
+
+
+	@Benchmark
+	public Element parse(Corpus corpus) throws Exception
+	{
+		return reader.read(corpus.getXML());
+	}
+
+
+	@Benchmark
+	public Element validate(Corpus corpus) throws Exception
+	{
+		return validator.validateDocument(corpus.element);
+	}
+}
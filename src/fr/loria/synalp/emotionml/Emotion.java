@@ -1,5 +1,6 @@
 package fr.loria.synalp.emotionml;
 
+import java.io.Serializable;
 import java.net.URI;
 import java.util.*;
 
@@ -22,6 +23,11 @@ import fr.loria.synalp.emotionml.info.Info;
  * </ul>
  * Additionnally, an Emotion may contain timing information, a text value, references to what caused
  * the emotion and modality information.
+ * <p>
+ * The descriptors are also indexed by type and by name, such that the typed getters return
+ * unmodifiable views without copying and the lookups by name do not scan the descriptors. The List
+ * returned by getDescriptors() keeps this index up to date when it is modified.
+ * </p>
  * @author Alexandre Denis
  * @see fr.loria.synalp.emotionml.descriptors.EmotionDescriptor
  * @see fr.loria.synalp.emotionml.vocabularies.VocabularyReferrer
@@ -35,6 +41,8 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 	private Timestamp timestamp = new Timestamp();
 	private List<Reference> references = new ArrayList<Reference>();
 	private List<EmotionDescriptor> descriptors = new ArrayList<EmotionDescriptor>();
+	private transient List<EmotionDescriptor> descriptorsList; // created on first getDescriptors()
+	private DescriptorBucket[] buckets = new DescriptorBucket[VocabularyType.values().length]; // created on first add or view
 	private List<ExpressedThrough> expressedThrough = new ArrayList<ExpressedThrough>();
 
 	// for serialization
@@ -72,16 +80,16 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 			switch (descriptor.getType())
 			{
 				case ACTION_TENDENCY:
-					descriptors.add(new ActionTendency((ActionTendency) descriptor));
+					addDescriptor(new ActionTendency((ActionTendency) descriptor));
 					break;
 				case APPRAISAL:
-					descriptors.add(new Appraisal((Appraisal) descriptor));
+					addDescriptor(new Appraisal((Appraisal) descriptor));
 					break;
 				case CATEGORY:
-					descriptors.add(new Category((Category) descriptor));
+					addDescriptor(new Category((Category) descriptor));
 					break;
 				case DIMENSION:
-					descriptors.add(new Dimension((Dimension) descriptor));
+					addDescriptor(new Dimension((Dimension) descriptor));
 					break;
 			}
 
@@ -104,7 +112,7 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 	 */
 	public void add(EmotionDescriptor descriptor)
 	{
-		descriptors.add(descriptor);
+		addDescriptor(descriptor);
 		if (descriptor.hasURI())
 			setDescriptorSetURI(descriptor.getType(), descriptor.getURI());
 	}
@@ -127,7 +135,33 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 	 */
 	public void remove(EmotionDescriptor descriptor)
 	{
-		descriptors.remove(descriptor);
+		if (descriptors.remove(descriptor))
+			buckets[descriptor.getType().ordinal()].remove(descriptor);
+	}
+
+
+	/**
+	 * Adds the given EmotionDescriptor to the descriptors and to the index.
+	 */
+	private void addDescriptor(EmotionDescriptor descriptor)
+	{
+		descriptors.add(descriptor);
+		getBucket(descriptor.getType()).add(descriptor);
+	}
+
+
+	/**
+	 * Returns the bucket of the descriptors of given type, creating it if needed.
+	 */
+	private DescriptorBucket getBucket(VocabularyType type)
+	{
+		DescriptorBucket ret = buckets[type.ordinal()];
+		if (ret == null)
+		{
+			ret = new DescriptorBucket();
+			buckets[type.ordinal()] = ret;
+		}
+		return ret;
 	}
 
 
@@ -138,10 +172,8 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 	 */
 	public EmotionDescriptor getDescriptor(String name, VocabularyType type)
 	{
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getType() == type && descriptor.getName().equals(name))
-				return descriptor;
-		return null;
+		DescriptorBucket bucket = buckets[type.ordinal()];
+		return bucket == null ? null : bucket.names.get(name);
 	}
 
 
@@ -152,24 +184,33 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 	 */
 	public EmotionDescriptor getDescriptor(String name)
 	{
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getName().equals(name))
-				return descriptor;
-		return null;
+		EmotionDescriptor ret = null;
+		for(DescriptorBucket bucket : buckets)
+			if (bucket != null)
+			{
+				EmotionDescriptor descriptor = bucket.names.get(name);
+				if (descriptor != null && (ret == null || descriptors.indexOf(descriptor) < descriptors.indexOf(ret)))
+					ret = descriptor;
+			}
+		return ret;
 	}
 
 
 	/**
-	 * Returns a live list of all the descriptors defined in this Emotion.
+	 * Returns a live list of all the descriptors defined in this Emotion. Unlike
+	 * {@link #add(EmotionDescriptor) add}, adding a descriptor to this list does not set the
+	 * vocabulary URI of the Emotion.
 	 */
 	public List<EmotionDescriptor> getDescriptors()
 	{
-		return descriptors;
+		if (descriptorsList == null)
+			descriptorsList = new DescriptorList();
+		return descriptorsList;
 	}
 
 
 	/**
-	 * Returns a List view of all the descriptors of given type defined in this Emotion.
+	 * Returns an unmodifiable live List of all the descriptors of given type defined in this Emotion.
 	 */
 	public List<? extends EmotionDescriptor> getDescriptors(VocabularyType type)
 	{
@@ -192,58 +233,53 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 
 
 	/**
-	 * Returns a List view of the categories defined in this Emotion.
+	 * Returns an unmodifiable live List of the categories defined in this Emotion.
 	 * @return a List view of categories
 	 */
 	public List<Category> getCategories()
 	{
-		List<Category> ret = new ArrayList<Category>();
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getType() == VocabularyType.CATEGORY)
-				ret.add((Category) descriptor);
-		return ret;
+		return getView(VocabularyType.CATEGORY);
 	}
 
 
 	/**
-	 * Returns a List view of the appraisals defined in this Emotion.
+	 * Returns an unmodifiable live List of the appraisals defined in this Emotion.
 	 * @return a List view of appraisals
 	 */
 	public List<Appraisal> getAppraisals()
 	{
-		List<Appraisal> ret = new ArrayList<Appraisal>();
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getType() == VocabularyType.APPRAISAL)
-				ret.add((Appraisal) descriptor);
-		return ret;
+		return getView(VocabularyType.APPRAISAL);
 	}
 
 
 	/**
-	 * Returns a List view of the dimensions defined in this Emotion.
+	 * Returns an unmodifiable live List of the dimensions defined in this Emotion.
 	 * @return a List view of dimensions
 	 */
 	public List<Dimension> getDimensions()
 	{
-		List<Dimension> ret = new ArrayList<Dimension>();
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getType() == VocabularyType.DIMENSION)
-				ret.add((Dimension) descriptor);
-		return ret;
+		return getView(VocabularyType.DIMENSION);
 	}
 
 
 	/**
-	 * Returns a List view of the action tendencies defined in this Emotion.
+	 * Returns an unmodifiable live List of the action tendencies defined in this Emotion.
 	 * @return a List view of action tendencies
 	 */
 	public List<ActionTendency> getActionTendencies()
 	{
-		List<ActionTendency> ret = new ArrayList<ActionTendency>();
-		for(EmotionDescriptor descriptor : descriptors)
-			if (descriptor.getType() == VocabularyType.ACTION_TENDENCY)
-				ret.add((ActionTendency) descriptor);
-		return ret;
+		return getView(VocabularyType.ACTION_TENDENCY);
+	}
+
+
+	/**
+	 * Returns the view of the descriptors of given type, all of them being of class T. The bucket is
+	 * created if needed, such that the view also shows the descriptors added later.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T extends EmotionDescriptor> List<T> getView(VocabularyType type)
+	{
+		return (List<T>) getBucket(type).view;
 	}
 
 
@@ -505,4 +541,122 @@ public class Emotion extends VocabularyReferrer implements EmotionNode
 		return ret.toString().trim();
 	}
 
+
+	/**
+	 * The List of all the descriptors, which updates the buckets when it is modified.
+	 * @author Alexandre Denis
+	 */
+	private class DescriptorList extends AbstractList<EmotionDescriptor>
+	{
+		@Override
+		public EmotionDescriptor get(int index)
+		{
+			return descriptors.get(index);
+		}
+
+
+		@Override
+		public int size()
+		{
+			return descriptors.size();
+		}
+
+
+		@Override
+		public void add(int index, EmotionDescriptor descriptor)
+		{
+			descriptors.add(index, descriptor);
+			getBucket(descriptor.getType()).insert(getBucketIndex(descriptor.getType(), index), descriptor);
+			modCount++;
+		}
+
+
+		@Override
+		public EmotionDescriptor set(int index, EmotionDescriptor descriptor)
+		{
+			EmotionDescriptor ret = descriptors.set(index, descriptor);
+			buckets[ret.getType().ordinal()].remove(ret);
+			getBucket(descriptor.getType()).insert(getBucketIndex(descriptor.getType(), index), descriptor);
+			return ret;
+		}
+
+
+		@Override
+		public EmotionDescriptor remove(int index)
+		{
+			EmotionDescriptor ret = descriptors.remove(index);
+			buckets[ret.getType().ordinal()].remove(ret);
+			modCount++;
+			return ret;
+		}
+
+
+		/**
+		 * Returns the index in its bucket of the descriptor of given type at given index.
+		 */
+		private int getBucketIndex(VocabularyType type, int index)
+		{
+			int ret = 0;
+			for(int i = 0; i < index; i++)
+				if (descriptors.get(i).getType() == type)
+					ret++;
+			return ret;
+		}
+	}
+
+
+	/**
+	 * The descriptors of a given type, in order, and the first descriptor of each name.
+	 * @author Alexandre Denis
+	 */
+	private static class DescriptorBucket implements Serializable
+	{
+		private List<EmotionDescriptor> descriptors = new ArrayList<EmotionDescriptor>(2);
+		private List<EmotionDescriptor> view = Collections.unmodifiableList(descriptors);
+		private Map<String, EmotionDescriptor> names = new HashMap<String, EmotionDescriptor>(4);
+
+
+		/**
+		 * Adds the given descriptor, it is found by its name only if it is the first of that name.
+		 */
+		void add(EmotionDescriptor descriptor)
+		{
+			descriptors.add(descriptor);
+			if (!names.containsKey(descriptor.getName()))
+				names.put(descriptor.getName(), descriptor);
+		}
+
+
+		/**
+		 * Inserts the given descriptor at given index, it is found by its name only if it is then the
+		 * first of that name.
+		 */
+		void insert(int index, EmotionDescriptor descriptor)
+		{
+			descriptors.add(index, descriptor);
+			EmotionDescriptor first = names.get(descriptor.getName());
+			if (first == null || descriptors.indexOf(first) > index)
+				names.put(descriptor.getName(), descriptor);
+		}
+
+
+		/**
+		 * Removes the given descriptor, the next descriptor of the same name is then found instead.
+		 */
+		void remove(EmotionDescriptor descriptor)
+		{
+			descriptors.remove(descriptor);
+			String name = descriptor.getName();
+			if (names.get(name) == descriptor)
+			{
+				names.remove(name);
+				for(EmotionDescriptor other : descriptors)
+					if (other.getName().equals(name))
+					{
+						names.put(name, other);
+						break;
+					}
+			}
+		}
+	}
 }
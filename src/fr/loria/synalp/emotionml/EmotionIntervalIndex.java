@@ -0,0 +1,265 @@
+package fr.loria.synalp.emotionml;
+
+import java.util.*;
+
+import fr.loria.synalp.emotionml.descriptors.Timestamp;
+
+/**
+ * An EmotionIntervalIndex answers which emotions overlap a time interval, or contain a time point,
+ * in O(log n + k) time, where k is the number of emotions returned. The emotions are the intervals
+ * [start, end] of their Timestamps, an absent end being implicitly start + duration, or start if
+ * there is no duration either. The emotions without start are not indexed, nor the ones whose start,
+ * end or duration do not fit in a long. The offset to start and the time reference are ignored:
+ * the times are the ones of the start and end attributes.
+ * <p>
+ * The index is an AVL tree ordered by start, each node holding the greatest end of its subtree.
+ * Emotions can be added at any time, for instance as they are read from an EmotionIterator, and
+ * the queries return the emotions ordered by start, the ones with the same start in the order they
+ * have been added. The Timestamps must not be modified once their emotions have been added. An
+ * EmotionIntervalIndex is not thread-safe.
+ * </p>
+ * @author Alexandre Denis
+ */
+public class EmotionIntervalIndex
+{
+	private Node root;
+	private int size;
+
+
+	/**
+	 * Creates an empty EmotionIntervalIndex.
+	 */
+	public EmotionIntervalIndex()
+	{
+
+	}
+
+
+	/**
+	 * Creates an EmotionIntervalIndex of all the emotions of the given document.
+	 * @param document
+	 */
+	public EmotionIntervalIndex(EmotionMLDocument document)
+	{
+		for(EmotionNode node : document.getEmotionNodes())
+			if (node instanceof Emotion)
+				add((Emotion) node);
+	}
+
+
+	/**
+	 * Creates an EmotionIntervalIndex of all the remaining emotions of the given Iterator.
+	 * @param emotions
+	 */
+	public EmotionIntervalIndex(Iterator<? extends Emotion> emotions)
+	{
+		addAll(emotions);
+	}
+
+
+	/**
+	 * Adds the given Emotion to this index.
+	 * @param emotion
+	 * @return false if the emotion has not been added because it has no start or its times do not
+	 *         fit in a long
+	 */
+	public boolean add(Emotion emotion)
+	{
+		Timestamp timestamp = emotion.getTimestamp();
+		if (!timestamp.hasStart() || !timestamp.isLong())
+			return false;
+
+		long start = timestamp.getStartAsLong();
+		long end = start;
+		if (timestamp.hasEnd())
+			end = timestamp.getEndAsLong();
+		else if (timestamp.hasDuration())
+		{
+			end = start + timestamp.getDurationAsLong();
+			if (end < start) // overflow
+				end = Long.MAX_VALUE;
+		}
+
+		root = insert(root, new Node(emotion, start, end));
+		size++;
+		return true;
+	}
+
+
+	/**
+	 * Adds all the remaining emotions of the given Iterator to this index.
+	 * @param emotions
+	 */
+	public void addAll(Iterator<? extends Emotion> emotions)
+	{
+		while(emotions.hasNext())
+			add(emotions.next());
+	}
+
+
+	/**
+	 * Returns the number of emotions in this index.
+	 * @return the number of indexed emotions
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Returns the emotions whose interval overlaps [from, to], bounds included.
+	 * @param from
+	 * @param to
+	 * @return a new List of emotions ordered by start, empty if from is greater than to
+	 */
+	public List<Emotion> getOverlapping(long from, long to)
+	{
+		List<Emotion> ret = new ArrayList<Emotion>();
+		if (from <= to)
+			collect(root, from, to, ret);
+		return ret;
+	}
+
+
+	/**
+	 * Returns the emotions whose interval contains the given time, bounds included.
+	 * @param time
+	 * @return a new List of emotions ordered by start
+	 */
+	public List<Emotion> getContaining(long time)
+	{
+		return getOverlapping(time, time);
+	}
+
+
+/////// Tree
+
+	/**
+	 * Collects in order the emotions of the given subtree which overlap [from, to].
+	 */
+	private static void collect(Node node, long from, long to, List<Emotion> ret)
+	{
+		if (node == null || node.maxEnd < from)
+			return;
+
+		collect(node.left, from, to, ret);
+		if (node.start > to) // so do all the nodes on the right
+			return;
+		if (node.end >= from)
+			ret.add(node.emotion);
+		collect(node.right, from, to, ret);
+	}
+
+
+	/**
+	 * Inserts the given Node in the given subtree, after the nodes with the same start.
+	 * @return the new root of the subtree
+	 */
+	private static Node insert(Node node, Node inserted)
+	{
+		if (node == null)
+			return inserted;
+
+		if (inserted.start < node.start)
+			node.left = insert(node.left, inserted);
+		else node.right = insert(node.right, inserted);
+		return balance(node);
+	}
+
+
+	/**
+	 * Restores the AVL property of the given Node whose subtrees are balanced.
+	 * @return the new root of the subtree
+	 */
+	private static Node balance(Node node)
+	{
+		int balance = height(node.left) - height(node.right);
+		if (balance > 1)
+		{
+			if (height(node.left.left) < height(node.left.right))
+				node.left = rotateLeft(node.left);
+			return rotateRight(node);
+		}
+		else if (balance < -1)
+		{
+			if (height(node.right.right) < height(node.right.left))
+				node.right = rotateRight(node.right);
+			return rotateLeft(node);
+		}
+		else return update(node);
+	}
+
+
+	/**
+	 * Rotates the given Node with its left child.
+	 */
+	private static Node rotateRight(Node node)
+	{
+		Node ret = node.left;
+		node.left = ret.right;
+		ret.right = update(node);
+		return update(ret);
+	}
+
+
+	/**
+	 * Rotates the given Node with its right child.
+	 */
+	private static Node rotateLeft(Node node)
+	{
+		Node ret = node.right;
+		node.right = ret.left;
+		ret.left = update(node);
+		return update(ret);
+	}
+
+
+	/**
+	 * Recomputes the height and the greatest end of the given Node from its children.
+	 */
+	private static Node update(Node node)
+	{
+		node.height = 1 + Math.max(height(node.left), height(node.right));
+		node.maxEnd = node.end;
+		if (node.left != null && node.left.maxEnd > node.maxEnd)
+			node.maxEnd = node.left.maxEnd;
+		if (node.right != null && node.right.maxEnd > node.maxEnd)
+			node.maxEnd = node.right.maxEnd;
+		return node;
+	}
+
+
+	/**
+	 * Returns the height of the given subtree.
+	 */
+	private static int height(Node node)
+	{
+		return node == null ? 0 : node.height;
+	}
+
+
+	/**
+	 * A node of the tree, holding an emotion and its interval.
+	 * @author Alexandre Denis
+	 */
+	private static class Node
+	{
+		private Emotion emotion;
+		private long start;
+		private long end;
+		private long maxEnd;
+		private int height = 1;
+		private Node left;
+		private Node right;
+
+
+		Node(Emotion emotion, long start, long end)
+		{
+			this.emotion = emotion;
+			this.start = start;
+			this.end = end;
+			this.maxEnd = end;
+		}
+	}
+}
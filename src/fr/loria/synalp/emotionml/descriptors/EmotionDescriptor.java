@@ -17,16 +17,26 @@ import fr.loria.synalp.emotionml.vocabularies.VocabularyType;
  * vocabulary URI which is a convenient way to automatically setup the Emotion vocabulary URI when
  * attaching the descriptor to the Emotion. However, altering the URI after the descriptor has been
  * added to the Emotion will have no effect.
+ * <p>
+ * The value and the confidence are stored as primitive floats along with presence flags, such that
+ * a descriptor does not hold Float objects. They can be read and written as primitives (see
+ * {@link #getValueAsFloat()} and {@link #setValue(float)}), the methods taking and returning Float
+ * objects, where null means absent, are kept for compatibility.
+ * </p>
  * @author Alexandre Denis
  * @see fr.loria.synalp.emotionml.Emotion
  */
 @SuppressWarnings("serial")
 public class EmotionDescriptor implements Serializable
 {
+	private static final byte VALUE = 1;
+	private static final byte CONFIDENCE = 2;
+
 	private URI uri;
-	private Float value;
+	private float value;
 	private Trace trace;
-	private Float confidence;
+	private float confidence;
+	private byte presence; // the VALUE and CONFIDENCE flags
 	private String name;
 	private VocabularyType type;
 
@@ -79,8 +89,9 @@ public class EmotionDescriptor implements Serializable
 		this.uri = descriptor.getURI();
 		this.type = descriptor.getType();
 		this.name = descriptor.getName();
-		this.value = descriptor.getValue();
-		this.confidence = descriptor.getConfidence();
+		this.value = descriptor.value;
+		this.confidence = descriptor.confidence;
+		this.presence = descriptor.presence;
 		this.trace = descriptor.hasTrace() ? new Trace(descriptor.getTrace()) : null;
 	}
 
@@ -108,19 +119,22 @@ public class EmotionDescriptor implements Serializable
 		this.uri = uri;
 		this.type = type;
 		this.name = name;
-		this.value = value;
 		this.trace = trace;
-		this.confidence = null;
+		if (value != null)
+		{
+			this.value = value;
+			this.presence = VALUE;
+		}
 	}
 
 
 	/**
 	 * Tests if this descriptor has a value.
-	 * @return whether this descriptor has a non-null value
+	 * @return whether this descriptor has a value
 	 */
 	public boolean hasValue()
 	{
-		return value != null;
+		return (presence & VALUE) != 0;
 	}
 
 
@@ -150,18 +164,45 @@ public class EmotionDescriptor implements Serializable
 	 */
 	public Float getValue()
 	{
-		return value;
+		return hasValue() ? Float.valueOf(value) : null;
+	}
+
+
+	/**
+	 * Returns the value of this descriptor as a primitive float.
+	 * @return the value, or NaN if it has not been defined
+	 */
+	public float getValueAsFloat()
+	{
+		return hasValue() ? value : Float.NaN;
 	}
 
 
 	/**
 	 * Sets the value of this descriptor. Warning: setting the value may alter the validity of this
 	 * descriptor with regards to EmotionML constraints.
-	 * @param value the value to set
+	 * @param value the value to set, null to remove it
 	 */
 	public void setValue(Float value)
+	{
+		if (value == null)
+		{
+			this.value = 0;
+			this.presence &= ~VALUE;
+		}
+		else setValue(value.floatValue());
+	}
+
+
+	/**
+	 * Sets the value of this descriptor. Warning: setting the value may alter the validity of this
+	 * descriptor with regards to EmotionML constraints.
+	 * @param value the value to set
+	 */
+	public void setValue(float value)
 	{
 		this.value = value;
+		this.presence |= VALUE;
 	}
 
 
@@ -188,11 +229,11 @@ public class EmotionDescriptor implements Serializable
 
 	/**
 	 * Tests if this descriptor has a confidence.
-	 * @return whether this descriptor has a non-null confidence
+	 * @return whether this descriptor has a confidence
 	 */
 	public boolean hasConfidence()
 	{
-		return confidence != null;
+		return (presence & CONFIDENCE) != 0;
 	}
 
 
@@ -202,17 +243,43 @@ public class EmotionDescriptor implements Serializable
 	 */
 	public Float getConfidence()
 	{
-		return confidence;
+		return hasConfidence() ? Float.valueOf(confidence) : null;
+	}
+
+
+	/**
+	 * Returns the confidence of this descriptor as a primitive float.
+	 * @return the confidence, or NaN if it has not been defined
+	 */
+	public float getConfidenceAsFloat()
+	{
+		return hasConfidence() ? confidence : Float.NaN;
 	}
 
 
 	/**
 	 * Sets the confidence of this descriptor.
-	 * @param confidence the confidence to set
+	 * @param confidence the confidence to set, null to remove it
 	 */
 	public void setConfidence(Float confidence)
+	{
+		if (confidence == null)
+		{
+			this.confidence = 0;
+			this.presence &= ~CONFIDENCE;
+		}
+		else setConfidence(confidence.floatValue());
+	}
+
+
+	/**
+	 * Sets the confidence of this descriptor.
+	 * @param confidence the confidence to set
+	 */
+	public void setConfidence(float confidence)
 	{
 		this.confidence = confidence;
+		this.presence |= CONFIDENCE;
 	}
 
 
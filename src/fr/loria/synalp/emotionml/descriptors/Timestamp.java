@@ -6,7 +6,9 @@ import java.net.*;
 
 /**
  * A Timestamp gathers all time related information about an Emotion. See <a
- * href="http://www.w3.org/TR/emotionml/#s2.4.2.4" target="_blank">Timing in EmotionML</a>.
+ * href="http://www.w3.org/TR/emotionml/#s2.4.2.4" target="_blank">Timing in EmotionML</a>. The
+ * start, end, duration and offset to start are stored as longs, a BigInteger is only kept for the
+ * values which do not fit in a long.
  * @author Alexandre Denis
  */
 @SuppressWarnings("serial")
@@ -45,12 +47,19 @@ public class Timestamp implements Serializable
 		}
 	}
 
-	private BigInteger start;
-	private BigInteger end;
-	private BigInteger duration;
+	private static final int START = 0;
+	private static final int END = 1;
+	private static final int DURATION = 2;
+	private static final int OFFSET_TO_START = 3;
+
+	private long start;
+	private long end;
+	private long duration;
+	private long offsetToStart;
+	private byte presence; // one bit per defined value
+	private BigInteger[] bigValues; // the values which do not fit in a long, created on demand
 
 	private URI timeRefUri;
-	private BigInteger offsetToStart;
 	private TimeRefAnchorPoint timeRefAnchorPoint;
 
 
@@ -69,11 +78,14 @@ public class Timestamp implements Serializable
 	 */
 	public Timestamp(Timestamp timestamp)
 	{
-		this.start = timestamp.getStart();
-		this.end = timestamp.getEnd();
-		this.duration = timestamp.getDuration();
+		this.start = timestamp.start;
+		this.end = timestamp.end;
+		this.duration = timestamp.duration;
+		this.offsetToStart = timestamp.offsetToStart;
+		this.presence = timestamp.presence;
+		if (timestamp.bigValues != null)
+			this.bigValues = timestamp.bigValues.clone(); // since BigIntegers are immutable
 		this.timeRefUri = timestamp.getTimeRefURI(); // since immutable
-		this.offsetToStart = timestamp.getOffsetToStart();
 		this.timeRefAnchorPoint = timestamp.getTimeRefAnchorPoint();
 	}
 
@@ -83,7 +95,7 @@ public class Timestamp implements Serializable
 	 */
 	public boolean hasStart()
 	{
-		return start != null;
+		return has(START);
 	}
 
 
@@ -92,7 +104,7 @@ public class Timestamp implements Serializable
 	 */
 	public boolean hasEnd()
 	{
-		return end != null;
+		return has(END);
 	}
 
 
@@ -101,7 +113,7 @@ public class Timestamp implements Serializable
 	 */
 	public boolean hasDuration()
 	{
-		return duration != null;
+		return has(DURATION);
 	}
 
 
@@ -119,7 +131,7 @@ public class Timestamp implements Serializable
 	 */
 	public boolean hasOffsetToStart()
 	{
-		return offsetToStart != null;
+		return has(OFFSET_TO_START);
 	}
 
 
@@ -137,19 +149,17 @@ public class Timestamp implements Serializable
 	 */
 	public BigInteger getStart()
 	{
-		return start;
+		return getBigInteger(START, start);
 	}
 
 
 	/**
 	 * Returns the start as a long value. Note that this method may be lossy.
-	 * @return the star as a long value or 0 if there is no start defined
+	 * @return the start as a long value or 0 if there is no start defined
 	 */
 	public long getStartAsLong()
 	{
-		if (hasEnd())
-			return start.longValue();
-		else return 0;
+		return getLong(START, start);
 	}
 
 
@@ -158,7 +168,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setStart(BigInteger start)
 	{
-		this.start = start;
+		this.start = set(START, start);
 	}
 
 
@@ -167,7 +177,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setStart(long start)
 	{
-		this.start = BigInteger.valueOf(start);
+		this.start = set(START, start);
 	}
 
 
@@ -176,7 +186,7 @@ public class Timestamp implements Serializable
 	 */
 	public BigInteger getEnd()
 	{
-		return end;
+		return getBigInteger(END, end);
 	}
 
 
@@ -186,9 +196,7 @@ public class Timestamp implements Serializable
 	 */
 	public long getEndAsLong()
 	{
-		if (hasEnd())
-			return end.longValue();
-		else return 0;
+		return getLong(END, end);
 	}
 
 
@@ -197,7 +205,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setEnd(BigInteger end)
 	{
-		this.end = end;
+		this.end = set(END, end);
 	}
 
 
@@ -206,7 +214,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setEnd(long end)
 	{
-		this.end = BigInteger.valueOf(end);
+		this.end = set(END, end);
 	}
 
 
@@ -215,7 +223,7 @@ public class Timestamp implements Serializable
 	 */
 	public BigInteger getDuration()
 	{
-		return duration;
+		return getBigInteger(DURATION, duration);
 	}
 
 
@@ -225,9 +233,7 @@ public class Timestamp implements Serializable
 	 */
 	public long getDurationAsLong()
 	{
-		if (hasDuration())
-			return duration.longValue();
-		else return 0;
+		return getLong(DURATION, duration);
 	}
 
 
@@ -236,7 +242,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setDuration(BigInteger duration)
 	{
-		this.duration = duration;
+		this.duration = set(DURATION, duration);
 	}
 
 
@@ -245,7 +251,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setDuration(long duration)
 	{
-		this.duration = BigInteger.valueOf(duration);
+		this.duration = set(DURATION, duration);
 	}
 
 
@@ -272,7 +278,7 @@ public class Timestamp implements Serializable
 	 */
 	public BigInteger getOffsetToStart()
 	{
-		return offsetToStart;
+		return getBigInteger(OFFSET_TO_START, offsetToStart);
 	}
 
 
@@ -282,9 +288,7 @@ public class Timestamp implements Serializable
 	 */
 	public long getOffsetToStartAsLong()
 	{
-		if (hasOffsetToStart())
-			return offsetToStart.longValue();
-		else return 0;
+		return getLong(OFFSET_TO_START, offsetToStart);
 	}
 
 
@@ -293,7 +297,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setOffsetToStart(BigInteger offsetToStart)
 	{
-		this.offsetToStart = offsetToStart;
+		this.offsetToStart = set(OFFSET_TO_START, offsetToStart);
 	}
 
 
@@ -302,7 +306,7 @@ public class Timestamp implements Serializable
 	 */
 	public void setOffsetToStart(long offsetToStart)
 	{
-		this.offsetToStart = BigInteger.valueOf(offsetToStart);
+		this.offsetToStart = set(OFFSET_TO_START, offsetToStart);
 	}
 
 
@@ -324,6 +328,95 @@ public class Timestamp implements Serializable
 	}
 
 
+	/**
+	 * Tests if the start, end, duration and offset to start of this Timestamp all fit in a long, in
+	 * which case the values returned by the long getters are exact.
+	 * @return true if no defined value requires a BigInteger
+	 */
+	public boolean isLong()
+	{
+		if (bigValues != null)
+			for(BigInteger value : bigValues)
+				if (value != null)
+					return false;
+		return true;
+	}
+
+
+	/**
+	 * Tests if the given value is defined.
+	 */
+	private boolean has(int field)
+	{
+		return (presence & 1 << field) != 0;
+	}
+
+
+	/**
+	 * Returns the given value as a BigInteger, or null if it is not defined.
+	 */
+	private BigInteger getBigInteger(int field, long value)
+	{
+		if (!has(field))
+			return null;
+		else if (bigValues != null && bigValues[field] != null)
+			return bigValues[field];
+		else return BigInteger.valueOf(value);
+	}
+
+
+	/**
+	 * Returns the given value as a long, or 0 if it is not defined.
+	 */
+	private long getLong(int field, long value)
+	{
+		if (!has(field))
+			return 0;
+		else if (bigValues != null && bigValues[field] != null)
+			return bigValues[field].longValue();
+		else return value;
+	}
+
+
+	/**
+	 * Defines the given value, or undefines it if it is null.
+	 * @return the long to store in the field
+	 */
+	private long set(int field, BigInteger value)
+	{
+		if (value == null)
+		{
+			presence &= ~(1 << field);
+			if (bigValues != null)
+				bigValues[field] = null;
+			return 0;
+		}
+		else if (value.bitLength() < Long.SIZE)
+			return set(field, value.longValue());
+		else
+		{
+			presence |= 1 << field;
+			if (bigValues == null)
+				bigValues = new BigInteger[4];
+			bigValues[field] = value;
+			return 0;
+		}
+	}
+
+
+	/**
+	 * Defines the given value.
+	 * @return the long to store in the field
+	 */
+	private long set(int field, long value)
+	{
+		presence |= 1 << field;
+		if (bigValues != null)
+			bigValues[field] = null;
+		return value;
+	}
+
+
 	@Override
 	public String toString()
 	{
@@ -331,11 +424,11 @@ public class Timestamp implements Serializable
 		if (hasStart() || hasEnd() || hasDuration())
 		{
 			if (hasStart())
-				ret.append("from ").append(start).append("ms ");
+				ret.append("from ").append(getStart()).append("ms ");
 			if (hasEnd())
-				ret.append("to ").append(end).append("ms ");
+				ret.append("to ").append(getEnd()).append("ms ");
 			if (hasDuration())
-				ret.append("(").append(duration).append("ms) ");
+				ret.append("(").append(getDuration()).append("ms) ");
 			if (hasTimeRefURI() || hasTimeRefAnchorPoint() || hasOffsetToStart())
 				ret.append("; ");
 		}
@@ -343,7 +436,7 @@ public class Timestamp implements Serializable
 		if (hasTimeRefURI() || hasTimeRefAnchorPoint() || hasOffsetToStart())
 		{
 			if (hasOffsetToStart())
-				ret.append(offsetToStart).append("ms").append(" ");
+				ret.append(getOffsetToStart()).append("ms").append(" ");
 			if (hasTimeRefAnchorPoint())
 			{
 				ret.append("from ").append(timeRefAnchorPoint).append(" ");
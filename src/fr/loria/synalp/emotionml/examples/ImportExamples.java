@@ -19,6 +19,7 @@ public class ImportExamples
 		importer = new EmotionMLImporter();
 		importInternalDocuments(new File("tests"));
 		validateExternalDocuments(new File("tests/external"));
+		importCorpus(new File("tests"));
 	}
 	
 	
@@ -43,6 +44,31 @@ public class ImportExamples
 	}
 	
 	
+	private static void importCorpus(File folder)
+	{
+		CorpusImporter corpusImporter = new CorpusImporter(); // one importer per core
+		try
+		{
+			CorpusIterator entries = corpusImporter.importDirectory(folder, "**.{emotionml,xml}", false);
+			while(entries.hasNext())
+			{
+				CorpusEntry entry = entries.next();
+				if (entry.isImported())
+					System.out.println("Imported "+entry.getFile());
+				else System.err.println("Exception while importing: "+entry.getFile()+": "+entry.getException().getLocalizedMessage());
+			}
+		}
+		catch(IOException e)
+		{
+			System.err.println("Unable to list "+folder+": "+e.getLocalizedMessage());
+		}
+		finally
+		{
+			corpusImporter.close();
+		}
+	}
+	
+	
 	private static void validateExternalDocuments(File folder)
 	{
 		XMLEmotionMLReader reader = new XMLEmotionMLReader();
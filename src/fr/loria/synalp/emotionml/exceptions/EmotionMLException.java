@@ -17,4 +17,17 @@ public class EmotionMLException extends Exception
 	{
 		super(message);
 	}
+
+
+	/**
+	 * Creates a new EmotionMLException, which may not record its stack trace. The failures of the
+	 * validation describe the input rather than the program, and recording their stack trace is
+	 * most of the cost of rejecting a document.
+	 * @param message
+	 * @param stackTrace false to not record the stack trace
+	 */
+	protected EmotionMLException(String message, boolean stackTrace)
+	{
+		super(message, null, stackTrace, stackTrace);
+	}
 }
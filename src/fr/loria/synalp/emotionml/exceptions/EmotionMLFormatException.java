@@ -1,15 +1,24 @@
 package fr.loria.synalp.emotionml.exceptions;
 
+import java.io.*;
+
 /**
  * An EmotionMLFormatException is an EmotionMLException thrown when importing or exporting EmotionML
  * elements that do not comply with the EmotionML recommendation. See <a
- * href="http://www.w3.org/TR/emotionml/" target="_blank">EmotionML</a>.
+ * href="http://www.w3.org/TR/emotionml/" target="_blank">EmotionML</a>. The failures of the
+ * assertions are keyed by the number of the assertion, and their message is only built when it is
+ * read, since most rejections are not reported in detail. The validators in fast-fail mode create
+ * them without stack trace.
  * @author Alexandre Denis
  */
 public class EmotionMLFormatException extends EmotionMLException
 {
 	private static final long serialVersionUID = 1L;
 
+	private final int code;
+	private transient Object[] parts; // the parts of the message, null if it is given
+	private String message;
+
 
 	/**
 	 * Creates a new EmotionMLFormatException based on given message.
@@ -18,6 +27,78 @@ public class EmotionMLFormatException extends EmotionMLException
 	public EmotionMLFormatException(String message)
 	{
 		super(message);
+		this.code = -1;
+		this.message = message;
+	}
+
+
+	/**
+	 * Creates a new EmotionMLFormatException for the failure of the given assertion. The message is
+	 * the number of the assertion followed by the concatenation of the given parts, which is only
+	 * performed when the message is read.
+	 * @param code the number of the assertion, for instance 210
+	 * @param parts the parts of the message
+	 */
+	public EmotionMLFormatException(int code, Object... parts)
+	{
+		this(code, parts, true);
+	}
+
+
+	/**
+	 * Creates a new EmotionMLFormatException for the failure of the given assertion, which may not
+	 * record its stack trace.
+	 * @param code the number of the assertion, for instance 210
+	 * @param parts the parts of the message
+	 * @param stackTrace false to not record the stack trace, when the failure is expected to be
+	 *            frequent and only its code and message matter
+	 */
+	public EmotionMLFormatException(int code, Object[] parts, boolean stackTrace)
+	{
+		super(null, stackTrace);
+		this.code = code;
+		this.parts = parts;
+	}
+
+
+	/**
+	 * Returns the number of the failed assertion.
+	 * @return the number given to the constructor, or else the number starting the message, or -1
+	 */
+	public int getCode()
+	{
+		if (code != -1 || message == null)
+			return code;
+
+		int end = 0;
+		while(end < message.length() && Character.isDigit(message.charAt(end)))
+			end++;
+		if (end == 0 || end > 9 || !message.startsWith(":", end))
+			return -1;
+		else return Integer.parseInt(message.substring(0, end));
 	}
 
+
+	@Override
+	public String getMessage()
+	{
+		if (message == null && parts != null)
+		{
+			StringBuilder ret = new StringBuilder().append(code).append(": ");
+			for(Object part : parts)
+				ret.append(part);
+			message = ret.toString();
+		}
+		return message;
+	}
+
+
+	/**
+	 * Builds the message before serializing it, since the parts are not serialized.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		getMessage();
+		out.defaultWriteObject();
+	}
 }
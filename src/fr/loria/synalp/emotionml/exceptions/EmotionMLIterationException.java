@@ -0,0 +1,34 @@
+package fr.loria.synalp.emotionml.exceptions;
+
+/**
+ * An EmotionMLIterationException wraps the EmotionMLException that occurred while iterating over
+ * emotions, since the methods of an Iterator cannot throw checked exceptions.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionIterator
+ */
+public class EmotionMLIterationException extends RuntimeException
+{
+	private static final long serialVersionUID = 1L;
+
+
+	/**
+	 * Creates a new EmotionMLIterationException wrapping the given EmotionMLException.
+	 * @param cause
+	 */
+	public EmotionMLIterationException(EmotionMLException cause)
+	{
+		super(cause.getMessage(), cause);
+	}
+
+
+	/**
+	 * Returns the wrapped EmotionMLException, which is an EmotionMLValidationException if the
+	 * emotions are not valid.
+	 * @return the EmotionMLException
+	 */
+	@Override
+	public EmotionMLException getCause()
+	{
+		return (EmotionMLException) super.getCause();
+	}
+}
@@ -27,6 +27,30 @@ public class EmotionMLValidationException extends EmotionMLException
 	}
 
 
+	/**
+	 * Creates a new EmotionMLValidationException based on given ValidationResult, whose message is
+	 * only built when it is asked for.
+	 * @param result
+	 * @param stackTrace false to not record the stack trace, when the failure is expected to be
+	 *            frequent and only its ValidationResult matters
+	 */
+	public EmotionMLValidationException(ValidationResult result, boolean stackTrace)
+	{
+		super(null, stackTrace);
+		this.result = result;
+	}
+
+
+	@Override
+	public String getMessage()
+	{
+		String ret = super.getMessage();
+		if (ret == null)
+			return result.toString();
+		else return ret;
+	}
+
+
 	/**
 	 * Returns the ValidationResult of this EmotionMLValidationException.
 	 * @return a ValidationResult
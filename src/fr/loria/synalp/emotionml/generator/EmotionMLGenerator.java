@@ -0,0 +1,551 @@
+package fr.loria.synalp.emotionml.generator;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+
+import org.w3c.dom.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.descriptors.Reference.Role;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.info.Info;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.vocabularies.*;
+import fr.loria.synalp.emotionml.vocabularies.predefined.*;
+
+/**
+ * An EmotionMLGenerator generates synthetic EmotionML documents for load testing. The generated
+ * emotions mix Big6 categories, PAD or FSRE dimensions, OCC appraisals and Frijda action tendencies,
+ * along with categories of local vocabularies, traces, references, timestamps and &lt;info&gt;
+ * payloads, in proportions that can be configured. The generation only depends on the seed and the
+ * configuration: the same generator always generates the same document.
+ * <p>
+ * The documents are written by an EmotionMLExporter whose validator checks each emotion. When
+ * written to a stream, the emotions are generated and written one at a time with an EmotionWriter,
+ * hence documents of any size can be generated in constant memory. Use a NullValidator to skip the
+ * validation.
+ * </p>
+ * @author Alexandre Denis
+ */
+public class EmotionMLGenerator
+{
+	/**
+	 * The namespace of the payload element of the generated &lt;info&gt; elements.
+	 */
+	public static final String PAYLOAD_NAMESPACE = "http://www.loria.fr/synalp/emotionml/generator";
+
+	private static final Vocabulary[] DIMENSION_VOCABULARIES = { new PadDimensions(), new FsreDimensions() };
+	private static final Vocabulary CATEGORY_VOCABULARY = new Big6();
+	private static final Vocabulary APPRAISAL_VOCABULARY = new OccAppraisals();
+	private static final Vocabulary ACTION_TENDENCY_VOCABULARY = new FrijdaActionTendencies();
+	private static final float TRACE_FREQUENCY = 10;
+	private static final int MAX_GAP = 1000; // in ms, between the starts of two emotions
+	private static final int MAX_DURATION = 5000;
+
+	private long seed;
+	private int emotionCount = 1000;
+	private float[] probabilities = { 1f, 0.5f, 0.25f, 0.25f }; // indexed by VocabularyType
+	private int maxDescriptors = 2;
+	private float traceProbability = 0.1f;
+	private int traceLength = 100;
+	private float referenceProbability = 0.2f;
+	private float infoProbability = 0.1f;
+	private int infoSize = 100;
+	private int localVocabularyCount = 2;
+	private int localVocabularySize = 10;
+	private EmotionMLValidator validator = new EmotionMLValidator();
+
+
+	/**
+	 * Creates a new EmotionMLGenerator with seed 0.
+	 */
+	public EmotionMLGenerator()
+	{
+
+	}
+
+
+	/**
+	 * Creates a new EmotionMLGenerator with given seed.
+	 * @param seed
+	 */
+	public EmotionMLGenerator(long seed)
+	{
+		this.seed = seed;
+	}
+
+
+/////// Configuration
+
+	/**
+	 * Sets the seed of the random generation.
+	 * @param seed
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setSeed(long seed)
+	{
+		this.seed = seed;
+		return this;
+	}
+
+
+	/**
+	 * Sets the number of generated emotions, 1000 by default.
+	 * @param emotionCount
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setEmotionCount(int emotionCount)
+	{
+		this.emotionCount = emotionCount;
+		return this;
+	}
+
+
+	/**
+	 * Sets the probability that an emotion has descriptors of the given type. By default, all the
+	 * emotions have categories, half of them have dimensions, and a quarter have appraisals and
+	 * action tendencies. An emotion which draws no type has a category.
+	 * @param type
+	 * @param probability
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setProbability(VocabularyType type, float probability)
+	{
+		probabilities[type.ordinal()] = probability;
+		return this;
+	}
+
+
+	/**
+	 * Sets the maximum number of descriptors of each type in an emotion, 2 by default.
+	 * @param maxDescriptors
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setMaxDescriptors(int maxDescriptors)
+	{
+		this.maxDescriptors = maxDescriptors;
+		return this;
+	}
+
+
+	/**
+	 * Sets the probability that a dimension, appraisal or action tendency has a trace instead of a
+	 * value, 0.1 by default.
+	 * @param traceProbability
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setTraceProbability(float traceProbability)
+	{
+		this.traceProbability = traceProbability;
+		return this;
+	}
+
+
+	/**
+	 * Sets the number of samples of the traces, 100 by default.
+	 * @param traceLength
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setTraceLength(int traceLength)
+	{
+		this.traceLength = traceLength;
+		return this;
+	}
+
+
+	/**
+	 * Sets the probability that an emotion has a reference, 0.2 by default.
+	 * @param referenceProbability
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setReferenceProbability(float referenceProbability)
+	{
+		this.referenceProbability = referenceProbability;
+		return this;
+	}
+
+
+	/**
+	 * Sets the probability that an emotion has an &lt;info&gt; element, 0.1 by default. The
+	 * document always has one if the info size is not 0.
+	 * @param infoProbability
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setInfoProbability(float infoProbability)
+	{
+		this.infoProbability = infoProbability;
+		return this;
+	}
+
+
+	/**
+	 * Sets the number of characters of the payload of the &lt;info&gt; elements, 100 by default, 0
+	 * meaning no info at all.
+	 * @param infoSize
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setInfoSize(int infoSize)
+	{
+		this.infoSize = infoSize;
+		return this;
+	}
+
+
+	/**
+	 * Sets the number of local category vocabularies defined by the document, 2 by default. The
+	 * emotions use either one of them or Big6 for their categories.
+	 * @param localVocabularyCount
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setLocalVocabularyCount(int localVocabularyCount)
+	{
+		this.localVocabularyCount = localVocabularyCount;
+		return this;
+	}
+
+
+	/**
+	 * Sets the number of items of the local vocabularies, 10 by default.
+	 * @param localVocabularySize
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setLocalVocabularySize(int localVocabularySize)
+	{
+		this.localVocabularySize = localVocabularySize;
+		return this;
+	}
+
+
+	/**
+	 * Sets the validator of the exporter writing the generated documents.
+	 * @param validator
+	 * @return this EmotionMLGenerator for chaining
+	 */
+	public EmotionMLGenerator setValidator(EmotionMLValidator validator)
+	{
+		this.validator = validator;
+		return this;
+	}
+
+
+/////// Generation
+
+	/**
+	 * Generates the whole document in memory.
+	 * @return an EmotionMLDocument
+	 */
+	public EmotionMLDocument generate()
+	{
+		Generation generation = new Generation();
+		EmotionMLDocument ret = generation.createDocument();
+		for(int i = 0; i < emotionCount; i++)
+			ret.add(generation.createEmotion());
+		return ret;
+	}
+
+
+	/**
+	 * Generates the document and writes it in XML to the given stream, one emotion at a time. The
+	 * written bytes are the ones the exporter of this generator writes for the document returned
+	 * by generate().
+	 * @param stream the stream to write to, it is closed at the end
+	 * @throws EmotionMLValidationException if a generated emotion is not valid
+	 * @throws EmotionMLException
+	 */
+	public void generate(OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		Generation generation = new Generation();
+		EmotionWriter writer = createExporter().stream(generation.createDocument(), stream);
+		try
+		{
+			for(int i = 0; i < emotionCount; i++)
+				writer.write(generation.createEmotion());
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Generates the document and writes it in XML to the given File.
+	 * @param file
+	 * @throws EmotionMLValidationException if a generated emotion is not valid
+	 * @throws EmotionMLException
+	 * @throws IOException
+	 */
+	public void generate(File file) throws EmotionMLValidationException, EmotionMLException, IOException
+	{
+		generate(new BufferedOutputStream(new FileOutputStream(file)));
+	}
+
+
+	/**
+	 * Creates an EmotionMLExporter which exports the payloads of the generated &lt;info&gt;
+	 * elements.
+	 * @return a new EmotionMLExporter using the validator of this generator
+	 */
+	public EmotionMLExporter createExporter()
+	{
+		return new PayloadExporter(validator);
+	}
+
+
+	/**
+	 * Generates a document in the given file.
+	 * @param args the file, the number of emotions and optionally the seed and the trace length
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length < 2)
+		{
+			System.err.println("usage: EmotionMLGenerator file emotionCount [seed [traceLength]]");
+			return;
+		}
+
+		EmotionMLGenerator generator = new EmotionMLGenerator().setEmotionCount(Integer.parseInt(args[1]));
+		if (args.length > 2)
+			generator.setSeed(Long.parseLong(args[2]));
+		if (args.length > 3)
+			generator.setTraceLength(Integer.parseInt(args[3]));
+		generator.generate(new File(args[0]));
+	}
+
+
+	/**
+	 * A Generation holds the state of the generation of one document.
+	 * @author Alexandre Denis
+	 */
+	private class Generation
+	{
+		private Random random = new Random(seed);
+		private List<Vocabulary> localVocabularies = new ArrayList<Vocabulary>();
+		private long start;
+		private int index;
+
+
+		/**
+		 * Creates the document without its emotions.
+		 */
+		EmotionMLDocument createDocument()
+		{
+			EmotionMLDocument ret = new EmotionMLDocument();
+			ret.setCategorySetURI(getURI(CATEGORY_VOCABULARY));
+			if (infoSize > 0)
+				ret.setInfo(createInfo());
+
+			for(int i = 0; i < localVocabularyCount; i++)
+			{
+				Vocabulary vocabulary = new Vocabulary("local" + i, VocabularyType.CATEGORY);
+				for(int j = 0; j < localVocabularySize; j++)
+					vocabulary.addItem("item" + j);
+				localVocabularies.add(vocabulary);
+				ret.add(vocabulary);
+			}
+			return ret;
+		}
+
+
+		/**
+		 * Creates the next emotion.
+		 */
+		Emotion createEmotion()
+		{
+			Emotion ret = new Emotion();
+			boolean hasDescriptors = false;
+			for(VocabularyType type : VocabularyType.values())
+				if (random.nextFloat() < probabilities[type.ordinal()])
+				{
+					addDescriptors(ret, type);
+					hasDescriptors = true;
+				}
+			if (!hasDescriptors)
+				addDescriptors(ret, VocabularyType.CATEGORY);
+
+			start += random.nextInt(MAX_GAP);
+			ret.getTimestamp().setStart(start);
+			ret.getTimestamp().setDuration(random.nextInt(MAX_DURATION));
+
+			if (random.nextFloat() < referenceProbability)
+			{
+				Role role = Role.values()[random.nextInt(Role.values().length)];
+				ret.add(new Reference(URI.create("http://www.example.com/media/" + index + ".mp4"), "video/mp4", role));
+			}
+
+			if (infoSize > 0 && random.nextFloat() < infoProbability)
+				ret.setInfo(createInfo());
+
+			index++;
+			return ret;
+		}
+
+
+		/**
+		 * Adds to the given emotion descriptors of given type, with distinct names.
+		 */
+		private void addDescriptors(Emotion emotion, VocabularyType type)
+		{
+			Vocabulary vocabulary = getVocabulary(type);
+			if (localVocabularies.contains(vocabulary))
+				emotion.setDescriptorSetURI(type, URI.create("#" + vocabulary.getId()));
+			else emotion.setDescriptorSetURI(type, getURI(vocabulary));
+
+			List<String> names = new ArrayList<String>(vocabulary.getItemNames());
+			Collections.sort(names); // the order of the items is not specified
+			int count = Math.min(names.size(), 1 + random.nextInt(Math.max(1, maxDescriptors)));
+			for(int i = 0; i < count; i++)
+			{
+				String name = names.remove(random.nextInt(names.size()));
+				emotion.add(createDescriptor(type, name));
+			}
+		}
+
+
+		/**
+		 * Returns the vocabulary of the next descriptors of given type.
+		 */
+		private Vocabulary getVocabulary(VocabularyType type)
+		{
+			switch (type)
+			{
+				case CATEGORY:
+					int choice = random.nextInt(localVocabularies.size() + 1);
+					return choice == 0 ? CATEGORY_VOCABULARY : localVocabularies.get(choice - 1);
+
+				case DIMENSION:
+					return DIMENSION_VOCABULARIES[random.nextInt(DIMENSION_VOCABULARIES.length)];
+
+				case APPRAISAL:
+					return APPRAISAL_VOCABULARY;
+
+				case ACTION_TENDENCY:
+				default:
+					return ACTION_TENDENCY_VOCABULARY;
+			}
+		}
+
+
+		/**
+		 * Creates a descriptor of given type and name, with a value or a trace. Categories have a
+		 * value half of the time and never a trace.
+		 */
+		private EmotionDescriptor createDescriptor(VocabularyType type, String name)
+		{
+			EmotionDescriptor ret;
+			switch (type)
+			{
+				case CATEGORY:
+					ret = new Category(name);
+					if (random.nextBoolean())
+						ret.setValue(createSample());
+					return ret;
+
+				case DIMENSION:
+					ret = new Dimension(name, (Float) null);
+					break;
+
+				case APPRAISAL:
+					ret = new Appraisal(name);
+					break;
+
+				case ACTION_TENDENCY:
+				default:
+					ret = new ActionTendency(name);
+					break;
+			}
+
+			if (traceLength > 0 && random.nextFloat() < traceProbability)
+			{
+				float[] samples = new float[traceLength];
+				for(int i = 0; i < samples.length; i++)
+					samples[i] = createSample();
+				ret.setTrace(new Trace(TRACE_FREQUENCY, samples));
+			}
+			else ret.setValue(createSample());
+			return ret;
+		}
+
+
+		/**
+		 * Returns a random value of [0, 1] with 3 decimals.
+		 */
+		private float createSample()
+		{
+			return random.nextInt(1001) / 1000f;
+		}
+
+
+		/**
+		 * Creates an Info whose payload is a random text of the configured size.
+		 */
+		private Info createInfo()
+		{
+			char[] payload = new char[infoSize];
+			for(int i = 0; i < payload.length; i++)
+				payload[i] = (char) ('a' + random.nextInt(26));
+			return new PayloadInfo(new String(payload));
+		}
+	}
+
+
+	/**
+	 * Returns the URI of the given predefined vocabulary.
+	 */
+	private static URI getURI(Vocabulary vocabulary)
+	{
+		return URI.create(EmotionMLDocument.VOCABULARY_URI + "#" + vocabulary.getId());
+	}
+
+
+	/**
+	 * An Info carrying a text payload.
+	 * @author Alexandre Denis
+	 */
+	private static class PayloadInfo extends Info
+	{
+		private String payload;
+
+
+		PayloadInfo(String payload)
+		{
+			this.payload = payload;
+		}
+
+
+		@Override
+		public Info copy()
+		{
+			return new PayloadInfo(payload);
+		}
+	}
+
+
+	/**
+	 * An EmotionMLExporter that exports the payload of PayloadInfo objects.
+	 * @author Alexandre Denis
+	 */
+	private static class PayloadExporter extends EmotionMLExporter
+	{
+		PayloadExporter(EmotionMLValidator validator)
+		{
+			super(validator);
+		}
+
+
+		@Override
+		public Element exportInfo(Info info, Document doc) throws EmotionMLException
+		{
+			Element ret = super.exportInfo(info, doc);
+			if (info instanceof PayloadInfo)
+			{
+				Element payload = doc.createElementNS(PAYLOAD_NAMESPACE, "payload");
+				payload.setTextContent(((PayloadInfo) info).payload);
+				ret.appendChild(payload);
+			}
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.File;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+
+/**
+ * A CorpusEntry is the outcome of the import of one file of a corpus by a CorpusImporter: either
+ * the imported EmotionMLDocument, or the exception which prevented its import.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.CorpusImporter
+ */
+public class CorpusEntry
+{
+	private final File file;
+	private final EmotionMLDocument document;
+	private final Exception exception;
+
+
+	/**
+	 * Creates a new CorpusEntry.
+	 * @param file
+	 * @param document the imported document, null if the import failed
+	 * @param exception the failure of the import, null if the document has been imported
+	 */
+	CorpusEntry(File file, EmotionMLDocument document, Exception exception)
+	{
+		this.file = file;
+		this.document = document;
+		this.exception = exception;
+	}
+
+
+	/**
+	 * Returns the imported file.
+	 * @return a File
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+
+	/**
+	 * Tests whether the file has been imported.
+	 * @return true if there is a document, false if there is an exception
+	 */
+	public boolean isImported()
+	{
+		return document != null;
+	}
+
+
+	/**
+	 * Returns the imported document.
+	 * @return null if the import failed
+	 */
+	public EmotionMLDocument getDocument()
+	{
+		return document;
+	}
+
+
+	/**
+	 * Returns the exception which prevented the import: an EmotionMLValidationException if the
+	 * document is not valid, another EmotionMLException if it could not be read or imported, or an
+	 * IOException if the file could not be read.
+	 * @return null if the file has been imported
+	 */
+	public Exception getException()
+	{
+		return exception;
+	}
+
+
+	/**
+	 * Returns the ValidationResult of the rejection of the document.
+	 * @return null if the document has been imported or if it has not been rejected by the
+	 *         validation
+	 */
+	public ValidationResult getValidationResult()
+	{
+		if (exception instanceof EmotionMLValidationException)
+			return ((EmotionMLValidationException) exception).getValidationResult();
+		else return null;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return file + (isImported() ? ": imported" : ": " + exception.getLocalizedMessage());
+	}
+}
@@ -0,0 +1,278 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+
+/**
+ * A CorpusImporter imports the files of a corpus in parallel over a ForkJoinPool, which by default
+ * has one worker per available processor. Each worker thread imports its files with its own
+ * EmotionMLImporter, created once by {@link #createImporter()} and reused for all its files, such
+ * that no importer is shared between threads. The files are given as a list, or as a directory and
+ * a glob pattern. Each file gives a CorpusEntry holding either its EmotionMLDocument or the
+ * exception which prevented its import, for instance an EmotionMLValidationException, hence an
+ * invalid file does not stop the import of the corpus. The entries are returned by a CorpusIterator,
+ * in the order of the files or in the order the imports complete, and only a bounded number of files
+ * are imported ahead of the iteration.
+ * @author Alexandre Denis
+ */
+public class CorpusImporter implements Closeable
+{
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private int maxPending;
+	private final ThreadLocal<EmotionMLImporter> importers = new ThreadLocal<EmotionMLImporter>()
+	{
+		@Override
+		protected EmotionMLImporter initialValue()
+		{
+			return createImporter();
+		}
+	};
+
+
+	/**
+	 * Creates a new CorpusImporter with a ForkJoinPool of one worker per available processor.
+	 */
+	public CorpusImporter()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+
+	/**
+	 * Creates a new CorpusImporter with a ForkJoinPool of the given number of workers, which is shut
+	 * down when this CorpusImporter is closed.
+	 * @param parallelism
+	 */
+	public CorpusImporter(int parallelism)
+	{
+		this(new ForkJoinPool(parallelism), true);
+	}
+
+
+	/**
+	 * Creates a new CorpusImporter using the given ForkJoinPool, which is not shut down when this
+	 * CorpusImporter is closed.
+	 * @param pool
+	 */
+	public CorpusImporter(ForkJoinPool pool)
+	{
+		this(pool, false);
+	}
+
+
+	/**
+	 * Creates a new CorpusImporter.
+	 */
+	private CorpusImporter(ForkJoinPool pool, boolean ownsPool)
+	{
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.maxPending = 2 * pool.getParallelism();
+	}
+
+
+	/**
+	 * Creates the EmotionMLImporter of a worker thread. Subclasses may override it to configure the
+	 * importers, it is called once by each worker thread.
+	 * @return a new EmotionMLImporter
+	 */
+	protected EmotionMLImporter createImporter()
+	{
+		return new EmotionMLImporter();
+	}
+
+
+	/**
+	 * Returns the maximum number of files imported ahead of an iteration.
+	 * @return twice the parallelism of the pool by default
+	 */
+	public int getMaxPending()
+	{
+		return maxPending;
+	}
+
+
+	/**
+	 * Sets the maximum number of files imported ahead of an iteration, which bounds the number of
+	 * documents held in memory by an iteration. It applies to the iterations started afterwards.
+	 * @param maxPending a number of files, at least 1
+	 * @return this CorpusImporter for chaining
+	 */
+	public CorpusImporter setMaxPending(int maxPending)
+	{
+		if (maxPending < 1)
+			throw new IllegalArgumentException("the maximum number of pending files must be at least 1: " + maxPending);
+		this.maxPending = maxPending;
+		return this;
+	}
+
+
+/////// Import
+
+	/**
+	 * Imports the given files.
+	 * @param files
+	 * @param ordered true to return the entries in the order of the files, false in the order the
+	 *            imports complete
+	 * @return a CorpusIterator over the entries of the files
+	 */
+	public CorpusIterator importFiles(Iterable<File> files, boolean ordered)
+	{
+		return new CorpusIterator(this, files.iterator(), ordered, maxPending);
+	}
+
+
+	/**
+	 * Imports the files of the given directory whose path relative to the directory matches the
+	 * given glob pattern, in the order of their paths. For instance "*.emotionml" matches the
+	 * EmotionML files of the directory itself and "**.emotionml" the ones of its subdirectories as
+	 * well.
+	 * @param directory
+	 * @param glob a glob pattern as defined by FileSystem.getPathMatcher, null for all the files of
+	 *            the directory itself
+	 * @param ordered true to return the entries in the order of the paths, false in the order the
+	 *            imports complete
+	 * @return a CorpusIterator over the entries of the files
+	 * @throws IOException if the directory cannot be listed
+	 */
+	public CorpusIterator importDirectory(File directory, String glob, boolean ordered) throws IOException
+	{
+		return importFiles(listFiles(directory, glob == null ? "*" : glob), ordered);
+	}
+
+
+	/**
+	 * Imports all the given files and returns their entries in the order of the files.
+	 * @param files
+	 * @return a new List of CorpusEntries
+	 */
+	public List<CorpusEntry> importAll(Iterable<File> files)
+	{
+		List<CorpusEntry> ret = new ArrayList<CorpusEntry>();
+		CorpusIterator iterator = importFiles(files, true);
+		while(iterator.hasNext())
+			ret.add(iterator.next());
+		return ret;
+	}
+
+
+	/**
+	 * Shuts down the ForkJoinPool if it has been created by this CorpusImporter. The imports
+	 * already submitted are completed.
+	 */
+	@Override
+	public void close()
+	{
+		if (ownsPool)
+			pool.shutdown();
+	}
+
+
+	/**
+	 * Submits the import of the given file to the pool.
+	 * @param file
+	 * @param completed the queue the task is added to once it has run, may be null
+	 * @return the task returning the entry of the file
+	 */
+	ForkJoinTask<CorpusEntry> submit(File file, BlockingQueue<ForkJoinTask<CorpusEntry>> completed)
+	{
+		return pool.submit(new ImportTask(file, completed));
+	}
+
+
+	/**
+	 * Imports the given file with the importer of the current thread.
+	 */
+	private CorpusEntry importFile(File file)
+	{
+		try
+		{
+			EmotionMLDocument document = importers.get().importDocument(file);
+			return new CorpusEntry(file, document, null);
+		}
+		catch (EmotionMLException e)
+		{
+			return new CorpusEntry(file, null, e);
+		}
+		catch (IOException e)
+		{
+			return new CorpusEntry(file, null, e);
+		}
+		catch (RuntimeException e)
+		{
+			return new CorpusEntry(file, null, e);
+		}
+	}
+
+
+	/**
+	 * Returns the sorted list of the regular files of the given directory whose relative path
+	 * matches the given glob pattern.
+	 */
+	private static List<File> listFiles(File directory, String glob) throws IOException
+	{
+		final Path root = directory.toPath();
+		final PathMatcher matcher = root.getFileSystem().getPathMatcher("glob:" + glob);
+		final List<Path> paths = new ArrayList<Path>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+			{
+				if (attributes.isRegularFile() && matcher.matches(root.relativize(file)))
+					paths.add(file);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		Collections.sort(paths);
+
+		List<File> ret = new ArrayList<File>(paths.size());
+		for(Path path : paths)
+			ret.add(path.toFile());
+		return ret;
+	}
+
+
+	/**
+	 * The import of a file, which adds itself to the queue of completed tasks if there is one. It is
+	 * added even if the import throws an Error, for instance an OutOfMemoryError, such that the
+	 * iteration waiting for it gets the Error when joining it instead of waiting forever.
+	 * @author Alexandre Denis
+	 */
+	private class ImportTask extends RecursiveTask<CorpusEntry>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final File file;
+		private final BlockingQueue<ForkJoinTask<CorpusEntry>> completed;
+
+
+		ImportTask(File file, BlockingQueue<ForkJoinTask<CorpusEntry>> completed)
+		{
+			this.file = file;
+			this.completed = completed;
+		}
+
+
+		@Override
+		protected CorpusEntry compute()
+		{
+			try
+			{
+				return importFile(file);
+			}
+			finally
+			{
+				if (completed != null)
+					completed.add(this);
+			}
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A CorpusIterator returns the CorpusEntries of the files imported by a CorpusImporter, either in
+ * the order of the files or in the order the imports complete. The files are imported ahead of the
+ * iteration, but at most a given number of them are imported or waiting to be returned at any
+ * time: the next files are only submitted as the entries are returned, hence the memory used does
+ * not depend on the number of files. An iteration must either be completed or closed, closing it
+ * cancels the imports which have not started yet. A CorpusIterator is not thread-safe.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.CorpusImporter
+ */
+public class CorpusIterator implements Iterator<CorpusEntry>, Closeable
+{
+	private final CorpusImporter importer;
+	private final Iterator<File> files;
+	private final boolean ordered;
+	private final int maxPending;
+	private final Queue<ForkJoinTask<CorpusEntry>> pending = new ArrayDeque<ForkJoinTask<CorpusEntry>>(); // in the order of the files
+	private final BlockingQueue<ForkJoinTask<CorpusEntry>> completed; // in the order of completion
+	private int running; // the number of submitted files whose entry has not been returned
+	private boolean closed;
+
+
+	/**
+	 * Creates a new CorpusIterator and submits the first files.
+	 * @param importer
+	 * @param files
+	 * @param ordered true to return the entries in the order of the files, false in the order of
+	 *            completion
+	 * @param maxPending the maximum number of files imported or waiting to be returned
+	 */
+	CorpusIterator(CorpusImporter importer, Iterator<File> files, boolean ordered, int maxPending)
+	{
+		this.importer = importer;
+		this.files = files;
+		this.ordered = ordered;
+		this.maxPending = maxPending;
+		this.completed = ordered ? null : new LinkedBlockingQueue<ForkJoinTask<CorpusEntry>>();
+		fill();
+	}
+
+
+	/**
+	 * Submits the next files until the maximum number of pending files is reached.
+	 */
+	private void fill()
+	{
+		while(!closed && running < maxPending && files.hasNext())
+		{
+			pending.add(importer.submit(files.next(), completed));
+			running++;
+		}
+	}
+
+
+	@Override
+	public boolean hasNext()
+	{
+		return !closed && running > 0;
+	}
+
+
+	/**
+	 * Returns the entry of the next file, waiting for its import if needed. If the import of the
+	 * file threw an Error, for instance an OutOfMemoryError on a large file, the Error is thrown
+	 * instead and the iteration can go on with the next files.
+	 * @return the next CorpusEntry
+	 * @throws NoSuchElementException if there is no more file or if the iteration is closed
+	 */
+	@Override
+	public CorpusEntry next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		ForkJoinTask<CorpusEntry> task;
+		if (ordered)
+			task = pending.remove();
+		else
+		{
+			try
+			{
+				task = completed.take();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while waiting for the next import", e);
+			}
+			pending.remove(task); // the tasks are only kept for close
+		}
+
+		try
+		{
+			return task.join();
+		}
+		finally
+		{
+			running--;
+			fill();
+		}
+	}
+
+
+	/**
+	 * Not supported.
+	 * @throws UnsupportedOperationException
+	 */
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+
+	/**
+	 * Stops the iteration and cancels the imports which have not started yet.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		for(ForkJoinTask<CorpusEntry> task : pending)
+			task.cancel(false);
+		pending.clear();
+	}
+}
@@ -0,0 +1,67 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+
+/**
+ * A CountingInputStream counts the bytes read from the stream it wraps.
+ * @author Alexandre Denis
+ */
+class CountingInputStream extends FilterInputStream
+{
+	private long count;
+
+
+	/**
+	 * @param stream
+	 */
+	CountingInputStream(InputStream stream)
+	{
+		super(stream);
+	}
+
+
+	/**
+	 * Returns the number of bytes read so far.
+	 * @return a number of bytes
+	 */
+	long getCount()
+	{
+		return count;
+	}
+
+
+	@Override
+	public int read() throws IOException
+	{
+		int ret = super.read();
+		if (ret != -1)
+			count++;
+		return ret;
+	}
+
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		int ret = super.read(b, off, len);
+		if (ret > 0)
+			count += ret;
+		return ret;
+	}
+
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long ret = super.skip(n);
+		count += ret;
+		return ret;
+	}
+
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+}
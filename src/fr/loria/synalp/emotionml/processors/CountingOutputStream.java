@@ -0,0 +1,47 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+
+/**
+ * A CountingOutputStream counts the bytes written to the stream it wraps.
+ * @author Alexandre Denis
+ */
+class CountingOutputStream extends FilterOutputStream
+{
+	private long count;
+
+
+	/**
+	 * @param stream
+	 */
+	CountingOutputStream(OutputStream stream)
+	{
+		super(stream);
+	}
+
+
+	/**
+	 * Returns the number of bytes written so far.
+	 * @return a number of bytes
+	 */
+	long getCount()
+	{
+		return count;
+	}
+
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		out.write(b);
+		count++;
+	}
+
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		out.write(b, off, len);
+		count += len;
+	}
+}
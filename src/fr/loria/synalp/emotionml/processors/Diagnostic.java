@@ -0,0 +1,223 @@
+package fr.loria.synalp.emotionml.processors;
+
+import org.w3c.dom.*;
+import org.xml.sax.SAXParseException;
+
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+/**
+ * A Diagnostic is one failure found by an EmotionMLValidator gathering all the failures of a
+ * document (see EmotionMLValidator.setMaxDiagnostics): the code of the failed assertion or schema
+ * constraint, the path of the offending element, the offending value, and the position of the
+ * element in the document when it is known. The message of an assertion failure is only built when
+ * it is read, like the one of the failure itself.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.ValidationResult#getDiagnostics()
+ */
+public class Diagnostic
+{
+	private final boolean schemaFailure;
+	private final String code;
+	private final String path;
+	private final String value;
+	private final int line;
+	private final int column;
+	private final Exception failure;
+	private String message; // built from the failure when it is first read
+
+
+	/**
+	 * Creates a new Diagnostic for the given node, whose path and position are computed from the node.
+	 * @param schemaFailure true if the failure is a schema failure, false for an assertion
+	 * @param code the code of the failure, may be null
+	 * @param node the offending node, may be null
+	 * @param value the offending value, may be null
+	 * @param failure the failure, whose message is the message of the Diagnostic
+	 */
+	private Diagnostic(boolean schemaFailure, String code, Node node, String value, Exception failure)
+	{
+		int[] location = null;
+		if (node != null && node.getUserData(XMLEmotionMLReader.LOCATION) instanceof int[])
+			location = (int[]) node.getUserData(XMLEmotionMLReader.LOCATION);
+
+		this.schemaFailure = schemaFailure;
+		this.code = code;
+		this.path = getPath(node);
+		this.value = value;
+		this.line = location == null ? -1 : location[0];
+		this.column = location == null ? -1 : location[1];
+		this.failure = failure;
+	}
+
+
+	/**
+	 * Creates a new Diagnostic for the given assertion failure. Its code is the one of the failure,
+	 * hence the message of a keyed EmotionMLFormatException is not built.
+	 * @param failure
+	 * @param node the offending node, may be null
+	 * @param value the offending value, may be null
+	 * @return a new Diagnostic
+	 */
+	static Diagnostic create(EmotionMLException failure, Node node, String value)
+	{
+		String code;
+		if (failure instanceof EmotionMLFormatException)
+		{
+			int number = ((EmotionMLFormatException) failure).getCode();
+			code = number == -1 ? null : String.valueOf(number);
+		}
+		else code = parseCode(failure.getLocalizedMessage());
+		return new Diagnostic(false, code, node, value, failure);
+	}
+
+
+	/**
+	 * Creates a new Diagnostic for the given schema failure.
+	 * @param failure
+	 * @param node the element being validated, may be null
+	 * @return a new Diagnostic
+	 */
+	static Diagnostic create(SAXParseException failure, Node node)
+	{
+		return new Diagnostic(true, parseCode(failure.getLocalizedMessage()), node, null, failure);
+	}
+
+
+	/**
+	 * Tests whether this Diagnostic is a failure of the EmotionML schema.
+	 * @return true for a schema failure, false for a failure of an assertion
+	 */
+	public boolean isSchemaFailure()
+	{
+		return schemaFailure;
+	}
+
+
+	/**
+	 * Returns the code of the failure: the number of the assertion for an assertion failure, for
+	 * instance "210", or the name of the constraint for a schema failure, for instance
+	 * "cvc-complex-type.2.4.a".
+	 * @return null if the failure has no code, for instance when a vocabulary cannot be resolved or
+	 *         when no assertion covers the failure
+	 */
+	public String getCode()
+	{
+		return code;
+	}
+
+
+	/**
+	 * Returns the path of the offending element from the root, for instance
+	 * "/emotionml/emotion[3]/category[1]", where the index of an element counts its preceding
+	 * siblings of the same name.
+	 * @return null if the element is unknown
+	 */
+	public String getPath()
+	{
+		return path;
+	}
+
+
+	/**
+	 * Returns the offending value, usually the value of an attribute.
+	 * @return null if the failure does not concern a single value
+	 */
+	public String getValue()
+	{
+		return value;
+	}
+
+
+	/**
+	 * Returns the line of the offending element. It is only known when the document has been read
+	 * by a XMLEmotionMLReader recording the locations.
+	 * @return -1 if unknown
+	 */
+	public int getLine()
+	{
+		return line;
+	}
+
+
+	/**
+	 * Returns the column of the end of the start tag of the offending element.
+	 * @return -1 if unknown
+	 */
+	public int getColumn()
+	{
+		return column;
+	}
+
+
+	/**
+	 * Returns the message of the failure.
+	 * @return the message
+	 */
+	public String getMessage()
+	{
+		if (message == null)
+			message = failure.getLocalizedMessage();
+		return message;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		if (line != -1)
+			ret.append(line).append(":").append(column).append(" ");
+		if (path != null)
+			ret.append(path).append(" ");
+		ret.append(schemaFailure ? "schema " : "assertion ").append(getMessage());
+		return ret.toString();
+	}
+
+
+	/**
+	 * Returns the code which starts the given message, i.e. the text before the first colon if it
+	 * contains no space.
+	 * @param message
+	 * @return null if the message does not start with a code
+	 */
+	static String parseCode(String message)
+	{
+		if (message == null)
+			return null;
+
+		int index = message.indexOf(':');
+		if (index <= 0 || message.lastIndexOf(' ', index) != -1)
+			return null;
+		else return message.substring(0, index);
+	}
+
+
+	/**
+	 * Returns the path of the given node from the root of its document.
+	 * @param node
+	 * @return null if the node is null or is not an element
+	 */
+	static String getPath(Node node)
+	{
+		if (!(node instanceof Element))
+			return null;
+
+		StringBuilder ret = new StringBuilder();
+		for(Node current = node; current instanceof Element; current = current.getParentNode())
+		{
+			if (!(current.getParentNode() instanceof Element)) // the root has no index
+			{
+				ret.insert(0, "/" + current.getNodeName());
+				continue;
+			}
+
+			int index = 1;
+			for(Node sibling = current.getPreviousSibling(); sibling != null; sibling = sibling.getPreviousSibling())
+				if (sibling instanceof Element && sibling.getNodeName().equals(current.getNodeName()))
+					index++;
+			ret.insert(0, "/" + current.getNodeName() + "[" + index + "]");
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,248 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.util.*;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+
+/**
+ * A DomPump walks a DOM Element once and pushes its content as SAX events to a ContentHandler, as
+ * if the element was the root of a document. The namespace declarations are reported as prefix
+ * mappings, including the ones the element inherits from its ancestors, and are not reported as
+ * attributes.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.StaxPump
+ */
+class DomPump
+{
+	private ContentHandler handler;
+	private LexicalHandler lexicalHandler;
+	private AttributesImpl attributes = new AttributesImpl();
+	private char[] buffer = new char[256];
+
+
+	/**
+	 * Creates a new DomPump.
+	 * @param handler if it is also a LexicalHandler, comments and CDATA sections are reported
+	 */
+	DomPump(ContentHandler handler)
+	{
+		this.handler = handler;
+		if (handler instanceof LexicalHandler)
+			this.lexicalHandler = (LexicalHandler) handler;
+	}
+
+
+	/**
+	 * Pumps the given Element as a whole document.
+	 * @param element
+	 * @throws EmotionMLException if the handler fails
+	 */
+	void pump(Element element) throws EmotionMLException
+	{
+		try
+		{
+			handler.startDocument();
+			List<String> inherited = getInheritedPrefixMappings(element);
+			for(int i = 0; i < inherited.size(); i += 2)
+				handler.startPrefixMapping(inherited.get(i), inherited.get(i + 1));
+			pumpElement(element);
+			for(int i = inherited.size() - 2; i >= 0; i -= 2)
+				handler.endPrefixMapping(inherited.get(i));
+			handler.endDocument();
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to read element: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Pumps the given Element and its content.
+	 */
+	private void pumpElement(Element element) throws SAXException
+	{
+		NamedNodeMap atts = element.getAttributes();
+		int prefixCount = 0;
+		for(int i = 0; i < atts.getLength(); i++)
+		{
+			Attr att = (Attr) atts.item(i);
+			if (isNamespaceDeclaration(att))
+			{
+				handler.startPrefixMapping(getDeclaredPrefix(att), att.getValue());
+				prefixCount++;
+			}
+		}
+
+		attributes.clear();
+		for(int i = 0; i < atts.getLength(); i++)
+		{
+			Attr att = (Attr) atts.item(i);
+			if (!isNamespaceDeclaration(att))
+				attributes.addAttribute(emptyIfNull(att.getNamespaceURI()), getLocalName(att), att.getNodeName(), "CDATA", att.getValue());
+		}
+
+		String uri = emptyIfNull(element.getNamespaceURI());
+		String localName = getLocalName(element);
+		handler.startElement(uri, localName, element.getNodeName(), attributes);
+		pumpChildren(element);
+		handler.endElement(uri, localName, element.getNodeName());
+
+		if (prefixCount > 0)
+			for(int i = atts.getLength() - 1; i >= 0; i--)
+			{
+				Attr att = (Attr) atts.item(i);
+				if (isNamespaceDeclaration(att))
+					handler.endPrefixMapping(getDeclaredPrefix(att));
+			}
+	}
+
+
+	/**
+	 * Pumps the children of the given Node.
+	 */
+	private void pumpChildren(Node node) throws SAXException
+	{
+		for(Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			switch (child.getNodeType())
+			{
+				case Node.ELEMENT_NODE:
+					pumpElement((Element) child);
+					break;
+
+				case Node.TEXT_NODE:
+					characters(child.getNodeValue());
+					break;
+
+				case Node.CDATA_SECTION_NODE:
+					if (lexicalHandler != null)
+						lexicalHandler.startCDATA();
+					characters(child.getNodeValue());
+					if (lexicalHandler != null)
+						lexicalHandler.endCDATA();
+					break;
+
+				case Node.COMMENT_NODE:
+					if (lexicalHandler != null)
+					{
+						String value = child.getNodeValue();
+						lexicalHandler.comment(toChars(value), 0, value.length());
+					}
+					break;
+
+				case Node.PROCESSING_INSTRUCTION_NODE:
+					handler.processingInstruction(((ProcessingInstruction) child).getTarget(), ((ProcessingInstruction) child).getData());
+					break;
+
+				case Node.ENTITY_REFERENCE_NODE:
+					pumpChildren(child);
+					break;
+
+				default:
+					break;
+			}
+		}
+	}
+
+
+	/**
+	 * Reports the given text.
+	 */
+	private void characters(String value) throws SAXException
+	{
+		handler.characters(toChars(value), 0, value.length());
+	}
+
+
+	/**
+	 * Copies the given String in the reused buffer.
+	 */
+	private char[] toChars(String value)
+	{
+		if (value.length() > buffer.length)
+			buffer = new char[Math.max(value.length(), buffer.length * 2)];
+		value.getChars(0, value.length(), buffer, 0);
+		return buffer;
+	}
+
+
+	/**
+	 * Returns the prefix mappings declared by the ancestors of the given Element and not redeclared
+	 * below them, as a list prefix, uri, prefix, uri...
+	 */
+	private static List<String> getInheritedPrefixMappings(Element element)
+	{
+		List<String> ret = new ArrayList<String>();
+		Set<String> prefixes = new HashSet<String>();
+		for(int i = 0; i < element.getAttributes().getLength(); i++)
+		{
+			Attr att = (Attr) element.getAttributes().item(i);
+			if (isNamespaceDeclaration(att))
+				prefixes.add(getDeclaredPrefix(att));
+		}
+
+		for(Node node = element.getParentNode(); node instanceof Element; node = node.getParentNode())
+		{
+			NamedNodeMap atts = node.getAttributes();
+			for(int i = 0; i < atts.getLength(); i++)
+			{
+				Attr att = (Attr) atts.item(i);
+				if (isNamespaceDeclaration(att) && prefixes.add(getDeclaredPrefix(att)))
+				{
+					ret.add(getDeclaredPrefix(att));
+					ret.add(att.getValue());
+				}
+			}
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Tests whether the given attribute is a namespace declaration.
+	 */
+	private static boolean isNamespaceDeclaration(Attr att)
+	{
+		if (att.getNamespaceURI() != null)
+			return att.getNamespaceURI().equals(XMLConstants.XMLNS_ATTRIBUTE_NS_URI);
+		else return att.getNodeName().equals(XMLConstants.XMLNS_ATTRIBUTE) || att.getNodeName().startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+	}
+
+
+	/**
+	 * Returns the prefix declared by the given namespace declaration.
+	 */
+	private static String getDeclaredPrefix(Attr att)
+	{
+		String name = att.getNodeName();
+		int colon = name.indexOf(':');
+		return colon < 0 ? XMLConstants.DEFAULT_NS_PREFIX : name.substring(colon + 1);
+	}
+
+
+	/**
+	 * Returns the local name of the given Node, or its name if it has been created without
+	 * namespace support.
+	 */
+	private static String getLocalName(Node node)
+	{
+		return node.getLocalName() == null ? node.getNodeName() : node.getLocalName();
+	}
+
+
+	/**
+	 * Returns the empty String if the given String is null.
+	 */
+	private static String emptyIfNull(String str)
+	{
+		return str == null ? "" : str;
+	}
+}
@@ -0,0 +1,208 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.stream.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+
+/**
+ * An EmotionIterator pulls the emotions of an &lt;emotionml&gt; document one at a time, without
+ * ever holding the whole document in memory. The document is read with an XMLStreamReader only as
+ * far as needed to return the next emotion, and each returned emotion has been validated against
+ * the content read so far, with the root descriptor sets and the local vocabularies resolved like
+ * for a whole document. An emotion referring to a local vocabulary defined later in the document is
+ * held back until that vocabulary has been read.
+ * <p>
+ * The first invalid content stops the iteration: hasNext() or next() then throw an
+ * EmotionMLIterationException wrapping the EmotionMLValidationException. The checks that can only
+ * be performed at the end of the document (for instance an emotion id which is also the id of a
+ * vocabulary defined later) are reported after the last emotion. Note that the reported error is
+ * the first one found in the stream, it may differ from the one importDocument would report.
+ * </p>
+ * <p>
+ * Each emotion is released as soon as it has been returned, hence the memory used does not depend
+ * on the number of emotions, apart from the identifiers which are kept to check their unicity. An
+ * EmotionIterator must be closed to release the underlying stream.
+ * </p>
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLImporter#stream(InputStream)
+ */
+public class EmotionIterator implements Iterator<Emotion>, Closeable
+{
+	private XMLStreamReader reader;
+	private InputStream stream;
+	private EmotionMLContentHandler handler;
+	private StaxPump pump;
+	private Emotion next;
+	private boolean ended;
+	private boolean closed;
+	private EmotionMLIterationException failure;
+
+
+	/**
+	 * Creates a new EmotionIterator reading the given XMLStreamReader with the given importer.
+	 * @param importer the importer whose validator validates the emotions
+	 * @param reader
+	 * @param stream the stream read by the reader, which is closed along with the reader, may be
+	 *            null
+	 */
+	EmotionIterator(EmotionMLImporter importer, XMLStreamReader reader, InputStream stream)
+	{
+		this.reader = reader;
+		this.stream = stream;
+		this.handler = new EmotionMLContentHandler(importer, false, true);
+		this.pump = importer.createPump(reader, handler);
+	}
+
+
+	/**
+	 * Returns the document read so far, that is its descriptor sets, info and the vocabularies
+	 * read so far, but none of its emotions. The root element is read if needed.
+	 * @return the EmotionMLDocument without emotions
+	 * @throws EmotionMLIterationException if the document could not be read or is not valid
+	 */
+	public EmotionMLDocument getDocument()
+	{
+		if (failure != null)
+			throw failure;
+
+		while(!ended && handler.getStreamedDocument() == null)
+			pump();
+		check();
+		return handler.getStreamedDocument();
+	}
+
+
+	/**
+	 * Tests whether there is another valid emotion.
+	 * @throws EmotionMLIterationException if the document could not be read or is not valid
+	 */
+	@Override
+	public boolean hasNext()
+	{
+		if (closed)
+			return false;
+
+		if (next == null)
+			next = fetch();
+		return next != null;
+	}
+
+
+	/**
+	 * Returns the next valid emotion.
+	 * @throws NoSuchElementException if there are no more emotions
+	 * @throws EmotionMLIterationException if the document could not be read or is not valid
+	 */
+	@Override
+	public Emotion next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		Emotion ret = next;
+		next = null;
+		return ret;
+	}
+
+
+	/**
+	 * Not supported.
+	 * @throws UnsupportedOperationException
+	 */
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException("Unable to remove an emotion from a stream");
+	}
+
+
+	/**
+	 * Closes the XMLStreamReader and the underlying stream.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		next = null;
+		try
+		{
+			reader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new IOException(e.getLocalizedMessage());
+		}
+		finally
+		{
+			if (stream != null)
+				stream.close();
+		}
+	}
+
+
+	/**
+	 * Reads the document until the next emotion is ready.
+	 * @return null if there are no more emotions
+	 */
+	private Emotion fetch()
+	{
+		if (failure != null)
+			throw failure;
+
+		while(true)
+		{
+			check();
+			Emotion ret = handler.pollEmotion();
+			if (ret != null || ended)
+				return ret;
+			pump();
+		}
+	}
+
+
+	/**
+	 * Pumps the next event of the document.
+	 */
+	private void pump()
+	{
+		try
+		{
+			ended = !pump.pump();
+		}
+		catch (EmotionMLException e)
+		{
+			throw fail(e);
+		}
+	}
+
+
+	/**
+	 * Throws an EmotionMLIterationException if a check has failed so far.
+	 */
+	private void check()
+	{
+		try
+		{
+			handler.checkStream();
+		}
+		catch (EmotionMLException e)
+		{
+			throw fail(e);
+		}
+	}
+
+
+	/**
+	 * Records the failure of the iteration, which is thrown again by subsequent calls.
+	 */
+	private EmotionMLIterationException fail(EmotionMLException e)
+	{
+		ended = true;
+		failure = new EmotionMLIterationException(e);
+		return failure;
+	}
+}
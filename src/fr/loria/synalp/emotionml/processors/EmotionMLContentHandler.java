@@ -0,0 +1,1740 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URI;
+import java.util.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.*;
+import javax.xml.validation.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.info.*;
+import fr.loria.synalp.emotionml.vocabularies.*;
+
+/**
+ * An EmotionMLContentHandler validates and imports EmotionML from SAX events in a single pass,
+ * without building a DOM tree. The events are fed to a ValidatorHandler of the shared EmotionML
+ * Schema and the implementation assertions are checked as the elements are read, while the
+ * EmotionML objects are built. The validation is the one of the EmotionMLValidator of the given
+ * importer: the same assertions are checked and when a document fails the reported message is the
+ * one the EmotionMLValidator would report for the corresponding DOM Element. Since the
+ * EmotionMLValidator checks the vocabularies and the &lt;info&gt; elements of a document before its
+ * emotions, the checks which depend on what comes later in the document (references to local
+ * vocabularies defined after the emotion, identifiers) are deferred until the end of the document.
+ * <p>
+ * Only the &lt;info&gt; elements are built as small DOM Elements, such that the importer (for
+ * instance a JaxbEmotionMLImporter) can import them. When the validator of the importer is a
+ * NullValidator, no validation is performed at all.
+ * </p>
+ * <p>
+ * In streaming mode, the emotions are not added to the document but queued until they can be
+ * polled: an emotion is released as soon as all the checks it depends on have been performed,
+ * that is immediately, unless it refers to a local vocabulary which has not been read yet. The
+ * schema keeps track of the unique descriptor names of every emotion until the end of the
+ * document, hence in streaming mode every emotion but the first one is validated against the
+ * schema on its own, such that the memory used does not grow with the number of emotions.
+ * </p>
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLImporter#importDocument(javax.xml.stream.XMLStreamReader)
+ */
+public class EmotionMLContentHandler extends DefaultHandler implements LexicalHandler
+{
+	/**
+	 * The kinds of elements the handler recognizes.
+	 */
+	private enum ElementKind
+	{
+		ROOT, EMOTION, DESCRIPTOR, TRACE, REFERENCE, INFO, INFO_CONTENT, VOCABULARY, ITEM, OTHER
+	}
+
+	/**
+	 * The validation phases of the EmotionMLValidator, in the order they are performed: the root
+	 * element, then the vocabularies and info of the root, then the emotions, then the namespaces.
+	 */
+	private enum Phase
+	{
+		ROOT, DECLARATIONS, EMOTIONS, CONFORMANCE
+	}
+
+	private final EmotionMLImporter importer;
+	private final boolean emotionRoot;
+	private final boolean streaming;
+	private final boolean validating;
+	private final boolean resolveVocabularies;
+	private final VocabularyResolver resolver;
+	private final ProcessingListener listener;
+	private final EmotionMLValidator validator;
+
+	// schema
+	private static final ThreadLocal<IdleValidatorHandler> idleSchemaHandlers = new ThreadLocal<IdleValidatorHandler>();
+	private Schema schema;
+	private ValidatorHandler schemaHandler; // the handler receiving the current events
+	private ValidatorHandler documentSchemaHandler;
+	private ValidatorHandler emotionSchemaHandler;
+	private ValidatorHandler[] schemaHandlers = new ValidatorHandler[16]; // the handler of each element of the stack
+	private NamespaceSupport namespaces;
+	private Locator locator;
+	private boolean emotionValidated;
+	private AttributesImpl sortedAttributes = new AttributesImpl();
+	private boolean isSchemaValid = true;
+	private String schemaErrorMessage = "";
+
+	// assertions
+	private int ordinal;
+	private boolean[] failed = new boolean[Phase.values().length];
+	private int[] failureOrdinals = new int[Phase.values().length];
+	private String[] failureMessages = new String[Phase.values().length];
+	private List<PendingCheck> pendingChecks = new ArrayList<PendingCheck>();
+	private List<PendingCheck> pendingReferences = new LinkedList<PendingCheck>();
+	private Set<String> declarationIdentifiers = new LinkedHashSet<String>();
+	private Set<String> emotionIdentifiers = new HashSet<String>();
+	private Set<String> infoIdentifiers = new HashSet<String>(); // the ids of the info of the emotions in streaming mode
+	private LocalVocabularies localVocabularies;
+	private boolean complete;
+	private ValidationResult result;
+	private Element element;
+
+	// element stack
+	private int depth;
+	private ElementKind[] kinds = new ElementKind[16];
+	private boolean[] conformance = new boolean[16];
+
+	// current state
+	private String[] rootDescriptorSets = new String[VocabularyType.values().length];
+	private String[] emotionDescriptorSets = new String[VocabularyType.values().length];
+	private Map<VocabularyType, Set<String>> descriptorNames;
+	private boolean rootInfoFound;
+	private boolean emotionInfoFound;
+	private boolean descriptorFound;
+	private VocabularyType descriptorType;
+	private boolean descriptorHasValue;
+	private boolean traceFound;
+	private boolean vocabularyInfoFound;
+	private Set<String> itemNames;
+	private String vocabularyType;
+	private String vocabularyId;
+	private StringBuilder text = new StringBuilder();
+	private TraceCodec traceCodec = new TraceCodec();
+
+	// built objects
+	private boolean building = true;
+	private Exception buildException;
+	private EmotionMLDocument document;
+	private Emotion emotion;
+	private EmotionDescriptor descriptor;
+	private Vocabulary vocabulary;
+	private VocabularyItem item;
+	private Emotion importedEmotion;
+	private Deque<QueuedEmotion> queuedEmotions = new ArrayDeque<QueuedEmotion>();
+
+	// info elements
+	private DocumentBuilder infoBuilder;
+	private Element info;
+	private org.w3c.dom.Node infoNode;
+	private List<String> prefixMappings = new ArrayList<String>(); // prefix, uri, prefix, uri...
+
+
+	/**
+	 * Creates a new EmotionMLContentHandler which imports and validates with the given importer.
+	 * @param importer the importer whose validator is used to validate and which imports the
+	 *            &lt;info&gt; elements
+	 * @param emotionRoot if true the root element is expected to be a standalone &lt;emotion&gt;,
+	 *            else it is expected to be an &lt;emotionml&gt; element
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public EmotionMLContentHandler(EmotionMLImporter importer, boolean emotionRoot)
+	{
+		this(importer, emotionRoot, false);
+	}
+
+
+	/**
+	 * Creates a new EmotionMLContentHandler which imports and validates with the given importer,
+	 * possibly in streaming mode.
+	 * @param importer
+	 * @param emotionRoot
+	 * @param streaming if true the emotions of the document are queued instead of being added to
+	 *            the document, see {@link #pollEmotion()}
+	 * @throws IllegalStateException if the validator gathers several failures, which a single-pass
+	 *             validation cannot do
+	 */
+	EmotionMLContentHandler(EmotionMLImporter importer, boolean emotionRoot, boolean streaming)
+	{
+		EmotionMLValidator validator = importer.getValidator();
+		if (validator.performsValidation() && validator.getMaxDiagnostics() > 1)
+			throw new IllegalStateException("a single-pass validation stops at the first failure, it cannot gather " + validator.getMaxDiagnostics() +
+					" diagnostics like the validation of a DOM element");
+		this.importer = importer;
+		this.emotionRoot = emotionRoot;
+		this.streaming = streaming && !emotionRoot;
+		this.validating = validator.performsValidation();
+		this.resolveVocabularies = validator.doesResolveVocabularies();
+		this.resolver = validator.getResolver();
+		this.listener = validator.getListener();
+		this.validator = validator;
+
+		if (!emotionRoot)
+			localVocabularies = new LocalVocabularies();
+
+		if (validating)
+		{
+			schema = validator.getSchema();
+			if (schema == null)
+			{
+				isSchemaValid = false;
+				schemaErrorMessage = null;
+			}
+			else
+			{
+				documentSchemaHandler = acquireSchemaHandler(schema);
+				schemaHandler = documentSchemaHandler;
+			}
+		}
+
+		if (this.streaming)
+			namespaces = new NamespaceSupport();
+	}
+
+
+	/**
+	 * Returns the imported EmotionMLDocument. This method must be called after the end of the
+	 * document.
+	 * @return the EmotionMLDocument
+	 * @throws EmotionMLValidationException if the document is not valid
+	 * @throws EmotionMLException if the document could not be imported
+	 */
+	public EmotionMLDocument getDocument() throws EmotionMLValidationException, EmotionMLException
+	{
+		checkImport();
+		return document;
+	}
+
+
+	/**
+	 * Returns the imported standalone Emotion. This method must be called after the end of the
+	 * document.
+	 * @return the Emotion
+	 * @throws EmotionMLValidationException if the emotion is not valid
+	 * @throws EmotionMLException if the emotion could not be imported
+	 */
+	public Emotion getEmotion() throws EmotionMLValidationException, EmotionMLException
+	{
+		checkImport();
+		return importedEmotion;
+	}
+
+
+	/**
+	 * Returns the result of the validation. This method must be called after the end of the
+	 * document.
+	 * @return the ValidationResult, or null if no validation has been performed
+	 */
+	public ValidationResult getValidationResult()
+	{
+		return result;
+	}
+
+
+	/**
+	 * Sets the DOM Element the events are read from, such that it is reported in the
+	 * ValidationResult like the EmotionMLValidator does.
+	 * @param element
+	 */
+	void setElement(Element element)
+	{
+		this.element = element;
+	}
+
+
+	/**
+	 * Returns the document read so far in streaming mode. It contains the descriptor sets, the
+	 * info and the vocabularies read so far, but no emotion.
+	 * @return null if the root element has not been read yet or if it could not be imported
+	 */
+	EmotionMLDocument getStreamedDocument()
+	{
+		return document;
+	}
+
+
+	/**
+	 * Polls the next emotion in streaming mode. Emotions are released in document order once all
+	 * their checks have been performed. {@link #checkStream()} must be called before polling since
+	 * an emotion that has been queued may be invalidated by a check performed later.
+	 * @return null if no emotion is ready
+	 */
+	Emotion pollEmotion()
+	{
+		QueuedEmotion head = queuedEmotions.peek();
+		if (head == null)
+			return null;
+
+		if (!pendingReferences.isEmpty() && pendingReferences.get(0).ordinal < head.ordinal)
+			return null;
+
+		queuedEmotions.poll();
+		return head.emotion;
+	}
+
+
+	/**
+	 * Throws the appropriate exception if a check has failed so far, or if the objects could not
+	 * be built. Unlike {@link #getDocument()}, the reported failure is the first one detected in the
+	 * stream, which may differ from the one reported for the whole document.
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	void checkStream() throws EmotionMLValidationException, EmotionMLException
+	{
+		if (complete)
+			checkImport();
+		else
+		{
+			if (!isSchemaValid || isFailed())
+				throw validator.createException(createValidationResult());
+			checkBuild();
+		}
+	}
+
+
+	/**
+	 * Throws the appropriate exception if the document is not valid or could not be imported.
+	 */
+	private void checkImport() throws EmotionMLValidationException, EmotionMLException
+	{
+		if (!complete)
+			throw new EmotionMLException("Unable to import EmotionML: the end of the document has not been reached");
+
+		if (result != null && !result.isValid())
+			throw validator.createException(result);
+
+		checkBuild();
+	}
+
+
+	/**
+	 * Throws the exception that occurred while building the objects, if any.
+	 */
+	private void checkBuild() throws EmotionMLException
+	{
+		if (buildException instanceof EmotionMLException)
+			throw (EmotionMLException) buildException;
+		else if (buildException instanceof RuntimeException)
+			throw (RuntimeException) buildException;
+	}
+
+
+/////// SAX events
+
+	@Override
+	public void setDocumentLocator(Locator locator)
+	{
+		this.locator = locator;
+		if (schemaHandler != null)
+			schemaHandler.setDocumentLocator(locator);
+	}
+
+
+	@Override
+	public void startDocument() throws SAXException
+	{
+		if (schemaHandler != null)
+			try
+			{
+				schemaHandler.startDocument();
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+	}
+
+
+	@Override
+	public void endDocument() throws SAXException
+	{
+		flushText();
+
+		if (schemaHandler != null)
+			try
+			{
+				schemaHandler.endDocument();
+				releaseSchemaHandler(schema, documentSchemaHandler);
+				schemaHandler = null;
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+
+		complete = true;
+		if (validating)
+		{
+			runPendingChecks();
+			result = createValidationResult();
+		}
+	}
+
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri) throws SAXException
+	{
+		// the mappings are forwarded to the schema at the start of the element
+		prefixMappings.add(prefix);
+		prefixMappings.add(uri);
+	}
+
+
+	@Override
+	public void endPrefixMapping(String prefix) throws SAXException
+	{
+		// the mappings are ended after their element
+		ValidatorHandler handler = schemaHandlers[depth];
+		if (handler != null && isSchemaValid)
+			try
+			{
+				handler.endPrefixMapping(prefix);
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+	}
+
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+	{
+		flushText();
+
+		ElementKind kind = getKind(depth == 0 ? null : kinds[depth - 1], localName);
+		if (streaming && kind == ElementKind.EMOTION && schemaHandler != null)
+		{
+			if (emotionValidated)
+				startEmotionSchema();
+			emotionValidated = true;
+		}
+
+		if (namespaces != null)
+		{
+			namespaces.pushContext();
+			for(int i = 0; i < prefixMappings.size(); i += 2)
+				namespaces.declarePrefix(prefixMappings.get(i), prefixMappings.get(i + 1));
+		}
+
+		if (schemaHandler != null)
+			try
+			{
+				for(int i = 0; i < prefixMappings.size(); i += 2)
+					schemaHandler.startPrefixMapping(prefixMappings.get(i), prefixMappings.get(i + 1));
+				schemaHandler.startElement(uri, localName, qName, sortAttributes(atts));
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+
+		push(kind, localName, uri);
+
+		switch (kind)
+		{
+			case ROOT:
+				startRoot(uri, localName, atts);
+				break;
+
+			case EMOTION:
+				startEmotion(atts);
+				break;
+
+			case DESCRIPTOR:
+				startDescriptor(localName, atts);
+				break;
+
+			case TRACE:
+				startTrace(atts);
+				break;
+
+			case REFERENCE:
+				startReference(atts);
+				break;
+
+			case INFO:
+				startInfo(uri, qName, atts);
+				break;
+
+			case INFO_CONTENT:
+				startInfoContent(uri, qName, atts);
+				break;
+
+			case VOCABULARY:
+				startVocabulary(atts);
+				break;
+
+			case ITEM:
+				startItem(atts);
+				break;
+
+			default:
+				break;
+		}
+
+		prefixMappings.clear();
+	}
+
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException
+	{
+		flushText();
+
+		if (schemaHandler != null)
+			try
+			{
+				schemaHandler.endElement(uri, localName, qName);
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+
+		if (namespaces != null)
+			namespaces.popContext();
+
+		if (schemaHandler != null && schemaHandler == emotionSchemaHandler && kinds[depth - 1] == ElementKind.EMOTION)
+			endEmotionSchema();
+
+		switch (kinds[depth - 1])
+		{
+			case EMOTION:
+				endEmotion();
+				break;
+
+			case DESCRIPTOR:
+				endDescriptor();
+				break;
+
+			case INFO:
+				endInfo();
+				break;
+
+			case INFO_CONTENT:
+				infoNode = infoNode.getParentNode();
+				break;
+
+			case VOCABULARY:
+				endVocabulary();
+				break;
+
+			case ITEM:
+				endItem();
+				break;
+
+			default:
+				break;
+		}
+
+		depth--;
+	}
+
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException
+	{
+		if (schemaHandler != null)
+			try
+			{
+				schemaHandler.characters(ch, start, length);
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+
+		if (depth > 0)
+		{
+			ElementKind kind = kinds[depth - 1];
+			if (kind == ElementKind.ROOT || kind == ElementKind.EMOTION || kind == ElementKind.INFO || kind == ElementKind.INFO_CONTENT)
+				text.append(ch, start, length);
+		}
+	}
+
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+	{
+		characters(ch, start, length);
+	}
+
+
+	@Override
+	public void processingInstruction(String target, String data) throws SAXException
+	{
+		flushText();
+
+		if (schemaHandler != null)
+			try
+			{
+				schemaHandler.processingInstruction(target, data);
+			}
+			catch (SAXException e)
+			{
+				schemaFailed(e);
+			}
+	}
+
+
+	@Override
+	public void comment(char[] ch, int start, int length)
+	{
+		flushText();
+	}
+
+
+	@Override
+	public void startCDATA()
+	{
+		flushText();
+	}
+
+
+	@Override
+	public void endCDATA()
+	{
+		flushText();
+	}
+
+
+	@Override
+	public void startDTD(String name, String publicId, String systemId)
+	{
+
+	}
+
+
+	@Override
+	public void endDTD()
+	{
+
+	}
+
+
+	@Override
+	public void startEntity(String name)
+	{
+
+	}
+
+
+	@Override
+	public void endEntity(String name)
+	{
+
+	}
+
+
+/////// Elements
+
+	/**
+	 * Returns the kind of an element with given name and whose parent has the given kind.
+	 * @param parent the kind of the parent, null for the root element
+	 * @param name the local name of the element
+	 * @return the kind of the element
+	 */
+	private ElementKind getKind(ElementKind parent, String name)
+	{
+		if (parent == null)
+			return emotionRoot ? ElementKind.EMOTION : ElementKind.ROOT;
+
+		switch (parent)
+		{
+			case ROOT:
+				if (name.equals("emotion"))
+					return ElementKind.EMOTION;
+				else if (name.equals("vocabulary"))
+					return ElementKind.VOCABULARY;
+				else if (name.equals("info"))
+					return ElementKind.INFO;
+				break;
+
+			case EMOTION:
+				if (name.equals("category") || name.equals("dimension") || name.equals("action-tendency") || name.equals("appraisal"))
+					return ElementKind.DESCRIPTOR;
+				else if (name.equals("reference"))
+					return ElementKind.REFERENCE;
+				else if (name.equals("info"))
+					return ElementKind.INFO;
+				break;
+
+			case DESCRIPTOR:
+				if (name.equals("trace"))
+					return ElementKind.TRACE;
+				break;
+
+			case VOCABULARY:
+				if (name.equals("item"))
+					return ElementKind.ITEM;
+				else if (name.equals("info"))
+					return ElementKind.INFO;
+				break;
+
+			case ITEM:
+				if (name.equals("info"))
+					return ElementKind.INFO;
+				break;
+
+			case INFO:
+			case INFO_CONTENT:
+				return ElementKind.INFO_CONTENT;
+
+			default:
+				break;
+		}
+
+		return ElementKind.OTHER;
+	}
+
+
+	/**
+	 * Pushes an element of given kind on the stack and checks its namespace if needed.
+	 */
+	private void push(ElementKind kind, String localName, String uri)
+	{
+		if (depth == kinds.length)
+		{
+			kinds = Arrays.copyOf(kinds, depth * 2);
+			conformance = Arrays.copyOf(conformance, depth * 2);
+			schemaHandlers = Arrays.copyOf(schemaHandlers, depth * 2);
+		}
+
+		kinds[depth] = kind;
+		schemaHandlers[depth] = schemaHandler;
+		if (depth == 0)
+			conformance[depth] = validating && !emotionRoot;
+		else conformance[depth] = conformance[depth - 1] && EmotionMLValidator.isEmotionMLElement(localName) && checkConformance(localName, uri);
+		depth++;
+	}
+
+
+	/**
+	 * Checks the namespace of an EmotionML element.
+	 * @return true if the namespace is valid and the children of the element must be checked too
+	 */
+	private boolean checkConformance(String localName, String uri)
+	{
+		if (!isActive(Phase.CONFORMANCE))
+			return false;
+
+		try
+		{
+			validator.validateNamespaceConformance(localName, uri.equals("") ? null : uri);
+			return true;
+		}
+		catch (EmotionMLException e)
+		{
+			fail(Phase.CONFORMANCE, e);
+			return false;
+		}
+	}
+
+
+	/**
+	 * Starts the &lt;emotionml&gt; element.
+	 */
+	private void startRoot(String uri, String localName, Attributes atts)
+	{
+		for(VocabularyType type : VocabularyType.values())
+			rootDescriptorSets[type.ordinal()] = getAttribute(atts, type.getSet());
+
+		if (validating)
+			try
+			{
+				validator.validateRootName(localName);
+				validator.validateNamespace(uri.equals("") ? null : uri);
+				for(VocabularyType type : VocabularyType.values())
+				{
+					String descriptorSet = rootDescriptorSets[type.ordinal()];
+					if (!descriptorSet.equals(""))
+					{
+						URI setURI = validator.validateEmotionMLDescriptorsSetURI(type, descriptorSet);
+						checkReference(Phase.ROOT, ElementKind.ROOT, type, setURI, null);
+					}
+				}
+			}
+			catch (Exception e)
+			{
+				fail(Phase.ROOT, e);
+			}
+
+		if (isBuilding())
+		{
+			document = new EmotionMLDocument();
+			for(VocabularyType type : VocabularyType.values())
+			{
+				String descriptorSet = rootDescriptorSets[type.ordinal()];
+				if (!descriptorSet.equals(""))
+					document.setDescriptorSetURI(type, EmotionMLImporter.importURI(descriptorSet));
+			}
+		}
+	}
+
+
+	/**
+	 * Starts an &lt;emotion&gt; element.
+	 */
+	private void startEmotion(Attributes atts)
+	{
+		emotionInfoFound = false;
+		descriptorFound = false;
+
+		for(VocabularyType type : VocabularyType.values())
+			emotionDescriptorSets[type.ordinal()] = getAttribute(atts, type.getSet());
+
+		String id = getAttribute(atts, "id");
+		String expressedThrough = getAttribute(atts, "expressed-through");
+		String start = getAttribute(atts, "start");
+		String end = getAttribute(atts, "end");
+		String duration = getAttribute(atts, "duration");
+		String offsetToStart = getAttribute(atts, "offset-to-start");
+		String timeRefURI = getAttribute(atts, "time-ref-uri");
+		String timeRefAnchorPoint = getAttribute(atts, "time-ref-anchor-point");
+
+		if (isActive(Phase.EMOTIONS))
+			try
+			{
+				descriptorNames = new HashMap<VocabularyType, Set<String>>();
+				for(VocabularyType type : VocabularyType.values())
+				{
+					String descriptorSet = emotionDescriptorSets[type.ordinal()];
+					if (!descriptorSet.equals(""))
+					{
+						URI setURI = validator.validateEmotionDescriptorSetURI(descriptorSet, type);
+						checkReference(Phase.EMOTIONS, ElementKind.EMOTION, type, setURI, null);
+					}
+				}
+				validator.validateEmotionVersion(getAttribute(atts, "version"));
+				checkEmotionId(id);
+				validator.validateEmotionExpressThrough(expressedThrough);
+				validator.validateNonNegativeInteger(start, "start", 420);
+				validator.validateNonNegativeInteger(end, "end", 421);
+				validator.validateNonNegativeInteger(duration, "duration", 422);
+				validator.validateEndGreaterThanStart(start, end);
+				validator.validateEmotionTimeRefURI(timeRefURI);
+				validator.validateEmotionTimeRefAnchorPoint(timeRefAnchorPoint);
+				validator.validateEmotionOffsetToStart(offsetToStart);
+			}
+			catch (Exception e)
+			{
+				fail(Phase.EMOTIONS, e);
+			}
+
+		if (isBuilding())
+			try
+			{
+				emotion = new Emotion();
+				if (!id.equals(""))
+					emotion.setId(id);
+				for(VocabularyType type : VocabularyType.values())
+				{
+					String descriptorSet = emotionDescriptorSets[type.ordinal()];
+					if (!descriptorSet.equals(""))
+						emotion.setDescriptorSetURI(type, EmotionMLImporter.importURI(descriptorSet));
+				}
+				if (!expressedThrough.equals(""))
+					emotion.setExpressedThrough(EmotionMLImporter.importExpressedThrough(expressedThrough));
+				emotion.setTimestamp(EmotionMLImporter.importTimestamp(start, end, duration, offsetToStart, timeRefURI, timeRefAnchorPoint));
+			}
+			catch (RuntimeException e)
+			{
+				buildFailed(e);
+			}
+	}
+
+
+	/**
+	 * Ends an &lt;emotion&gt; element.
+	 */
+	private void endEmotion()
+	{
+		if (isActive(Phase.EMOTIONS))
+			try
+			{
+				validator.validateEmotionDescriptorPresence(descriptorFound);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(Phase.EMOTIONS, e);
+			}
+
+		if (isBuilding())
+		{
+			if (emotionRoot)
+				importedEmotion = emotion;
+			else if (streaming)
+				queuedEmotions.add(new QueuedEmotion(emotion, ++ordinal));
+			else document.add(emotion);
+		}
+		emotion = null;
+	}
+
+
+	/**
+	 * Starts a descriptor element.
+	 */
+	private void startDescriptor(String localName, Attributes atts)
+	{
+		descriptorType = VocabularyType.parse(localName);
+		descriptorFound = true;
+		descriptorHasValue = false;
+		traceFound = false;
+
+		String name = getAttribute(atts, "name");
+		String value = getAttribute(atts, "value");
+		String confidence = getAttribute(atts, "confidence");
+
+		if (isActive(Phase.EMOTIONS))
+			try
+			{
+				int index = descriptorType.ordinal();
+				validator.validateEmotionDescriptorName(name, descriptorType);
+				validator.validateDescriptorNameUnicity(descriptorType, name, descriptorNames);
+				String descriptorSet = validator.validateEmotionDescriptorSetPresence(descriptorType, emotionDescriptorSets[index], !emotionRoot,
+																								emotionRoot ? "" : rootDescriptorSets[index]);
+				URI setURI = validator.validateEmotionDescriptorSetURI(descriptorSet, descriptorType);
+				checkReference(Phase.EMOTIONS, ElementKind.DESCRIPTOR, descriptorType, setURI, name);
+				validator.validateConfidence(confidence);
+				descriptorHasValue = validator.validateValue(value);
+			}
+			catch (Exception e)
+			{
+				fail(Phase.EMOTIONS, e);
+			}
+
+		if (isBuilding())
+			try
+			{
+				descriptor = EmotionMLImporter.importDescriptor(descriptorType, name, value, confidence);
+			}
+			catch (RuntimeException e)
+			{
+				buildFailed(e);
+			}
+	}
+
+
+	/**
+	 * Ends a descriptor element.
+	 */
+	private void endDescriptor()
+	{
+		if (isActive(Phase.EMOTIONS))
+			try
+			{
+				validator.validateScaleValues(descriptorType, descriptorHasValue, traceFound);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(Phase.EMOTIONS, e);
+			}
+
+		if (isBuilding())
+			emotion.add(descriptor);
+		descriptor = null;
+	}
+
+
+	/**
+	 * Starts a &lt;trace&gt; element. Like the EmotionMLValidator, only the first trace of a
+	 * descriptor is checked, and like the EmotionMLImporter, the last one is imported.
+	 */
+	private void startTrace(Attributes atts)
+	{
+		String freq = getAttribute(atts, "freq");
+		String samples = getAttribute(atts, "samples");
+		traceCodec.parse(samples); // once for both the check and the import
+
+		if (!traceFound)
+		{
+			traceFound = true;
+			if (isActive(Phase.EMOTIONS))
+				try
+				{
+					validator.validateTraceFreq(freq);
+					validator.validateTraceSamples(samples, traceCodec);
+				}
+				catch (EmotionMLException e)
+				{
+					fail(Phase.EMOTIONS, e);
+				}
+		}
+
+		if (isBuilding())
+			try
+			{
+				descriptor.setTrace(EmotionMLImporter.importTrace(freq, traceCodec));
+			}
+			catch (RuntimeException e)
+			{
+				buildFailed(e);
+			}
+	}
+
+
+	/**
+	 * Starts a &lt;reference&gt; element.
+	 */
+	private void startReference(Attributes atts)
+	{
+		String uri = getAttribute(atts, "uri");
+		String role = getAttribute(atts, "role");
+		String mediaType = getAttribute(atts, "media-type");
+
+		if (isActive(Phase.EMOTIONS))
+			try
+			{
+				validator.validateReferenceURI(uri);
+				validator.validateReferenceRole(role);
+				validator.validateReferenceMediaType(mediaType);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(Phase.EMOTIONS, e);
+			}
+
+		if (isBuilding())
+			emotion.add(EmotionMLImporter.importReference(uri, mediaType, role));
+	}
+
+
+	/**
+	 * Starts a &lt;vocabulary&gt; element. Vocabularies are always built since they may be needed
+	 * to resolve local references.
+	 */
+	private void startVocabulary(Attributes atts)
+	{
+		vocabularyInfoFound = false;
+		itemNames = new HashSet<String>();
+		vocabularyType = getAttribute(atts, "type");
+		vocabularyId = getAttribute(atts, "id");
+		vocabulary = new Vocabulary(vocabularyId, VocabularyType.parse(vocabularyType));
+	}
+
+
+	/**
+	 * Ends a &lt;vocabulary&gt; element.
+	 */
+	private void endVocabulary()
+	{
+		if (isActive(Phase.DECLARATIONS))
+			try
+			{
+				validator.validateVocabularyItemPresence(itemNames);
+				validator.validateVocabularyType(vocabularyType);
+				validator.validateVocabularyId(vocabularyId, declarationIdentifiers);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(Phase.DECLARATIONS, e);
+			}
+
+		localVocabularies.add(vocabulary);
+		if (isBuilding())
+			document.add(vocabulary);
+		vocabulary = null;
+
+		runPendingReferences(vocabularyId);
+	}
+
+
+	/**
+	 * Starts an &lt;item&gt; element.
+	 */
+	private void startItem(Attributes atts)
+	{
+		String name = getAttribute(atts, "name");
+
+		if (isActive(Phase.DECLARATIONS))
+			try
+			{
+				validator.validateVocabularyItemName(name, itemNames);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(Phase.DECLARATIONS, e);
+			}
+
+		item = new VocabularyItem(name);
+	}
+
+
+	/**
+	 * Ends an &lt;item&gt; element.
+	 */
+	private void endItem()
+	{
+		vocabulary.add(item);
+		item = null;
+	}
+
+
+	/**
+	 * Starts an &lt;info&gt; element. The info element is built as a DOM Element such that it can be
+	 * checked and imported as usual.
+	 */
+	private void startInfo(String uri, String qName, Attributes atts)
+	{
+		ElementKind parent = kinds[depth - 2];
+		Phase phase = getInfoPhase();
+		if (isActive(phase))
+			try
+			{
+				if (parent == ElementKind.ROOT)
+					validator.validateDocumentInfoUnicity(rootInfoFound);
+				else if (parent == ElementKind.EMOTION)
+					validator.validateEmotionInfoUnicity(emotionInfoFound);
+				else if (parent == ElementKind.VOCABULARY)
+					validator.validateVocabularyInfoUnicity(vocabularyInfoFound);
+			}
+			catch (EmotionMLException e)
+			{
+				fail(phase, e);
+			}
+
+		if (parent == ElementKind.ROOT)
+			rootInfoFound = true;
+		else if (parent == ElementKind.EMOTION)
+			emotionInfoFound = true;
+		else if (parent == ElementKind.VOCABULARY)
+			vocabularyInfoFound = true;
+
+		try
+		{
+			if (infoBuilder == null)
+			{
+				DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+				factory.setNamespaceAware(true);
+				infoBuilder = factory.newDocumentBuilder();
+			}
+			Document infoDocument = infoBuilder.newDocument();
+			info = createInfoElement(infoDocument, uri, qName, atts);
+			infoDocument.appendChild(info);
+			infoNode = info;
+		}
+		catch (ParserConfigurationException e)
+		{
+			buildFailed(new EmotionMLException("Unable to import info: " + e.getLocalizedMessage()));
+		}
+	}
+
+
+	/**
+	 * Starts an element inside an &lt;info&gt; element.
+	 */
+	private void startInfoContent(String uri, String qName, Attributes atts)
+	{
+		if (infoNode != null)
+		{
+			Element element = createInfoElement(infoNode.getOwnerDocument(), uri, qName, atts);
+			infoNode.appendChild(element);
+			infoNode = element;
+		}
+	}
+
+
+	/**
+	 * Ends an &lt;info&gt; element.
+	 */
+	private void endInfo()
+	{
+		if (info == null)
+			return;
+
+		ElementKind parent = kinds[depth - 2];
+		Phase phase = getInfoPhase();
+		if (isActive(phase))
+			try
+			{
+				validator.validateInfoExternalNamespace(info);
+				checkInfoId(phase, info.getAttribute("id"));
+			}
+			catch (EmotionMLException e)
+			{
+				fail(phase, e);
+			}
+
+		// vocabularies are always built
+		if (parent == ElementKind.VOCABULARY || parent == ElementKind.ITEM || isBuilding())
+			try
+			{
+				Info imported = importer.importInfo(info);
+				if (parent == ElementKind.ROOT)
+					document.setInfo(imported);
+				else if (parent == ElementKind.EMOTION)
+					emotion.setInfo(imported);
+				else if (parent == ElementKind.VOCABULARY)
+					vocabulary.setInfo(imported);
+				else if (parent == ElementKind.ITEM)
+					item.setInfo(imported);
+			}
+			catch (EmotionMLException e)
+			{
+				buildFailed(e);
+			}
+			catch (RuntimeException e)
+			{
+				buildFailed(e);
+			}
+
+		info = null;
+		infoNode = null;
+	}
+
+
+	/**
+	 * Returns the validation phase of the current &lt;info&gt; element.
+	 */
+	private Phase getInfoPhase()
+	{
+		return kinds[depth - 2] == ElementKind.EMOTION ? Phase.EMOTIONS : Phase.DECLARATIONS;
+	}
+
+
+	/**
+	 * Creates a DOM Element in the given document.
+	 */
+	private Element createInfoElement(Document infoDocument, String uri, String qName, Attributes atts)
+	{
+		Element ret = infoDocument.createElementNS(uri.equals("") ? null : uri, qName);
+		for(int i = 0; i < prefixMappings.size(); i += 2)
+		{
+			String prefix = prefixMappings.get(i);
+			ret.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix.equals("") ? "xmlns" : "xmlns:" + prefix, prefixMappings.get(i + 1));
+		}
+		for(int i = 0; i < atts.getLength(); i++)
+		{
+			String attributeURI = atts.getURI(i);
+			ret.setAttributeNS(attributeURI.equals("") ? null : attributeURI, atts.getQName(i), atts.getValue(i));
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Flushes the text read so far. Like DOM text nodes, texts are separated by elements,
+	 * comments, processing instructions and CDATA sections.
+	 */
+	private void flushText()
+	{
+		if (text.length() == 0)
+			return;
+
+		String value = text.toString();
+		text.setLength(0);
+
+		ElementKind kind = kinds[depth - 1];
+		if (kind == ElementKind.INFO || kind == ElementKind.INFO_CONTENT)
+		{
+			if (infoNode != null)
+				infoNode.appendChild(infoNode.getOwnerDocument().createTextNode(value));
+		}
+		else if (isBuilding() && !value.trim().equals(""))
+		{
+			if (kind == ElementKind.ROOT && !streaming)
+				document.add(new EmotionText(value));
+			else if (kind == ElementKind.EMOTION)
+				emotion.setText(new EmotionText(value));
+		}
+	}
+
+
+/////// Assertions
+
+	/**
+	 * Checks the vocabulary referred by a descriptor set. If the vocabulary is local and has not
+	 * been read yet, the check is deferred until the vocabulary is read, or until the end of the
+	 * document.
+	 * @param phase
+	 * @param level ROOT, EMOTION or DESCRIPTOR
+	 * @param type
+	 * @param uri
+	 * @param name the descriptor name for DESCRIPTOR level
+	 * @throws EmotionMLException
+	 */
+	private void checkReference(Phase phase, final ElementKind level, final VocabularyType type, final URI uri, final String name)
+			throws EmotionMLException
+	{
+		if (!resolveVocabularies)
+			return;
+
+		if (!complete && localVocabularies != null && uri.getFragment() != null && VocabularyResolver.isLocal(uri) &&
+			!localVocabularies.contains(uri.getFragment()))
+		{
+			pendingReferences.add(new PendingCheck(phase, ++ordinal, uri.getFragment())
+			{
+				@Override
+				void run() throws EmotionMLException
+				{
+					checkReference(level, type, uri, name);
+				}
+			});
+		}
+		else checkReference(level, type, uri, name);
+	}
+
+
+	/**
+	 * Resolves and checks the vocabulary referred by a descriptor set.
+	 */
+	private void checkReference(ElementKind level, VocabularyType type, URI uri, String name) throws EmotionMLException
+	{
+		Vocabulary referred = resolver.retrieveVocabulary(uri, localVocabularies, listener);
+		if (level == ElementKind.ROOT)
+			validator.validateEmotionMLVocabularyType(type, referred);
+		else
+		{
+			validator.validateEmotionVocabularyType(type, referred);
+			if (level == ElementKind.DESCRIPTOR)
+				validator.validateDescriptorNameMembership(name, type, uri, referred);
+		}
+	}
+
+
+	/**
+	 * Checks the id of an emotion. The identifiers of the vocabularies and info of the root element
+	 * are checked before emotions, hence the check against these identifiers is deferred until the
+	 * end of the document. In streaming mode, only the identifiers are kept (see
+	 * {@link #checkStreamedIdentifiers()}).
+	 */
+	private void checkEmotionId(final String id) throws EmotionMLFormatException
+	{
+		if (id.equals(""))
+			return;
+
+		if (streaming)
+		{
+			validator.validateEmotionId(id, declarationIdentifiers.contains(id) ? declarationIdentifiers
+																						: infoIdentifiers.contains(id) ? infoIdentifiers : emotionIdentifiers);
+			return;
+		}
+
+		validator.validateEmotionId(id, declarationIdentifiers.contains(id) ? declarationIdentifiers : emotionIdentifiers);
+		if (!emotionRoot)
+			pendingChecks.add(new PendingCheck(Phase.EMOTIONS, ++ordinal, null)
+			{
+				@Override
+				void run() throws EmotionMLException
+				{
+					if (declarationIdentifiers.contains(id))
+						validator.validateEmotionId(id, declarationIdentifiers);
+				}
+			});
+	}
+
+
+	/**
+	 * Checks the id of an info element.
+	 */
+	private void checkInfoId(Phase phase, final String id) throws EmotionMLFormatException
+	{
+		if (phase == Phase.DECLARATIONS)
+			validator.validateInfoId(id, declarationIdentifiers);
+		else if (streaming)
+			validator.validateInfoId(id, declarationIdentifiers.contains(id) ? declarationIdentifiers
+																					: emotionIdentifiers.contains(id) ? emotionIdentifiers : infoIdentifiers);
+		else if (!id.equals(""))
+		{
+			validator.validateInfoId(id, declarationIdentifiers.contains(id) ? declarationIdentifiers : emotionIdentifiers);
+			if (!emotionRoot)
+				pendingChecks.add(new PendingCheck(Phase.EMOTIONS, ++ordinal, null)
+				{
+					@Override
+					void run() throws EmotionMLException
+					{
+						if (declarationIdentifiers.contains(id))
+							validator.validateInfoId(id, declarationIdentifiers);
+					}
+				});
+		}
+	}
+
+
+	/**
+	 * Runs the deferred checks that may change the result of the validation.
+	 */
+	private void runPendingChecks()
+	{
+		for(PendingCheck check : pendingReferences)
+			runPendingCheck(check);
+		pendingReferences.clear();
+
+		for(PendingCheck check : pendingChecks)
+			runPendingCheck(check);
+		pendingChecks.clear();
+
+		checkStreamedIdentifiers();
+	}
+
+
+	/**
+	 * Checks in streaming mode the ids of the emotions and of their info against the ids of the
+	 * declarations, which may follow them. Deferring a check for each id would hold memory for
+	 * every emotion until the end, hence the failure is the one of the first declaration whose id
+	 * is also the id of an emotion or of an info, found at the end of the document.
+	 */
+	private void checkStreamedIdentifiers()
+	{
+		if (!streaming || !isActive(Phase.EMOTIONS))
+			return;
+
+		for(String id : declarationIdentifiers)
+			try
+			{
+				if (emotionIdentifiers.contains(id))
+					validator.validateEmotionId(id, declarationIdentifiers);
+				else if (infoIdentifiers.contains(id))
+					validator.validateInfoId(id, declarationIdentifiers);
+			}
+			catch (EmotionMLFormatException e)
+			{
+				fail(Phase.EMOTIONS, e);
+				return;
+			}
+	}
+
+
+	/**
+	 * Runs the deferred checks which were waiting for the local vocabulary with given id. Since a
+	 * check failure is recorded with its ordinal, running them before the end of the document does
+	 * not change the result of the validation.
+	 */
+	private void runPendingReferences(String id)
+	{
+		for(Iterator<PendingCheck> it = pendingReferences.iterator(); it.hasNext();)
+		{
+			PendingCheck check = it.next();
+			if (check.vocabularyId.equals(id))
+			{
+				it.remove();
+				runPendingCheck(check);
+			}
+		}
+	}
+
+
+	/**
+	 * Runs the given deferred check if it may change the result of the validation.
+	 */
+	private void runPendingCheck(PendingCheck check)
+	{
+		if (mayFail(check))
+			try
+			{
+				check.run();
+			}
+			catch (Exception e)
+			{
+				fail(check.phase, check.ordinal, e.getLocalizedMessage());
+			}
+	}
+
+
+	/**
+	 * Tests whether the given deferred check may change the result of the validation, that is if
+	 * no previous phase has failed and if its phase has not failed before it.
+	 */
+	private boolean mayFail(PendingCheck check)
+	{
+		int index = check.phase.ordinal();
+		for(int i = 0; i < index; i++)
+			if (failed[i])
+				return false;
+		return !failed[index] || check.ordinal < failureOrdinals[index];
+	}
+
+
+	/**
+	 * Creates the ValidationResult from the recorded failures.
+	 */
+	private ValidationResult createValidationResult()
+	{
+		for(Phase phase : Phase.values())
+			if (failed[phase.ordinal()])
+				return new ValidationResult(element, isSchemaValid, schemaErrorMessage, false, failureMessages[phase.ordinal()]);
+		return new ValidationResult(element, isSchemaValid, schemaErrorMessage, true, "");
+	}
+
+
+	/**
+	 * Tests whether the checks of the given phase may still change the result of the validation,
+	 * that is if no check of that phase or of a previous phase has failed.
+	 * @param phase
+	 */
+	private boolean isActive(Phase phase)
+	{
+		if (!validating)
+			return false;
+
+		for(int i = 0; i <= phase.ordinal(); i++)
+			if (failed[i])
+				return false;
+		return true;
+	}
+
+
+	/**
+	 * Records the failure of a check.
+	 */
+	private void fail(Phase phase, Exception e)
+	{
+		fail(phase, ++ordinal, e.getLocalizedMessage());
+	}
+
+
+	/**
+	 * Records the failure of a check with given ordinal. The failure of a phase is the one of its
+	 * first check in document order.
+	 */
+	private void fail(Phase phase, int checkOrdinal, String message)
+	{
+		int index = phase.ordinal();
+		if (!failed[index] || checkOrdinal < failureOrdinals[index])
+		{
+			failed[index] = true;
+			failureOrdinals[index] = checkOrdinal;
+			failureMessages[index] = message;
+		}
+	}
+
+
+	/**
+	 * Records the failure of the schema validation.
+	 */
+	private void schemaFailed(SAXException e)
+	{
+		isSchemaValid = false;
+		schemaErrorMessage = e.getLocalizedMessage();
+		schemaHandler = null;
+		documentSchemaHandler = null;
+		emotionSchemaHandler = null;
+	}
+
+
+	/**
+	 * Returns a ValidatorHandler of the given schema, reusing the one released by the previous
+	 * handler of the current thread if any, since creating a ValidatorHandler is costly compared
+	 * to the validation of a small document.
+	 */
+	private static ValidatorHandler acquireSchemaHandler(Schema schema)
+	{
+		IdleValidatorHandler idle = idleSchemaHandlers.get();
+		if (idle != null && idle.schema == schema)
+		{
+			idleSchemaHandlers.remove();
+			return idle.handler;
+		}
+		else return schema.newValidatorHandler();
+	}
+
+
+	/**
+	 * Releases the given ValidatorHandler such that it can be reused by the next handler of the
+	 * current thread. Only the ValidatorHandlers that reached the end of their document without
+	 * error are released.
+	 */
+	private static void releaseSchemaHandler(Schema schema, ValidatorHandler handler)
+	{
+		idleSchemaHandlers.set(new IdleValidatorHandler(schema, handler));
+	}
+
+
+	/**
+	 * Starts validating an emotion on its own against the schema, as a standalone emotion in the
+	 * namespace context of the document.
+	 */
+	private void startEmotionSchema()
+	{
+		if (emotionSchemaHandler == null)
+			emotionSchemaHandler = schema.newValidatorHandler();
+
+		schemaHandler = emotionSchemaHandler;
+		try
+		{
+			if (locator != null)
+				schemaHandler.setDocumentLocator(locator);
+			schemaHandler.startDocument();
+			String defaultURI = namespaces.getURI("");
+			if (defaultURI != null)
+				schemaHandler.startPrefixMapping("", defaultURI);
+			for(Enumeration<?> e = namespaces.getPrefixes(); e.hasMoreElements();)
+			{
+				String prefix = (String) e.nextElement();
+				if (!prefix.equals(XMLConstants.XML_NS_PREFIX))
+					schemaHandler.startPrefixMapping(prefix, namespaces.getURI(prefix));
+			}
+		}
+		catch (SAXException e)
+		{
+			schemaFailed(e);
+		}
+	}
+
+
+	/**
+	 * Ends the validation of an emotion on its own and resumes the validation of the document.
+	 */
+	private void endEmotionSchema()
+	{
+		schemaHandlers[depth - 1] = null; // the mappings of the emotion are ended with its document
+		try
+		{
+			schemaHandler.endDocument();
+			schemaHandler = documentSchemaHandler;
+		}
+		catch (SAXException e)
+		{
+			schemaFailed(e);
+		}
+	}
+
+
+	/**
+	 * Records an exception that occurred while building the objects and stops building.
+	 */
+	private void buildFailed(Exception e)
+	{
+		if (buildException == null)
+			buildException = e;
+		building = false;
+	}
+
+
+	/**
+	 * Tests whether the objects are still built. They are not built anymore when a check has
+	 * failed since the import then fails anyway.
+	 */
+	private boolean isBuilding()
+	{
+		return building && !isFailed();
+	}
+
+
+	/**
+	 * Tests whether a check of any phase has failed.
+	 */
+	private boolean isFailed()
+	{
+		for(boolean phaseFailed : failed)
+			if (phaseFailed)
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * Returns the given attributes sorted by name. DOM Elements keep their attributes sorted by
+	 * name, sorting them before the schema validation guarantees that the first reported schema
+	 * error is the same as when validating a DOM Element.
+	 */
+	private Attributes sortAttributes(Attributes atts)
+	{
+		int length = atts.getLength();
+		boolean sorted = true;
+		for(int i = 1; i < length && sorted; i++)
+			sorted = atts.getQName(i - 1).compareTo(atts.getQName(i)) <= 0;
+		if (sorted)
+			return atts;
+
+		Integer[] indexes = new Integer[length];
+		for(int i = 0; i < length; i++)
+			indexes[i] = i;
+
+		final Attributes unsorted = atts;
+		Arrays.sort(indexes, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer i, Integer j)
+			{
+				return unsorted.getQName(i).compareTo(unsorted.getQName(j));
+			}
+		});
+
+		sortedAttributes.clear();
+		for(Integer i : indexes)
+			sortedAttributes.addAttribute(atts.getURI(i), atts.getLocalName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+		return sortedAttributes;
+	}
+
+
+	/**
+	 * Returns the value of the attribute with given name, or the empty String if the attribute is
+	 * not present, like DOM Elements do.
+	 */
+	private static String getAttribute(Attributes atts, String name)
+	{
+		String ret = atts.getValue(name);
+		return ret == null ? "" : ret;
+	}
+
+
+	/**
+	 * A check deferred until a local vocabulary is read or until the end of the document.
+	 */
+	private abstract static class PendingCheck
+	{
+		final Phase phase;
+		final int ordinal;
+		final String vocabularyId; // the awaited local vocabulary, if any
+
+
+		PendingCheck(Phase phase, int ordinal, String vocabularyId)
+		{
+			this.phase = phase;
+			this.ordinal = ordinal;
+			this.vocabularyId = vocabularyId;
+		}
+
+
+		abstract void run() throws EmotionMLException;
+	}
+
+
+	/**
+	 * A ValidatorHandler waiting to be reused, with its schema.
+	 */
+	private static class IdleValidatorHandler
+	{
+		final Schema schema;
+		final ValidatorHandler handler;
+
+
+		IdleValidatorHandler(Schema schema, ValidatorHandler handler)
+		{
+			this.schema = schema;
+			this.handler = handler;
+		}
+	}
+
+
+	/**
+	 * An emotion waiting to be polled in streaming mode, with the ordinal of its end.
+	 */
+	private static class QueuedEmotion
+	{
+		final Emotion emotion;
+		final int ordinal;
+
+
+		QueuedEmotion(Emotion emotion, int ordinal)
+		{
+			this.emotion = emotion;
+			this.ordinal = ordinal;
+		}
+	}
+}
@@ -0,0 +1,414 @@
+package fr.loria.synalp.emotionml.processors;
+
+import static fr.loria.synalp.emotionml.EmotionMLDocument.*;
+
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.helpers.AttributesImpl;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+import fr.loria.synalp.emotionml.info.Info;
+import fr.loria.synalp.emotionml.vocabularies.*;
+
+/**
+ * An EmotionMLEmitter reports EmotionML objects as SAX events to a ContentHandler, without building
+ * DOM Elements. The events describe the elements the EmotionMLExporter builds for the same objects:
+ * the same elements in the same order, with their attributes in alphabetical order like the ones of
+ * a DOM Element, hence an EmotionMLContentHandler validates them like the EmotionMLValidator
+ * validates the DOM Element, and an XMLContentWriter writes them like the XMLEmotionMLWriter. The
+ * &lt;info&gt; elements are still built by the exporter, since it may export them differently (for
+ * instance the JaxbEmotionMLExporter), then reported like the Transformer reads them.
+ * @author Alexandre Denis
+ */
+class EmotionMLEmitter
+{
+	// the vocabulary types in the alphabetical order of their descriptor sets
+	private static final VocabularyType[] SORTED_TYPES = { VocabularyType.ACTION_TENDENCY, VocabularyType.APPRAISAL, VocabularyType.CATEGORY,
+			VocabularyType.DIMENSION };
+
+	private EmotionMLExporter exporter;
+	private AttributesImpl attributes = new AttributesImpl();
+	private char[] chars = new char[256];
+	private Document infoDocument;
+
+
+	/**
+	 * Creates a new EmotionMLEmitter.
+	 * @param exporter the exporter which exports the Info objects
+	 */
+	EmotionMLEmitter(EmotionMLExporter exporter)
+	{
+		this.exporter = exporter;
+	}
+
+
+	/**
+	 * Reports the given EmotionMLDocument.
+	 * @param document
+	 * @param handler
+	 */
+	void emit(EmotionMLDocument document, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		startDocument(document, handler);
+		for(EmotionNode emotionNode : document.getEmotionNodes())
+			emit(emotionNode, handler);
+		endDocument(handler);
+	}
+
+
+	/**
+	 * Reports the given Emotion as a standalone &lt;emotion&gt; document.
+	 * @param emotion
+	 * @param handler
+	 */
+	void emit(Emotion emotion, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		handler.startDocument();
+		emitEmotion(emotion, handler);
+		handler.endDocument();
+	}
+
+
+	/**
+	 * Reports the start of the given EmotionMLDocument: the start of its root, its info and its
+	 * vocabularies, but not its emotion nodes.
+	 * @param document
+	 * @param handler
+	 */
+	void startDocument(EmotionMLDocument document, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		handler.startDocument();
+		handler.startPrefixMapping("", NAMESPACE);
+
+		// descriptors sets (action-tendency-set, appraisal-set, category-set, dimension-set)
+		AttributesImpl atts = clearAttributes();
+		addDescriptorSets(document, atts);
+		addAttribute(atts, "version", VERSION);
+		handler.startElement(NAMESPACE, "emotionml", "emotionml", atts);
+
+		if (document.hasInfo())
+			emit(document.getInfo(), handler);
+
+		for(Vocabulary vocabulary : document.getVocabularies())
+			emit(vocabulary, handler);
+	}
+
+
+	/**
+	 * Reports the end of an EmotionMLDocument.
+	 * @param handler
+	 */
+	void endDocument(ContentHandler handler) throws SAXException
+	{
+		handler.endElement(NAMESPACE, "emotionml", "emotionml");
+		handler.endPrefixMapping("");
+		handler.endDocument();
+	}
+
+
+	/**
+	 * Reports the given EmotionNode of an EmotionMLDocument.
+	 * @param emotionNode
+	 * @param handler
+	 */
+	void emit(EmotionNode emotionNode, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		if (emotionNode instanceof EmotionText)
+			emit((EmotionText) emotionNode, handler);
+		else if (emotionNode instanceof Emotion)
+			emitEmotion((Emotion) emotionNode, handler);
+		else System.err.println("Error: cannot export " + emotionNode + " because objects of class " + emotionNode.getClass() + " cannot be exported");
+	}
+
+
+	/**
+	 * Reports the given EmotionText as characters.
+	 */
+	private void emit(EmotionText text, ContentHandler handler) throws SAXException
+	{
+		String content = text.getContent();
+		int length = content.length();
+		if (length > chars.length)
+			chars = new char[Math.max(length, chars.length * 2)];
+		content.getChars(0, length, chars, 0);
+		handler.characters(chars, 0, length);
+	}
+
+
+	/**
+	 * Reports the given Emotion.
+	 */
+	private void emitEmotion(Emotion emotion, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		AttributesImpl atts = clearAttributes();
+		addDescriptorSets(emotion, atts);
+
+		Timestamp timestamp = emotion.getTimestamp();
+		boolean isLong = timestamp.isLong();
+		if (timestamp.hasDuration())
+			addAttribute(atts, "duration", isLong ? Long.toString(timestamp.getDurationAsLong()) : timestamp.getDuration().toString());
+		if (timestamp.hasEnd())
+			addAttribute(atts, "end", isLong ? Long.toString(timestamp.getEndAsLong()) : timestamp.getEnd().toString());
+
+		List<ExpressedThrough> expressedThrough = emotion.getExpressedThrough();
+		if (!expressedThrough.isEmpty())
+			addAttribute(atts, "expressed-through", format(expressedThrough));
+
+		if (emotion.hasId())
+			addAttribute(atts, "id", emotion.getId());
+		if (timestamp.hasOffsetToStart())
+			addAttribute(atts, "offset-to-start", isLong ? Long.toString(timestamp.getOffsetToStartAsLong()) : timestamp.getOffsetToStart().toString());
+		if (timestamp.hasStart())
+			addAttribute(atts, "start", isLong ? Long.toString(timestamp.getStartAsLong()) : timestamp.getStart().toString());
+		if (timestamp.hasTimeRefAnchorPoint())
+			addAttribute(atts, "time-ref-anchor-point", timestamp.getTimeRefAnchorPoint().toString());
+		if (timestamp.hasTimeRefURI())
+			addAttribute(atts, "time-ref-uri", timestamp.getTimeRefURI().toString());
+		if (emotion.hasVersion())
+			addAttribute(atts, "version", emotion.getVersion());
+
+		handler.startElement(NAMESPACE, "emotion", "emotion", atts);
+
+		if (emotion.hasInfo())
+			emit(emotion.getInfo(), handler);
+
+		for(EmotionDescriptor descriptor : emotion.getDescriptors())
+			emit(descriptor, handler);
+
+		for(Reference reference : emotion.getReferences())
+			emit(reference, handler);
+
+		if (emotion.hasText())
+			emit(emotion.getText(), handler);
+
+		handler.endElement(NAMESPACE, "emotion", "emotion");
+	}
+
+
+	/**
+	 * Reports the given EmotionDescriptor.
+	 */
+	private void emit(EmotionDescriptor descriptor, ContentHandler handler) throws SAXException
+	{
+		String name = descriptor.getType().toString();
+		AttributesImpl atts = clearAttributes();
+		if (descriptor.hasConfidence())
+			addAttribute(atts, "confidence", String.valueOf(descriptor.getConfidenceAsFloat()));
+		addAttribute(atts, "name", descriptor.getName());
+		if (descriptor.hasValue())
+			addAttribute(atts, "value", String.valueOf(descriptor.getValueAsFloat()));
+		handler.startElement(NAMESPACE, name, name, atts);
+
+		if (descriptor.hasTrace())
+		{
+			Trace trace = descriptor.getTrace();
+			atts = clearAttributes();
+			addAttribute(atts, "freq", trace.getFrequency() + "Hz");
+			addAttribute(atts, "samples", TraceCodec.format(trace.getSamples()));
+			handler.startElement(NAMESPACE, "trace", "trace", atts);
+			handler.endElement(NAMESPACE, "trace", "trace");
+		}
+
+		handler.endElement(NAMESPACE, name, name);
+	}
+
+
+	/**
+	 * Reports the given Reference.
+	 */
+	private void emit(Reference reference, ContentHandler handler) throws SAXException
+	{
+		AttributesImpl atts = clearAttributes();
+		if (reference.hasMediaType())
+			addAttribute(atts, "media-type", reference.getMediaType());
+		if (reference.getRole() != null)
+			addAttribute(atts, "role", reference.getRole().toString());
+		addAttribute(atts, "uri", reference.getURI().toString());
+		handler.startElement(NAMESPACE, "reference", "reference", atts);
+		handler.endElement(NAMESPACE, "reference", "reference");
+	}
+
+
+	/**
+	 * Reports the given Vocabulary.
+	 */
+	private void emit(Vocabulary vocabulary, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		AttributesImpl atts = clearAttributes();
+		addAttribute(atts, "id", vocabulary.getId());
+		addAttribute(atts, "type", vocabulary.getType().toString());
+		handler.startElement(NAMESPACE, "vocabulary", "vocabulary", atts);
+
+		if (vocabulary.hasInfo())
+			emit(vocabulary.getInfo(), handler);
+
+		for(VocabularyItem item : vocabulary.getItems())
+		{
+			atts = clearAttributes();
+			addAttribute(atts, "name", item.getName());
+			handler.startElement(NAMESPACE, "item", "item", atts);
+			if (item.hasInfo())
+				emit(item.getInfo(), handler);
+			handler.endElement(NAMESPACE, "item", "item");
+		}
+
+		handler.endElement(NAMESPACE, "vocabulary", "vocabulary");
+	}
+
+
+	/**
+	 * Reports the given Info as the DOM Element the exporter exports for it.
+	 */
+	private void emit(Info info, ContentHandler handler) throws EmotionMLException, SAXException
+	{
+		if (infoDocument == null)
+			infoDocument = createDOMDocument();
+		emit(exporter.exportInfo(info, infoDocument), handler);
+	}
+
+
+	/**
+	 * Reports the given DOM Element and its content, with the namespace declarations of its
+	 * attributes reported as prefix mappings like the Transformer does.
+	 */
+	private void emit(Element element, ContentHandler handler) throws SAXException
+	{
+		NamedNodeMap map = element.getAttributes();
+		AttributesImpl atts = new AttributesImpl();
+		int prefixes = 0;
+		for(int i = 0; i < map.getLength(); i++)
+		{
+			Node attribute = map.item(i);
+			String name = attribute.getNodeName();
+			if (name.startsWith(XMLConstants.XMLNS_ATTRIBUTE))
+			{
+				int colon = name.lastIndexOf(':');
+				handler.startPrefixMapping(colon > 0 ? name.substring(colon + 1) : "", attribute.getNodeValue());
+				prefixes++;
+			}
+		}
+		for(int i = 0; i < map.getLength(); i++)
+		{
+			Node attribute = map.item(i);
+			String name = attribute.getNodeName();
+			if (!name.startsWith(XMLConstants.XMLNS_ATTRIBUTE))
+				atts.addAttribute(toString(attribute.getNamespaceURI()), getLocalName(attribute), name, "CDATA", attribute.getNodeValue());
+		}
+
+		String uri = toString(element.getNamespaceURI());
+		handler.startElement(uri, getLocalName(element), element.getNodeName(), atts);
+		for(Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			if (child instanceof Element)
+				emit((Element) child, handler);
+			else if (child instanceof Text)
+			{
+				char[] value = child.getNodeValue().toCharArray();
+				handler.characters(value, 0, value.length);
+			}
+		}
+		handler.endElement(uri, getLocalName(element), element.getNodeName());
+
+		for(int i = map.getLength() - 1; i >= 0 && prefixes > 0; i--)
+		{
+			String name = map.item(i).getNodeName();
+			if (name.startsWith(XMLConstants.XMLNS_ATTRIBUTE))
+			{
+				int colon = name.lastIndexOf(':');
+				handler.endPrefixMapping(colon > 0 ? name.substring(colon + 1) : "");
+				prefixes--;
+			}
+		}
+	}
+
+
+/////// Attributes
+
+	/**
+	 * Clears the reused attributes.
+	 */
+	private AttributesImpl clearAttributes()
+	{
+		attributes.clear();
+		return attributes;
+	}
+
+
+	/**
+	 * Adds the attribute with given name and value.
+	 */
+	private static void addAttribute(AttributesImpl atts, String name, String value)
+	{
+		atts.addAttribute("", name, name, "CDATA", value);
+	}
+
+
+	/**
+	 * Adds the descriptor sets of the given referrer, in alphabetical order.
+	 */
+	private static void addDescriptorSets(VocabularyReferrer referrer, AttributesImpl atts)
+	{
+		for(VocabularyType type : SORTED_TYPES)
+			if (referrer.hasVocabularySetURI(type))
+				addAttribute(atts, type.getSet(), referrer.getDescriptorSetURI(type).toString());
+	}
+
+
+/////// Utilities
+
+	/**
+	 * Formats the list of given ExpressedThrough items as space-separated values.
+	 */
+	private static String format(List<ExpressedThrough> expressedThrough)
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append(expressedThrough.get(0));
+		for(int i = 1; i < expressedThrough.size(); i++)
+			ret.append(" ").append(expressedThrough.get(i));
+		return ret.toString();
+	}
+
+
+	/**
+	 * Returns the local name of the given node, or its name if it has been created without
+	 * namespace.
+	 */
+	private static String getLocalName(Node node)
+	{
+		return node.getLocalName() == null ? node.getNodeName() : node.getLocalName();
+	}
+
+
+	/**
+	 * Returns the empty String for a null namespace.
+	 */
+	private static String toString(String uri)
+	{
+		return uri == null ? "" : uri;
+	}
+
+
+	/**
+	 * Creates the DOM Document owning the &lt;info&gt; elements.
+	 */
+	private static Document createDOMDocument() throws EmotionMLException
+	{
+		DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+		builderFactory.setNamespaceAware(true);
+		try
+		{
+			return builderFactory.newDocumentBuilder().newDocument();
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new EmotionMLException("Unable to create the document of the info elements: " + e.getLocalizedMessage());
+		}
+	}
+}
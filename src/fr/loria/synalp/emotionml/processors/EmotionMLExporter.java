@@ -8,11 +8,13 @@ import java.util.List;
 import javax.xml.parsers.*;
 
 import org.w3c.dom.*;
+import org.xml.sax.SAXException;
 
 import fr.loria.synalp.emotionml.*;
 import fr.loria.synalp.emotionml.descriptors.*;
 import fr.loria.synalp.emotionml.exceptions.*;
 import fr.loria.synalp.emotionml.info.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
 import fr.loria.synalp.emotionml.processors.io.*;
 import fr.loria.synalp.emotionml.vocabularies.*;
 
@@ -21,6 +23,11 @@ import fr.loria.synalp.emotionml.vocabularies.*;
  * first building DOM elements corresponding to them then validating them. In order to write the DOM
  * elements it uses an instance of an EmotionMLWriter which by default is a XMLEmotionMLWriter that
  * writes the elements in XML format. It is possible to set a different writer.
+ * <p>
+ * The objects can also be written in XML without building DOM Elements, see
+ * {@link #exportXML(EmotionMLDocument, OutputStream)} and the streaming
+ * {@link #stream(EmotionMLDocument, OutputStream)}, in which case the set writer is not used.
+ * </p>
  * @author Alexandre Denis
  */
 public class EmotionMLExporter extends EmotionMLProcessor
@@ -87,7 +94,10 @@ public class EmotionMLExporter extends EmotionMLProcessor
 	 */
 	public void export(EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
 	{
-		write(getValidator().validateDocument(export(document, createDOMDocument())), stream);
+		long start = startStage();
+		Element element = export(document, createDOMDocument());
+		endStage(Stage.EXPORT, start, countEmotions(document), -1);
+		writeStage(getValidator().validateDocument(element), stream, countEmotions(document));
 	}
 
 
@@ -98,7 +108,169 @@ public class EmotionMLExporter extends EmotionMLProcessor
 	 */
 	public void export(Emotion emotion, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
 	{
-		write(getValidator().validateEmotion(export(emotion, createDOMDocument())), stream);
+		long start = startStage();
+		Element element = export(emotion, createDOMDocument());
+		endStage(Stage.EXPORT, start, 1, -1);
+		writeStage(getValidator().validateEmotion(element), stream, 1);
+	}
+
+
+	/**
+	 * Writes the given Element to the given OutputStream and reports the WRITE stage.
+	 */
+	private void writeStage(Element element, OutputStream stream, int elements) throws EmotionMLException
+	{
+		long start = startStage();
+		OutputStream counted = count(stream);
+		write(element, counted);
+		endStage(Stage.WRITE, start, elements, getCount(counted));
+	}
+
+
+	/**
+	 * Exports the given EmotionMLDocument in XML without building DOM Elements. The document is
+	 * validated as a whole before being written, like the EmotionMLValidator validates the DOM
+	 * Element, then written byte for byte like the XMLEmotionMLWriter writes the DOM Element.
+	 * @param document
+	 * @param stream the stream to write to, it is flushed but not closed
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	protected void exportXML(EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		validateContent(document);
+		try
+		{
+			long start = startStage();
+			OutputStream counted = count(stream);
+			new EmotionMLEmitter(this).emit(document, new XMLContentWriter(counted));
+			endStage(Stage.WRITE, start, countEmotions(document), getCount(counted));
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to write element: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Exports the given Emotion in XML without building DOM Elements. The emotion is validated
+	 * before being written, like the EmotionMLValidator validates the DOM Element, then written
+	 * byte for byte like the XMLEmotionMLWriter writes the DOM Element.
+	 * @param emotion
+	 * @param stream the stream to write to, it is flushed but not closed
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	protected void exportXML(Emotion emotion, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		validateContent(emotion);
+		try
+		{
+			long start = startStage();
+			OutputStream counted = count(stream);
+			new EmotionMLEmitter(this).emit(emotion, new XMLContentWriter(counted));
+			endStage(Stage.WRITE, start, 1, getCount(counted));
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to write element: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Validates the given EmotionMLDocument as a whole without building DOM Elements, like the
+	 * EmotionMLValidator validates the DOM Element the document is exported to. Nothing is done if
+	 * the validator does not perform validation. If the validator gathers several failures, the DOM
+	 * Element is built and validated by the EmotionMLValidator instead.
+	 * @param document
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	protected void validateContent(EmotionMLDocument document) throws EmotionMLValidationException, EmotionMLException
+	{
+		if (!getValidator().performsValidation())
+			return;
+
+		if (gathersFailures())
+		{
+			long start = startStage();
+			Element element = export(document, createDOMDocument());
+			endStage(Stage.EXPORT, start, countEmotions(document), -1);
+			getValidator().validateDocument(element);
+			return;
+		}
+
+		try
+		{
+			long start = startStage();
+			EmotionMLContentHandler handler = new EmotionMLContentHandler(new EmotionMLImporter(getValidator()), false);
+			new EmotionMLEmitter(this).emit(document, handler);
+			handler.getDocument();
+			endStage(Stage.SINGLE_PASS, start, countEmotions(document), -1);
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to write element: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Validates the given Emotion without building DOM Elements, like the EmotionMLValidator
+	 * validates the DOM Element the emotion is exported to. Nothing is done if the validator does
+	 * not perform validation. If the validator gathers several failures, the DOM Element is built
+	 * and validated by the EmotionMLValidator instead.
+	 * @param emotion
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	protected void validateContent(Emotion emotion) throws EmotionMLValidationException, EmotionMLException
+	{
+		if (!getValidator().performsValidation())
+			return;
+
+		if (gathersFailures())
+		{
+			long start = startStage();
+			Element element = export(emotion, createDOMDocument());
+			endStage(Stage.EXPORT, start, 1, -1);
+			getValidator().validateEmotion(element);
+			return;
+		}
+
+		try
+		{
+			long start = startStage();
+			EmotionMLContentHandler handler = new EmotionMLContentHandler(new EmotionMLImporter(getValidator()), true);
+			new EmotionMLEmitter(this).emit(emotion, handler);
+			handler.getEmotion();
+			endStage(Stage.SINGLE_PASS, start, 1, -1);
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to write element: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Starts writing the given EmotionMLDocument in XML to the given stream, such that more emotions
+	 * can be written one at a time with the returned EmotionWriter. The root element, the info, the
+	 * vocabularies and the emotion nodes of the given document are written first. The whole document
+	 * is never held in memory, hence documents larger than the memory can be written.
+	 * @param document the start of the document to write, usually without emotions
+	 * @param stream the stream to write to, it is closed along with the EmotionWriter
+	 * @return an EmotionWriter that must be closed to end the document
+	 * @throws EmotionMLValidationException if the start of the document is not valid
+	 * @throws EmotionMLException
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public EmotionWriter stream(EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		return new EmotionWriter(this, document, stream);
 	}
 
 
@@ -335,14 +507,15 @@ public class EmotionMLExporter extends EmotionMLProcessor
 	 */
 	private void export(Timestamp timestamp, Element element)
 	{
+		boolean isLong = timestamp.isLong();
 		if (timestamp.hasStart())
-			element.setAttribute("start", timestamp.getStart().toString());
+			element.setAttribute("start", isLong ? Long.toString(timestamp.getStartAsLong()) : timestamp.getStart().toString());
 		if (timestamp.hasEnd())
-			element.setAttribute("end", timestamp.getEnd().toString());
+			element.setAttribute("end", isLong ? Long.toString(timestamp.getEndAsLong()) : timestamp.getEnd().toString());
 		if (timestamp.hasDuration())
-			element.setAttribute("duration", timestamp.getDuration().toString());
+			element.setAttribute("duration", isLong ? Long.toString(timestamp.getDurationAsLong()) : timestamp.getDuration().toString());
 		if (timestamp.hasOffsetToStart())
-			element.setAttribute("offset-to-start", timestamp.getOffsetToStart().toString());
+			element.setAttribute("offset-to-start", isLong ? Long.toString(timestamp.getOffsetToStartAsLong()) : timestamp.getOffsetToStart().toString());
 		if (timestamp.hasTimeRefURI())
 			element.setAttribute("time-ref-uri", timestamp.getTimeRefURI().toString());
 		if (timestamp.hasTimeRefAnchorPoint())
@@ -380,7 +553,8 @@ public class EmotionMLExporter extends EmotionMLProcessor
 	{
 		Element ret = doc.createElementNS(NAMESPACE, "reference");
 		ret.setAttribute("uri", reference.getURI().toString());
-		ret.setAttribute("role", reference.getRole().toString());
+		if (reference.getRole() != null)
+			ret.setAttribute("role", reference.getRole().toString());
 		if (reference.hasMediaType())
 			ret.setAttribute("media-type", reference.getMediaType());
 		return ret;
@@ -398,9 +572,9 @@ public class EmotionMLExporter extends EmotionMLProcessor
 		Element ret = doc.createElementNS(NAMESPACE, descriptor.getType().toString());
 		ret.setAttribute("name", descriptor.getName());
 		if (descriptor.hasValue())
-			ret.setAttribute("value", String.valueOf(descriptor.getValue()));
+			ret.setAttribute("value", String.valueOf(descriptor.getValueAsFloat()));
 		if (descriptor.hasConfidence())
-			ret.setAttribute("confidence", String.valueOf(descriptor.getConfidence()));
+			ret.setAttribute("confidence", String.valueOf(descriptor.getConfidenceAsFloat()));
 		if (descriptor.hasTrace())
 			ret.appendChild(export(descriptor.getTrace(), doc));
 		return ret;
@@ -417,7 +591,7 @@ public class EmotionMLExporter extends EmotionMLProcessor
 	{
 		Element ret = doc.createElementNS(NAMESPACE, "trace");
 		ret.setAttribute("freq", trace.getFrequency() + "Hz");
-		ret.setAttribute("samples", format(trace.getSamples()));
+		ret.setAttribute("samples", TraceCodec.format(trace.getSamples()));
 		return ret;
 	}
 
@@ -455,23 +629,4 @@ public class EmotionMLExporter extends EmotionMLProcessor
 		ret.setAttribute("name", item.getName());
 		return ret;
 	}
-
-
-	/**
-	 * Formats the given float as a String space-separated values.
-	 * @param samples
-	 * @return
-	 */
-	private String format(float[] samples)
-	{
-		if (samples.length == 0)
-			return "";
-		else
-		{
-			StringBuilder ret = new StringBuilder(String.valueOf(samples[0]));
-			for(int i = 1; i < samples.length; i++)
-				ret.append(" ").append(samples[i]);
-			return ret.toString();
-		}
-	}
 }
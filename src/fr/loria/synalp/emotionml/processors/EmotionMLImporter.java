@@ -5,13 +5,17 @@ import java.math.BigInteger;
 import java.net.*;
 import java.util.*;
 
+import javax.xml.stream.XMLStreamReader;
+
 import org.w3c.dom.*;
+import org.xml.sax.ContentHandler;
 
 import fr.loria.synalp.emotionml.*;
 import fr.loria.synalp.emotionml.descriptors.*;
 import fr.loria.synalp.emotionml.descriptors.Reference.Role;
 import fr.loria.synalp.emotionml.exceptions.*;
 import fr.loria.synalp.emotionml.info.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
 import fr.loria.synalp.emotionml.processors.io.*;
 import fr.loria.synalp.emotionml.vocabularies.*;
 
@@ -21,12 +25,19 @@ import fr.loria.synalp.emotionml.vocabularies.*;
  * eventually by building EmotionML objects. It also offers different methods to import documents
  * from other sources than stream. In order to read DOM Elements it uses an instance of an
  * EmotionMLReader, which by default is a XMLEmotionMLReader. It is possible to setup a different
- * reader.
+ * reader. Documents can also be imported from an XMLStreamReader, in which case they are validated
+ * and imported in a single pass without building a DOM Element (see EmotionMLContentHandler). In
+ * fused mode, the DOM Elements read from streams are also validated and imported in a single
+ * traversal, instead of being traversed once for the schema, once for the assertions and once to
+ * build the objects (see {@link #setFused(boolean)}).
  * @author Alexandre Denis
  */
 public class EmotionMLImporter extends EmotionMLProcessor
 {
+	private static final XMLEmotionMLReader DEFAULT_LIMITS = new XMLEmotionMLReader();
+
 	private EmotionMLReader reader = new XMLEmotionMLReader();
+	private boolean fused;
 
 
 	/**
@@ -69,6 +80,32 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	}
 
 
+	/**
+	 * Tests whether this EmotionMLImporter is in fused mode.
+	 * @return false by default
+	 */
+	public boolean isFused()
+	{
+		return fused;
+	}
+
+
+	/**
+	 * Sets whether this EmotionMLImporter is in fused mode, in which case the DOM Elements read
+	 * from streams are imported with {@link #validateAndImportDocument(Element)} and
+	 * {@link #validateAndImportEmotion(Element)}. The documents are accepted or rejected with the
+	 * same ValidationResult, but the importDocument(Element) and importEmotion(Element) methods are
+	 * not called, hence subclasses overriding them should not be used in fused mode.
+	 * @param fused
+	 * @return this EmotionMLImporter for chaining
+	 */
+	public EmotionMLImporter setFused(boolean fused)
+	{
+		this.fused = fused;
+		return this;
+	}
+
+
 	/**
 	 * Reads the given InputStream as a DOM Element.
 	 * @param stream
@@ -82,6 +119,43 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	}
 
 
+	/**
+	 * Creates an XMLStreamReader reading the given InputStream, limited to the maximum size of a
+	 * document of the reader of this importer.
+	 * @param stream
+	 * @return an XMLStreamReader
+	 * @throws EmotionMLException
+	 */
+	protected XMLStreamReader readStream(InputStream stream) throws EmotionMLException
+	{
+		return StaxPump.createReader(getLimits().limit(stream));
+	}
+
+
+	/**
+	 * Creates a StaxPump pushing the events of the given XMLStreamReader to the given handler,
+	 * with the maximum depth and attribute length of the reader of this importer.
+	 * @param reader
+	 * @param handler
+	 * @return a new StaxPump
+	 */
+	StaxPump createPump(XMLStreamReader reader, ContentHandler handler)
+	{
+		XMLEmotionMLReader limits = getLimits();
+		return new StaxPump(reader, handler, limits.getMaxDepth(), limits.getMaxAttributeLength());
+	}
+
+
+	/**
+	 * Returns the XMLEmotionMLReader whose limits apply to the documents read with an
+	 * XMLStreamReader: the reader of this importer, or a default one if it is another reader.
+	 */
+	private XMLEmotionMLReader getLimits()
+	{
+		return reader instanceof XMLEmotionMLReader ? (XMLEmotionMLReader) reader : DEFAULT_LIMITS;
+	}
+
+
 	/**
 	 * Imports an EmotionMLDocument from given InputStream.
 	 * @param stream
@@ -92,7 +166,10 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 */
 	public EmotionMLDocument importDocument(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
 	{
-		return importDocument(getValidator().validateDocument(read(stream)));
+		Element element = readStage(stream);
+		if (fused && !gathersFailures())
+			return validateAndImportDocument(element);
+		else return validateThenImportDocument(element);
 	}
 
 
@@ -106,7 +183,176 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 */
 	public Emotion importEmotion(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
 	{
-		return importEmotion(getValidator().validateEmotion(read(stream)));
+		Element element = readStage(stream);
+		if (fused && !gathersFailures())
+			return validateAndImportEmotion(element);
+		else return validateThenImportEmotion(element);
+	}
+
+
+	/**
+	 * Validates the given DOM Element with the EmotionMLValidator then imports it as an
+	 * EmotionMLDocument.
+	 */
+	private EmotionMLDocument validateThenImportDocument(Element element) throws EmotionMLValidationException, EmotionMLException
+	{
+		element = getValidator().validateDocument(element);
+		long start = startStage();
+		EmotionMLDocument ret = importDocument(element);
+		endStage(Stage.BUILD, start, countEmotions(ret), -1);
+		return ret;
+	}
+
+
+	/**
+	 * Validates the given DOM Element with the EmotionMLValidator then imports it as an Emotion.
+	 */
+	private Emotion validateThenImportEmotion(Element element) throws EmotionMLValidationException, EmotionMLException
+	{
+		element = getValidator().validateEmotion(element);
+		long start = startStage();
+		Emotion ret = importEmotion(element);
+		endStage(Stage.BUILD, start, 1, -1);
+		return ret;
+	}
+
+
+	/**
+	 * Reads the given InputStream as a DOM Element and reports the READ stage.
+	 */
+	private Element readStage(InputStream stream) throws EmotionMLException, IOException
+	{
+		long start = startStage();
+		InputStream counted = count(stream);
+		Element ret = read(counted);
+		endStage(Stage.READ, start, -1, getCount(counted));
+		return ret;
+	}
+
+
+	/**
+	 * Imports an EmotionMLDocument from given XMLStreamReader. The document is validated and
+	 * imported in a single pass, without building a DOM Element. If the reader is positioned on a
+	 * start element rather than at the start of a document, only that element is imported and the
+	 * reader is left on its end element.
+	 * @param reader
+	 * @return an EmotionMLDocument
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public EmotionMLDocument importDocument(XMLStreamReader reader) throws EmotionMLValidationException, EmotionMLException
+	{
+		long start = startStage();
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, false);
+		createPump(reader, handler).pumpAll();
+		EmotionMLDocument ret = handler.getDocument();
+		endStage(Stage.SINGLE_PASS, start, countEmotions(ret), -1);
+		return ret;
+	}
+
+
+	/**
+	 * Imports an Emotion from given XMLStreamReader. The emotion is validated and imported in a
+	 * single pass, without building a DOM Element. If the reader is positioned on a start element
+	 * rather than at the start of a document, only that element is imported and the reader is left
+	 * on its end element.
+	 * @param reader
+	 * @return an Emotion
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public Emotion importEmotion(XMLStreamReader reader) throws EmotionMLValidationException, EmotionMLException
+	{
+		long start = startStage();
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, true);
+		createPump(reader, handler).pumpAll();
+		Emotion ret = handler.getEmotion();
+		endStage(Stage.SINGLE_PASS, start, 1, -1);
+		return ret;
+	}
+
+
+	/**
+	 * Validates and imports the given DOM Element as an EmotionMLDocument in a single traversal:
+	 * the element is walked once, and the schema, the assertions and the building of the objects
+	 * are all performed on the same events, each attribute being parsed once. The document is
+	 * rejected with the ValidationResult the EmotionMLValidator would report. If the validator
+	 * gathers several failures, the element is validated by the EmotionMLValidator then imported.
+	 * @param element
+	 * @return an EmotionMLDocument
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 */
+	public EmotionMLDocument validateAndImportDocument(Element element) throws EmotionMLValidationException, EmotionMLException
+	{
+		if (gathersFailures())
+			return validateThenImportDocument(element);
+
+		long start = startStage();
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, false);
+		handler.setElement(element);
+		new DomPump(handler).pump(element);
+		EmotionMLDocument ret = handler.getDocument();
+		endStage(Stage.SINGLE_PASS, start, countEmotions(ret), -1);
+		return ret;
+	}
+
+
+	/**
+	 * Validates and imports the given DOM Element as a standalone Emotion in a single traversal.
+	 * @param element
+	 * @return an Emotion
+	 * @throws EmotionMLValidationException
+	 * @throws EmotionMLException
+	 * @see #validateAndImportDocument(Element)
+	 */
+	public Emotion validateAndImportEmotion(Element element) throws EmotionMLValidationException, EmotionMLException
+	{
+		if (gathersFailures())
+			return validateThenImportEmotion(element);
+
+		long start = startStage();
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, true);
+		handler.setElement(element);
+		new DomPump(handler).pump(element);
+		Emotion ret = handler.getEmotion();
+		endStage(Stage.SINGLE_PASS, start, 1, -1);
+		return ret;
+	}
+
+
+	/**
+	 * Returns an EmotionIterator over the emotions of the &lt;emotionml&gt; document read from the
+	 * given InputStream. The emotions are read, validated and imported one at a time, such that
+	 * arbitrarily long documents can be processed in constant memory. The returned iterator must be
+	 * closed, which closes the stream.
+	 * @param stream
+	 * @return an EmotionIterator
+	 * @throws EmotionMLException if the stream cannot be read
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public EmotionIterator stream(InputStream stream) throws EmotionMLException
+	{
+		return new EmotionIterator(this, readStream(stream), stream);
+	}
+
+
+	/**
+	 * Returns an EmotionIterator over the emotions of the &lt;emotionml&gt; document read by the
+	 * given XMLStreamReader. Closing the returned iterator closes the reader.
+	 * @param reader
+	 * @return an EmotionIterator
+	 * @throws IllegalStateException if the validator gathers several failures, see
+	 *             {@link EmotionMLValidator#setMaxDiagnostics(int)}
+	 */
+	public EmotionIterator stream(XMLStreamReader reader)
+	{
+		return new EmotionIterator(this, reader, null);
 	}
 
 
@@ -253,7 +499,9 @@ public class EmotionMLImporter extends EmotionMLProcessor
 			ret.setExpressedThrough(importExpressedThrough(expressedThrough));
 
 		// timestamp
-		ret.setTimestamp(importTimestamp(element));
+		ret.setTimestamp(importTimestamp(element.getAttribute("start"), element.getAttribute("end"), element.getAttribute("duration"),
+											element.getAttribute("offset-to-start"), element.getAttribute("time-ref-uri"),
+											element.getAttribute("time-ref-anchor-point")));
 
 		// children
 		NodeList children = element.getChildNodes();
@@ -350,41 +598,51 @@ public class EmotionMLImporter extends EmotionMLProcessor
 
 
 	/**
-	 * Imports a Timestamp from given DOM Element.
-	 * @param element
-	 * @return
+	 * Imports a Timestamp from the given timing attributes.
+	 * @return a Timestamp
 	 */
-	private Timestamp importTimestamp(Element element)
+	static Timestamp importTimestamp(String startStr, String endStr, String durationStr, String offsetStr, String timeRefURI,
+			String timeRefAnchorPoint)
 	{
 		Timestamp ret = new Timestamp();
 
 		// start
-		String startStr = element.getAttribute("start");
 		if (!startStr.equals(""))
-			ret.setStart(new BigInteger(startStr));
+		{
+			if (IntegerCodec.isLong(startStr))
+				ret.setStart(Long.parseLong(startStr));
+			else ret.setStart(new BigInteger(startStr));
+		}
 
 		// end
-		String endStr = element.getAttribute("end");
 		if (!endStr.equals(""))
-			ret.setEnd(new BigInteger(endStr));
+		{
+			if (IntegerCodec.isLong(endStr))
+				ret.setEnd(Long.parseLong(endStr));
+			else ret.setEnd(new BigInteger(endStr));
+		}
 
 		// duration
-		String durationStr = element.getAttribute("duration");
 		if (!durationStr.equals(""))
-			ret.setDuration(new BigInteger(durationStr));
+		{
+			if (IntegerCodec.isLong(durationStr))
+				ret.setDuration(Long.parseLong(durationStr));
+			else ret.setDuration(new BigInteger(durationStr));
+		}
 
 		// offset-to-start
-		String offsetStr = element.getAttribute("offset-to-start");
 		if (!offsetStr.equals(""))
-			ret.setOffsetToStart(new BigInteger(offsetStr));
+		{
+			if (IntegerCodec.isLong(offsetStr))
+				ret.setOffsetToStart(Long.parseLong(offsetStr));
+			else ret.setOffsetToStart(new BigInteger(offsetStr));
+		}
 
 		// time-ref-uri
-		String timeRefURI = element.getAttribute("time-ref-uri");
 		if (!timeRefURI.equals(""))
 			ret.setTimeRefURI(importURI(timeRefURI));
 
 		// time-ref-anchor-point
-		String timeRefAnchorPoint = element.getAttribute("time-ref-anchor-point");
 		if (!timeRefAnchorPoint.equals(""))
 			ret.setTimeRefAnchorPoint(Timestamp.TimeRefAnchorPoint.parse(timeRefAnchorPoint));
 
@@ -397,7 +655,7 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 * @param expressedThrough
 	 * @return
 	 */
-	private List<ExpressedThrough> importExpressedThrough(String expressedThrough)
+	static List<ExpressedThrough> importExpressedThrough(String expressedThrough)
 	{
 		List<ExpressedThrough> ret = new ArrayList<ExpressedThrough>();
 		for(String part : expressedThrough.split(" "))
@@ -412,11 +670,19 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 */
 	private Reference importReference(Element element)
 	{
-		Reference ret = new Reference(importURI(element.getAttribute("uri")));
-		String mediaType = element.getAttribute("media-type");
+		return importReference(element.getAttribute("uri"), element.getAttribute("media-type"), element.getAttribute("role"));
+	}
+
+
+	/**
+	 * Imports a Reference from the given attributes.
+	 * @return a Reference
+	 */
+	static Reference importReference(String uri, String mediaType, String role)
+	{
+		Reference ret = new Reference(importURI(uri));
 		if (!mediaType.equals(""))
 			ret.setMediaType(mediaType);
-		String role = element.getAttribute("role");
 		if (role != null)
 			ret.setRole(Role.parse(role));
 		return ret;
@@ -429,10 +695,30 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 * @return
 	 */
 	private EmotionDescriptor importDescriptor(Element element)
+	{
+		EmotionDescriptor ret = importDescriptor(VocabularyType.parse(element.getLocalName()), element.getAttribute("name"),
+													element.getAttribute("value"), element.getAttribute("confidence"));
+
+		NodeList children = element.getChildNodes();
+		for(int i = 0; i < children.getLength(); i++)
+		{
+			Node child = children.item(i);
+			if (child instanceof Element && child.getLocalName().equals("trace"))
+				ret.setTrace(importTrace((Element) child));
+		}
+
+		return ret;
+	}
+
+
+	/**
+	 * Imports an EmotionDescriptor of given type from the given attributes.
+	 * @return an EmotionDescriptor without trace
+	 */
+	static EmotionDescriptor importDescriptor(VocabularyType type, String name, String value, String confidence)
 	{
 		EmotionDescriptor ret = null;
-		String name = element.getAttribute("name");
-		switch (VocabularyType.parse(element.getLocalName()))
+		switch (type)
 		{
 			case CATEGORY:
 				ret = new Category(name);
@@ -451,22 +737,12 @@ public class EmotionMLImporter extends EmotionMLProcessor
 				break;
 		}
 
-		String value = element.getAttribute("value");
 		if (!value.equals(""))
 			ret.setValue(Float.parseFloat(value));
 
-		String confidence = element.getAttribute("confidence");
 		if (!confidence.equals(""))
 			ret.setConfidence(Float.parseFloat(confidence));
 
-		NodeList children = element.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++)
-		{
-			Node child = children.item(i);
-			if (child instanceof Element && child.getLocalName().equals("trace"))
-				ret.setTrace(importTrace((Element) child));
-		}
-
 		return ret;
 	}
 
@@ -478,15 +754,22 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 */
 	private Trace importTrace(Element element)
 	{
-		String freqStr = element.getAttribute("freq");
-		float freq = Float.parseFloat(freqStr.substring(0, freqStr.indexOf("Hz")));
-		String samples = element.getAttribute("samples");
-		String[] parts = samples.split(" ");
-		float[] samplesValues = new float[parts.length];
-		for(int i = 0; i < parts.length; i++)
-			samplesValues[i] = Float.parseFloat(parts[i]);
+		TraceCodec codec = new TraceCodec();
+		codec.parse(element.getAttribute("samples"));
+		return importTrace(element.getAttribute("freq"), codec);
+	}
+
 
-		return new Trace(freq, samplesValues);
+	/**
+	 * Imports a Trace from the given frequency attribute and samples.
+	 * @param freqStr
+	 * @param samples the TraceCodec which has parsed the samples attribute
+	 * @return a Trace
+	 */
+	static Trace importTrace(String freqStr, TraceCodec samples)
+	{
+		float freq = Float.parseFloat(freqStr.substring(0, freqStr.indexOf("Hz")));
+		return new Trace(freq, samples.getSamples());
 	}
 
 
@@ -495,7 +778,7 @@ public class EmotionMLImporter extends EmotionMLProcessor
 	 * @param uri
 	 * @return
 	 */
-	private URI importURI(String uri)
+	static URI importURI(String uri)
 	{
 		try
 		{
@@ -1,13 +1,21 @@
 package fr.loria.synalp.emotionml.processors;
 
+import java.io.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
+
 /**
  * An EmotionMLProcessor is a basic class that holds a reference to an EmotionMLValidator. It is
- * used to subclass EmotionMLExporter and EmotionMLImporter.
+ * used to subclass EmotionMLExporter and EmotionMLImporter. It also holds the ProcessingListener
+ * which receives the measures of its stages, the helpers for measuring them are only effective when
+ * the listener is not a NullProcessingListener.
  * @author Alexandre Denis
  */
 public class EmotionMLProcessor
 {
 	private EmotionMLValidator validator;
+	private ProcessingListener listener = NullProcessingListener.INSTANCE;
 
 
 	/**
@@ -46,4 +54,136 @@ public class EmotionMLProcessor
 		return validator;
 	}
 
+
+/////// Instrumentation
+
+	/**
+	 * Sets the ProcessingListener which receives the measures of the stages of this
+	 * EmotionMLProcessor and of its current EmotionMLValidator.
+	 * @param listener a ProcessingListener, NullProcessingListener.INSTANCE to measure nothing
+	 */
+	public void setListener(ProcessingListener listener)
+	{
+		this.listener = listener;
+		if (validator != null)
+			validator.setListener(listener);
+	}
+
+
+	/**
+	 * Returns the ProcessingListener of this EmotionMLProcessor.
+	 * @return a ProcessingListener, a NullProcessingListener by default
+	 */
+	public ProcessingListener getListener()
+	{
+		return listener;
+	}
+
+
+	/**
+	 * Tests whether the stages of this EmotionMLProcessor are measured.
+	 * @return false if the listener is a NullProcessingListener
+	 */
+	protected boolean isListened()
+	{
+		return !(listener instanceof NullProcessingListener);
+	}
+
+
+	/**
+	 * Tests whether the validator of this EmotionMLProcessor gathers several failures, which only
+	 * the validation of a DOM element does.
+	 * @return true if the validator performs validation and its maximum number of diagnostics is
+	 *         greater than 1
+	 */
+	protected boolean gathersFailures()
+	{
+		return validator.performsValidation() && validator.getMaxDiagnostics() > 1;
+	}
+
+
+	/**
+	 * Returns the start time of a stage.
+	 * @return the current time in nanoseconds, or 0 if the stages are not measured
+	 */
+	protected long startStage()
+	{
+		return isListened() ? System.nanoTime() : 0;
+	}
+
+
+	/**
+	 * Reports the given stage to the listener, if the stages are measured.
+	 * @param stage
+	 * @param start the time returned by startStage
+	 * @param elements the number of &lt;emotion&gt; elements processed, or -1 if unknown
+	 * @param bytes the number of bytes read or written, or -1
+	 */
+	protected void endStage(Stage stage, long start, int elements, long bytes)
+	{
+		if (isListened())
+			listener.stageCompleted(stage, System.nanoTime() - start, elements, bytes);
+	}
+
+
+	/**
+	 * Returns a stream counting the bytes read from the given one if the stages are measured.
+	 * @param stream
+	 * @return the given stream if the stages are not measured
+	 */
+	protected InputStream count(InputStream stream)
+	{
+		return isListened() ? new CountingInputStream(stream) : stream;
+	}
+
+
+	/**
+	 * Returns a stream counting the bytes written to the given one if the stages are measured.
+	 * @param stream
+	 * @return the given stream if the stages are not measured
+	 */
+	protected OutputStream count(OutputStream stream)
+	{
+		return isListened() ? new CountingOutputStream(stream) : stream;
+	}
+
+
+	/**
+	 * Returns the number of bytes read from the given stream, if it has been returned by count.
+	 * @param stream
+	 * @return -1 if the bytes have not been counted
+	 */
+	protected static long getCount(InputStream stream)
+	{
+		return stream instanceof CountingInputStream ? ((CountingInputStream) stream).getCount() : -1;
+	}
+
+
+	/**
+	 * Returns the number of bytes written to the given stream, if it has been returned by count.
+	 * @param stream
+	 * @return -1 if the bytes have not been counted
+	 */
+	protected static long getCount(OutputStream stream)
+	{
+		return stream instanceof CountingOutputStream ? ((CountingOutputStream) stream).getCount() : -1;
+	}
+
+
+	/**
+	 * Returns the number of emotions of the given document, for reporting a stage.
+	 * @param document
+	 * @return -1 if the document is null or the stages are not measured
+	 */
+	protected int countEmotions(EmotionMLDocument document)
+	{
+		if (document == null || !isListened())
+			return -1;
+
+		int ret = 0;
+		for(EmotionNode node : document.getEmotionNodes())
+			if (node instanceof Emotion)
+				ret++;
+		return ret;
+	}
 }
@@ -1,21 +1,22 @@
 package fr.loria.synalp.emotionml.processors;
 
 import java.io.*;
-import java.math.BigInteger;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import javax.xml.XMLConstants;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.validation.*;
 
 import org.w3c.dom.*;
-import org.xml.sax.SAXException;
+import org.xml.sax.*;
 
 import fr.loria.synalp.emotionml.EmotionMLDocument;
 import fr.loria.synalp.emotionml.descriptors.*;
 import fr.loria.synalp.emotionml.descriptors.Reference.Role;
 import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
 import fr.loria.synalp.emotionml.vocabularies.*;
 
 /**
@@ -27,9 +28,17 @@ import fr.loria.synalp.emotionml.vocabularies.*;
  * A critical aspect of the validation is the resolution of vocabularies referenced in the emotion
  * or document. Since it may be a blocking factor, especially when validating documents offline, it
  * is possible to deactivate the resolution of vocabularies. Instances of this class are not meant
- * to be used directly but rather embedded in EmotionMLImporter and EmotionMLExporter instances.
+ * to be used directly but rather embedded in EmotionMLImporter and EmotionMLExporter instances. The
+ * EmotionML schema itself is compiled only once and shared by all validators (see SchemaRegistry).
+ * The state of a validation is kept in a ValidationContext created by each call, hence one
+ * EmotionMLValidator, with its vocabulary cache, can be shared by several threads. When given a
+ * ForkJoinPool, the assertions of the emotions of large documents are validated in parallel, but the
+ * reported failure is still the first one in the order of the document. A validator may also gather
+ * all the failures of a document as Diagnostics instead of stopping at the first one, or reject the
+ * invalid elements at the lowest cost in fast-fail mode.
  * @author Alexandre Denis
  * @see fr.loria.synalp.emotionml.processors.VocabularyResolver
+ * @see fr.loria.synalp.emotionml.processors.SchemaRegistry
  * @see fr.loria.synalp.emotionml.processors.EmotionMLImporter
  * @see fr.loria.synalp.emotionml.processors.EmotionMLExporter
  */
@@ -37,20 +46,27 @@ public class EmotionMLValidator
 {
 	private static Set<String> elements;
 	private static Set<String> mediaTypes;
-	private static final String EMOTIONML_SCHEMA = "fr/loria/synalp/emotionml/schemas/emotionml.xsd";
 	private static final String MEDIATYPES_FILE = "/fr/loria/synalp/emotionml/schemas/mediatypes.txt";
+	private static final int PARALLEL_THRESHOLD = 256; // below this number of emotions, they are validated sequentially
+	private static final int MIN_GRAIN = 32; // the minimum number of emotions validated by a single task
+	private static final String CURRENT_ELEMENT_NODE = "http://apache.org/xml/properties/dom/current-element-node";
+	private static final ThreadLocal<IdleValidator> idleValidators = new ThreadLocal<IdleValidator>(); // the reset schema Validator of each thread
 
 	private Schema schema;
 	private VocabularyResolver resolver;
 	private boolean resolveVocabularies = true;
-	private Set<String> identifiers;
+	private ProcessingListener listener = NullProcessingListener.INSTANCE;
+	private ForkJoinPool pool;
+	private int maxDiagnostics = 1;
+	private boolean fastFail;
 
-	// init the elements for namespace checking
+	// init the elements for namespace checking and the media types
 	static
 	{
 		elements = new HashSet<String>();
 		elements.addAll(Arrays.asList(new String[] { "emotionml", "emotion", "vocabulary", "info", "reference", "item", "category", "dimension",
 				"appraisal", "action-tendency", "trace" }));
+		mediaTypes = readMediaTypes();
 	}
 
 
@@ -70,24 +86,52 @@ public class EmotionMLValidator
 	 */
 	public EmotionMLValidator(boolean resolveVocabularies)
 	{
-		readMediaTypes();
 		this.resolveVocabularies = resolveVocabularies;
 		this.resolver = new VocabularyResolver();
+		this.schema = SchemaRegistry.getSchema(); // compiled once and shared by all validators
+	}
 
-		// investigate: IllegalArgumentException when creating a schema factory on android
-		// we should find an alternative way of creating the schema, 
-		// check https://groups.google.com/forum/?fromgroups#!topic/android-developers/F-L6kUPn5PQ
-		SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
 
-		URL schemaURL = getClass().getClassLoader().getResource(EMOTIONML_SCHEMA);
-		try
-		{
-			schema = sf.newSchema(schemaURL);
-		}
-		catch (SAXException e)
-		{
-			schema = null;
-		}
+	/**
+	 * Creates a new EmotionMLValidator which resolves vocabularies with the given
+	 * VocabularyResolver.
+	 * @param resolver
+	 */
+	EmotionMLValidator(VocabularyResolver resolver)
+	{
+		this(true);
+		this.resolver = resolver;
+	}
+
+
+	/**
+	 * Tests whether this EmotionMLValidator actually performs validation. The streaming processors
+	 * use it to skip the checks when the validator is a NullValidator.
+	 * @return true by default
+	 */
+	boolean performsValidation()
+	{
+		return true;
+	}
+
+
+	/**
+	 * Returns the compiled EmotionML Schema used by this EmotionMLValidator.
+	 * @return null if the schema could not be compiled
+	 */
+	Schema getSchema()
+	{
+		return schema;
+	}
+
+
+	/**
+	 * Returns the VocabularyResolver used by this EmotionMLValidator.
+	 * @return the resolver
+	 */
+	VocabularyResolver getResolver()
+	{
+		return resolver;
 	}
 
 
@@ -104,34 +148,51 @@ public class EmotionMLValidator
 		String schemaErrorMessage = "";
 		String assertionErrorMessage = "";
 
-		identifiers = new HashSet<String>();
-		resolver.setLocalDocument(element.getOwnerDocument());
+		ValidationContext context = new ValidationContext(element.getOwnerDocument());
+		if (maxDiagnostics > 1)
+			context.setMaxDiagnostics(maxDiagnostics);
+		int emotions = countEmotions(element);
 
 		// 1- validate schema
+		long start = startStage();
 		try
 		{
-			validateSchema(element);
+			validateSchema(element, context);
 		}
 		catch (Exception e)
 		{
 			isSchemaValid = false;
 			schemaErrorMessage = e.getLocalizedMessage();
 		}
+		if (context.getFirstMessage(true) != null)
+		{
+			isSchemaValid = false;
+			schemaErrorMessage = context.getFirstMessage(true);
+		}
+		endStage(Stage.SCHEMA_VALIDATION, start, emotions);
 
 		// 2- validate assertions
+		start = startStage();
 		try
 		{
-			validateDocumentPrivate(element);
+			validateDocumentPrivate(element, context);
 		}
 		catch (Exception e)
 		{
 			isAssertionValid = false;
 			assertionErrorMessage = e.getLocalizedMessage();
 		}
+		if (context.getFirstMessage(false) != null)
+		{
+			isAssertionValid = false;
+			assertionErrorMessage = context.getFirstMessage(false);
+		}
+		endStage(Stage.ASSERTION_VALIDATION, start, emotions);
 
 		if (isSchemaValid && isAssertionValid)
 			return element;
-		else throw new EmotionMLValidationException(new ValidationResult(element, isSchemaValid, schemaErrorMessage, isAssertionValid, assertionErrorMessage));
+		else throw createException(new ValidationResult(element, isSchemaValid, schemaErrorMessage, isAssertionValid, assertionErrorMessage,
+															context.getDiagnostics(), context.isTruncated()));
 	}
 
 
@@ -170,48 +231,132 @@ public class EmotionMLValidator
 		String schemaErrorMessage = "";
 		String assertionErrorMessage = "";
 
-		identifiers = new HashSet<String>();
-		resolver.setLocalDocument(null);
+		ValidationContext context = new ValidationContext((Document) null);
+		if (maxDiagnostics > 1)
+			context.setMaxDiagnostics(maxDiagnostics);
 
 		// 1- validate schema
+		long start = startStage();
 		try
 		{
-			validateSchema(element);
+			validateSchema(element, context);
 		}
 		catch (Exception e)
 		{
 			isSchemaValid = false;
 			schemaErrorMessage = e.getLocalizedMessage();
 		}
+		if (context.getFirstMessage(true) != null)
+		{
+			isSchemaValid = false;
+			schemaErrorMessage = context.getFirstMessage(true);
+		}
+		endStage(Stage.SCHEMA_VALIDATION, start, 1);
 
 		// 2- validate assertions
+		start = startStage();
 		try
 		{
-			validateEmotionPrivate(element);
+			validateEmotionPrivate(element, context);
 		}
 		catch (Exception e)
 		{
 			isAssertionValid = false;
 			assertionErrorMessage = e.getLocalizedMessage();
 		}
+		if (context.getFirstMessage(false) != null)
+		{
+			isAssertionValid = false;
+			assertionErrorMessage = context.getFirstMessage(false);
+		}
+		endStage(Stage.ASSERTION_VALIDATION, start, 1);
 
 		if (isSchemaValid && isAssertionValid)
 			return element;
-		else throw new EmotionMLValidationException(new ValidationResult(element, isSchemaValid, schemaErrorMessage, isAssertionValid, assertionErrorMessage));
+		else throw createException(new ValidationResult(element, isSchemaValid, schemaErrorMessage, isAssertionValid, assertionErrorMessage,
+															context.getDiagnostics(), context.isTruncated()));
 	}
 
 
 /////// Document Structure (Spec 2.1.1)
 
 	/**
-	 * Validates the document against the EmotionML schema.
+	 * Validates the document against the EmotionML schema. When the context gathers the failures,
+	 * the schema validation goes on after the errors.
 	 * @param doc
+	 * @param context
 	 * @throws IOException
 	 * @throws SAXException
 	 */
-	private void validateSchema(Node doc) throws SAXException, IOException
+	private void validateSchema(Node doc, ValidationContext context) throws SAXException, IOException
+	{
+		Validator validator = acquireValidator(schema);
+		if (!context.isCollecting())
+			validator.setErrorHandler(null);
+		else validator.setErrorHandler(new CollectingErrorHandler(validator, context));
+
+		try
+		{
+			validator.validate(new DOMSource(doc));
+		}
+		catch (SAXException e)
+		{
+			releaseValidator(schema, validator); // an invalid document leaves the Validator reusable
+			throw e;
+		}
+		releaseValidator(schema, validator);
+	}
+
+
+	/**
+	 * Returns a schema Validator of the given schema, reusing the one released by the previous
+	 * validation of the current thread if any, since creating a Validator costs more than the
+	 * validation of a small document.
+	 */
+	private static Validator acquireValidator(Schema schema)
+	{
+		IdleValidator idle = idleValidators.get();
+		if (idle != null && idle.schema == schema)
+		{
+			idleValidators.remove();
+			idle.validator.reset();
+			return idle.validator;
+		}
+		else return schema.newValidator();
+	}
+
+
+	/**
+	 * Releases the given Validator such that it can be reused by the next validation of the
+	 * current thread. The Validators interrupted by an unexpected exception are not released. The
+	 * ErrorHandler is cleared then removed, since the components of the Validator may keep it until
+	 * its next use and it would keep the context of the validation, its diagnostics and its nodes,
+	 * as long as the thread lives.
+	 */
+	private static void releaseValidator(Schema schema, Validator validator)
+	{
+		if (validator.getErrorHandler() instanceof CollectingErrorHandler)
+			((CollectingErrorHandler) validator.getErrorHandler()).clear();
+		validator.setErrorHandler(null);
+		idleValidators.set(new IdleValidator(schema, validator));
+	}
+
+
+	/**
+	 * Returns the element being validated by the given schema Validator, if it tells it.
+	 * @param validator
+	 * @return null if unknown
+	 */
+	private static Node getCurrentElement(Validator validator)
 	{
-		schema.newValidator().validate(new DOMSource(doc));
+		try
+		{
+			return (Node) validator.getProperty(CURRENT_ELEMENT_NODE);
+		}
+		catch (SAXException e)
+		{
+			return null;
+		}
 	}
 
 
@@ -221,27 +366,34 @@ public class EmotionMLValidator
 	 * @param root
 	 * @throws EmotionMLException
 	 */
-	private void validateDocumentPrivate(Element root) throws EmotionMLException
+	private void validateDocumentPrivate(Element root, ValidationContext context) throws EmotionMLException
 	{
-		validateRootName(root);
-		validateNamespace(root);
+		try
+		{
+			validateRootName(root.getLocalName());
+			validateNamespace(root.getNamespaceURI());
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, root, null);
+			return; // the other checks would make no sense
+		}
 		validateEmotionMLVersion(root);
-		validateEmotionMLDescriptorsSet(root);
-		validateEmotionMLChildren(root);
-		validateEmotionMLNamespaceConformance(root);
+		validateEmotionMLDescriptorsSet(root, context);
+		validateEmotionMLChildren(root, context);
+		validateEmotionMLNamespaceConformance(root, context);
 	}
 
 
 	/**
 	 * Validates the root name of the EmotionML document.
-	 * @param root
+	 * @param name
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateRootName(Element root) throws EmotionMLFormatException
+	void validateRootName(String name) throws EmotionMLFormatException
 	{
-		String name = root.getLocalName();
 		if (!name.equals("emotionml"))
-			throw new EmotionMLFormatException("101: The root element of standalone EmotionML documents MUST be <emotionml>");
+			throw createFailure(101, "The root element of standalone EmotionML documents MUST be <emotionml>");
 	}
 
 
@@ -250,7 +402,7 @@ public class EmotionMLValidator
 	 * @param root
 	 * @throws EmotionMLException
 	 */
-	private void validateEmotionMLChildren(Element root) throws EmotionMLException
+	private void validateEmotionMLChildren(Element root, ValidationContext context) throws EmotionMLException
 	{
 		// we perform validation in two steps, first vocabularies and info, then emotions. The motivation for doing so is that when emotions refer to local vocabularies,
 		// it is easier to first validate all vocabularies then validate all emotions, otherwise we could face a reference to a badly formatted vocabulary while validating
@@ -265,38 +417,126 @@ public class EmotionMLValidator
 
 			String name = child.getLocalName();
 			if (name.equals("vocabulary"))
-				validateVocabulary((Element) child);
+				validateVocabulary((Element) child, context);
 			else if (name.equals("info"))
 			{
-				if (infoFound)
-					throw new EmotionMLFormatException("105: The <emotionml> element MAY contain a single <info> element (it contains at least two)");
-
+				try
+				{
+					validateDocumentInfoUnicity(infoFound);
+				}
+				catch (EmotionMLFormatException e)
+				{
+					context.report(e, child, null);
+				}
 				infoFound = true;
-				validateInfo((Element) child);
+				validateInfo((Element) child, context);
 			}
 		}
 
-		// and now do emotions
-		for(int i = 0; i < children.getLength(); i++)
+		// and now do emotions, the gathered failures have to be in the order of the document
+		if (pool == null || context.isCollecting())
 		{
-			Node child = children.item(i);
-			if (child instanceof Element)
-				if (child.getLocalName().equals("emotion"))
-					validateEmotionPrivate((Element) child);
+			for(int i = 0; i < children.getLength(); i++)
+			{
+				Node child = children.item(i);
+				if (child instanceof Element)
+					if (child.getLocalName().equals("emotion"))
+						validateEmotionPrivate((Element) child, context);
+			}
+		}
+		else
+		{
+			List<Element> emotions = new ArrayList<Element>();
+			for(int i = 0; i < children.getLength(); i++)
+			{
+				Node child = children.item(i);
+				if (child instanceof Element)
+					if (child.getLocalName().equals("emotion"))
+						emotions.add((Element) child);
+			}
+
+			if (emotions.size() < PARALLEL_THRESHOLD)
+			{
+				for(Element emotion : emotions)
+					validateEmotionPrivate(emotion, context);
+			}
+			else validateEmotionsParallel(emotions, context);
+		}
+	}
+
+
+	/**
+	 * Validates the given emotions in the pool. Each emotion is validated apart with its own set of
+	 * identifiers, then the outcomes are merged in the order of the document: an emotion whose
+	 * identifiers were already found is validated again against the identifiers of the document, so
+	 * that the thrown exception is the one of a sequential validation.
+	 * @param emotions
+	 * @param context
+	 * @throws EmotionMLException
+	 */
+	private void validateEmotionsParallel(List<Element> emotions, ValidationContext context) throws EmotionMLException
+	{
+		for(Element emotion : emotions)
+			expand(emotion);
+
+		EmotionOutcome[] outcomes = new EmotionOutcome[emotions.size()];
+		int grain = Math.max(MIN_GRAIN, emotions.size() / (4 * pool.getParallelism()));
+		pool.invoke(new EmotionTask(emotions, outcomes, context.getLocalVocabularies(), new AtomicInteger(Integer.MAX_VALUE), 0, emotions.size(), grain));
+
+		Set<String> identifiers = context.getIdentifiers();
+		for(int i = 0; i < outcomes.length; i++)
+		{
+			EmotionOutcome outcome = outcomes[i];
+			if (outcome == null || !Collections.disjoint(outcome.identifiers, identifiers))
+				validateEmotionPrivate(emotions.get(i), context); // skipped or clashing identifiers
+			else if (outcome.failure instanceof EmotionMLException)
+				throw (EmotionMLException) outcome.failure;
+			else if (outcome.failure instanceof RuntimeException)
+				throw (RuntimeException) outcome.failure;
+			else identifiers.addAll(outcome.identifiers);
 		}
 	}
 
 
+	/**
+	 * Reads once the whole subtree of the given node. A DOM may build its nodes lazily when they are
+	 * first read, which is not thread-safe, hence the emotions are expanded before being validated
+	 * concurrently.
+	 * @param node
+	 */
+	private static void expand(Node node)
+	{
+		node.getNodeValue();
+		NamedNodeMap attributes = node.getAttributes();
+		if (attributes != null)
+			for(int i = 0; i < attributes.getLength(); i++)
+				attributes.item(i).getNodeValue();
+		for(Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+			expand(child);
+	}
+
+
+	/**
+	 * Validates that the root element contains at most one info element.
+	 * @param infoFound true if an info element has already been found
+	 * @throws EmotionMLFormatException
+	 */
+	void validateDocumentInfoUnicity(boolean infoFound) throws EmotionMLFormatException
+	{
+		if (infoFound)
+			throw createFailure(105, "The <emotionml> element MAY contain a single <info> element (it contains at least two)");
+	}
+
+
 	/**
 	 * Validates the namespace of the root element.
-	 * @param root
+	 * @param namespace
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateNamespace(Element root) throws EmotionMLFormatException
+	void validateNamespace(String namespace) throws EmotionMLFormatException
 	{
-		String namespace = root.getNamespaceURI();
 		if (namespace == null || !namespace.equals(EmotionMLDocument.NAMESPACE))
-			throw new EmotionMLFormatException("102: The <emotionml> element MUST define the EmotionML namespace: \"" + EmotionMLDocument.NAMESPACE + "\"");
+			throw createFailure(102, "The <emotionml> element MUST define the EmotionML namespace: \"", EmotionMLDocument.NAMESPACE, "\"");
 	}
 
 
@@ -310,9 +550,9 @@ public class EmotionMLValidator
 		// this has been temporarily disabled to prevent failure for http://www.w3.org/TR/emotion-voc/xml
 		/*String version = root.getAttribute("version");
 		if (version.equals(""))
-			throw new EmotionMLFormatException("110: The root element of a standalone EmotionML document MUST have an attribute \"version\"");
+			throw createFailure(110, "The root element of a standalone EmotionML document MUST have an attribute \"version\"");
 		if (!version.equals(EmotionMLDocument.VERSION))
-			throw new EmotionMLFormatException("111: The \"version\" attribute of <emotionml> MUST have the value \"" + EmotionMLDocument.VERSION + "\"");
+			throw createFailure(111, "The \"version\" attribute of <emotionml> MUST have the value \"", EmotionMLDocument.VERSION, "\"");
 		*/
 	}
 
@@ -323,15 +563,22 @@ public class EmotionMLValidator
 	 * @param root
 	 * @throws EmotionMLException
 	 */
-	private void validateEmotionMLDescriptorsSet(Element root) throws EmotionMLException
+	private void validateEmotionMLDescriptorsSet(Element root, ValidationContext context) throws EmotionMLException
 	{
 		for(VocabularyType type : VocabularyType.values())
 		{
 			String descriptorSetURI = root.getAttribute(type.getSet());
 			if (!descriptorSetURI.equals(""))
 			{
-				URI uri = validateEmotionMLDescriptorsSetURI(type, descriptorSetURI);
-				validateEmotionMLVocabularyReference(type, uri);
+				try
+				{
+					URI uri = validateEmotionMLDescriptorsSetURI(type, descriptorSetURI);
+					validateEmotionMLVocabularyReference(type, uri, context);
+				}
+				catch (EmotionMLException e)
+				{
+					context.report(e, root, descriptorSetURI);
+				}
 			}
 		}
 	}
@@ -343,7 +590,7 @@ public class EmotionMLValidator
 	 * @return
 	 * @throws EmotionMLFormatException
 	 */
-	private URI validateEmotionMLDescriptorsSetURI(VocabularyType type, String descriptorSetURI) throws EmotionMLFormatException
+	URI validateEmotionMLDescriptorsSetURI(VocabularyType type, String descriptorSetURI) throws EmotionMLFormatException
 	{
 		try
 		{
@@ -361,8 +608,8 @@ public class EmotionMLValidator
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 122;
 
-			throw new EmotionMLFormatException(errorType + ": The \"" + type.getSet() +
-												"\" attribute of <emotionml>, if present, MUST be of type xsd:anyURI (it is \"" + descriptorSetURI + "\")");
+			throw createFailure(errorType, "The \"", type.getSet(),
+												"\" attribute of <emotionml>, if present, MUST be of type xsd:anyURI (it is \"", descriptorSetURI, "\")");
 		}
 	}
 
@@ -373,7 +620,7 @@ public class EmotionMLValidator
 	 * @param uri
 	 * @throws EmotionMLException
 	 */
-	private void validateEmotionMLVocabularyReference(VocabularyType type, URI uri)
+	private void validateEmotionMLVocabularyReference(VocabularyType type, URI uri, ValidationContext context)
 			throws EmotionMLException
 	{
 		if (!resolveVocabularies)
@@ -381,22 +628,7 @@ public class EmotionMLValidator
 
 		try
 		{
-			Vocabulary vocabulary = resolver.retrieveVocabulary(uri);
-			if (vocabulary.getType() != type)
-			{
-				int errorType = -1;
-				if (type == VocabularyType.CATEGORY)
-					errorType = 114;
-				else if (type == VocabularyType.DIMENSION)
-					errorType = 117;
-				else if (type == VocabularyType.APPRAISAL)
-					errorType = 120;
-				else if (type == VocabularyType.ACTION_TENDENCY)
-					errorType = 123;
-				throw new EmotionMLFormatException(errorType + ": The \"" + type.getSet() +
-													"\" attribute of <emotionml>, if present, MUST refer to the ID of a <vocabulary>" +
-													" element with type=\"" + type + "\" (it is \"" + vocabulary.getType() + "\")");
-			}
+			validateEmotionMLVocabularyType(type, resolver.retrieveVocabulary(uri, context.getLocalVocabularies(), listener));
 		}
 		catch (EmotionMLResolutionException e)
 		{
@@ -405,6 +637,32 @@ public class EmotionMLValidator
 	}
 
 
+	/**
+	 * Validates the type of the vocabulary referred by a descriptor set of the root element.
+	 * @param type the expected type
+	 * @param vocabulary the referred vocabulary
+	 * @throws EmotionMLFormatException
+	 */
+	void validateEmotionMLVocabularyType(VocabularyType type, Vocabulary vocabulary) throws EmotionMLFormatException
+	{
+		if (vocabulary.getType() != type)
+		{
+			int errorType = -1;
+			if (type == VocabularyType.CATEGORY)
+				errorType = 114;
+			else if (type == VocabularyType.DIMENSION)
+				errorType = 117;
+			else if (type == VocabularyType.APPRAISAL)
+				errorType = 120;
+			else if (type == VocabularyType.ACTION_TENDENCY)
+				errorType = 123;
+			throw createFailure(errorType, "The \"", type.getSet(),
+												"\" attribute of <emotionml>, if present, MUST refer to the ID of a <vocabulary>" +
+												" element with type=\"", type, "\" (it is \"", vocabulary.getType(), "\")");
+		}
+	}
+
+
 /////// Document Structure (Spec 2.1.2)	
 
 	/**
@@ -412,14 +670,50 @@ public class EmotionMLValidator
 	 * @param emotion
 	 * @throws EmotionMLException
 	 */
-	private void validateEmotionPrivate(Element emotion) throws EmotionMLException
+	private void validateEmotionPrivate(Element emotion, ValidationContext context) throws EmotionMLException
 	{
-		validateEmotionDescriptorsSet(emotion);
-		validateEmotionVersion(emotion);
-		validateEmotionId(emotion);
-		validateEmotionExpressThrough(emotion);
-		validateEmotionTiming(emotion);
-		validateEmotionChildren(emotion);
+		validateEmotionDescriptorsSet(emotion, context);
+
+		String version = emotion.getAttribute("version");
+		try
+		{
+			validateEmotionVersion(version);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, emotion, version);
+		}
+
+		String id = emotion.getAttribute("id");
+		try
+		{
+			validateEmotionId(id, context.getIdentifiers());
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, emotion, id);
+		}
+
+		String expressedThrough = emotion.getAttribute("expressed-through");
+		try
+		{
+			validateEmotionExpressThrough(expressedThrough);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, emotion, expressedThrough);
+		}
+
+		try
+		{
+			validateEmotionTiming(emotion);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, emotion, null);
+		}
+
+		validateEmotionChildren(emotion, context);
 	}
 
 
@@ -428,60 +722,110 @@ public class EmotionMLValidator
 	 * @param emotion
 	 * @throws EmotionMLException
 	 */
-	private void validateEmotionChildren(Element emotion) throws EmotionMLException
+	private void validateEmotionChildren(Element emotion, ValidationContext context) throws EmotionMLException
 	{
 		boolean infoFound = false;
 		boolean descriptorFound = false;
 		Map<VocabularyType, Set<String>> descriptorNames = new HashMap<VocabularyType, Set<String>>();
 
-		NodeList children = emotion.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++)
+		// the children are walked through their siblings since the NodeLists of a DOM are not
+		// thread-safe, even for reading
+		for(Node node = emotion.getFirstChild(); node != null; node = node.getNextSibling())
 		{
-			Node node = children.item(i);
-
 			if (!(node instanceof Element))
 				continue;
 
 			String name = node.getLocalName();
 			if (name.equals("reference"))
-				validateReference((Element) node);
+			{
+				try
+				{
+					validateReference((Element) node);
+				}
+				catch (EmotionMLFormatException e)
+				{
+					context.report(e, node, null);
+				}
+			}
 			else if (name.equals("category") || name.equals("dimension") || name.equals("action-tendency") || name.equals("appraisal"))
 			{
 				descriptorFound = true;
-				validateDescriptor((Element) node, descriptorNames);
+				validateDescriptor((Element) node, descriptorNames, context);
 			}
 			else if (name.equals("info"))
 			{
-				if (infoFound)
-					throw new EmotionMLFormatException("155: The <emotion> element MAY contain a single <info> element");
-
+				try
+				{
+					validateEmotionInfoUnicity(infoFound);
+				}
+				catch (EmotionMLFormatException e)
+				{
+					context.report(e, node, null);
+				}
 				infoFound = true;
-				validateInfo((Element) node);
+				validateInfo((Element) node, context);
 			}
 		}
 
+		try
+		{
+			validateEmotionDescriptorPresence(descriptorFound);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, emotion, null);
+		}
+	}
+
+
+	/**
+	 * Validates that an emotion element contains at most one info element.
+	 * @param infoFound true if an info element has already been found
+	 * @throws EmotionMLFormatException
+	 */
+	void validateEmotionInfoUnicity(boolean infoFound) throws EmotionMLFormatException
+	{
+		if (infoFound)
+			throw createFailure(155, "The <emotion> element MAY contain a single <info> element");
+	}
+
+
+	/**
+	 * Validates that an emotion element contains at least one descriptor.
+	 * @param descriptorFound true if a descriptor has been found
+	 * @throws EmotionMLFormatException
+	 */
+	void validateEmotionDescriptorPresence(boolean descriptorFound) throws EmotionMLFormatException
+	{
 		if (!descriptorFound)
-			throw new EmotionMLFormatException("156: The <emotion> element MUST contain at least one <category> or " +
+			throw createFailure(156, "The <emotion> element MUST contain at least one <category> or " +
 												"<dimension> or <appraisal> or <action-tendency> element");
 	}
 
 
 	// 160 - 170
-	private void validateEmotionDescriptorsSet(Element emotion) throws EmotionMLException
+	private void validateEmotionDescriptorsSet(Element emotion, ValidationContext context) throws EmotionMLException
 	{
 		for(VocabularyType type : VocabularyType.values())
 		{
 			String descriptorSet = emotion.getAttribute(type.getSet());
 			if (!descriptorSet.equals(""))
 			{
-				URI uri = validateEmotionDescriptorSetURI(descriptorSet, type);
-				validateEmotionVocabularyReference(uri, type);
+				try
+				{
+					URI uri = validateEmotionDescriptorSetURI(descriptorSet, type);
+					validateEmotionVocabularyReference(uri, type, context);
+				}
+				catch (EmotionMLException e)
+				{
+					context.report(e, emotion, descriptorSet);
+				}
 			}
 		}
 	}
 
 
-	private URI validateEmotionDescriptorSetURI(String descriptorSetURI, VocabularyType type) throws EmotionMLFormatException
+	URI validateEmotionDescriptorSetURI(String descriptorSetURI, VocabularyType type) throws EmotionMLFormatException
 	{
 		try
 		{
@@ -498,35 +842,21 @@ public class EmotionMLValidator
 				errorType = 166;
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 169;
-			throw new EmotionMLFormatException(errorType + ": The \"" + type.getSet() + "\" attribute of <emotion>," +
-												" if present, MUST be of type xsd:anyURI (it is \"" + descriptorSetURI + "\")");
+			throw createFailure(errorType, "The \"", type.getSet(), "\" attribute of <emotion>," +
+												" if present, MUST be of type xsd:anyURI (it is \"", descriptorSetURI, "\")");
 		}
 	}
 
 
-	private Vocabulary validateEmotionVocabularyReference(URI uri, VocabularyType type) throws EmotionMLException
+	private Vocabulary validateEmotionVocabularyReference(URI uri, VocabularyType type, ValidationContext context) throws EmotionMLException
 	{
 		if (!resolveVocabularies)
 			return null;
 
 		try
 		{
-			Vocabulary vocabulary = resolver.retrieveVocabulary(uri);
-			if (vocabulary.getType() != type)
-			{
-				int errorType = -1;
-				if (type == VocabularyType.CATEGORY)
-					errorType = 161;
-				else if (type == VocabularyType.DIMENSION)
-					errorType = 164;
-				else if (type == VocabularyType.APPRAISAL)
-					errorType = 167;
-				else if (type == VocabularyType.ACTION_TENDENCY)
-					errorType = 170;
-				throw new EmotionMLFormatException(errorType + ": The \"" + type.getSet() + "\" attribute of <emotion>," +
-													" if present, MUST refer to the ID of a <vocabulary> element with type=\"" +
-													type + "\" (it is \"" + vocabulary.getType() + "\")");
-			}
+			Vocabulary vocabulary = resolver.retrieveVocabulary(uri, context.getLocalVocabularies(), listener);
+			validateEmotionVocabularyType(type, vocabulary);
 			return vocabulary;
 		}
 		catch (EmotionMLResolutionException e)
@@ -536,28 +866,46 @@ public class EmotionMLValidator
 	}
 
 
+	void validateEmotionVocabularyType(VocabularyType type, Vocabulary vocabulary) throws EmotionMLFormatException
+	{
+		if (vocabulary.getType() != type)
+		{
+			int errorType = -1;
+			if (type == VocabularyType.CATEGORY)
+				errorType = 161;
+			else if (type == VocabularyType.DIMENSION)
+				errorType = 164;
+			else if (type == VocabularyType.APPRAISAL)
+				errorType = 167;
+			else if (type == VocabularyType.ACTION_TENDENCY)
+				errorType = 170;
+			throw createFailure(errorType, "The \"", type.getSet(), "\" attribute of <emotion>," +
+												" if present, MUST refer to the ID of a <vocabulary> element with type=\"",
+												type, "\" (it is \"", vocabulary.getType(), "\")");
+		}
+	}
+
+
 	// 171 - 172
-	private void validateEmotionVersion(Element emotion) throws EmotionMLFormatException
+	void validateEmotionVersion(String version) throws EmotionMLFormatException
 	{
-		String version = emotion.getAttribute("version");
 		if (!version.equals("") && !version.equals(EmotionMLDocument.VERSION))
-			throw new EmotionMLFormatException("172: The \"version\" attribute of <emotion>, if present, MUST " +
-												"have the value \"" + EmotionMLDocument.VERSION + "\" (it is \"" + version + "\")");
+			throw createFailure(172, "The \"version\" attribute of <emotion>, if present, MUST " +
+												"have the value \"", EmotionMLDocument.VERSION, "\" (it is \"", version, "\")");
 	}
 
 
 	// 174
-	private void validateEmotionId(Element emotion) throws EmotionMLFormatException
+	void validateEmotionId(String id, Set<String> identifiers) throws EmotionMLFormatException
 	{
-		String id = emotion.getAttribute("id");
 		if (!id.equals(""))
 		{
 			if (id.indexOf(":") != -1) // TODO: a proper definition of xsd:ID
-				throw new EmotionMLFormatException("174: The \"id\" attribute of <emotion>, if present, MUST " +
-													"be of type xsd:ID (it is \"" + id + "\")");
+				throw createFailure(174, "The \"id\" attribute of <emotion>, if present, MUST " +
+													"be of type xsd:ID (it is \"", id, "\")");
 			if (identifiers.contains(id))
-				throw new EmotionMLFormatException("174: The \"id\" attribute of <emotion>, if present, MUST " +
-													"be of type xsd:ID (it is \"" + id + "\" and there already exists an element with that identifier)");
+				throw createFailure(174, "The \"id\" attribute of <emotion>, if present, MUST " +
+													"be of type xsd:ID (it is \"", id, "\" and there already exists an element with that identifier)");
 			else identifiers.add(id);
 		}
 	}
@@ -572,18 +920,47 @@ public class EmotionMLValidator
 	 * @param descriptor
 	 * @throws EmotionMLException
 	 */
-	private void validateDescriptor(Element descriptor, Map<VocabularyType, Set<String>> descriptorNames) throws EmotionMLException
+	private void validateDescriptor(Element descriptor, Map<VocabularyType, Set<String>> descriptorNames, ValidationContext context) throws EmotionMLException
 	{
 		VocabularyType type = VocabularyType.parse(descriptor.getLocalName());
 
-		String name = validateEmotionDescriptorName(descriptor, type);
-		validateDescriptorNameUnicity(type, name, descriptorNames);
+		String name = descriptor.getAttribute("name");
+		try
+		{
+			validateEmotionDescriptorName(name, type);
+			validateDescriptorNameUnicity(type, name, descriptorNames);
+
+			Element emotion = (Element) descriptor.getParentNode();
+			Node parent = emotion.getParentNode();
+			boolean hasParent = parent != null && !(parent instanceof Document);
+			String descriptorSetURI = validateEmotionDescriptorSetPresence(type, emotion.getAttribute(type.getSet()), hasParent,
+																			hasParent ? ((Element) parent).getAttribute(type.getSet()) : "");
+			validateDescriptorNameReference(name, descriptorSetURI, type, context);
+		}
+		catch (EmotionMLException e)
+		{
+			context.report(e, descriptor, name);
+		}
 
-		String descriptorSetURI = validateEmotionDescriptorSetPresence((Element) descriptor.getParentNode(), type);
-		validateDescriptorNameReference(name, descriptorSetURI, type);
+		String confidence = descriptor.getAttribute("confidence");
+		try
+		{
+			validateConfidence(confidence);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, descriptor, confidence);
+		}
 
-		validateConfidence(descriptor);
-		validateScaleValues(descriptor, type);
+		String value = descriptor.getAttribute("value");
+		try
+		{
+			validateScaleValues(type, validateValue(value), validateTrace(descriptor, context));
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, descriptor, value);
+		}
 	}
 
 
@@ -593,7 +970,7 @@ public class EmotionMLValidator
 	 * @param descriptorNames the map of already validated descriptor names
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateDescriptorNameUnicity(VocabularyType type, String name, Map<VocabularyType, Set<String>> descriptorNames)
+	void validateDescriptorNameUnicity(VocabularyType type, String name, Map<VocabularyType, Set<String>> descriptorNames)
 			throws EmotionMLFormatException
 	{
 		if (!descriptorNames.containsKey(type))
@@ -610,9 +987,9 @@ public class EmotionMLValidator
 				errorType = 233;
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 243;
-			throw new EmotionMLFormatException(errorType + ": For any given " + type + " name in the set, zero or one occurrence" +
-												" is allowed within an <" + type + "> element, i.e. a " + type + " with name \"x\" MUST" +
-												" NOT appear twice in one <emotion> element (\"" + name + "\" appears at least twice)");
+			throw createFailure(errorType, "For any given ", type, " name in the set, zero or one occurrence" +
+												" is allowed within an <", type, "> element, i.e. a ", type, " with name \"x\" MUST" +
+												" NOT appear twice in one <emotion> element (\"", name, "\" appears at least twice)");
 		}
 		else descriptorNames.get(type).add(name);
 	}
@@ -625,44 +1002,61 @@ public class EmotionMLValidator
 	 * @param type
 	 * @throws EmotionMLException
 	 */
-	private void validateDescriptorNameReference(String name, String descriptorSetURI, VocabularyType type) throws EmotionMLException
+	private void validateDescriptorNameReference(String name, String descriptorSetURI, VocabularyType type, ValidationContext context) throws EmotionMLException
 	{
 		// there might be a misleading message here depending on where the descriptor set URI has been found
 		// since the descriptor set URI may also be found at the emotionml level
 		URI uri = validateEmotionDescriptorSetURI(descriptorSetURI, type);
-		Vocabulary vocabulary = validateEmotionVocabularyReference(uri, type);
+		Vocabulary vocabulary = validateEmotionVocabularyReference(uri, type, context);
 
-		if (vocabulary != null && !vocabulary.getItemNames().contains(name))
-		{
-			int errorType = -1;
-			if (type == VocabularyType.CATEGORY)
-				errorType = 212;
+		if (vocabulary != null)
+			validateDescriptorNameMembership(name, type, uri, vocabulary);
+	}
+
+
+	/**
+	 * Validates that the name of a descriptor is contained in the referred vocabulary.
+	 * @param name
+	 * @param type
+	 * @param uri the URI of the vocabulary
+	 * @param vocabulary the referred vocabulary
+	 * @throws EmotionMLFormatException
+	 */
+	void validateDescriptorNameMembership(String name, VocabularyType type, URI uri, Vocabulary vocabulary) throws EmotionMLFormatException
+	{
+		if (!vocabulary.getItemNames().contains(name))
+		{
+			int errorType = -1;
+			if (type == VocabularyType.CATEGORY)
+				errorType = 212;
 			else if (type == VocabularyType.DIMENSION)
 				errorType = 222;
 			else if (type == VocabularyType.APPRAISAL)
 				errorType = 232;
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 242;
-			throw new EmotionMLFormatException(errorType + ": The value of the \"name\" attribute of the <" + type + "> element MUST" +
+			throw createFailure(errorType, "The value of the \"name\" attribute of the <", type, "> element MUST" +
 												" be contained in the declared category vocabulary " +
-												"(the name is \"" + name + "\" but the declared names for \"" + uri + "\" are " + vocabulary.getItemNames() +
+												"(the name is \"", name, "\" but the declared names for \"", uri, "\" are ", vocabulary.getItemNames(),
 												")");
 		}
 	}
 
 
 	/**
-	 * Validates the presence inside the given emotion of a descriptor set for the given type. If it
-	 * is not found in the given emotion, this method tries to find it at the emotionml document
-	 * level if possible.
-	 * @param emotion
+	 * Validates the presence inside an emotion of a descriptor set for the given type. If it is not
+	 * found in the emotion, this method tries to find it at the emotionml document level if
+	 * possible.
 	 * @param type
+	 * @param descriptorSet the descriptor set of the emotion
+	 * @param hasParent true if the emotion has an &lt;emotionml&gt; parent
+	 * @param parentDescriptorSet the descriptor set of the parent
 	 * @return the found descriptor set URI
 	 * @throws EmotionMLFormatException
 	 */
-	private String validateEmotionDescriptorSetPresence(Element emotion, VocabularyType type) throws EmotionMLFormatException
+	String validateEmotionDescriptorSetPresence(VocabularyType type, String descriptorSet, boolean hasParent, String parentDescriptorSet)
+			throws EmotionMLFormatException
 	{
-		String descriptorSet = emotion.getAttribute(type.getSet());
 		if (descriptorSet.equals(""))
 		{
 			int errorType = -1;
@@ -675,21 +1069,14 @@ public class EmotionMLValidator
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 240;
 
-			String message = errorType + ": If the <" + type + "> element is used, a " + type.toString().replaceAll("-", " ") +
-								" vocabulary MUST be declared using a \"" + type.getSet() + "\" attribute on either " +
-								"the enclosing <emotion> element or the root element <emotionml>";
-
 			// retrieve from document level
-			Node parent = emotion.getParentNode();
-			if (parent == null || parent instanceof Document)
-				throw new EmotionMLFormatException(message + " (the <emotion> has none and has no <emotionml> parent)");
-			else
-			{
-				Element root = (Element) parent;
-				descriptorSet = root.getAttribute(type.getSet());
-				if (descriptorSet.equals(""))
-					throw new EmotionMLFormatException(message + " (the <emotion> has none nor its <emotionml> parent)");
-			}
+			if (hasParent)
+				descriptorSet = parentDescriptorSet;
+			if (descriptorSet.equals(""))
+				throw createFailure(errorType, "If the <", type, "> element is used, a ", type.toString().replaceAll("-", " "),
+													" vocabulary MUST be declared using a \"", type.getSet(), "\" attribute on either " +
+													"the enclosing <emotion> element or the root element <emotionml>",
+													hasParent ? " (the <emotion> has none nor its <emotionml> parent)" : " (the <emotion> has none and has no <emotionml> parent)");
 		}
 
 		return descriptorSet;
@@ -697,16 +1084,14 @@ public class EmotionMLValidator
 
 
 	/**
-	 * Validates the existence of a name attribute inside the given descriptor.
-	 * @param descriptor
+	 * Validates the existence of the name attribute of a descriptor.
+	 * @param name
 	 * @param type
 	 * @return the name
 	 * @throws EmotionMLFormatException
 	 */
-	private String validateEmotionDescriptorName(Element descriptor, VocabularyType type) throws EmotionMLFormatException
+	String validateEmotionDescriptorName(String name, VocabularyType type) throws EmotionMLFormatException
 	{
-		String name = descriptor.getAttribute("name");
-
 		if (name.equals(""))
 		{
 			int errorType = -1;
@@ -718,27 +1103,25 @@ public class EmotionMLValidator
 				errorType = 231;
 			else if (type == VocabularyType.ACTION_TENDENCY)
 				errorType = 241;
-			throw new EmotionMLFormatException(errorType + ": A <" + type + "> element MUST contain a \"name\" attribute");
+			throw createFailure(errorType, "A <", type, "> element MUST contain a \"name\" attribute");
 		}
 		else return name;
 	}
 
 
 	/**
-	 * Validates the scale values of given descriptor (value or trace).
-	 * @param descriptor
+	 * Validates the scale values of a descriptor (value or trace).
 	 * @param type
+	 * @param hasValue true if the descriptor has a valid value
+	 * @param hasTrace true if the descriptor has a valid trace
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateScaleValues(Element descriptor, VocabularyType type) throws EmotionMLFormatException
+	void validateScaleValues(VocabularyType type, boolean hasValue, boolean hasTrace) throws EmotionMLFormatException
 	{
-		boolean hasValue = validateValue(descriptor);
-		boolean hasTrace = validateTrace(descriptor);
-
 		if (type == VocabularyType.DIMENSION)
 		{
 			if (hasValue == hasTrace)
-				throw new EmotionMLFormatException("224: A <dimension> MUST contain either a \"value\" attribute or a <trace> element");
+				throw createFailure(224, "A <dimension> MUST contain either a \"value\" attribute or a <trace> element");
 		}
 		else
 		{
@@ -751,7 +1134,7 @@ public class EmotionMLValidator
 					errorType = 236;
 				else if (type == VocabularyType.ACTION_TENDENCY)
 					errorType = 246;
-				throw new EmotionMLFormatException(errorType + ": A <" + type + "> MUST not contain both a \"value\" attribute " +
+				throw createFailure(errorType, "A <", type, "> MUST not contain both a \"value\" attribute " +
 													"and a <trace> element");
 			}
 		}
@@ -761,13 +1144,12 @@ public class EmotionMLValidator
 /////// Meta-information
 
 	/**
-	 * Validates the confidence value of the given descriptor if it exists.
-	 * @param descriptor
+	 * Validates the confidence value of a descriptor if it exists.
+	 * @param confidenceStr
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateConfidence(Element descriptor) throws EmotionMLFormatException
+	void validateConfidence(String confidenceStr) throws EmotionMLFormatException
 	{
-		String confidenceStr = descriptor.getAttribute("confidence");
 		if (!confidenceStr.equals(""))
 			try
 			{
@@ -777,27 +1159,26 @@ public class EmotionMLValidator
 			}
 			catch (NumberFormatException e)
 			{
-				throw new EmotionMLFormatException("300: The value of the \"confidence\" attribute MUST be a floating point " +
-													"number in the closed interval [0, 1] (it is \"" + confidenceStr + "\")");
+				throw createFailure(300, "The value of the \"confidence\" attribute MUST be a floating point " +
+													"number in the closed interval [0, 1] (it is \"", confidenceStr, "\")");
 			}
 	}
 
 
 	/**
-	 * Validates the expressed-through attribute of the given emotion element if it exists.
-	 * @param emotion
+	 * Validates the expressed-through attribute of an emotion element if it exists.
+	 * @param expressedThroughStr
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateEmotionExpressThrough(Element emotion) throws EmotionMLFormatException
+	void validateEmotionExpressThrough(String expressedThroughStr) throws EmotionMLFormatException
 	{
 		// there might be a problem here, what happens if expressed-through is present but the empty list ?
-		String expressedThroughStr = emotion.getAttribute("expressed-through");
 		if (!expressedThroughStr.equals(""))
 		{
 			String[] parts = expressedThroughStr.split(" ");
 			if (parts.length == 0)
-				throw new EmotionMLFormatException("301: The attribute \"expressed-through\" of the <emotion> element, if present," +
-													" MUST be of type xsd:nmtokens (it is \"" + expressedThroughStr + "\")");
+				throw createFailure(301, "The attribute \"expressed-through\" of the <emotion> element, if present," +
+													" MUST be of type xsd:nmtokens (it is \"", expressedThroughStr, "\")");
 			else for(String part : parts)
 				if (part.indexOf(",") != -1)
 					new EmotionMLFormatException("301: The attribute \"expressed-through\" of the <emotion> element, if present," +
@@ -811,10 +1192,26 @@ public class EmotionMLValidator
 	 * @param info
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateInfo(Element info) throws EmotionMLFormatException
+	private void validateInfo(Element info, ValidationContext context) throws EmotionMLFormatException
 	{
-		validateInfoExternalNamespace(info);
-		validateInfoId(info);
+		try
+		{
+			validateInfoExternalNamespace(info);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, info, null);
+		}
+
+		String id = info.getAttribute("id");
+		try
+		{
+			validateInfoId(id, context.getIdentifiers());
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, info, id);
+		}
 	}
 
 
@@ -823,36 +1220,39 @@ public class EmotionMLValidator
 	 * @param info
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateInfoExternalNamespace(Element info) throws EmotionMLFormatException
+	void validateInfoExternalNamespace(Element info) throws EmotionMLFormatException
 	{
-		NodeList nodes = info.getElementsByTagName("*");
-		for(int i = 0; i < nodes.getLength(); i++)
+		for(Node node = info.getFirstChild(); node != null; node = node.getNextSibling())
 		{
-			String namespace = nodes.item(i).getNamespaceURI();
+			if (!(node instanceof Element))
+				continue;
+
+			String namespace = node.getNamespaceURI();
 			if (namespace != null && namespace.equals("http://www.w3.org/2009/10/emotionml"))
-				throw new EmotionMLFormatException("304: The <info> element MUST NOT contain any elements in the EmotionML " +
-													"namespace, \"http://www.w3.org/2009/10/emotionml\" (it contains \"" + nodes.item(i) + "\")");
+				throw createFailure(304, "The <info> element MUST NOT contain any elements in the EmotionML " +
+													"namespace, \"http://www.w3.org/2009/10/emotionml\" (it contains \"", node, "\")");
+			validateInfoExternalNamespace((Element) node);
 		}
 	}
 
 
 	/**
-	 * Validates the id of the given info element.
-	 * @param info
+	 * Validates the id of an info element.
+	 * @param id
+	 * @param identifiers the identifiers already found
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateInfoId(Element info) throws EmotionMLFormatException
+	void validateInfoId(String id, Set<String> identifiers) throws EmotionMLFormatException
 	{
-		String id = info.getAttribute("id");
 		if (!id.equals(""))
 		{
 			if (id.indexOf(":") != -1) // TODO: a proper definition of xsd:ID
-				throw new EmotionMLFormatException("306: The \"id\" attribute of the <info> element, if present, MUST be of type " +
-													"xsd:ID (it is \"" + id + "\")");
+				throw createFailure(306, "The \"id\" attribute of the <info> element, if present, MUST be of type " +
+													"xsd:ID (it is \"", id, "\")");
 
 			if (identifiers.contains(id))
-				throw new EmotionMLFormatException("306: The \"id\" attribute of the <info> element, if present, MUST be of type " +
-													"xsd:ID (it is \"" + id + "\" and there already exists an element with that identifier)");
+				throw createFailure(306, "The \"id\" attribute of the <info> element, if present, MUST be of type " +
+													"xsd:ID (it is \"", id, "\" and there already exists an element with that identifier)");
 			else identifiers.add(id);
 		}
 	}
@@ -867,53 +1267,50 @@ public class EmotionMLValidator
 	 */
 	private void validateReference(Element reference) throws EmotionMLFormatException
 	{
-		validateReferenceURI(reference);
-		validateReferenceRole(reference);
-		validateReferenceMediaType(reference);
+		validateReferenceURI(reference.getAttribute("uri"));
+		validateReferenceRole(reference.getAttribute("role"));
+		validateReferenceMediaType(reference.getAttribute("media-type"));
 	}
 
 
 	// 410, 411
-	private void validateReferenceURI(Element reference) throws EmotionMLFormatException
+	void validateReferenceURI(String uri) throws EmotionMLFormatException
 	{
-		String uri = reference.getAttribute("uri");
 		if (uri.equals(""))
-			throw new EmotionMLFormatException("410: The <reference> element MUST contain a \"uri\" attribute");
+			throw createFailure(410, "The <reference> element MUST contain a \"uri\" attribute");
 		try
 		{
 			new URI(uri);
 		}
 		catch (URISyntaxException e)
 		{
-			throw new EmotionMLFormatException("411: The \"uri\" attribute of <reference> MUST be of type xsd:anyURI (it is \"" + uri + "\")");
+			throw createFailure(411, "The \"uri\" attribute of <reference> MUST be of type xsd:anyURI (it is \"", uri, "\")");
 		}
 	}
 
 
 	// 414
-	private void validateReferenceRole(Element reference) throws EmotionMLFormatException
+	void validateReferenceRole(String roleStr) throws EmotionMLFormatException
 	{
-		String roleStr = reference.getAttribute("role");
 		if (!roleStr.equals(""))
 		{
 			Role role = Reference.Role.parse(roleStr);
 			if (role == null)
-				throw new EmotionMLFormatException("414: The value of the \"role\" attribute of the <reference> element, if present," +
+				throw createFailure(414, "The value of the \"role\" attribute of the <reference> element, if present," +
 													" MUST be one of \"expressedBy\", \"experiencedBy\", \"triggeredBy\", \"targetedAt\"" +
-													" (it is \"" + roleStr + "\")");
+													" (it is \"", roleStr, "\")");
 		}
 	}
 
 
 	// 416, 417
-	private void validateReferenceMediaType(Element reference) throws EmotionMLFormatException
+	void validateReferenceMediaType(String mediaType) throws EmotionMLFormatException
 	{
-		String mediaType = reference.getAttribute("media-type");
 		if (!mediaType.equals(""))
 		{
 			if (!mediaTypes.contains(mediaType))
-				throw new EmotionMLFormatException("417: The value of the \"media-type\" attribute of the <reference> element, if " +
-													"present, MUST be a valid MIME type (it is \"" + mediaType + "\", check " +
+				throw createFailure(417, "The value of the \"media-type\" attribute of the <reference> element, if " +
+													"present, MUST be a valid MIME type (it is \"", mediaType, "\", check " +
 													"http://www.iana.org/assignments/media-types)");
 		}
 	}
@@ -922,38 +1319,38 @@ public class EmotionMLValidator
 	// 420 - 425
 	private void validateEmotionTiming(Element emotion) throws EmotionMLFormatException
 	{
-		validateNonNegativeInteger(emotion, "start", 420);
-		validateNonNegativeInteger(emotion, "end", 421);
-		validateNonNegativeInteger(emotion, "duration", 422);
-		validateEndGreaterThanStart(emotion);
-		validateEmotionTimeRefURI(emotion);
-		validateEmotionTimeRefAnchorPoint(emotion);
-		validateEmotionOffsetToStart(emotion);
+		String startStr = emotion.getAttribute("start");
+		String endStr = emotion.getAttribute("end");
+		validateNonNegativeInteger(startStr, "start", 420);
+		validateNonNegativeInteger(endStr, "end", 421);
+		validateNonNegativeInteger(emotion.getAttribute("duration"), "duration", 422);
+		validateEndGreaterThanStart(startStr, endStr);
+		validateEmotionTimeRefURI(emotion.getAttribute("time-ref-uri"));
+		validateEmotionTimeRefAnchorPoint(emotion.getAttribute("time-ref-anchor-point"));
+		validateEmotionOffsetToStart(emotion.getAttribute("offset-to-start"));
 	}
 
 
 	/**
 	 * Checks if the end value is greater or equal than the start value. As of this writing, it has
 	 * no implementation assertion associated.
-	 * @param emotion
+	 * @param startStr
+	 * @param endStr
 	 */
-	private void validateEndGreaterThanStart(Element emotion) throws EmotionMLFormatException
+	void validateEndGreaterThanStart(String startStr, String endStr) throws EmotionMLFormatException
 	{
-		String startStr = emotion.getAttribute("start");
-		String endStr = emotion.getAttribute("end");
 		if (!startStr.equals("") && !endStr.equals(""))
 		{
-			if (new BigInteger(startStr).compareTo(new BigInteger(endStr)) == 1)
-				throw new EmotionMLFormatException("-1: The value of the \"end\" attribute of <emotion>, if present," +
-													" MUST be greater than or equal to the \"start\" attribute (start=" + startStr + " end=" + endStr + ")");
+			if (IntegerCodec.compare(startStr, endStr) > 0)
+				throw createFailure(-1, "The value of the \"end\" attribute of <emotion>, if present," +
+													" MUST be greater than or equal to the \"start\" attribute (start=", startStr, " end=", endStr, ")");
 		}
 	}
 
 
 	// 423
-	private void validateEmotionTimeRefURI(Element emotion) throws EmotionMLFormatException
+	void validateEmotionTimeRefURI(String uri) throws EmotionMLFormatException
 	{
-		String uri = emotion.getAttribute("time-ref-uri");
 		if (!uri.equals(""))
 		{
 			try
@@ -962,28 +1359,26 @@ public class EmotionMLValidator
 			}
 			catch (URISyntaxException e)
 			{
-				throw new EmotionMLFormatException("423: The value of the \"time-ref-uri\" attribute of <emotion>, if present," +
-													" MUST be of type xsd:anyURI (it is \"" + uri + "\")");
+				throw createFailure(423, "The value of the \"time-ref-uri\" attribute of <emotion>, if present," +
+													" MUST be of type xsd:anyURI (it is \"", uri, "\")");
 			}
 		}
 	}
 
 
 	// 424
-	private void validateEmotionTimeRefAnchorPoint(Element emotion) throws EmotionMLFormatException
+	void validateEmotionTimeRefAnchorPoint(String timeRefAnchorPoint) throws EmotionMLFormatException
 	{
-		String timeRefAnchorPoint = emotion.getAttribute("time-ref-anchor-point");
 		if (!timeRefAnchorPoint.equals(""))
 			if (Timestamp.TimeRefAnchorPoint.parse(timeRefAnchorPoint) == null)
-				throw new EmotionMLFormatException("424: The value of the \"time-ref-anchor-point\" attribute of <emotion>, if present," +
-													" MUST be either \"start\" or \"end\" (it is \"" + timeRefAnchorPoint + "\")");
+				throw createFailure(424, "The value of the \"time-ref-anchor-point\" attribute of <emotion>, if present," +
+													" MUST be either \"start\" or \"end\" (it is \"", timeRefAnchorPoint, "\")");
 	}
 
 
 	// 425
-	private void validateEmotionOffsetToStart(Element emotion) throws EmotionMLFormatException
+	void validateEmotionOffsetToStart(String offsetToStart) throws EmotionMLFormatException
 	{
-		String offsetToStart = emotion.getAttribute("offset-to-start");
 		if (!offsetToStart.equals(""))
 		{
 			try
@@ -992,34 +1387,32 @@ public class EmotionMLValidator
 			}
 			catch (NumberFormatException e)
 			{
-				throw new EmotionMLFormatException("425: The value of the \"offset-to-start\" attribute of <emotion>, if present," +
-													" MUST be of type xsd:integer (it is \"" + offsetToStart + "\")");
+				throw createFailure(425, "The value of the \"offset-to-start\" attribute of <emotion>, if present," +
+													" MUST be of type xsd:integer (it is \"", offsetToStart, "\")");
 			}
 		}
 	}
 
 
 	/**
-	 * Validates that the attribute of the given Element with given name is a non-negative integer.
-	 * @param emotion
+	 * Validates that the value of the emotion attribute with given name is a non-negative integer.
+	 * @param valueStr
 	 * @param name
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateNonNegativeInteger(Element emotion, String name, int errorType) throws EmotionMLFormatException
+	void validateNonNegativeInteger(String valueStr, String name, int errorType) throws EmotionMLFormatException
 	{
-		String valueStr = emotion.getAttribute(name);
 		if (!valueStr.equals(""))
 		{
 			try
 			{
-				int value = new BigInteger(valueStr).signum();
-				if (value < 0)
+				if (IntegerCodec.signum(valueStr) < 0)
 					throw new NumberFormatException();
 			}
 			catch (NumberFormatException e)
 			{
-				throw new EmotionMLFormatException(errorType + ": The value of the \"" + name + "\" attribute of <emotion>, if present," +
-													" MUST be of type xsd:nonNegativeInteger (it is \"" + valueStr + "\")");
+				throw createFailure(errorType, "The value of the \"", name, "\" attribute of <emotion>, if present," +
+													" MUST be of type xsd:nonNegativeInteger (it is \"", valueStr, "\")");
 			}
 		}
 	}
@@ -1028,14 +1421,13 @@ public class EmotionMLValidator
 /////// Scale values
 
 	/**
-	 * Validates the value attribute of the given descriptor element if it exists.
-	 * @param descriptor
+	 * Validates the value attribute of a descriptor element if it exists.
+	 * @param valueStr
 	 * @return true if it exists and is valid, false otherwise
 	 * @throws EmotionMLFormatException
 	 */
-	private boolean validateValue(Element descriptor) throws EmotionMLFormatException
+	boolean validateValue(String valueStr) throws EmotionMLFormatException
 	{
-		String valueStr = descriptor.getAttribute("value");
 		if (valueStr.equals(""))
 			return false;
 		else try
@@ -1047,8 +1439,8 @@ public class EmotionMLValidator
 		}
 		catch (NumberFormatException e)
 		{
-			throw new EmotionMLFormatException("500: The value of a \"value\" attribute, if present, MUST be a floating point" +
-												" value from the closed interval [0, 1] (it is \"" + valueStr + "\")");
+			throw createFailure(500, "The value of a \"value\" attribute, if present, MUST be a floating point" +
+												" value from the closed interval [0, 1] (it is \"", valueStr, "\")");
 		}
 	}
 
@@ -1056,23 +1448,25 @@ public class EmotionMLValidator
 	/**
 	 * Validates the trace of given descriptor if it exists.
 	 * @param descriptor an element that might contain a trace child
+	 * @param context
 	 * @return true if there exists a trace and it is valid, false otherwise
 	 * @throws EmotionMLFormatException
 	 */
-	private boolean validateTrace(Element descriptor) throws EmotionMLFormatException
+	private boolean validateTrace(Element descriptor, ValidationContext context) throws EmotionMLFormatException
 	{
-		NodeList children = descriptor.getChildNodes();
-		for(int i = 0; i < children.getLength(); i++)
+		for(Node child = descriptor.getFirstChild(); child != null; child = child.getNextSibling())
 		{
-			Node child = children.item(i);
 			if (!(child instanceof Element))
 				continue;
 
 			if (child.getLocalName().equals("trace"))
 			{
 				Element trace = (Element) child;
-				validateTraceFreq(trace);
-				validateTraceSamples(trace);
+				validateTraceFreq(trace.getAttribute("freq"));
+				String samples = trace.getAttribute("samples");
+				TraceCodec codec = context.getTraceCodec();
+				codec.parse(samples);
+				validateTraceSamples(samples, codec);
 				return true;
 			}
 		}
@@ -1081,63 +1475,48 @@ public class EmotionMLValidator
 
 
 	/**
-	 * Validates the frequency attribute of the given trace element.
-	 * @param trace
+	 * Validates the frequency attribute of a trace element.
+	 * @param freqStr
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateTraceFreq(Element trace) throws EmotionMLFormatException
+	void validateTraceFreq(String freqStr) throws EmotionMLFormatException
 	{
-		String freqStr = trace.getAttribute("freq");
 		if (freqStr.equals(""))
-			throw new EmotionMLFormatException("501: The <trace> element MUST have a \"freq\" attribute");
-
-		String message = "502: The value of the \"freq\" attribute of <trace> MUST be a positive floating point number " +
-							"followed by optional whitespace followed by \"Hz\" (it is \"" + freqStr + "\")";
-
-		if (!freqStr.endsWith("Hz"))
-			throw new EmotionMLFormatException(message);
-
-		String floatStr = freqStr.substring(0, freqStr.indexOf("Hz"));
+			throw createFailure(501, "The <trace> element MUST have a \"freq\" attribute");
 
-		try
-		{
-			float floatValue = Float.parseFloat(floatStr);
-			if (floatValue < 0)
-				throw new NumberFormatException();
-		}
-		catch (NumberFormatException e)
+		boolean valid = freqStr.endsWith("Hz");
+		if (valid)
 		{
-			throw new EmotionMLFormatException(message);
+			try
+			{
+				valid = Float.parseFloat(freqStr.substring(0, freqStr.indexOf("Hz"))) >= 0;
+			}
+			catch (NumberFormatException e)
+			{
+				valid = false;
+			}
 		}
+
+		if (!valid)
+			throw createFailure(502, "The value of the \"freq\" attribute of <trace> MUST be a positive floating point number " +
+												"followed by optional whitespace followed by \"Hz\" (it is \"", freqStr, "\")");
 	}
 
 
 	/**
-	 * Validates the samples of the given trace element.
-	 * @param trace
+	 * Validates the samples of a trace element.
+	 * @param samplesStr
+	 * @param codec the TraceCodec which has parsed the samples
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateTraceSamples(Element trace) throws EmotionMLFormatException
+	void validateTraceSamples(String samplesStr, TraceCodec codec) throws EmotionMLFormatException
 	{
-		String samplesStr = trace.getAttribute("samples");
 		if (samplesStr.equals(""))
-			throw new EmotionMLFormatException("503: The <trace> element MUST have a \"samples\" attribute");
-		String[] parts = samplesStr.split(" ");
-		for(String part : parts)
-		{
-			try
-			{
-				float floatValue = Float.parseFloat(part);
-				if (floatValue < 0 || floatValue > 1)
-					throw new NumberFormatException();
-			}
-			catch (NumberFormatException e)
-			{
-				throw new EmotionMLFormatException("504: The value of the \"samples\" attribute of <trace> MUST be " +
-													"a space-separated list of floating point values from the closed interval" +
-													" [0, 1] (it contains value \"" + part + "\")");
-			}
-		}
+			throw createFailure(503, "The <trace> element MUST have a \"samples\" attribute");
+		if (!codec.isValid())
+			throw createFailure(504, "The value of the \"samples\" attribute of <trace> MUST be " +
+												"a space-separated list of floating point values from the closed interval" +
+												" [0, 1] (it contains value \"", codec.getInvalidSample(), "\")");
 	}
 
 
@@ -1148,48 +1527,65 @@ public class EmotionMLValidator
 	 * @param vocabulary
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateVocabulary(Element vocabulary) throws EmotionMLFormatException
+	private void validateVocabulary(Element vocabulary, ValidationContext context) throws EmotionMLFormatException
 	{
-		validateVocabularyChildren(vocabulary);
-		validateVocabularyType(vocabulary);
-		validateVocabularyId(vocabulary);
+		validateVocabularyChildren(vocabulary, context);
+
+		String type = vocabulary.getAttribute("type");
+		try
+		{
+			validateVocabularyType(type);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, vocabulary, type);
+		}
+
+		String id = vocabulary.getAttribute("id");
+		try
+		{
+			validateVocabularyId(id, context.getIdentifiers());
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, vocabulary, id);
+		}
 	}
 
 
 	/**
-	 * @param vocabulary
+	 * @param typeStr
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateVocabularyType(Element vocabulary) throws EmotionMLFormatException
+	void validateVocabularyType(String typeStr) throws EmotionMLFormatException
 	{
-		String typeStr = vocabulary.getAttribute("type");
 		if (typeStr.equals(""))
-			throw new EmotionMLFormatException("602: A <vocabulary> element MUST contain a \"type\" attribute");
+			throw createFailure(602, "A <vocabulary> element MUST contain a \"type\" attribute");
 
 		if (VocabularyType.parse(typeStr) == null)
-			throw new EmotionMLFormatException("603: The value of the \"type\" attribute of the <vocabulary>" +
+			throw createFailure(603, "The value of the \"type\" attribute of the <vocabulary>" +
 												" element MUST be one of \"category\", \"dimension\", \"action-tendency\"" +
-												" or \"appraisal\" (it is \"" + typeStr + "\")");
+												" or \"appraisal\" (it is \"", typeStr, "\")");
 	}
 
 
 	/**
-	 * @param vocabulary
+	 * @param id
+	 * @param identifiers the identifiers already found
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateVocabularyId(Element vocabulary) throws EmotionMLFormatException
+	void validateVocabularyId(String id, Set<String> identifiers) throws EmotionMLFormatException
 	{
-		String id = vocabulary.getAttribute("id");
 		if (id.equals(""))
-			throw new EmotionMLFormatException("604: A <vocabulary> element MUST contain an \"id\" attribute");
+			throw createFailure(604, "A <vocabulary> element MUST contain an \"id\" attribute");
 
 		if (id.indexOf(":") != -1) // should fine a proper definition of xsd:ID, unicity ?
-			throw new EmotionMLFormatException("605: The value of the \"id\" attribute of the <vocabulary> " +
-												"element MUST be of type xsd:ID (it is \"" + id + "\")");
+			throw createFailure(605, "The value of the \"id\" attribute of the <vocabulary> " +
+												"element MUST be of type xsd:ID (it is \"", id, "\")");
 
 		if (identifiers.contains(id))
-			throw new EmotionMLFormatException("605: The value of the \"id\" attribute of the <vocabulary> " +
-												"element MUST be of type xsd:ID (it is \"" + id +
+			throw createFailure(605, "The value of the \"id\" attribute of the <vocabulary> " +
+												"element MUST be of type xsd:ID (it is \"", id,
 												"\" and there already exists an element with that identifier)");
 		else identifiers.add(id);
 	}
@@ -1199,7 +1595,7 @@ public class EmotionMLValidator
 	 * @param vocabulary
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateVocabularyChildren(Element vocabulary) throws EmotionMLFormatException
+	private void validateVocabularyChildren(Element vocabulary, ValidationContext context) throws EmotionMLFormatException
 	{
 		boolean infoFound = false;
 		Set<String> itemNames = new HashSet<String>();
@@ -1213,38 +1609,72 @@ public class EmotionMLValidator
 
 			String name = child.getLocalName();
 			if (name.equals("item"))
-				validateVocabularyItem((Element) child, itemNames);
+				validateVocabularyItem((Element) child, itemNames, context);
 			else if (name.equals("info"))
 			{
-				if (infoFound)
-					throw new EmotionMLFormatException("601: A <vocabulary> element MAY contain a single <info> element (it contains at least two)");
-
+				try
+				{
+					validateVocabularyInfoUnicity(infoFound);
+				}
+				catch (EmotionMLFormatException e)
+				{
+					context.report(e, child, null);
+				}
 				infoFound = true;
-				validateInfo((Element) child);
+				validateInfo((Element) child, context);
 			}
 		}
 
-		if (itemNames.isEmpty())
-			throw new EmotionMLFormatException("600: A <vocabulary> element MUST contain one or more <item> elements");
+		try
+		{
+			validateVocabularyItemPresence(itemNames);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, vocabulary, null);
+		}
 	}
 
 
 	/**
-	 * @param child
+	 * Validates that a vocabulary element contains at most one info element.
+	 * @param infoFound true if an info element has already been found
+	 * @throws EmotionMLFormatException
 	 */
-	private void validateVocabularyItem(Element item, Set<String> itemNames) throws EmotionMLFormatException
+	void validateVocabularyInfoUnicity(boolean infoFound) throws EmotionMLFormatException
 	{
-		String name = item.getAttribute("name");
-		if (name.equals(""))
-			throw new EmotionMLFormatException("607: An <item> element MUST contain a \"name\" attribute");
+		if (infoFound)
+			throw createFailure(601, "A <vocabulary> element MAY contain a single <info> element (it contains at least two)");
+	}
 
-		if (itemNames.contains(name))
-			throw new EmotionMLFormatException("608: An <item> MUST NOT have the same name as any other " +
-												"<item> within the same <vocabulary> (it already contains \"" + name + "\")");
 
-		// add restriction xsd:NMTOKEN ?
+	/**
+	 * Validates that a vocabulary element contains at least one item.
+	 * @param itemNames the names of the valid items of the vocabulary
+	 * @throws EmotionMLFormatException
+	 */
+	void validateVocabularyItemPresence(Set<String> itemNames) throws EmotionMLFormatException
+	{
+		if (itemNames.isEmpty())
+			throw createFailure(600, "A <vocabulary> element MUST contain one or more <item> elements");
+	}
 
-		itemNames.add(name);
+
+	/**
+	 * @param item
+	 * @param itemNames the names of the items already found in the vocabulary
+	 */
+	private void validateVocabularyItem(Element item, Set<String> itemNames, ValidationContext context) throws EmotionMLFormatException
+	{
+		String name = item.getAttribute("name");
+		try
+		{
+			validateVocabularyItemName(name, itemNames);
+		}
+		catch (EmotionMLFormatException e)
+		{
+			context.report(e, item, name);
+		}
 
 		NodeList children = item.getChildNodes();
 		for(int i = 0; i < children.getLength(); i++)
@@ -1255,11 +1685,30 @@ public class EmotionMLValidator
 				continue;
 
 			if (child.getLocalName().equals("info"))
-				validateInfo((Element) child); // 606
+				validateInfo((Element) child, context); // 606
 		}
 	}
 
 
+	/**
+	 * @param name
+	 * @param itemNames the names of the items already found in the vocabulary
+	 */
+	void validateVocabularyItemName(String name, Set<String> itemNames) throws EmotionMLFormatException
+	{
+		if (name.equals(""))
+			throw createFailure(607, "An <item> element MUST contain a \"name\" attribute");
+
+		if (itemNames.contains(name))
+			throw createFailure(608, "An <item> MUST NOT have the same name as any other " +
+												"<item> within the same <vocabulary> (it already contains \"", name, "\")");
+
+		// add restriction xsd:NMTOKEN ?
+
+		itemNames.add(name);
+	}
+
+
 /////// Conformance
 
 	/**
@@ -1267,7 +1716,7 @@ public class EmotionMLValidator
 	 * @param element
 	 * @throws EmotionMLFormatException
 	 */
-	private void validateEmotionMLNamespaceConformance(Element element) throws EmotionMLFormatException
+	private void validateEmotionMLNamespaceConformance(Element element, ValidationContext context) throws EmotionMLFormatException
 	{
 		NodeList children = element.getChildNodes();
 		for(int i = 0; i < children.getLength(); i++)
@@ -1277,24 +1726,53 @@ public class EmotionMLValidator
 			{
 				Element e = (Element) child;
 				String name = e.getLocalName();
-				if (elements.contains(name))
+				if (isEmotionMLElement(name))
 				{
-					String namespace = e.getNamespaceURI();
-					if (namespace == null)
-						throw new EmotionMLFormatException("700: All EmotionML elements MUST use the EmotionML namespace, " +
-															"\"http://www.w3.org/2009/10/emotionml\" (an element with name \"" +
-															name + "\" was found in an unspecified namespace)");
-					else if (!namespace.equals(EmotionMLDocument.NAMESPACE))
-						throw new EmotionMLFormatException("700: All EmotionML elements MUST use the EmotionML namespace, " +
-															"\"http://www.w3.org/2009/10/emotionml\" (an element with name \"" +
-															name + "\" was found in namespace \"" + namespace + "\")");
-					else validateEmotionMLNamespaceConformance(e);
+					try
+					{
+						validateNamespaceConformance(name, e.getNamespaceURI());
+					}
+					catch (EmotionMLFormatException failure)
+					{
+						context.report(failure, e, e.getNamespaceURI());
+					}
+					validateEmotionMLNamespaceConformance(e, context);
 				}
 			}
 		}
 	}
 
 
+	/**
+	 * Tests whether the given name is the name of an EmotionML element.
+	 * @param name
+	 * @return true if the name is the name of an EmotionML element
+	 */
+	static boolean isEmotionMLElement(String name)
+	{
+		return elements.contains(name);
+	}
+
+
+	/**
+	 * Validates the namespace of an EmotionML element.
+	 * @param name the name of the element
+	 * @param namespace the namespace of the element, may be null
+	 * @throws EmotionMLFormatException
+	 */
+	void validateNamespaceConformance(String name, String namespace) throws EmotionMLFormatException
+	{
+		if (namespace == null)
+			throw createFailure(700, "All EmotionML elements MUST use the EmotionML namespace, " +
+												"\"http://www.w3.org/2009/10/emotionml\" (an element with name \"",
+												name, "\" was found in an unspecified namespace)");
+		else if (!namespace.equals(EmotionMLDocument.NAMESPACE))
+			throw createFailure(700, "All EmotionML elements MUST use the EmotionML namespace, " +
+												"\"http://www.w3.org/2009/10/emotionml\" (an element with name \"",
+												name, "\" was found in namespace \"", namespace, "\")");
+	}
+
+
 /////// Other
 
 	/**
@@ -1321,30 +1799,363 @@ public class EmotionMLValidator
 
 
 	/**
-	 * Reads the media types file.
+	 * Sets the ProcessingListener which receives the measures of the validations and of the
+	 * vocabulary resolutions.
+	 * @param listener a ProcessingListener, NullProcessingListener.INSTANCE to measure nothing
+	 * @return this EmotionMLValidator to easily chain methods
+	 */
+	public EmotionMLValidator setListener(ProcessingListener listener)
+	{
+		this.listener = listener;
+		return this;
+	}
+
+
+	/**
+	 * Returns the ProcessingListener of this EmotionMLValidator.
+	 * @return a ProcessingListener, a NullProcessingListener by default
+	 */
+	public ProcessingListener getListener()
+	{
+		return listener;
+	}
+
+
+	/**
+	 * Sets the ForkJoinPool in which the assertions of the emotions of a document are validated in
+	 * parallel. The emotions are only split across the pool when the document contains at least a
+	 * few hundred of them, smaller documents are validated sequentially. The first failure in the
+	 * order of the document is reported, as with a sequential validation.
+	 * @param pool a ForkJoinPool, or null to always validate sequentially
+	 * @return this EmotionMLValidator to easily chain methods
+	 */
+	public EmotionMLValidator setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+		return this;
+	}
+
+
+	/**
+	 * Returns the ForkJoinPool in which the emotions are validated in parallel.
+	 * @return null by default, the emotions are then validated sequentially
+	 */
+	public ForkJoinPool getPool()
+	{
+		return pool;
+	}
+
+
+	/**
+	 * Sets the maximum number of failures gathered by a validation. By default, a validation stops at
+	 * the first failure. With a greater maximum, the validation of a DOM element goes on after the
+	 * failures and the ValidationResult of the thrown EmotionMLValidationException lists their
+	 * Diagnostics, up to the maximum for the schema and up to the maximum for the assertions. The
+	 * checks depending on a failed one are skipped, for instance the membership of a descriptor whose
+	 * name is missing. The error messages are the ones of the first failures, and the emotions are
+	 * then validated sequentially. The single-pass validations cannot go on after a failure: the
+	 * fused and direct JSON imports and the exports without DOM Elements then validate a DOM Element
+	 * instead, while the StAX imports, the EmotionIterators and the EmotionWriters reject such a
+	 * validator with an IllegalStateException.
+	 * @param maxDiagnostics a number of failures, 1 to stop at the first failure
+	 * @return this EmotionMLValidator to easily chain methods
+	 */
+	public EmotionMLValidator setMaxDiagnostics(int maxDiagnostics)
+	{
+		if (maxDiagnostics < 1)
+			throw new IllegalArgumentException("the maximum number of diagnostics must be at least 1: " + maxDiagnostics);
+		this.maxDiagnostics = maxDiagnostics;
+		return this;
+	}
+
+
+	/**
+	 * Returns the maximum number of failures gathered by a validation.
+	 * @return 1 by default, the validation stops at the first failure
+	 */
+	public int getMaxDiagnostics()
+	{
+		return maxDiagnostics;
+	}
+
+
+	/**
+	 * Sets whether this EmotionMLValidator rejects the invalid elements at the lowest cost, for
+	 * instance when filtering a stream where rejections are frequent. The thrown
+	 * EmotionMLValidationException, and the EmotionMLFormatException of each failed assertion, then
+	 * record no stack trace and build their message only when it is asked for. The ValidationResult
+	 * is the same.
+	 * @param fastFail true to throw stackless EmotionMLValidationExceptions
+	 * @return this EmotionMLValidator to easily chain methods
+	 */
+	public EmotionMLValidator setFastFail(boolean fastFail)
+	{
+		this.fastFail = fastFail;
+		return this;
+	}
+
+
+	/**
+	 * Tests whether this EmotionMLValidator rejects the invalid elements at the lowest cost.
+	 * @return false by default
+	 */
+	public boolean isFastFail()
+	{
+		return fastFail;
+	}
+
+
+	/**
+	 * Creates the EmotionMLValidationException reporting the given result, without stack trace in
+	 * fast-fail mode.
+	 * @param result
+	 * @return a new EmotionMLValidationException
+	 */
+	EmotionMLValidationException createException(ValidationResult result)
+	{
+		if (fastFail)
+			return new EmotionMLValidationException(result, false);
+		else return new EmotionMLValidationException(result);
+	}
+
+
+	/**
+	 * Creates the EmotionMLFormatException reporting the failure of the given assertion, without
+	 * stack trace in fast-fail mode.
+	 * @param code the number of the assertion
+	 * @param parts the parts of the message
+	 * @return a new EmotionMLFormatException
+	 */
+	EmotionMLFormatException createFailure(int code, Object... parts)
+	{
+		return new EmotionMLFormatException(code, parts, !fastFail);
+	}
+
+
+	/**
+	 * Returns the start time of a stage, or 0 if the stages are not measured.
+	 */
+	private long startStage()
+	{
+		return listener instanceof NullProcessingListener ? 0 : System.nanoTime();
+	}
+
+
+	/**
+	 * Reports the given stage to the listener, if the stages are measured.
+	 */
+	private void endStage(Stage stage, long start, int elements)
+	{
+		if (!(listener instanceof NullProcessingListener))
+			listener.stageCompleted(stage, System.nanoTime() - start, elements, -1);
+	}
+
+
+	/**
+	 * Returns the number of &lt;emotion&gt; children of the given root, or -1 if the stages are
+	 * not measured.
+	 */
+	private int countEmotions(Element root)
+	{
+		if (listener instanceof NullProcessingListener)
+			return -1;
+
+		int ret = 0;
+		for(Node child = root.getFirstChild(); child != null; child = child.getNextSibling())
+			if (child instanceof Element && "emotion".equals(child.getLocalName()))
+				ret++;
+		return ret;
+	}
+
+
+	/**
+	 * Reads the media types file. It is read once when the class is initialized, such that no
+	 * validator can see a partially filled set.
 	 */
-	private void readMediaTypes()
+	private static Set<String> readMediaTypes()
 	{
-		if (mediaTypes == null)
+		Set<String> ret = new HashSet<String>();
+		try
 		{
-			mediaTypes = new HashSet<String>();
-			try
-			{
-				InputStreamReader is = new InputStreamReader(getClass().getResourceAsStream(MEDIATYPES_FILE));
-				BufferedReader br = new BufferedReader(is);
+			InputStreamReader is = new InputStreamReader(EmotionMLValidator.class.getResourceAsStream(MEDIATYPES_FILE));
+			BufferedReader br = new BufferedReader(is);
 
-				String line;
-				while((line = br.readLine()) != null)
-					mediaTypes.add(line.trim());
-				br.close();
-			}
-			catch (FileNotFoundException e)
+			String line;
+			while((line = br.readLine()) != null)
+				ret.add(line.trim());
+			br.close();
+		}
+		catch (FileNotFoundException e)
+		{
+			e.printStackTrace();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * A schema Validator waiting to be reused by its thread, with the Schema it was created from.
+	 * @author Alexandre Denis
+	 */
+	private static class IdleValidator
+	{
+		private final Schema schema;
+		private final Validator validator;
+
+
+		IdleValidator(Schema schema, Validator validator)
+		{
+			this.schema = schema;
+			this.validator = validator;
+		}
+	}
+
+
+	/**
+	 * The ErrorHandler reporting the schema failures to the context of a validation which gathers
+	 * them, until it is cleared.
+	 * @author Alexandre Denis
+	 */
+	private static class CollectingErrorHandler implements ErrorHandler
+	{
+		private Validator validator;
+		private ValidationContext context;
+
+
+		CollectingErrorHandler(Validator validator, ValidationContext context)
+		{
+			this.validator = validator;
+			this.context = context;
+		}
+
+
+		/**
+		 * Forgets the Validator and the context, once the validation is over.
+		 */
+		void clear()
+		{
+			validator = null;
+			context = null;
+		}
+
+
+		@Override
+		public void warning(SAXParseException exception)
+		{
+
+		}
+
+
+		@Override
+		public void error(SAXParseException exception) throws SAXException
+		{
+			if (context == null || !context.reportSchema(exception, getCurrentElement(validator)))
+				throw exception;
+		}
+
+
+		@Override
+		public void fatalError(SAXParseException exception) throws SAXException
+		{
+			if (context != null)
+				context.reportSchema(exception, getCurrentElement(validator));
+			throw exception;
+		}
+	}
+
+
+	/**
+	 * The outcome of the validation of an emotion apart from the others: the identifiers it
+	 * defines and its failure.
+	 * @author Alexandre Denis
+	 */
+	private static class EmotionOutcome
+	{
+		private final Set<String> identifiers;
+		private final Exception failure;
+
+
+		EmotionOutcome(Set<String> identifiers, Exception failure)
+		{
+			this.identifiers = identifiers;
+			this.failure = failure;
+		}
+	}
+
+
+	/**
+	 * The validation of a range of emotions, split in halves until it is small enough. The emotions
+	 * following a failed one are skipped since their outcome would not be reported.
+	 * @author Alexandre Denis
+	 */
+	private class EmotionTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final List<Element> emotions;
+		private final EmotionOutcome[] outcomes;
+		private final LocalVocabularies localVocabularies;
+		private final AtomicInteger firstFailure;
+		private final int from;
+		private final int to;
+		private final int grain;
+
+
+		EmotionTask(List<Element> emotions, EmotionOutcome[] outcomes, LocalVocabularies localVocabularies, AtomicInteger firstFailure, int from, int to,
+				int grain)
+		{
+			this.emotions = emotions;
+			this.outcomes = outcomes;
+			this.localVocabularies = localVocabularies;
+			this.firstFailure = firstFailure;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+
+		@Override
+		protected void compute()
+		{
+			if (to - from > grain)
 			{
-				e.printStackTrace();
+				int middle = (from + to) >>> 1;
+				invokeAll(new EmotionTask(emotions, outcomes, localVocabularies, firstFailure, from, middle, grain),
+							new EmotionTask(emotions, outcomes, localVocabularies, firstFailure, middle, to, grain));
+				return;
 			}
-			catch (IOException e)
+
+			ValidationContext context = new ValidationContext(localVocabularies);
+			for(int i = from; i < to && i < firstFailure.get(); i++)
 			{
-				e.printStackTrace();
+				Set<String> identifiers = new HashSet<String>();
+				context.setIdentifiers(identifiers);
+				Exception failure = null;
+				try
+				{
+					validateEmotionPrivate(emotions.get(i), context);
+				}
+				catch (EmotionMLException e)
+				{
+					failure = e;
+				}
+				catch (RuntimeException e)
+				{
+					failure = e;
+				}
+				outcomes[i] = new EmotionOutcome(identifiers, failure);
+
+				if (failure != null)
+				{
+					int first = firstFailure.get();
+					while(i < first && !firstFailure.compareAndSet(first, i))
+						first = firstFailure.get();
+					return;
+				}
 			}
 		}
 	}
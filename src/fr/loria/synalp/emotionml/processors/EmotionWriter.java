@@ -0,0 +1,203 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+
+import org.xml.sax.SAXException;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+
+/**
+ * An EmotionWriter writes an &lt;emotionml&gt; document in XML one emotion at a time, without ever
+ * holding the whole document in memory. It is the counterpart of the EmotionIterator: the root
+ * element, its info and its vocabularies are written when the writer is created, then each emotion
+ * node is validated against the content written so far and written, and closing the writer ends the
+ * document. The written bytes are the ones the EmotionMLExporter writes for the whole document.
+ * <p>
+ * An invalid emotion is not written: the write throws an EmotionMLValidationException, and the
+ * same exception is thrown by the subsequent writes. The checks that can only be performed at the
+ * end of the document (for instance a reference to a local vocabulary which is not defined) are
+ * reported by close(), once the invalid emotions have been written.
+ * </p>
+ * <p>
+ * The written bytes go through a fixed size buffer and each emotion is released as soon as it has
+ * been written, hence the memory used does not depend on the number of emotions, apart from the
+ * identifiers which are kept to check their unicity.
+ * </p>
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLExporter#stream(EmotionMLDocument, OutputStream)
+ */
+public class EmotionWriter implements AutoCloseable
+{
+	private OutputStream stream;
+	private EmotionMLEmitter emitter;
+	private XMLContentWriter writer;
+	private EmotionMLContentHandler handler;
+	private EmotionMLException failure;
+	private boolean closed;
+
+
+	/**
+	 * Creates a new EmotionWriter and writes the start of the given document.
+	 * @param exporter the exporter whose validator validates the emotions and which exports the
+	 *            Info objects
+	 * @param document the start of the document
+	 * @param stream the stream to write to, which is closed along with the writer
+	 */
+	EmotionWriter(EmotionMLExporter exporter, EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		this.stream = stream;
+		this.emitter = new EmotionMLEmitter(exporter);
+		this.writer = new XMLContentWriter(stream);
+		if (exporter.getValidator().performsValidation())
+			this.handler = new EmotionMLContentHandler(new EmotionMLImporter(exporter.getValidator()), false, true);
+
+		try
+		{
+			start(document);
+		}
+		catch (EmotionMLException e)
+		{
+			closed = true;
+			try
+			{
+				stream.close();
+			}
+			catch (IOException ignored)
+			{
+				// the failure to report is the one of the start
+			}
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Validates and writes the start of the given document then its emotion nodes.
+	 */
+	private void start(EmotionMLDocument document) throws EmotionMLValidationException, EmotionMLException
+	{
+		try
+		{
+			if (handler != null)
+			{
+				emitter.startDocument(document, handler);
+				check();
+			}
+			emitter.startDocument(document, writer);
+		}
+		catch (SAXException e)
+		{
+			throw fail(e);
+		}
+
+		for(EmotionNode emotionNode : document.getEmotionNodes())
+			write(emotionNode);
+	}
+
+
+	/**
+	 * Validates and writes the given emotion node, that is an Emotion or an EmotionText.
+	 * @param emotionNode
+	 * @throws EmotionMLValidationException if the emotion is not valid or if a previous emotion was
+	 *             not valid
+	 * @throws EmotionMLException if the emotion cannot be written
+	 */
+	public void write(EmotionNode emotionNode) throws EmotionMLValidationException, EmotionMLException
+	{
+		if (failure != null)
+			throw failure;
+		if (closed)
+			throw new EmotionMLException("Unable to write emotion: the writer is closed");
+
+		try
+		{
+			if (handler != null)
+			{
+				emitter.emit(emotionNode, handler);
+				check();
+			}
+			emitter.emit(emotionNode, writer);
+		}
+		catch (SAXException e)
+		{
+			throw fail(e);
+		}
+	}
+
+
+	/**
+	 * Ends the document, performs the checks that can only be performed at the end of the document,
+	 * and closes the underlying stream. If a previous write has failed, the stream is closed without
+	 * ending the document.
+	 * @throws EmotionMLValidationException if the document is not valid
+	 * @throws EmotionMLException if the document cannot be written or the stream cannot be closed
+	 */
+	@Override
+	public void close() throws EmotionMLValidationException, EmotionMLException
+	{
+		if (closed)
+			return;
+
+		closed = true;
+		try
+		{
+			if (failure == null)
+			{
+				if (handler != null)
+				{
+					emitter.endDocument(handler);
+					handler.getDocument();
+				}
+				emitter.endDocument(writer);
+			}
+		}
+		catch (SAXException e)
+		{
+			throw fail(e);
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				if (failure == null)
+					throw new EmotionMLException("Unable to close the stream: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+
+	/**
+	 * Throws the validation exception if a check has failed so far, and releases the validated
+	 * emotions since they are not needed.
+	 */
+	private void check() throws EmotionMLException
+	{
+		try
+		{
+			handler.checkStream();
+		}
+		catch (EmotionMLException e)
+		{
+			failure = e;
+			throw e;
+		}
+
+		while(handler.pollEmotion() != null)
+			;
+	}
+
+
+	/**
+	 * Records the failure of the writing, which is thrown again by subsequent writes.
+	 */
+	private EmotionMLException fail(SAXException e)
+	{
+		failure = new EmotionMLException("Unable to write element: " + e.getLocalizedMessage());
+		return failure;
+	}
+}
@@ -0,0 +1,220 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URI;
+import java.util.concurrent.atomic.*;
+
+/**
+ * A HistogramProcessingListener accumulates the durations of the stages in histograms whose
+ * buckets are powers of two of nanoseconds, along with the total numbers of elements and bytes of
+ * each stage and the hits and misses of the vocabulary resolutions. The percentiles are thus
+ * approximated by the upper bound of their bucket, that is within a factor of two. It is
+ * thread-safe and lock-free, hence it can be shared by concurrent processors, and its content can
+ * be dumped and reset periodically. The measures recorded while it is dumped or reset may be
+ * partially included.
+ * @author Alexandre Denis
+ */
+public class HistogramProcessingListener implements ProcessingListener
+{
+	private static final int BUCKETS = 64; // bucket i holds the durations of [2^(i-1), 2^i[
+	private static final Stage[] STAGES = Stage.values();
+
+	private final AtomicLongArray histograms = new AtomicLongArray(STAGES.length * BUCKETS);
+	private final AtomicLongArray counts = new AtomicLongArray(STAGES.length);
+	private final AtomicLongArray nanos = new AtomicLongArray(STAGES.length);
+	private final AtomicLongArray elements = new AtomicLongArray(STAGES.length);
+	private final AtomicLongArray bytes = new AtomicLongArray(STAGES.length);
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final AtomicLong resolutionNanos = new AtomicLong();
+
+
+	@Override
+	public void stageCompleted(Stage stage, long nanos, int elements, long bytes)
+	{
+		int index = stage.ordinal();
+		histograms.incrementAndGet(index * BUCKETS + getBucket(nanos));
+		counts.incrementAndGet(index);
+		this.nanos.addAndGet(index, nanos);
+		if (elements > 0)
+			this.elements.addAndGet(index, elements);
+		if (bytes > 0)
+			this.bytes.addAndGet(index, bytes);
+	}
+
+
+	@Override
+	public void vocabularyResolved(URI uri, boolean cached, long nanos)
+	{
+		if (cached)
+			cacheHits.incrementAndGet();
+		else cacheMisses.incrementAndGet();
+		resolutionNanos.addAndGet(nanos);
+	}
+
+
+	/**
+	 * Returns the bucket of the given duration.
+	 */
+	private static int getBucket(long nanos)
+	{
+		return nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+	}
+
+
+/////// Measures
+
+	/**
+	 * Returns the number of times the given stage has been completed.
+	 * @param stage
+	 * @return a number of stages
+	 */
+	public long getCount(Stage stage)
+	{
+		return counts.get(stage.ordinal());
+	}
+
+
+	/**
+	 * Returns the total duration of the given stage.
+	 * @param stage
+	 * @return a duration in nanoseconds
+	 */
+	public long getTotalNanos(Stage stage)
+	{
+		return nanos.get(stage.ordinal());
+	}
+
+
+	/**
+	 * Returns the total number of &lt;emotion&gt; elements processed by the given stage, the
+	 * unknown numbers being ignored.
+	 * @param stage
+	 * @return a number of elements
+	 */
+	public long getTotalElements(Stage stage)
+	{
+		return elements.get(stage.ordinal());
+	}
+
+
+	/**
+	 * Returns the total number of bytes read or written by the given stage, the unknown numbers
+	 * being ignored.
+	 * @param stage
+	 * @return a number of bytes
+	 */
+	public long getTotalBytes(Stage stage)
+	{
+		return bytes.get(stage.ordinal());
+	}
+
+
+	/**
+	 * Returns an approximation of the given percentile of the durations of the given stage.
+	 * @param stage
+	 * @param percentile a percentile in [0, 100]
+	 * @return the upper bound in nanoseconds of the bucket of the percentile, 0 if the stage has
+	 *         never been completed
+	 */
+	public long getPercentile(Stage stage, double percentile)
+	{
+		int offset = stage.ordinal() * BUCKETS;
+		long[] histogram = new long[BUCKETS];
+		long total = 0;
+		for(int i = 0; i < BUCKETS; i++)
+			total += histogram[i] = histograms.get(offset + i);
+		if (total == 0)
+			return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			seen += histogram[i];
+			if (seen >= rank)
+				return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+		}
+		return Long.MAX_VALUE;
+	}
+
+
+	/**
+	 * Returns the number of vocabulary resolutions served by already imported vocabularies.
+	 * @return a number of resolutions
+	 */
+	public long getCacheHits()
+	{
+		return cacheHits.get();
+	}
+
+
+	/**
+	 * Returns the number of vocabulary resolutions which retrieved or imported their vocabulary.
+	 * @return a number of resolutions
+	 */
+	public long getCacheMisses()
+	{
+		return cacheMisses.get();
+	}
+
+
+	/**
+	 * Returns the total duration of the vocabulary resolutions.
+	 * @return a duration in nanoseconds
+	 */
+	public long getResolutionNanos()
+	{
+		return resolutionNanos.get();
+	}
+
+
+	/**
+	 * Resets all the measures.
+	 */
+	public void reset()
+	{
+		for(int i = 0; i < histograms.length(); i++)
+			histograms.set(i, 0);
+		for(int i = 0; i < STAGES.length; i++)
+		{
+			counts.set(i, 0);
+			nanos.set(i, 0);
+			elements.set(i, 0);
+			bytes.set(i, 0);
+		}
+		cacheHits.set(0);
+		cacheMisses.set(0);
+		resolutionNanos.set(0);
+	}
+
+
+	/**
+	 * Returns a table of the measures of the completed stages and of the vocabulary resolutions. The
+	 * durations are in microseconds.
+	 * @return a multiline String
+	 */
+	public String dump()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append(String.format("%-20s %10s %12s %10s %10s %10s %12s %14s%n", "stage", "count", "total(us)", "p50(us)", "p90(us)",
+									"p99(us)", "elements", "bytes"));
+		for(Stage stage : STAGES)
+		{
+			long count = getCount(stage);
+			if (count == 0)
+				continue;
+			ret.append(String.format("%-20s %10d %12d %10d %10d %10d %12d %14d%n", stage, count, getTotalNanos(stage) / 1000,
+										getPercentile(stage, 50) / 1000, getPercentile(stage, 90) / 1000,
+										getPercentile(stage, 99) / 1000, getTotalElements(stage), getTotalBytes(stage)));
+		}
+		ret.append(String.format("vocabularies: %d hits, %d misses, %d us%n", getCacheHits(), getCacheMisses(), getResolutionNanos() / 1000));
+		return ret.toString();
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return dump();
+	}
+}
@@ -0,0 +1,67 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.math.BigInteger;
+
+/**
+ * An IntegerCodec parses and compares the integer attributes of &lt;emotion&gt; elements without
+ * creating BigIntegers when they fit in a long, which is the case of all practical timings. The
+ * other values, and the malformed ones, are delegated to BigInteger so that the accepted values
+ * and the thrown exceptions stay the ones of new BigInteger(String).
+ * @author Alexandre Denis
+ */
+class IntegerCodec
+{
+	private static final int MAX_LONG_DIGITS = 18; // any 18 digits integer fits in a long
+
+
+	/**
+	 * Tests if the given String is an optional sign followed by at most 18 ASCII digits, in which
+	 * case Long.parseLong returns the value new BigInteger(String) would have.
+	 * @param str
+	 * @return true if the given String can be parsed as a long
+	 */
+	static boolean isLong(String str)
+	{
+		int start = 0;
+		if (str.length() > 0 && (str.charAt(0) == '-' || str.charAt(0) == '+'))
+			start = 1;
+
+		int digits = str.length() - start;
+		if (digits == 0 || digits > MAX_LONG_DIGITS)
+			return false;
+
+		for(int i = start; i < str.length(); i++)
+			if (str.charAt(i) < '0' || str.charAt(i) > '9')
+				return false;
+		return true;
+	}
+
+
+	/**
+	 * Returns the signum of the given integer.
+	 * @param str
+	 * @return -1, 0 or 1 as the integer is negative, zero or positive
+	 * @throws NumberFormatException if the given String is not an integer
+	 */
+	static int signum(String str) throws NumberFormatException
+	{
+		if (isLong(str))
+			return Long.signum(Long.parseLong(str));
+		else return new BigInteger(str).signum();
+	}
+
+
+	/**
+	 * Compares the two given integers.
+	 * @param str1
+	 * @param str2
+	 * @return -1, 0 or 1 as the first integer is less than, equal to, or greater than the second
+	 * @throws NumberFormatException if one of the given Strings is not an integer
+	 */
+	static int compare(String str1, String str2) throws NumberFormatException
+	{
+		if (isLong(str1) && isLong(str2))
+			return Long.compare(Long.parseLong(str1), Long.parseLong(str2));
+		else return new BigInteger(str1).compareTo(new BigInteger(str2));
+	}
+}
@@ -0,0 +1,141 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.util.*;
+
+import org.w3c.dom.*;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+import fr.loria.synalp.emotionml.vocabularies.Vocabulary;
+
+/**
+ * LocalVocabularies indexes the &lt;vocabulary&gt; elements defined in a local document. The index
+ * from identifiers to elements is built once, on the first lookup, by scanning the children of the
+ * root element, and each vocabulary is imported at most once. This avoids rescanning the document
+ * and reimporting the vocabulary for every descriptor that refers to it. When a document is read
+ * as a stream there is no DOM Document, the vocabularies are then added one by one as soon as they
+ * are read. The lookups are synchronized since the emotions of a document may be validated in
+ * parallel against the same LocalVocabularies.
+ * @author Alexandre Denis
+ */
+class LocalVocabularies
+{
+	private Document document;
+	private Map<String, Element> elements; // <identifier, vocabulary element>
+	private Map<String, Vocabulary> vocabularies = new HashMap<String, Vocabulary>(); // <identifier, imported vocabulary>
+
+
+	/**
+	 * Creates new LocalVocabularies indexing the vocabularies of the given document.
+	 * @param document
+	 */
+	LocalVocabularies(Document document)
+	{
+		this.document = document;
+	}
+
+
+	/**
+	 * Creates new empty LocalVocabularies, which are filled by calling {@link #add(Vocabulary)}.
+	 */
+	LocalVocabularies()
+	{
+		this.elements = new HashMap<String, Element>();
+	}
+
+
+	/**
+	 * Returns the indexed document.
+	 * @return null if these LocalVocabularies are not backed by a document
+	 */
+	Document getDocument()
+	{
+		return document;
+	}
+
+
+	/**
+	 * Returns the Vocabulary with given id, importing it with the given importer if it has not
+	 * been imported yet.
+	 * @param id
+	 * @param importer
+	 * @return null if there is no vocabulary with given id
+	 * @throws EmotionMLException
+	 */
+	synchronized Vocabulary get(String id, EmotionMLImporter importer) throws EmotionMLException
+	{
+		Vocabulary ret = vocabularies.get(id);
+		if (ret != null)
+			return ret;
+
+		Element element = getElements().get(id);
+		if (element == null)
+			return null;
+
+		ret = importer.importVocabulary(element);
+		vocabularies.put(id, ret);
+		return ret;
+	}
+
+
+	/**
+	 * Tests whether the vocabulary with given id has already been imported or added.
+	 * @param id
+	 * @return true if the vocabulary is available without importing it
+	 */
+	synchronized boolean isImported(String id)
+	{
+		return vocabularies.containsKey(id);
+	}
+
+
+	/**
+	 * Adds the given Vocabulary. As with documents, when several vocabularies share the same id, the
+	 * first one is kept.
+	 * @param vocabulary
+	 */
+	synchronized void add(Vocabulary vocabulary)
+	{
+		if (!vocabularies.containsKey(vocabulary.getId()))
+			vocabularies.put(vocabulary.getId(), vocabulary);
+	}
+
+
+	/**
+	 * Tests whether there is a vocabulary with given id.
+	 * @param id
+	 * @return true if there is a vocabulary with given id
+	 */
+	synchronized boolean contains(String id)
+	{
+		return vocabularies.containsKey(id) || getElements().containsKey(id);
+	}
+
+
+	/**
+	 * Returns the index of vocabulary elements, building it if needed. When several vocabularies
+	 * share the same id, the first one is indexed.
+	 */
+	private Map<String, Element> getElements()
+	{
+		if (elements == null)
+		{
+			elements = new HashMap<String, Element>();
+			NodeList children = document.getDocumentElement().getChildNodes();
+			for(int i = 0; i < children.getLength(); i++)
+			{
+				Node child = children.item(i);
+				if (child instanceof Element)
+				{
+					Element e = (Element) child;
+					if (e.getLocalName().equals("vocabulary"))
+					{
+						String id = e.getAttribute("id");
+						if (!elements.containsKey(id))
+							elements.put(id, e);
+					}
+				}
+			}
+		}
+		return elements;
+	}
+}
@@ -0,0 +1,36 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URI;
+
+/**
+ * A NullProcessingListener ignores all the events. The processors do not measure their stages when
+ * their listener is a NullProcessingListener, hence it costs nothing.
+ * @author Alexandre Denis
+ */
+public final class NullProcessingListener implements ProcessingListener
+{
+	/**
+	 * A shared NullProcessingListener.
+	 */
+	public static final NullProcessingListener INSTANCE = new NullProcessingListener();
+
+
+	/**
+	 * Has no effect.
+	 */
+	@Override
+	public void stageCompleted(Stage stage, long nanos, int elements, long bytes)
+	{
+
+	}
+
+
+	/**
+	 * Has no effect.
+	 */
+	@Override
+	public void vocabularyResolved(URI uri, boolean cached, long nanos)
+	{
+
+	}
+}
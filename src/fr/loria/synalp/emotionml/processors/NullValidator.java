@@ -20,6 +20,16 @@ public class NullValidator extends EmotionMLValidator
 	}
 
 
+	/**
+	 * Returns false.
+	 */
+	@Override
+	boolean performsValidation()
+	{
+		return false;
+	}
+
+
 	/**
 	 * Has no effect.
 	 */
@@ -0,0 +1,58 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URI;
+
+/**
+ * A ProcessingListener receives the measures of the stages performed by EmotionMLProcessors and
+ * EmotionMLValidators: reading, validating, building, exporting and writing, as well as vocabulary
+ * resolutions. A listener may be shared by processors used concurrently, hence it must be
+ * thread-safe. The NullProcessingListener, used by default, is recognized by the processors which
+ * then do not measure anything.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLProcessor#setListener(ProcessingListener)
+ * @see fr.loria.synalp.emotionml.processors.HistogramProcessingListener
+ */
+public interface ProcessingListener
+{
+	/**
+	 * A stage of the processing of a document or an emotion.
+	 * @author Alexandre Denis
+	 */
+	public enum Stage
+	{
+		/** reading a stream as a DOM Element */
+		READ,
+		/** validating a DOM Element against the schema */
+		SCHEMA_VALIDATION,
+		/** validating the assertions on a DOM Element */
+		ASSERTION_VALIDATION,
+		/** building the objects from a validated DOM Element */
+		BUILD,
+		/** validating, and building when importing, in a single pass over the events of a document */
+		SINGLE_PASS,
+		/** building a DOM Element from the objects */
+		EXPORT,
+		/** writing a document to a stream */
+		WRITE
+	}
+
+
+	/**
+	 * Called when a stage is completed, successfully or not.
+	 * @param stage
+	 * @param nanos the duration of the stage in nanoseconds
+	 * @param elements the number of &lt;emotion&gt; elements processed, or -1 if unknown
+	 * @param bytes the number of bytes read or written, or -1 if unknown or not applicable
+	 */
+	public void stageCompleted(Stage stage, long nanos, int elements, long bytes);
+
+
+	/**
+	 * Called when a vocabulary has been resolved, successfully or not.
+	 * @param uri the URI of the vocabulary
+	 * @param cached true if the vocabulary was already imported, false if it has been retrieved or
+	 *            imported by this resolution
+	 * @param nanos the duration of the resolution in nanoseconds
+	 */
+	public void vocabularyResolved(URI uri, boolean cached, long nanos);
+}
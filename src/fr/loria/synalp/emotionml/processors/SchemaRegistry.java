@@ -0,0 +1,246 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URL;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.*;
+
+import org.xml.sax.SAXException;
+
+/**
+ * A SchemaRegistry holds the compiled EmotionML Schema shared by all the EmotionMLValidator
+ * instances of the process. Compiling the EmotionML XSD is by far the most expensive part of the
+ * creation of a validator, while the resulting Schema object is immutable and thread-safe. The
+ * registry thus compiles it only once, either lazily when it is first needed or eagerly in a
+ * background thread by calling {@link #warmUp()} at startup. The registry also records how long the
+ * compilation took and how many requests were served from the compiled Schema (hits) or had to
+ * trigger or wait for the compilation (misses).
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLValidator
+ */
+public final class SchemaRegistry
+{
+	private static final String EMOTIONML_SCHEMA = "fr/loria/synalp/emotionml/schemas/emotionml.xsd";
+
+	private static final AtomicReference<FutureTask<Schema>> compilation = new AtomicReference<FutureTask<Schema>>();
+	private static final AtomicLong hits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static volatile long compilationTime = -1;
+	private static volatile String compilationError;
+
+
+	private SchemaRegistry()
+	{
+
+	}
+
+
+	/**
+	 * Returns the compiled EmotionML Schema. If the Schema has not been compiled yet, it is
+	 * compiled in the calling thread, or if the compilation is already in progress (for instance
+	 * because of a {@link #warmUp()}), this method waits for it to complete. If the compilation
+	 * throws an exception, the exception is thrown to the waiting callers and the next call compiles
+	 * the Schema again.
+	 * @return the EmotionML Schema, or null if it could not be compiled (see
+	 *         {@link #getCompilationError()})
+	 */
+	public static Schema getSchema()
+	{
+		FutureTask<Schema> task = compilation.get();
+		if (task != null && task.isDone())
+		{
+			hits.incrementAndGet();
+			return get(task);
+		}
+
+		misses.incrementAndGet();
+		return get(startCompilation(false));
+	}
+
+
+	/**
+	 * Starts compiling the EmotionML Schema in a background daemon thread if it has not been
+	 * compiled or requested yet. This method returns immediately, subsequent calls to
+	 * {@link #getSchema()} wait for the compilation to complete.
+	 */
+	public static void warmUp()
+	{
+		startCompilation(true);
+	}
+
+
+	/**
+	 * Tests whether the EmotionML Schema has been compiled (successfully or not).
+	 * @return true if the compilation is over
+	 */
+	public static boolean isCompiled()
+	{
+		FutureTask<Schema> task = compilation.get();
+		return task != null && task.isDone();
+	}
+
+
+	/**
+	 * Returns the time spent compiling the EmotionML Schema.
+	 * @return a duration in milliseconds, or -1 if the Schema has not been compiled yet
+	 */
+	public static long getCompilationTime()
+	{
+		return compilationTime < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(compilationTime);
+	}
+
+
+	/**
+	 * Returns the number of requests that have been served with the already compiled Schema.
+	 * @return the hit count
+	 */
+	public static long getHitCount()
+	{
+		return hits.get();
+	}
+
+
+	/**
+	 * Returns the number of requests that had to compile the Schema or wait for its compilation.
+	 * @return the miss count
+	 */
+	public static long getMissCount()
+	{
+		return misses.get();
+	}
+
+
+	/**
+	 * Returns the error message of the Schema compilation if it failed.
+	 * @return null if the compilation did not fail
+	 */
+	public static String getCompilationError()
+	{
+		return compilationError;
+	}
+
+
+	/**
+	 * Returns a String representation of the metrics of this registry.
+	 */
+	public static String getMetrics()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("compiled=").append(isCompiled());
+		ret.append(" compilationTime=").append(getCompilationTime()).append("ms");
+		ret.append(" hits=").append(getHitCount());
+		ret.append(" misses=").append(getMissCount());
+		if (compilationError != null)
+			ret.append(" error=").append(compilationError);
+		return ret.toString();
+	}
+
+
+	/**
+	 * Installs the compilation task if none has been installed yet, and runs it either in the
+	 * calling thread or in a background thread.
+	 * @param background
+	 * @return the installed compilation task
+	 */
+	private static FutureTask<Schema> startCompilation(boolean background)
+	{
+		FutureTask<Schema> task = compilation.get();
+		if (task != null)
+			return task;
+
+		task = new FutureTask<Schema>(new Callable<Schema>()
+		{
+			@Override
+			public Schema call()
+			{
+				return compile();
+			}
+		});
+
+		if (!compilation.compareAndSet(null, task))
+			return compilation.get();
+
+		if (background)
+		{
+			Thread thread = new Thread(task, "EmotionML schema compilation");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		else task.run();
+
+		return task;
+	}
+
+
+	/**
+	 * Compiles the EmotionML Schema.
+	 * @return null if the schema cannot be compiled
+	 */
+	private static Schema compile()
+	{
+		long start = System.nanoTime();
+
+		// investigate: IllegalArgumentException when creating a schema factory on android
+		// we should find an alternative way of creating the schema,
+		// check https://groups.google.com/forum/?fromgroups#!topic/android-developers/F-L6kUPn5PQ
+		SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+
+		URL schemaURL = SchemaRegistry.class.getClassLoader().getResource(EMOTIONML_SCHEMA);
+		try
+		{
+			return sf.newSchema(schemaURL);
+		}
+		catch (SAXException e)
+		{
+			compilationError = e.getLocalizedMessage();
+			return null;
+		}
+		finally
+		{
+			compilationTime = System.nanoTime() - start;
+		}
+	}
+
+
+	/**
+	 * Waits for the given task to complete and returns its result. If the task failed, it is
+	 * uninstalled such that the next request compiles the Schema again.
+	 * @param task
+	 * @return the compiled Schema
+	 */
+	private static Schema get(FutureTask<Schema> task)
+	{
+		boolean interrupted = false;
+		try
+		{
+			while(true)
+			{
+				try
+				{
+					return task.get();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					compilation.compareAndSet(task, null);
+					Throwable cause = e.getCause();
+					if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					else if (cause instanceof Error)
+						throw (Error) cause;
+					else throw new IllegalStateException(cause);
+				}
+			}
+		}
+		finally
+		{
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+}
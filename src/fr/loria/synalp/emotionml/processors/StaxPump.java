@@ -0,0 +1,275 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.*;
+
+import org.xml.sax.*;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+
+/**
+ * A StaxPump pulls the events of an XMLStreamReader and pushes them as SAX events to a
+ * ContentHandler. If the reader is positioned at the start of a document, the whole document is
+ * pumped, if it is positioned on a start element, only that element is pumped and the reader is
+ * left on the corresponding end element. Since the documents may come from untrusted sources, the
+ * DTDs are rejected like by the XMLEmotionMLReader, and the readers created by the pump neither
+ * load external resources nor expand entities. The elements nested deeper than a maximum depth and
+ * the attribute values longer than a maximum length are rejected with the same failures as the
+ * XMLEmotionMLReader, the size of a stream being limited when its reader is created.
+ * @author Alexandre Denis
+ */
+class StaxPump
+{
+	private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	private static final XMLInputFactory factory = createFactory();
+
+	private XMLStreamReader reader;
+	private ContentHandler handler;
+	private LexicalHandler lexicalHandler;
+	private AttributesImpl attributes = new AttributesImpl();
+	private boolean started;
+	private boolean ended;
+	private boolean fragment;
+	private int depth;
+	private int maxDepth;
+	private int maxAttributeLength;
+
+
+	/**
+	 * Creates a new StaxPump.
+	 * @param reader
+	 * @param handler if it is also a LexicalHandler, comments and CDATA sections are reported
+	 * @param maxDepth the maximum number of nested elements
+	 * @param maxAttributeLength the maximum number of characters of an attribute value
+	 */
+	StaxPump(XMLStreamReader reader, ContentHandler handler, int maxDepth, int maxAttributeLength)
+	{
+		this.reader = reader;
+		this.handler = handler;
+		this.maxDepth = maxDepth;
+		this.maxAttributeLength = maxAttributeLength;
+		if (handler instanceof LexicalHandler)
+			this.lexicalHandler = (LexicalHandler) handler;
+	}
+
+
+	/**
+	 * Creates an XMLStreamReader reading the given InputStream.
+	 * @param stream
+	 * @return an XMLStreamReader
+	 * @throws EmotionMLException
+	 */
+	static XMLStreamReader createReader(InputStream stream) throws EmotionMLException
+	{
+		try
+		{
+			synchronized (factory)
+			{
+				return factory.createXMLStreamReader(stream);
+			}
+		}
+		catch (XMLStreamException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + getMessage(e));
+		}
+	}
+
+
+	/**
+	 * Pumps all the events.
+	 * @throws EmotionMLException if the stream cannot be read
+	 */
+	void pumpAll() throws EmotionMLException
+	{
+		while(pump())
+			;
+	}
+
+
+	/**
+	 * Pumps the next event.
+	 * @return false if there are no more events
+	 * @throws EmotionMLException if the stream cannot be read
+	 */
+	boolean pump() throws EmotionMLException
+	{
+		try
+		{
+			return next();
+		}
+		catch (XMLStreamException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + getMessage(e));
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Pumps the next event.
+	 */
+	private boolean next() throws XMLStreamException, SAXException
+	{
+		if (ended)
+			return false;
+
+		if (!started)
+		{
+			started = true;
+			handler.startDocument();
+			if (reader.getEventType() == XMLStreamConstants.START_ELEMENT)
+			{
+				fragment = true;
+				dispatch(XMLStreamConstants.START_ELEMENT);
+			}
+			return true;
+		}
+
+		if ((fragment && depth == 0) || !reader.hasNext())
+		{
+			ended = true;
+			handler.endDocument();
+			return false;
+		}
+
+		dispatch(reader.next());
+		return true;
+	}
+
+
+	/**
+	 * Dispatches the current event of the reader.
+	 */
+	private void dispatch(int event) throws SAXException
+	{
+		switch (event)
+		{
+			case XMLStreamConstants.START_ELEMENT:
+				if (++depth > maxDepth)
+					throw new SAXException("the elements are nested deeper than " + maxDepth + " levels");
+
+				for(int i = 0; i < reader.getNamespaceCount(); i++)
+				{
+					String prefix = emptyIfNull(reader.getNamespacePrefix(i));
+					String uri = emptyIfNull(reader.getNamespaceURI(i));
+					checkAttributeLength(prefix.equals("") ? XMLConstants.XMLNS_ATTRIBUTE : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix, uri);
+					handler.startPrefixMapping(prefix, uri);
+				}
+
+				attributes.clear();
+				for(int i = 0; i < reader.getAttributeCount(); i++)
+				{
+					String prefix = reader.getAttributePrefix(i);
+					String localName = reader.getAttributeLocalName(i);
+					checkAttributeLength(getQName(prefix, localName), reader.getAttributeValue(i));
+					attributes.addAttribute(emptyIfNull(reader.getAttributeNamespace(i)), localName, getQName(prefix, localName),
+											reader.getAttributeType(i), reader.getAttributeValue(i));
+				}
+				handler.startElement(emptyIfNull(reader.getNamespaceURI()), reader.getLocalName(), getQName(reader.getPrefix(), reader.getLocalName()),
+										attributes);
+				break;
+
+			case XMLStreamConstants.END_ELEMENT:
+				handler.endElement(emptyIfNull(reader.getNamespaceURI()), reader.getLocalName(), getQName(reader.getPrefix(), reader.getLocalName()));
+				for(int i = reader.getNamespaceCount() - 1; i >= 0; i--)
+					handler.endPrefixMapping(emptyIfNull(reader.getNamespacePrefix(i)));
+				depth--;
+				break;
+
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.SPACE:
+				handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+
+			case XMLStreamConstants.CDATA:
+				if (lexicalHandler != null)
+					lexicalHandler.startCDATA();
+				handler.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				if (lexicalHandler != null)
+					lexicalHandler.endCDATA();
+				break;
+
+			case XMLStreamConstants.COMMENT:
+				if (lexicalHandler != null)
+					lexicalHandler.comment(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				break;
+
+			case XMLStreamConstants.PROCESSING_INSTRUCTION:
+				handler.processingInstruction(reader.getPITarget(), reader.getPIData());
+				break;
+
+			case XMLStreamConstants.DTD:
+				throw new SAXException("DOCTYPE is disallowed");
+
+			default:
+				break;
+		}
+	}
+
+
+	/**
+	 * Returns the message of the given exception, or of the IOException of the stream it wraps,
+	 * for instance when the stream is larger than the maximum size.
+	 */
+	private static String getMessage(XMLStreamException e)
+	{
+		if (e.getNestedException() instanceof IOException)
+			return e.getNestedException().getLocalizedMessage();
+		else return e.getLocalizedMessage();
+	}
+
+
+	/**
+	 * Rejects the given attribute value if it is longer than the maximum.
+	 */
+	private void checkAttributeLength(String name, String value) throws SAXException
+	{
+		if (value.length() > maxAttributeLength)
+			throw new SAXException("the value of attribute " + name + " is longer than " + maxAttributeLength + " characters");
+	}
+
+
+	/**
+	 * Returns the qualified name of given prefix and local name.
+	 */
+	private static String getQName(String prefix, String localName)
+	{
+		if (prefix == null || prefix.equals(XMLConstants.DEFAULT_NS_PREFIX))
+			return localName;
+		else return prefix + ":" + localName;
+	}
+
+
+	/**
+	 * Returns the empty String if the given String is null.
+	 */
+	private static String emptyIfNull(String str)
+	{
+		return str == null ? "" : str;
+	}
+
+
+	/**
+	 * Creates the XMLInputFactory shared by all pumps. CDATA sections are reported when possible,
+	 * such that texts are split like DOM text nodes. The DTDs are not processed, hence no entity
+	 * is declared and no external resource is loaded, the DTD event itself being rejected by the
+	 * pump.
+	 */
+	private static XMLInputFactory createFactory()
+	{
+		XMLInputFactory ret = XMLInputFactory.newInstance();
+		ret.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		ret.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		ret.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		if (ret.isPropertySupported(REPORT_CDATA))
+			ret.setProperty(REPORT_CDATA, Boolean.TRUE);
+		return ret;
+	}
+}
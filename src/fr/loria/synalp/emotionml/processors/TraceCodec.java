@@ -0,0 +1,209 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.util.Arrays;
+
+/**
+ * A TraceCodec parses and formats the "samples" attribute of &lt;trace&gt; elements, that is a
+ * space-separated list of floats. The attribute is scanned in place into a float array, without
+ * splitting it into Strings, and the range of the samples is checked in the same loop. The array
+ * grows to the largest trace parsed so far and is reused from one trace to the next. The parsed
+ * values and the detected errors are the ones of Float.parseFloat applied to the parts of
+ * String.split(" "): the plain decimal samples that a float can represent exactly are converted
+ * directly, the others are delegated to Float.parseFloat. A TraceCodec is not thread-safe.
+ * @author Alexandre Denis
+ */
+public class TraceCodec
+{
+	private static final float[] EMPTY = new float[0];
+	private static final float[] POWERS_OF_TEN = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f };
+	private static final int MAX_EXACT_MANTISSA = 1 << 24;
+
+	private String samplesStr;
+	private float[] samples = EMPTY;
+	private int size;
+	private int invalidStart; // the first sample which is not a float of [0, 1]
+	private int invalidEnd;
+	private int malformedStart; // the first sample which is not a float
+	private int malformedEnd;
+
+
+	/**
+	 * Parses the given samples attribute.
+	 * @param samplesStr
+	 */
+	public void parse(String samplesStr)
+	{
+		this.samplesStr = samplesStr;
+		this.size = 0;
+		this.invalidStart = -1;
+		this.malformedStart = -1;
+
+		// like split, the trailing empty parts are ignored, unless there is no space at all
+		int end = samplesStr.length();
+		while(end > 0 && samplesStr.charAt(end - 1) == ' ')
+			end--;
+		if (end == 0 && samplesStr.length() > 0)
+			return;
+
+		int capacity = 1;
+		for(int i = 0; i < end; i++)
+			if (samplesStr.charAt(i) == ' ')
+				capacity++;
+		if (samples.length < capacity)
+			samples = new float[capacity];
+
+		int start = 0;
+		while(true)
+		{
+			int space = samplesStr.indexOf(' ', start);
+			int sampleEnd = space < 0 || space > end ? end : space;
+			parseSample(start, sampleEnd);
+			if (sampleEnd == end)
+				break;
+			start = sampleEnd + 1;
+		}
+	}
+
+
+	/**
+	 * Parses the sample between the given indices and checks its range.
+	 */
+	private void parseSample(int start, int end)
+	{
+		if (!scanDecimal(start, end))
+			try
+			{
+				samples[size] = Float.parseFloat(samplesStr.substring(start, end));
+			}
+			catch (NumberFormatException e)
+			{
+				samples[size] = Float.NaN;
+				if (malformedStart < 0)
+				{
+					malformedStart = start;
+					malformedEnd = end;
+				}
+				invalid(start, end);
+			}
+
+		float value = samples[size++];
+		if (value < 0 || value > 1)
+			invalid(start, end);
+	}
+
+
+	/**
+	 * Converts the sample between the given indices if it is a plain decimal number whose digits
+	 * fit in the mantissa of a float and which has at most 10 decimals. The quotient of two exact
+	 * floats is correctly rounded, hence it is the float Float.parseFloat would return.
+	 * @return false if the sample has another form
+	 */
+	private boolean scanDecimal(int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if (i < end && (samplesStr.charAt(i) == '-' || samplesStr.charAt(i) == '+'))
+			negative = samplesStr.charAt(i++) == '-';
+
+		int mantissa = 0;
+		int digits = 0;
+		int decimals = 0;
+		boolean point = false;
+		for(; i < end; i++)
+		{
+			char c = samplesStr.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa > MAX_EXACT_MANTISSA)
+					return false;
+				digits++;
+				if (point)
+					decimals++;
+			}
+			else if (c == '.' && !point)
+				point = true;
+			else return false;
+		}
+
+		if (digits == 0 || decimals >= POWERS_OF_TEN.length)
+			return false;
+
+		float value = mantissa / POWERS_OF_TEN[decimals];
+		samples[size] = negative ? -value : value;
+		return true;
+	}
+
+
+	/**
+	 * Records the sample between the given indices as invalid if it is the first one.
+	 */
+	private void invalid(int start, int end)
+	{
+		if (invalidStart < 0)
+		{
+			invalidStart = start;
+			invalidEnd = end;
+		}
+	}
+
+
+	/**
+	 * Tests whether all the parsed samples are floats of [0, 1].
+	 * @return true if the samples are valid
+	 */
+	public boolean isValid()
+	{
+		return invalidStart < 0;
+	}
+
+
+	/**
+	 * Returns the first parsed sample which is not a float of [0, 1].
+	 * @return null if the samples are valid
+	 */
+	public String getInvalidSample()
+	{
+		return invalidStart < 0 ? null : samplesStr.substring(invalidStart, invalidEnd);
+	}
+
+
+	/**
+	 * Returns the parsed samples. The reused array is returned when it has exactly the right size,
+	 * in which case a new one is allocated by the next parse.
+	 * @return a float array which is not shared with this TraceCodec
+	 * @throws NumberFormatException the exception Float.parseFloat throws for the first sample
+	 *             which is not a float
+	 */
+	public float[] getSamples() throws NumberFormatException
+	{
+		if (malformedStart >= 0)
+			Float.parseFloat(samplesStr.substring(malformedStart, malformedEnd));
+
+		if (size < samples.length)
+			return Arrays.copyOf(samples, size);
+
+		float[] ret = samples;
+		samples = EMPTY;
+		return ret;
+	}
+
+
+	/**
+	 * Formats the given samples as space-separated values. Each sample is appended as
+	 * String.valueOf would format it, but without creating a String for it.
+	 * @param samples
+	 * @return the value of the samples attribute
+	 */
+	public static String format(float[] samples)
+	{
+		StringBuilder ret = new StringBuilder(samples.length * 11);
+		for(int i = 0; i < samples.length; i++)
+		{
+			if (i > 0)
+				ret.append(' ');
+			ret.append(samples[i]);
+		}
+		return ret.toString();
+	}
+}
@@ -0,0 +1,212 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.util.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.SAXParseException;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+
+/**
+ * A ValidationContext holds the state of a single validation performed by an EmotionMLValidator:
+ * the identifiers found so far, the local vocabularies against which local URIs are resolved, and
+ * the TraceCodec reused for the traces. When the validation gathers all the failures, the context
+ * also holds their Diagnostics, else the failures are thrown as soon as they are reported.
+ * Each call to validateDocument or validateEmotion creates its own context, hence an
+ * EmotionMLValidator can be shared by concurrent validations.
+ * @author Alexandre Denis
+ */
+class ValidationContext
+{
+	private Set<String> identifiers = new HashSet<String>();
+	private LocalVocabularies localVocabularies;
+	private TraceCodec traceCodec;
+	private List<Diagnostic> diagnostics; // null when the validation stops at the first failure
+	private int maxDiagnostics;
+	private int schemaFailures;
+	private int assertionFailures;
+	private boolean truncated;
+
+
+	/**
+	 * Creates a new ValidationContext.
+	 * @param localDocument the document for resolving local URIs, null if there is none
+	 */
+	ValidationContext(Document localDocument)
+	{
+		this.localVocabularies = localDocument == null ? null : new LocalVocabularies(localDocument);
+	}
+
+
+	/**
+	 * Creates a new ValidationContext sharing the given local vocabularies, for validating a part
+	 * of a document apart from the main context.
+	 * @param localVocabularies the local vocabularies, may be null
+	 */
+	ValidationContext(LocalVocabularies localVocabularies)
+	{
+		this.localVocabularies = localVocabularies;
+	}
+
+
+	/**
+	 * Returns the identifiers found so far.
+	 * @return the identifiers
+	 */
+	Set<String> getIdentifiers()
+	{
+		return identifiers;
+	}
+
+
+	/**
+	 * Replaces the identifiers found so far.
+	 * @param identifiers
+	 */
+	void setIdentifiers(Set<String> identifiers)
+	{
+		this.identifiers = identifiers;
+	}
+
+
+	/**
+	 * Returns the local vocabularies.
+	 * @return null if there is no local document
+	 */
+	LocalVocabularies getLocalVocabularies()
+	{
+		return localVocabularies;
+	}
+
+
+	/**
+	 * Returns the TraceCodec of this validation, which is created at the first trace.
+	 * @return the TraceCodec
+	 */
+	TraceCodec getTraceCodec()
+	{
+		if (traceCodec == null)
+			traceCodec = new TraceCodec();
+		return traceCodec;
+	}
+
+
+/////// Diagnostics
+
+	/**
+	 * Makes this context gather the failures instead of stopping at the first one.
+	 * @param maxDiagnostics the maximum number of schema failures, and of assertion failures
+	 */
+	void setMaxDiagnostics(int maxDiagnostics)
+	{
+		this.diagnostics = new ArrayList<Diagnostic>();
+		this.maxDiagnostics = maxDiagnostics;
+	}
+
+
+	/**
+	 * Tests whether this context gathers the failures.
+	 * @return true if the failures are gathered, false if the first one is thrown
+	 */
+	boolean isCollecting()
+	{
+		return diagnostics != null;
+	}
+
+
+	/**
+	 * Reports the given assertion failure. It is thrown if this context does not gather the
+	 * failures, else its Diagnostic is added and the validation goes on, until the maximum number of
+	 * diagnostics is reached.
+	 * @param failure
+	 * @param node the offending node, may be null
+	 * @param value the offending value, may be null
+	 * @throws T the failure if this context does not gather the failures
+	 * @throws LimitReachedException if the maximum number of diagnostics is reached
+	 */
+	<T extends EmotionMLException> void report(T failure, Node node, String value) throws T
+	{
+		if (diagnostics == null)
+			throw failure;
+
+		diagnostics.add(Diagnostic.create(failure, node, value));
+		if (++assertionFailures >= maxDiagnostics)
+		{
+			truncated = true;
+			throw LimitReachedException.INSTANCE;
+		}
+	}
+
+
+	/**
+	 * Adds the Diagnostic of the given schema failure.
+	 * @param failure
+	 * @param node the element being validated, may be null
+	 * @return false if the maximum number of diagnostics is reached
+	 */
+	boolean reportSchema(SAXParseException failure, Node node)
+	{
+		diagnostics.add(Diagnostic.create(failure, node));
+		if (++schemaFailures >= maxDiagnostics)
+		{
+			truncated = true;
+			return false;
+		}
+		else return true;
+	}
+
+
+	/**
+	 * Returns the message of the first gathered failure of the schema or of the assertions.
+	 * @param schemaFailure true for the schema failures, false for the assertion failures
+	 * @return null if there is no such failure or if the failures are not gathered
+	 */
+	String getFirstMessage(boolean schemaFailure)
+	{
+		if (diagnostics != null)
+			for(Diagnostic diagnostic : diagnostics)
+				if (diagnostic.isSchemaFailure() == schemaFailure)
+					return diagnostic.getMessage();
+		return null;
+	}
+
+
+	/**
+	 * Returns the gathered Diagnostics.
+	 * @return an empty list if the failures are not gathered
+	 */
+	List<Diagnostic> getDiagnostics()
+	{
+		if (diagnostics == null)
+			return Collections.emptyList();
+		else return diagnostics;
+	}
+
+
+	/**
+	 * Tests whether the validation stopped because the maximum number of diagnostics was reached.
+	 * @return true if there may be more failures than the gathered ones
+	 */
+	boolean isTruncated()
+	{
+		return truncated;
+	}
+
+
+	/**
+	 * Stops the assertion validation once the maximum number of diagnostics has been gathered. It
+	 * is not a failure of the document, hence it has a single stackless instance.
+	 * @author Alexandre Denis
+	 */
+	static class LimitReachedException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+		static final LimitReachedException INSTANCE = new LimitReachedException();
+
+
+		private LimitReachedException()
+		{
+			super("the maximum number of diagnostics is reached", null, false, false);
+		}
+	}
+}
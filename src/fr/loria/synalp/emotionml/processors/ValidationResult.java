@@ -1,11 +1,14 @@
 package fr.loria.synalp.emotionml.processors;
 
+import java.util.*;
+
 import org.w3c.dom.*;
 
 /**
  * ValidationResult gathers the results of a validation. It contains both the schema validation
  * result (and its error message if needed) and the assertion validation result (and its error
- * message if needed). It also stores the Element on which the validation has been performed.
+ * message if needed). It also stores the Element on which the validation has been performed, if
+ * any. When the validator gathers all the failures, it contains their Diagnostics.
  * @author Alexandre Denis
  */
 public class ValidationResult
@@ -15,6 +18,8 @@ public class ValidationResult
 	private String schemaErrorMessage;
 	private boolean isAssertionValid;
 	private String assertionErrorMessage;
+	private List<Diagnostic> diagnostics;
+	private boolean truncated;
 
 
 	/**
@@ -26,18 +31,38 @@ public class ValidationResult
 	 * @param assertionErrorMessage
 	 */
 	public ValidationResult(Element element, boolean isSchemaValid, String schemaErrorMessage, boolean isAssertionValid, String assertionErrorMessage)
+	{
+		this(element, isSchemaValid, schemaErrorMessage, isAssertionValid, assertionErrorMessage, Collections.<Diagnostic> emptyList(), false);
+	}
+
+
+	/**
+	 * Creates a new ValidationResult with the gathered Diagnostics.
+	 * @param element
+	 * @param isSchemaValid
+	 * @param schemaErrorMessage the message of the first schema failure
+	 * @param isAssertionValid
+	 * @param assertionErrorMessage the message of the first assertion failure
+	 * @param diagnostics the Diagnostics of all the failures
+	 * @param truncated true if the validation stopped before finding all the failures
+	 */
+	public ValidationResult(Element element, boolean isSchemaValid, String schemaErrorMessage, boolean isAssertionValid, String assertionErrorMessage,
+			List<Diagnostic> diagnostics, boolean truncated)
 	{
 		this.element = element;
 		this.isSchemaValid = isSchemaValid;
 		this.schemaErrorMessage = schemaErrorMessage;
 		this.isAssertionValid = isAssertionValid;
 		this.assertionErrorMessage = assertionErrorMessage;
+		this.diagnostics = Collections.unmodifiableList(diagnostics);
+		this.truncated = truncated;
 	}
 
 
 	/**
 	 * Returns the Element on which validation has been performed.
-	 * @return an Element that corresponds either to &lt;emotionml&gt; or &lt;emotion&gt;
+	 * @return an Element that corresponds either to &lt;emotionml&gt; or &lt;emotion&gt;, or null if
+	 *         the validation has been performed on a stream without building a DOM Element
 	 */
 	public Element getElement()
 	{
@@ -96,6 +121,30 @@ public class ValidationResult
 	}
 
 
+	/**
+	 * Returns the Diagnostics of all the schema and assertion failures, the schema failures first.
+	 * They are only gathered when the validator is set to gather several failures, see
+	 * EmotionMLValidator.setMaxDiagnostics.
+	 * @return an unmodifiable list, empty if the document is valid or if the failures were not
+	 *         gathered
+	 */
+	public List<Diagnostic> getDiagnostics()
+	{
+		return diagnostics;
+	}
+
+
+	/**
+	 * Tests whether the validation stopped once the maximum number of diagnostics was gathered,
+	 * hence there may be more failures than the Diagnostics.
+	 * @return true if the Diagnostics may be incomplete
+	 */
+	public boolean isTruncated()
+	{
+		return truncated;
+	}
+
+
 	@Override
 	public String toString()
 	{
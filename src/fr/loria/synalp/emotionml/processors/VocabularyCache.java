@@ -0,0 +1,384 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+
+/**
+ * A VocabularyCache holds the remote documents retrieved while resolving vocabularies. It is
+ * thread-safe and each VocabularyCatalog has its own cache, shared by default by all the
+ * VocabularyResolver instances using that catalog (see {@link VocabularyCatalog#getCache()}), such
+ * that a document like http://www.w3.org/TR/emotion-voc/xml is downloaded only once and a document
+ * found in one catalog is never served to a resolver using another catalog. The cache holds at most
+ * a given number of documents, evicting the least recently used one when it is full, but never a
+ * document that is still loading, and each document expires after a given time to live. When
+ * several threads miss the same URI at the same time, only one of them loads the document while
+ * the others wait for it, and a load which asks for its own URI again fails instead of waiting for
+ * itself. Failed loads are cached as well, and the same failure is reported until
+ * a backoff delay has elapsed; this delay doubles after each consecutive failure of a URI, up to a
+ * maximum. The cache records how many lookups were served from the cache (hits, including cached
+ * failures), had to load the document or wait for its loading (misses), and how many documents
+ * were evicted because the cache was full.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.VocabularyResolver
+ */
+public class VocabularyCache
+{
+	private final int maximumSize;
+	private final long timeToLive;
+	private final long minimumBackoff;
+	private final long maximumBackoff;
+	private final LinkedHashMap<URI, Entry> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+
+	/**
+	 * A cached document, or a failure, or a pending load.
+	 */
+	private static class Entry
+	{
+		private final FutureTask<EmotionMLDocument> task;
+		private final int failures; // the number of consecutive failures of the URI before this load
+		private volatile Thread loadingThread; // the thread running the task, until it is done
+		private volatile boolean failed;
+		private volatile long expiration = Long.MAX_VALUE; // in nanoseconds, set once the task is done
+
+
+		Entry(FutureTask<EmotionMLDocument> task, int failures)
+		{
+			this.task = task;
+			this.failures = failures;
+		}
+
+
+		boolean isLoading()
+		{
+			return expiration == Long.MAX_VALUE;
+		}
+
+
+		boolean isExpired(long now)
+		{
+			return !isLoading() && now - expiration >= 0;
+		}
+	}
+
+
+	/**
+	 * Creates a new VocabularyCache holding at most 64 documents for one hour, and caching failures
+	 * from 10 seconds up to 10 minutes.
+	 */
+	public VocabularyCache()
+	{
+		this(64, 1, TimeUnit.HOURS, 10, 600, TimeUnit.SECONDS);
+	}
+
+
+	/**
+	 * Creates a new VocabularyCache.
+	 * @param maximumSize the maximum number of documents, at least 1
+	 * @param timeToLive the time a document is kept after it has been loaded
+	 * @param timeToLiveUnit
+	 * @param minimumBackoff the time a failure is kept after the first failed load of a URI
+	 * @param maximumBackoff the maximum time a failure is kept after consecutive failed loads
+	 * @param backoffUnit
+	 */
+	public VocabularyCache(int maximumSize, long timeToLive, TimeUnit timeToLiveUnit, long minimumBackoff, long maximumBackoff, TimeUnit backoffUnit)
+	{
+		if (maximumSize < 1)
+			throw new IllegalArgumentException("the maximum size of the cache must be at least 1 (it is " + maximumSize + ")");
+		this.maximumSize = maximumSize;
+		this.timeToLive = timeToLiveUnit.toNanos(timeToLive);
+		this.minimumBackoff = backoffUnit.toNanos(minimumBackoff);
+		this.maximumBackoff = Math.max(this.minimumBackoff, backoffUnit.toNanos(maximumBackoff));
+		this.entries = new LinkedHashMap<URI, Entry>(16, 0.75f, true);
+	}
+
+
+	/**
+	 * Returns the VocabularyCache shared by default by all the VocabularyResolver instances using
+	 * the default VocabularyCatalog.
+	 * @return the cache of the default catalog
+	 */
+	public static VocabularyCache getDefault()
+	{
+		return VocabularyCatalog.getDefault().getCache();
+	}
+
+
+	/**
+	 * Returns the document with given URI, loading it with the given loader if it is not cached or
+	 * has expired. If another thread is already loading it, this method waits for that load instead.
+	 * @param uri
+	 * @param loader the loader of the document, called at most once at a time per URI
+	 * @return the document
+	 * @throws EmotionMLException the exception thrown by the loader, possibly cached, or an
+	 *             EmotionMLResolutionException if the loader of the URI asks for it again
+	 */
+	public EmotionMLDocument get(URI uri, Callable<EmotionMLDocument> loader) throws EmotionMLException
+	{
+		final Entry entry;
+		boolean load = false;
+		synchronized (this)
+		{
+			Entry cached = entries.get(uri);
+			if (cached != null && !cached.isExpired(System.nanoTime()))
+			{
+				if (cached.loadingThread == Thread.currentThread())
+					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
+															"> since it is requested again while loading it (circular vocabulary reference)");
+				entry = cached;
+				if (entry.isLoading())
+					misses.incrementAndGet();
+				else hits.incrementAndGet();
+			}
+			else
+			{
+				misses.incrementAndGet();
+				int failures = cached != null && cached.failed ? cached.failures + 1 : 0;
+				entry = new Entry(new FutureTask<EmotionMLDocument>(loader), failures);
+				entry.loadingThread = Thread.currentThread();
+				put(uri, entry);
+				load = true;
+			}
+		}
+
+		if (load)
+		{
+			entry.task.run();
+			entry.loadingThread = null;
+			entry.failed = hasFailed(entry.task);
+			if (entry.failed)
+			{
+				long backoff = minimumBackoff << Math.min(entry.failures, 30);
+				entry.expiration = System.nanoTime() + (backoff < 0 || backoff > maximumBackoff ? maximumBackoff : backoff);
+			}
+			else entry.expiration = System.nanoTime() + timeToLive;
+		}
+
+		return get(entry.task);
+	}
+
+
+	/**
+	 * Adds the given document to this cache, as if it had just been loaded.
+	 * @param uri
+	 * @param document
+	 */
+	public void put(URI uri, final EmotionMLDocument document)
+	{
+		FutureTask<EmotionMLDocument> task = new FutureTask<EmotionMLDocument>(new Callable<EmotionMLDocument>()
+		{
+			@Override
+			public EmotionMLDocument call()
+			{
+				return document;
+			}
+		});
+		task.run();
+
+		Entry entry = new Entry(task, 0);
+		entry.expiration = System.nanoTime() + timeToLive;
+		synchronized (this)
+		{
+			put(uri, entry);
+		}
+	}
+
+
+	/**
+	 * Returns the document with given URI if it is cached, has been successfully loaded and has
+	 * not expired. This method does not change the hit and miss counts.
+	 * @param uri
+	 * @return null if the document is not available
+	 */
+	public synchronized EmotionMLDocument getIfPresent(URI uri)
+	{
+		Entry entry = entries.get(uri);
+		if (entry == null || entry.isLoading() || entry.failed || entry.isExpired(System.nanoTime()))
+			return null;
+
+		try
+		{
+			return get(entry.task);
+		}
+		catch (EmotionMLException e)
+		{
+			return null;
+		}
+	}
+
+
+	/**
+	 * Removes the document or failure with given URI from this cache.
+	 * @param uri
+	 */
+	public synchronized void invalidate(URI uri)
+	{
+		entries.remove(uri);
+	}
+
+
+	/**
+	 * Removes all the documents and failures from this cache. The counts are not reset.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+
+	/**
+	 * Returns the number of entries of this cache, including failures and expired entries that have
+	 * not been removed yet.
+	 * @return the size of this cache
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+
+	/**
+	 * Returns the maximum number of entries of this cache.
+	 * @return the maximum size
+	 */
+	public int getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+
+	/**
+	 * Returns the number of lookups that have been served from the cache, including the cached
+	 * failures.
+	 * @return the hit count
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+
+	/**
+	 * Returns the number of lookups that had to load a document or wait for its loading.
+	 * @return the miss count
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+
+	/**
+	 * Returns the number of entries that have been evicted because the cache was full.
+	 * @return the eviction count
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+
+	/**
+	 * Returns a String representation of the metrics of this cache.
+	 */
+	public String getMetrics()
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append("size=").append(size());
+		ret.append(" hits=").append(getHitCount());
+		ret.append(" misses=").append(getMissCount());
+		ret.append(" evictions=").append(getEvictionCount());
+		return ret.toString();
+	}
+
+
+	/**
+	 * Puts the given entry, evicting the least recently used entries if the cache is full. The
+	 * entries that are still loading are not evicted, such that their waiters and later lookups
+	 * share the same load, and the cache may then hold more than its maximum size until they are
+	 * done. The caller must hold the lock of this cache.
+	 */
+	private void put(URI uri, Entry entry)
+	{
+		entries.put(uri, entry);
+		Iterator<Map.Entry<URI, Entry>> it = entries.entrySet().iterator();
+		while(entries.size() > maximumSize && it.hasNext())
+			if (!it.next().getValue().isLoading())
+			{
+				it.remove();
+				evictions.incrementAndGet();
+			}
+	}
+
+
+	/**
+	 * Tests whether the given done task has failed.
+	 */
+	private static boolean hasFailed(FutureTask<EmotionMLDocument> task)
+	{
+		try
+		{
+			task.get(); // does not block since the task is done
+			return false;
+		}
+		catch (ExecutionException e)
+		{
+			return true;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+
+	/**
+	 * Waits for the given task to complete and returns its result.
+	 * @param task
+	 * @return the loaded document
+	 * @throws EmotionMLException if the loader threw an EmotionMLException
+	 */
+	private static EmotionMLDocument get(FutureTask<EmotionMLDocument> task) throws EmotionMLException
+	{
+		boolean interrupted = false;
+		try
+		{
+			while(true)
+			{
+				try
+				{
+					return task.get();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+				catch (ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					if (cause instanceof EmotionMLException)
+						throw (EmotionMLException) cause;
+					else if (cause instanceof RuntimeException)
+						throw (RuntimeException) cause;
+					else if (cause instanceof Error)
+						throw (Error) cause;
+					else throw new IllegalStateException(cause);
+				}
+			}
+		}
+		finally
+		{
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,327 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.vocabularies.Vocabulary;
+import fr.loria.synalp.emotionml.vocabularies.predefined.*;
+
+/**
+ * A VocabularyCatalog maps the URIs of vocabulary documents to local copies, such that the
+ * VocabularyResolver does not need to access the network to retrieve them. The document
+ * http://www.w3.org/TR/emotion-voc/xml is predefined: it is built in memory from the classes of the
+ * vocabularies.predefined package. Other documents can be registered in memory, as classpath
+ * resources, as files, or found in catalog directories which mirror the URIs: the document
+ * http://host/path is looked for in the file host/path of each directory, in registration order,
+ * and only inside the directory: the URIs whose path has ".." segments, once normalized, are never
+ * looked for, nor the files that resolve outside of the directory. A catalog can also be offline, in which case the documents that are not in the catalog are not
+ * retrieved at all. By default one catalog is shared by all the VocabularyResolver instances (see
+ * {@link #getDefault()}). Each catalog has its own VocabularyCache, such that the documents found in
+ * one catalog are not served to the resolvers using another one, and the resources and files of a
+ * catalog are imported with a resolver using that catalog and its cache. This class is thread-safe.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.VocabularyResolver
+ */
+public class VocabularyCatalog
+{
+	private static final VocabularyCatalog defaultCatalog = new VocabularyCatalog();
+
+	private final Map<URI, EmotionMLDocument> documents = new ConcurrentHashMap<URI, EmotionMLDocument>();
+	private final Map<URI, String> resources = new ConcurrentHashMap<URI, String>();
+	private final Map<URI, File> files = new ConcurrentHashMap<URI, File>();
+	private final List<File> directories = new CopyOnWriteArrayList<File>();
+	private final VocabularyCache cache = new VocabularyCache();
+	private volatile boolean offline;
+	private EmotionMLImporter importer;
+
+
+	/**
+	 * Creates a new VocabularyCatalog containing the predefined vocabularies.
+	 */
+	public VocabularyCatalog()
+	{
+		documents.put(EmotionMLDocument.VOCABULARY_URI, createPredefinedDocument());
+	}
+
+
+	/**
+	 * Returns the VocabularyCatalog shared by default by all the VocabularyResolver instances.
+	 * @return the default catalog
+	 */
+	public static VocabularyCatalog getDefault()
+	{
+		return defaultCatalog;
+	}
+
+
+	/**
+	 * Returns the VocabularyCache shared by default by all the VocabularyResolver instances using
+	 * this catalog.
+	 * @return the cache of this catalog
+	 */
+	public VocabularyCache getCache()
+	{
+		return cache;
+	}
+
+
+	/**
+	 * Registers the given document for the given URI.
+	 * @param uri the URI of the document, without fragment
+	 * @param document
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog register(URI uri, EmotionMLDocument document)
+	{
+		documents.put(uri, document);
+		return this;
+	}
+
+
+	/**
+	 * Registers the given classpath resource for the given URI. The resource is read each time the
+	 * document is looked up, that is when it is not in the VocabularyCache.
+	 * @param uri the URI of the document, without fragment
+	 * @param resource the absolute path of the resource, for instance "/com/example/vocabularies.xml"
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog register(URI uri, String resource)
+	{
+		resources.put(uri, resource);
+		return this;
+	}
+
+
+	/**
+	 * Registers the given file for the given URI. The file is read each time the document is looked
+	 * up, that is when it is not in the VocabularyCache.
+	 * @param uri the URI of the document, without fragment
+	 * @param file
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog register(URI uri, File file)
+	{
+		files.put(uri, file);
+		return this;
+	}
+
+
+	/**
+	 * Adds a catalog directory, in which the document http://host/path is looked for in the file
+	 * host/path.
+	 * @param directory
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog addDirectory(File directory)
+	{
+		directories.add(directory);
+		return this;
+	}
+
+
+	/**
+	 * Removes a catalog directory.
+	 * @param directory
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog removeDirectory(File directory)
+	{
+		directories.remove(directory);
+		return this;
+	}
+
+
+	/**
+	 * Returns the catalog directories.
+	 * @return an unmodifiable list of directories
+	 */
+	public List<File> getDirectories()
+	{
+		return Collections.unmodifiableList(directories);
+	}
+
+
+	/**
+	 * Sets whether this VocabularyCatalog is offline, that is whether the documents that are not in
+	 * the catalog must not be retrieved from the network.
+	 * @param offline
+	 * @return this VocabularyCatalog for chaining
+	 */
+	public VocabularyCatalog setOffline(boolean offline)
+	{
+		this.offline = offline;
+		return this;
+	}
+
+
+	/**
+	 * Tests whether this VocabularyCatalog is offline.
+	 * @return false by default
+	 */
+	public boolean isOffline()
+	{
+		return offline;
+	}
+
+
+	/**
+	 * Tests whether this VocabularyCatalog contains a document with given URI.
+	 * @param uri the URI of the document, without fragment
+	 * @return true if the document is registered or found in a catalog directory
+	 */
+	public boolean contains(URI uri)
+	{
+		return documents.containsKey(uri) || resources.containsKey(uri) || files.containsKey(uri) || findFile(uri) != null;
+	}
+
+
+	/**
+	 * Looks up the document with given URI in this catalog. The registered documents are returned
+	 * as is, the other ones are imported, and validated, from their resource or file.
+	 * @param uri the URI of the document, without fragment
+	 * @return null if the document is not in this catalog
+	 * @throws EmotionMLException if the local copy of the document cannot be read or is not valid
+	 */
+	public EmotionMLDocument lookup(URI uri) throws EmotionMLException
+	{
+		EmotionMLDocument ret = documents.get(uri);
+		if (ret != null)
+			return ret;
+
+		String resource = resources.get(uri);
+		if (resource != null)
+		{
+			InputStream stream = VocabularyCatalog.class.getResourceAsStream(resource);
+			if (stream == null)
+				throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri + "> since its catalog resource \"" + resource +
+														"\" is not found");
+			return importDocument(uri, stream);
+		}
+
+		File file = files.get(uri);
+		if (file == null)
+			file = findFile(uri);
+		if (file != null)
+		{
+			try
+			{
+				return importDocument(uri, new FileInputStream(file));
+			}
+			catch (FileNotFoundException e)
+			{
+				throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri + "> since its catalog file \"" + file +
+														"\" cannot be opened: " + e.getMessage());
+			}
+		}
+
+		return null;
+	}
+
+
+	/**
+	 * Finds the file mirroring the given URI in the catalog directories.
+	 * @return null if there is no such file, or if the URI points outside of the directories
+	 */
+	private File findFile(URI uri)
+	{
+		if (uri.getHost() == null || uri.getPath() == null)
+			return null;
+
+		String path = uri.getHost() + uri.normalize().getPath();
+		for(String segment : path.split("/"))
+			if (segment.equals(".."))
+				return null;
+
+		for(File directory : directories)
+		{
+			File file = new File(directory, path);
+			if (isInside(file, directory) && file.isFile())
+				return file;
+		}
+		return null;
+	}
+
+
+	/**
+	 * Tests whether the given file is inside the given directory once their canonical paths are
+	 * resolved, such that neither links nor platform separators let it escape the directory.
+	 */
+	private static boolean isInside(File file, File directory)
+	{
+		try
+		{
+			String directoryPath = directory.getCanonicalPath();
+			if (!directoryPath.endsWith(File.separator))
+				directoryPath += File.separator;
+			return file.getCanonicalPath().startsWith(directoryPath);
+		}
+		catch (IOException e)
+		{
+			return false;
+		}
+	}
+
+
+	/**
+	 * Imports the document with given URI from the given stream, and closes it.
+	 */
+	private EmotionMLDocument importDocument(URI uri, InputStream stream) throws EmotionMLException
+	{
+		try
+		{
+			return getImporter().importDocument(stream);
+		}
+		catch (EmotionMLException e)
+		{
+			throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
+												"\" since there has been an EmotionMLFormat exception while reading its catalog copy: " + e.getLocalizedMessage());
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
+												"\" since there has been an IO exception while reading its catalog copy: " + e.getLocalizedMessage());
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				// nothing to do, the document has been read or has failed
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the EmotionMLImporter used to import the resources and files, whose vocabularies are
+	 * resolved with this catalog and its cache. It is created lazily since creating it eagerly would
+	 * recursively create validators and resolvers.
+	 */
+	private synchronized EmotionMLImporter getImporter()
+	{
+		if (importer == null)
+			importer = new EmotionMLImporter(new EmotionMLValidator(new VocabularyResolver(this)));
+		return importer;
+	}
+
+
+	/**
+	 * Creates the document http://www.w3.org/TR/emotion-voc/xml from the predefined vocabularies.
+	 */
+	private static EmotionMLDocument createPredefinedDocument()
+	{
+		EmotionMLDocument ret = new EmotionMLDocument();
+		for(Vocabulary vocabulary : new Vocabulary[] { new Big6(), new EverydayCategories(), new OccCategories(), new FsreCategories(),
+				new FrijdaCategories(), new PadDimensions(), new FsreDimensions(), new IntensityDimension(), new OccAppraisals(),
+				new SchererAppraisals(), new EmaAppraisals(), new FrijdaActionTendencies() })
+			ret.add(vocabulary);
+		return ret;
+	}
+}
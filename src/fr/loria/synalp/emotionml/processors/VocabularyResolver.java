@@ -2,7 +2,7 @@ package fr.loria.synalp.emotionml.processors;
 
 import java.io.*;
 import java.net.*;
-import java.util.*;
+import java.util.concurrent.Callable;
 
 import org.w3c.dom.*;
 
@@ -13,35 +13,84 @@ import fr.loria.synalp.emotionml.vocabularies.Vocabulary;
 /**
  * A VocabularyResolvert helps the retrieval and parsing of documents during a serialization or
  * deserialization operation. It holds a reference to a local document for resolving local URIs and
- * a map to cache externally resolved URIs. The local document is a DOM Document because the
- * vocabulary resolution may happen while importing a document, that is while the document is not
- * fully imported yet.
+ * a VocabularyCache for externally resolved URIs, which by default is the cache of its catalog.
+ * External documents are first looked up in a VocabularyCatalog and only retrieved from the network
+ * if they are not in the catalog. The local document is a DOM Document because the vocabulary resolution may happen while importing a
+ * document, that is while the document is not fully imported yet. The cache and the importer may be
+ * shared by concurrent validations, which resolve local URIs against their own local vocabularies
+ * (see ValidationContext).
  * @author adenis
  */
 public class VocabularyResolver
 {
-	private Document localDocument;
-	private Map<URI, EmotionMLDocument> documentsCache;
+	private LocalVocabularies localVocabularies;
+	private VocabularyCache cache;
+	private VocabularyCatalog catalog;
+	private EmotionMLImporter importer;
 
 
 	/**
-	 * Creates a new VocabularyResolver.
+	 * Creates a new VocabularyResolver using the default VocabularyCatalog and its VocabularyCache.
 	 */
 	public VocabularyResolver()
 	{
-		this.localDocument = null;
-		this.documentsCache = new HashMap<URI, EmotionMLDocument>();
+		this(VocabularyCatalog.getDefault());
 	}
 
 
 	/**
-	 * Returns the current documents cache. Any modifications on the given cache will be used by the
-	 * resolver.
-	 * @return the actual cache
+	 * Creates a new VocabularyResolver using the given VocabularyCatalog and its VocabularyCache.
+	 * @param catalog
 	 */
-	public Map<URI, EmotionMLDocument> getDocumentsCache()
+	public VocabularyResolver(VocabularyCatalog catalog)
 	{
-		return documentsCache;
+		this(catalog.getCache(), catalog);
+	}
+
+
+	/**
+	 * Creates a new VocabularyResolver using the given VocabularyCache and the default
+	 * VocabularyCatalog.
+	 * @param cache
+	 */
+	public VocabularyResolver(VocabularyCache cache)
+	{
+		this(cache, VocabularyCatalog.getDefault());
+	}
+
+
+	/**
+	 * Creates a new VocabularyResolver using the given VocabularyCache and VocabularyCatalog. The
+	 * cache should not be shared with resolvers using another catalog, since it would serve them the
+	 * documents found in this one.
+	 * @param cache
+	 * @param catalog
+	 */
+	public VocabularyResolver(VocabularyCache cache, VocabularyCatalog catalog)
+	{
+		this.localVocabularies = null;
+		this.cache = cache;
+		this.catalog = catalog;
+	}
+
+
+	/**
+	 * Returns the cache of the documents retrieved by this resolver.
+	 * @return the cache
+	 */
+	public VocabularyCache getCache()
+	{
+		return cache;
+	}
+
+
+	/**
+	 * Returns the catalog in which the documents are looked up before being retrieved.
+	 * @return the catalog
+	 */
+	public VocabularyCatalog getCatalog()
+	{
+		return catalog;
 	}
 
 
@@ -51,59 +100,91 @@ public class VocabularyResolver
 	 */
 	public Document getLocalDocument()
 	{
-		return localDocument;
+		return localVocabularies == null ? null : localVocabularies.getDocument();
 	}
 
 
 	/**
-	 * Sets the local document which is the document for resolving local URIs.
+	 * Sets the local document which is the document for resolving local URIs. The vocabularies of
+	 * the document are indexed on the first lookup and each of them is imported only once until
+	 * the local document is set again.
 	 * @param document
 	 */
 	public void setLocalDocument(Document document)
 	{
-		this.localDocument = document;
+		this.localVocabularies = document == null ? null : new LocalVocabularies(document);
 	}
 
 
 	/**
-	 * Returns the Vocabulary in the local document with given id.
-	 * @throws EmotionMLException 
+	 * Returns the EmotionMLImporter used to import resolved vocabularies and documents. It is
+	 * created lazily since creating it eagerly would recursively create validators and resolvers.
 	 */
-	private Vocabulary retrieveVocabularyFromLocalDocument(String id) throws EmotionMLException
+	private synchronized EmotionMLImporter getImporter()
 	{
-		// first get the element
-		Element vocabularyElement = null;
-		NodeList children = localDocument.getDocumentElement().getChildNodes();
-		for(int i = 0; i < children.getLength(); i++)
-		{
-			Node child = children.item(i);
-			if (child instanceof Element)
-			{
-				Element e = (Element) child;
-				if (e.getLocalName().equals("vocabulary") && e.getAttribute("id").equals(id))
-				{
-					vocabularyElement = e;
-					break;
-				}
-			}
-		}
-
-		// then import it
-		if (vocabularyElement == null)
-			return null;
-		else return new EmotionMLImporter().importVocabulary(vocabularyElement);
+		if (importer == null)
+			importer = new EmotionMLImporter();
+		return importer;
 	}
 
 
 	/**
 	 * Retrieves a Vocabulary with given URI. If the URI is local to a document, resolve it against
 	 * the local document, else check first in the cache if the URI has been already resolved,
-	 * eventually retrieve the document and parse it.
+	 * eventually retrieve the document and parse it. A failed retrieval is cached as well.
 	 * @param uri
 	 * @return null if not found
 	 * @throws EmotionMLException 
 	 */
 	public Vocabulary retrieveVocabulary(URI uri) throws EmotionMLException
+	{
+		return retrieveVocabulary(uri, localVocabularies);
+	}
+
+
+	/**
+	 * Retrieves a Vocabulary with given URI, resolving local URIs against the given local
+	 * vocabularies instead of the local document of this VocabularyResolver.
+	 * @param uri
+	 * @param localVocabularies the local vocabularies, may be null
+	 * @return null if not found
+	 * @throws EmotionMLException
+	 */
+	Vocabulary retrieveVocabulary(URI uri, LocalVocabularies localVocabularies) throws EmotionMLException
+	{
+		return retrieveVocabulary(uri, localVocabularies, NullProcessingListener.INSTANCE);
+	}
+
+
+	/**
+	 * Retrieves a Vocabulary with given URI like retrieveVocabulary(URI, LocalVocabularies), and
+	 * reports the resolution to the given listener. A resolution is a cache hit if the local
+	 * vocabulary was already imported or the external document was already in the cache, and the
+	 * resolution time includes the retrieval and the import of the missed ones.
+	 * @param uri
+	 * @param localVocabularies the local vocabularies, may be null
+	 * @param listener the listener, may be null
+	 * @return null if not found
+	 * @throws EmotionMLException
+	 */
+	Vocabulary retrieveVocabulary(URI uri, LocalVocabularies localVocabularies, ProcessingListener listener) throws EmotionMLException
+	{
+		if (listener == null || listener instanceof NullProcessingListener)
+			return resolve(uri, localVocabularies, null);
+
+		long start = System.nanoTime();
+		boolean[] missed = new boolean[1];
+		Vocabulary ret = resolve(uri, localVocabularies, missed);
+		listener.vocabularyResolved(uri, !missed[0], System.nanoTime() - start);
+		return ret;
+	}
+
+
+	/**
+	 * Retrieves a Vocabulary with given URI and records in the given array whether it missed the
+	 * cache.
+	 */
+	private Vocabulary resolve(URI uri, LocalVocabularies localVocabularies, final boolean[] missed) throws EmotionMLException
 	{
 		String id = uri.getFragment();
 
@@ -114,15 +195,17 @@ public class VocabularyResolver
 													"the URI of document may be empty when referring to a vocabulary inside the same document, for instance \"#big6\")");
 
 		// assume that the URI is local
-		if (uri.getHost() == null && (uri.getPath() == null || uri.getPath().equals("")))
+		if (isLocal(uri))
 		{
-			if (localDocument == null)
+			if (localVocabularies == null)
 				throw new EmotionMLResolutionException("Unable to retrieve local vocabulary from id \"" + id +
 														"\" since there is no defined local document where to look for it (call setLocalDocument prior to retrieveVocabulary)");
 
 			// now search in the local document for a Vocabulary with that id
 
-			Vocabulary ret = retrieveVocabularyFromLocalDocument(id);
+			if (missed != null)
+				missed[0] = !localVocabularies.isImported(id);
+			Vocabulary ret = localVocabularies.get(id, getImporter());
 			if (ret == null)
 				throw new EmotionMLResolutionException("Unable to retrieve local vocabulary from id \"" + id +
 														"\" since it is not found in the defined local document");
@@ -130,91 +213,132 @@ public class VocabularyResolver
 		}
 		else
 		{
-			if (documentsCache.containsKey(uri))
+			final URI documentURI = getDocumentURI(uri); // the vocabularies of a document share its entry
+			EmotionMLDocument document = cache.get(documentURI, new Callable<EmotionMLDocument>()
 			{
-				EmotionMLDocument document = documentsCache.get(uri);
-				Vocabulary ret = document.getVocabulary(id);
-				if (ret == null)
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from id \"" + id +
-															"\" since it is not found in the cached document corresponding to <" +
-															uri + ">");
-				else return ret;
-			}
-			else
-			{
-				URL url;
-				try
+				@Override
+				public EmotionMLDocument call() throws EmotionMLException
 				{
-					url = uri.toURL();
-				}
-				catch (MalformedURLException e)
-				{
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri + "> since it is malformed: " + e.getMessage());
+					if (missed != null)
+						missed[0] = true;
+					return loadDocument(documentURI);
 				}
+			});
 
-				BufferedReader in;
-				try
-				{
-					in = new BufferedReader(new InputStreamReader(url.openStream()));
-				}
-				catch (IOException e)
-				{
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
-															">, check the URL since there has been an IO exception while opening the stream: " +
-															e.getMessage());
-				}
+			Vocabulary ret = document.getVocabulary(id);
+			if (ret == null)
+				throw new EmotionMLResolutionException("Unable to retrieve vocabulary from id \"" + id +
+														"\" since it is not found in the accessed document corresponding to <" +
+														uri + ">");
+			else return ret;
+		}
+	}
 
-				String line;
-				StringBuilder str = new StringBuilder();
-				try
-				{
-					while((line = in.readLine()) != null)
-						str.append(line);
-				}
-				catch (IOException e)
-				{
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
-															"> since there has been an IO exception while reading the stream: " +
-															e.getMessage());
-				}
-				try
-				{
-					in.close();
-				}
-				catch (IOException e)
-				{
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
-															"> since there has been an IO exception while closing the stream: " +
-															e.getMessage());
-				}
 
-				// now parse the document, and put it in cache
-				EmotionMLDocument document;
-				try
-				{
-					document = new EmotionMLImporter().importDocument(str.toString());
-				}
-				catch (EmotionMLException e)
-				{
-					throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
-														"\" since there has been an EmotionMLFormat exception while retrieving it: " + e.getLocalizedMessage());
-				}
-				catch (IOException e)
-				{
-					throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
-														"\" since there has been an IO exception while retrieving it: " + e.getLocalizedMessage());
-				}
+	/**
+	 * Looks up the document with given URI in the catalog, or else retrieves it and imports it.
+	 * @param uri
+	 * @return the imported document
+	 * @throws EmotionMLException
+	 */
+	private EmotionMLDocument loadDocument(URI uri) throws EmotionMLException
+	{
+		EmotionMLDocument ret = catalog.lookup(uri);
+		if (ret != null)
+			return ret;
+		if (catalog.isOffline())
+			throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
+													"> since it is not in the vocabulary catalog and the catalog is offline");
+
+		URL url;
+		try
+		{
+			url = uri.toURL();
+		}
+		catch (MalformedURLException e)
+		{
+			throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri + "> since it is malformed: " + e.getMessage());
+		}
 
-				documentsCache.put(uri, document);
+		BufferedReader in;
+		try
+		{
+			in = new BufferedReader(new InputStreamReader(url.openStream()));
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
+													">, check the URL since there has been an IO exception while opening the stream: " +
+													e.getMessage());
+		}
 
-				Vocabulary ret = document.getVocabulary(id);
-				if (ret == null)
-					throw new EmotionMLResolutionException("Unable to retrieve vocabulary from id \"" + id +
-															"\" since it is not found in the accessed document corresponding to <" +
-															uri + ">");
-				else return ret;
-			}
+		String line;
+		StringBuilder str = new StringBuilder();
+		try
+		{
+			while((line = in.readLine()) != null)
+				str.append(line);
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
+													"> since there has been an IO exception while reading the stream: " +
+													e.getMessage());
+		}
+		try
+		{
+			in.close();
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLResolutionException("Unable to retrieve vocabulary from URI <" + uri +
+													"> since there has been an IO exception while closing the stream: " +
+													e.getMessage());
+		}
+
+		// now parse the document
+		try
+		{
+			return getImporter().importDocument(str.toString());
+		}
+		catch (EmotionMLException e)
+		{
+			throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
+												"\" since there has been an EmotionMLFormat exception while retrieving it: " + e.getLocalizedMessage());
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLFormatException("Unable to retrieve vocabulary from URI \"" + uri +
+												"\" since there has been an IO exception while retrieving it: " + e.getLocalizedMessage());
 		}
 	}
 
+
+	/**
+	 * Returns the URI of the document containing the vocabulary with given URI, that is the given
+	 * URI without its fragment.
+	 */
+	private static URI getDocumentURI(URI uri)
+	{
+		try
+		{
+			return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+		}
+		catch (URISyntaxException e)
+		{
+			return uri;
+		}
+	}
+
+
+	/**
+	 * Tests whether the given URI refers to the local document, that is if it has neither host nor
+	 * path.
+	 * @param uri
+	 * @return true if the URI is local
+	 */
+	static boolean isLocal(URI uri)
+	{
+		return uri.getHost() == null && (uri.getPath() == null || uri.getPath().equals(""));
+	}
 }
@@ -0,0 +1,500 @@
+package fr.loria.synalp.emotionml.processors;
+
+import java.io.*;
+import java.util.*;
+
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * An XMLContentWriter is a ContentHandler which writes the document it receives to an OutputStream,
+ * encoded in UTF-8 and indented. The written bytes are the ones the Transformer of the
+ * XMLEmotionMLWriter writes for the DOM Element having the same content: the same XML declaration,
+ * the prefix mappings declared before the attributes and the undeclared namespaces after them, the
+ * same escaping of the special characters, and the same indentation, which is not inserted around
+ * the elements of a mixed content. The bytes go through a fixed size buffer, hence the memory used
+ * does not depend on the size of the document. The prefix mappings of an element must be reported
+ * before its start like SAX parsers do, they are ended with the element.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.io.XMLEmotionMLWriter
+ */
+class XMLContentWriter extends DefaultHandler
+{
+	private static final byte[] DECLARATION = getBytes("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+	private static final byte[] LINE_SEPARATOR = getBytes(System.getProperty("line.separator"));
+
+	private OutputStream stream;
+	private int indentAmount;
+	private byte[] buffer = new byte[8192];
+	private int count;
+
+	// elements
+	private int depth;
+	private String[] names = new String[16];
+	private boolean startTagOpen;
+	private boolean startNewLine;
+	private boolean preserve; // whether the current element contains non whitespace text
+	private boolean previousText;
+	private boolean[] preserves = new boolean[16];
+	private int preservesSize;
+
+	// namespaces
+	private List<String> prefixMappings = new ArrayList<String>(); // prefix, uri, prefix, uri...
+	private List<String> declaredPrefixes = new ArrayList<String>();
+	private List<String> declaredURIs = new ArrayList<String>();
+	private List<Integer> declarationDepths = new ArrayList<Integer>();
+
+
+	/**
+	 * Creates a new XMLContentWriter indenting by 4 spaces.
+	 * @param stream
+	 */
+	XMLContentWriter(OutputStream stream)
+	{
+		this(stream, 4);
+	}
+
+
+	/**
+	 * Creates a new XMLContentWriter.
+	 * @param stream the stream the document is written to, it is flushed at the end of the document
+	 *            but not closed
+	 * @param indentAmount the number of spaces per level of indentation
+	 */
+	XMLContentWriter(OutputStream stream, int indentAmount)
+	{
+		this.stream = stream;
+		this.indentAmount = indentAmount;
+	}
+
+
+/////// SAX events
+
+	@Override
+	public void startDocument() throws SAXException
+	{
+		write(DECLARATION);
+	}
+
+
+	@Override
+	public void endDocument() throws SAXException
+	{
+		if (!previousText)
+			write(LINE_SEPARATOR);
+		flush();
+	}
+
+
+	@Override
+	public void startPrefixMapping(String prefix, String uri)
+	{
+		prefixMappings.add(prefix);
+		prefixMappings.add(uri);
+	}
+
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+	{
+		if (startTagOpen)
+			closeStartTag();
+
+		preserve = false;
+		if (shouldIndent() && startNewLine)
+			indent(depth);
+		startNewLine = true;
+
+		write('<');
+		writeName(qName);
+
+		if (depth == names.length)
+			names = Arrays.copyOf(names, depth * 2);
+		names[depth++] = qName;
+		startTagOpen = true;
+		previousText = false;
+
+		// the order in which the Transformer writes the namespaces and the attributes
+		for(int i = 0; i < prefixMappings.size(); i += 2)
+			declare(prefixMappings.get(i), prefixMappings.get(i + 1));
+		prefixMappings.clear();
+
+		for(int i = 0; i < atts.getLength(); i++)
+		{
+			String name = atts.getQName(i);
+			String attributeURI = atts.getURI(i);
+			if (attributeURI != null && !attributeURI.equals(""))
+			{
+				int colon = name.indexOf(':');
+				String prefix = colon > 0 ? name.substring(0, colon) : "ns0";
+				declare(prefix, attributeURI);
+				if (colon < 0)
+					name = prefix + ":" + name;
+			}
+			writeAttribute(name, atts.getValue(i));
+		}
+
+		int colon = qName.indexOf(':');
+		declare(colon > 0 ? qName.substring(0, colon) : "", uri == null ? "" : uri);
+	}
+
+
+	@Override
+	public void endElement(String uri, String localName, String qName) throws SAXException
+	{
+		if (startTagOpen)
+		{
+			write('/');
+			write('>');
+			startTagOpen = false;
+		}
+		else
+		{
+			if (shouldIndent())
+				indent(depth - 1);
+			write('<');
+			write('/');
+			writeName(names[depth - 1]);
+			write('>');
+			preserve = preservesSize > 0 && preserves[--preservesSize];
+		}
+		previousText = false;
+
+		for(int i = declarationDepths.size() - 1; i >= 0 && declarationDepths.get(i) >= depth; i--)
+		{
+			declaredPrefixes.remove(i);
+			declaredURIs.remove(i);
+			declarationDepths.remove(i);
+		}
+		depth--;
+	}
+
+
+	@Override
+	public void characters(char[] ch, int start, int length) throws SAXException
+	{
+		if (length == 0)
+			return;
+
+		if (startTagOpen)
+			closeStartTag();
+
+		int end = start + length;
+		for(int i = start; i < end && !preserve; i++)
+			preserve = !isWhitespace(ch[i]);
+
+		for(int i = start; i < end; i++)
+		{
+			char c = ch[i];
+			switch (c)
+			{
+				case '\n':
+					write(LINE_SEPARATOR);
+					break;
+
+				case '&':
+					write("&amp;");
+					break;
+
+				case '<':
+					write("&lt;");
+					break;
+
+				case '>':
+					write("&gt;");
+					break;
+
+				default:
+					i = writeChar(ch, i, end);
+					break;
+			}
+		}
+		previousText = true;
+	}
+
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException
+	{
+		characters(ch, start, length);
+	}
+
+
+/////// Writing
+
+	/**
+	 * Closes the start tag of the current element.
+	 */
+	private void closeStartTag() throws SAXException
+	{
+		write('>');
+		startTagOpen = false;
+		previousText = false;
+		if (preservesSize == preserves.length)
+			preserves = Arrays.copyOf(preserves, preservesSize * 2);
+		preserves[preservesSize++] = preserve;
+	}
+
+
+	/**
+	 * Tests whether the next tag must be indented.
+	 */
+	private boolean shouldIndent()
+	{
+		return !preserve && !previousText && depth > 0;
+	}
+
+
+	/**
+	 * Writes a new line if needed then the indentation of the given depth.
+	 */
+	private void indent(int level) throws SAXException
+	{
+		if (startNewLine)
+			write(LINE_SEPARATOR);
+		for(int i = level * indentAmount; i > 0; i--)
+			write(' ');
+	}
+
+
+	/**
+	 * Declares the given prefix mapping for the current element and writes its declaration, unless
+	 * the prefix is already mapped to the uri.
+	 */
+	private void declare(String prefix, String uri) throws SAXException
+	{
+		if (prefix.startsWith("xml"))
+			return;
+
+		String current = prefix.equals("") ? "" : null;
+		for(int i = declaredPrefixes.size() - 1; i >= 0; i--)
+			if (declaredPrefixes.get(i).equals(prefix))
+			{
+				current = declaredURIs.get(i);
+				break;
+			}
+		if (uri.equals(current))
+			return;
+
+		declaredPrefixes.add(prefix);
+		declaredURIs.add(uri);
+		declarationDepths.add(depth);
+
+		if (prefix.equals(""))
+			writeAttribute("xmlns", uri);
+		else if (!uri.equals(""))
+			writeAttribute("xmlns:" + prefix, uri);
+	}
+
+
+	/**
+	 * Writes the given attribute in the start tag.
+	 */
+	private void writeAttribute(String name, String value) throws SAXException
+	{
+		write(' ');
+		writeName(name);
+		write('=');
+		write('"');
+		for(int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '&':
+					write("&amp;");
+					break;
+
+				case '<':
+					write("&lt;");
+					break;
+
+				case '>':
+					write("&gt;");
+					break;
+
+				case '"':
+					write("&quot;");
+					break;
+
+				case '\n':
+				case '\r':
+				case '\t':
+					writeReference(c);
+					break;
+
+				default:
+					if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1)))
+						writeReference(Character.toCodePoint(c, value.charAt(++i)));
+					else writeChar(c, false);
+					break;
+			}
+		}
+		write('"');
+	}
+
+
+	/**
+	 * Writes the character at the given index of a text, as a character reference if needed.
+	 * @return the index of the last written character, which differs from the given index for a
+	 *         surrogate pair
+	 */
+	private int writeChar(char[] ch, int i, int end) throws SAXException
+	{
+		char c = ch[i];
+		if (c == '\r')
+			writeReference(c);
+		else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(ch[i + 1]))
+		{
+			writeReference(Character.toCodePoint(c, ch[i + 1]));
+			return i + 1;
+		}
+		else writeChar(c, true);
+		return i;
+	}
+
+
+	/**
+	 * Writes the given character in UTF-8, or as a character reference if it is a control
+	 * character or a lone surrogate. Like the Transformer, the C1 control characters are only
+	 * referenced in texts.
+	 */
+	private void writeChar(char c, boolean text) throws SAXException
+	{
+		if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || text && c >= 0x7F && c <= 0x9F || Character.isSurrogate(c))
+			writeReference(c);
+		else if (c < 0x80)
+			write((byte) c);
+		else if (c < 0x800)
+		{
+			write((byte) (0xC0 | c >> 6));
+			write((byte) (0x80 | c & 0x3F));
+		}
+		else
+		{
+			write((byte) (0xE0 | c >> 12));
+			write((byte) (0x80 | c >> 6 & 0x3F));
+			write((byte) (0x80 | c & 0x3F));
+		}
+	}
+
+
+	/**
+	 * Writes a character reference to the given code point.
+	 */
+	private void writeReference(int codePoint) throws SAXException
+	{
+		write("&#");
+		write(Integer.toString(codePoint));
+		write(';');
+	}
+
+
+	/**
+	 * Writes the given element or attribute name, which is not escaped.
+	 */
+	private void writeName(String name) throws SAXException
+	{
+		for(int i = 0; i < name.length(); i++)
+			writeChar(name.charAt(i), false);
+	}
+
+
+	/**
+	 * Writes the given ASCII String.
+	 */
+	private void write(String s) throws SAXException
+	{
+		for(int i = 0; i < s.length(); i++)
+			write((byte) s.charAt(i));
+	}
+
+
+	/**
+	 * Writes the given ASCII character.
+	 */
+	private void write(char c) throws SAXException
+	{
+		write((byte) c);
+	}
+
+
+	/**
+	 * Writes the given bytes.
+	 */
+	private void write(byte[] bytes) throws SAXException
+	{
+		for(byte b : bytes)
+			write(b);
+	}
+
+
+	/**
+	 * Writes the given byte in the buffer, which is emptied in the stream when it is full.
+	 */
+	private void write(byte b) throws SAXException
+	{
+		if (count == buffer.length)
+			drain();
+		buffer[count++] = b;
+	}
+
+
+	/**
+	 * Empties the buffer in the stream.
+	 */
+	private void drain() throws SAXException
+	{
+		try
+		{
+			stream.write(buffer, 0, count);
+			count = 0;
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
+		}
+	}
+
+
+	/**
+	 * Empties the buffer and flushes the stream.
+	 */
+	void flush() throws SAXException
+	{
+		drain();
+		try
+		{
+			stream.flush();
+		}
+		catch (IOException e)
+		{
+			throw new SAXException(e);
+		}
+	}
+
+
+	/**
+	 * Tests whether the given character is a whitespace for the indentation.
+	 */
+	private static boolean isWhitespace(char c)
+	{
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+	}
+
+
+	/**
+	 * Returns the UTF-8 bytes of the given String.
+	 */
+	private static byte[] getBytes(String s)
+	{
+		try
+		{
+			return s.getBytes("UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
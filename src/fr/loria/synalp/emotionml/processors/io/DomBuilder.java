@@ -0,0 +1,206 @@
+package fr.loria.synalp.emotionml.processors.io;
+
+import javax.xml.XMLConstants;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * A DomBuilder builds a DOM Document from the SAX events of a parser, like a DocumentBuilder
+ * would: the namespace declarations are kept as attributes, the adjacent characters are merged in a
+ * single Text node, and the comments and CDATA sections are kept. It rejects the documents which
+ * declare a DTD, whose elements are nested deeper than a maximum depth or whose attribute values are
+ * longer than a maximum length, as soon as the offending event is received. The parser must report
+ * the namespace declarations as attributes (see the namespace-prefixes feature). When asked, the
+ * location of each element is recorded in its user data. A DomBuilder is
+ * reused from one document to the next, and is not thread-safe.
+ * @author Alexandre Denis
+ */
+class DomBuilder extends DefaultHandler implements LexicalHandler
+{
+	private int maxDepth;
+	private int maxAttributeLength;
+	private boolean recordLocations;
+	private Locator locator;
+
+	private Document document;
+	private Node current;
+	private int depth;
+	private boolean cdata;
+	private StringBuilder text = new StringBuilder();
+
+
+	/**
+	 * Starts building the given empty Document.
+	 * @param document
+	 * @param maxDepth the maximum number of nested elements
+	 * @param maxAttributeLength the maximum number of characters of an attribute value
+	 * @param recordLocations true to record the location of each element
+	 */
+	void reset(Document document, int maxDepth, int maxAttributeLength, boolean recordLocations)
+	{
+		this.document = document;
+		this.current = document;
+		this.depth = 0;
+		this.cdata = false;
+		this.text.setLength(0);
+		this.maxDepth = maxDepth;
+		this.maxAttributeLength = maxAttributeLength;
+		this.recordLocations = recordLocations;
+		this.locator = null;
+	}
+
+
+	/**
+	 * Returns the built Document and releases it.
+	 * @return the Document given to reset
+	 */
+	Document getDocument()
+	{
+		Document ret = document;
+		document = null;
+		current = null;
+		locator = null;
+		return ret;
+	}
+
+
+/////// Content
+
+	@Override
+	public void setDocumentLocator(Locator locator)
+	{
+		this.locator = locator;
+	}
+
+
+	@Override
+	public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException
+	{
+		flushText();
+		if (++depth > maxDepth)
+			throw new SAXException("the elements are nested deeper than " + maxDepth + " levels");
+
+		Element element = document.createElementNS(uri.equals("") ? null : uri, qName);
+		for(int i = 0; i < atts.getLength(); i++)
+		{
+			String value = atts.getValue(i);
+			String name = atts.getQName(i);
+			if (value.length() > maxAttributeLength)
+				throw new SAXException("the value of attribute " + name + " is longer than " + maxAttributeLength + " characters");
+
+			String attributeURI = atts.getURI(i);
+			if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+				attributeURI = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+			element.setAttributeNS(attributeURI.equals("") ? null : attributeURI, name, value);
+		}
+		if (recordLocations && locator != null)
+			element.setUserData(XMLEmotionMLReader.LOCATION, new int[] { locator.getLineNumber(), locator.getColumnNumber() }, null);
+		current.appendChild(element);
+		current = element;
+	}
+
+
+	@Override
+	public void endElement(String uri, String localName, String qName)
+	{
+		flushText();
+		depth--;
+		current = current.getParentNode();
+	}
+
+
+	@Override
+	public void characters(char[] ch, int start, int length)
+	{
+		text.append(ch, start, length);
+	}
+
+
+	@Override
+	public void ignorableWhitespace(char[] ch, int start, int length)
+	{
+		text.append(ch, start, length);
+	}
+
+
+	@Override
+	public void processingInstruction(String target, String data)
+	{
+		flushText();
+		current.appendChild(document.createProcessingInstruction(target, data));
+	}
+
+
+	/**
+	 * Appends the pending characters as a Text node, or a CDATA section.
+	 */
+	private void flushText()
+	{
+		if (text.length() == 0)
+			return;
+
+		String value = text.toString();
+		text.setLength(0);
+		if (current != document) // the parser reports no characters outside the root
+			current.appendChild(cdata ? document.createCDATASection(value) : document.createTextNode(value));
+	}
+
+
+/////// Lexical
+
+	@Override
+	public void startDTD(String name, String publicId, String systemId) throws SAXException
+	{
+		throw new SAXException("DOCTYPE is disallowed");
+	}
+
+
+	@Override
+	public void endDTD()
+	{
+
+	}
+
+
+	@Override
+	public void startEntity(String name)
+	{
+
+	}
+
+
+	@Override
+	public void endEntity(String name)
+	{
+
+	}
+
+
+	@Override
+	public void startCDATA()
+	{
+		flushText();
+		cdata = true;
+	}
+
+
+	@Override
+	public void endCDATA()
+	{
+		if (text.length() == 0)
+			current.appendChild(document.createCDATASection(""));
+		else flushText();
+		cdata = false;
+	}
+
+
+	@Override
+	public void comment(char[] ch, int start, int length)
+	{
+		flushText();
+		current.appendChild(document.createComment(new String(ch, start, length)));
+	}
+}
@@ -1,45 +1,276 @@
 package fr.loria.synalp.emotionml.processors.io;
 
 import java.io.*;
+import java.math.*;
+import java.util.*;
+import java.util.regex.Pattern;
 
-import javax.xml.stream.*;
+import javax.xml.XMLConstants;
 
-import org.w3c.dom.Element;
+import org.w3c.dom.*;
+import org.xml.sax.helpers.NamespaceSupport;
 
-import de.odysseus.staxon.json.*;
-import de.odysseus.staxon.json.stream.impl.JsonStreamFactoryImpl;
+import com.google.gson.stream.JsonWriter;
 
 import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
 
 /**
- * A JsonEmotionMLWriter is an EmotionMLWriter that writes the Elements first using a XMLEmotionWriter then by converting the XML to JSON.
+ * A JsonEmotionMLWriter is an EmotionMLWriter that writes the Elements in JSON directly with a Gson
+ * JsonWriter. The JSON follows the conventions of StAXON, that the JsonEmotionMLReader reads: an
+ * element is a property whose value is its text if it has no attribute nor child element, null if
+ * it is empty, or else an object whose "@" properties are its namespace declarations and attributes
+ * followed by its children, all the children with the same name being grouped in an array at the
+ * place of the first one, such that no property is written twice in the same object. Texts that
+ * look like numbers or booleans are written as JSON primitives. The text that follows the child
+ * elements (for instance the text of an emotion) is written as a "$" property after them. Since an
+ * object does not keep the order of texts and elements, the elements having a text before one of
+ * their child elements, blank texts aside, are rejected.
  * @author Alexandre Denis
  *
  */
 public class JsonEmotionMLWriter implements EmotionMLWriter
 {
+	private static final Pattern NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+
 	@Override
 	public void write(Element element, OutputStream stream) throws EmotionMLException
 	{
 		try
 		{
-			JsonXMLConfig config = new JsonXMLConfigBuilder().autoArray(true).autoPrimitive(true).prettyPrint(true).build();
-			JsonXMLOutputFactory jsonOutputFactory = new JsonXMLOutputFactory(config, new JsonStreamFactoryImpl());
-			
-			// unfortunately we can't pass the node as a DOMSource so we have to write it as bytes first...
-			ByteArrayOutputStream out = new ByteArrayOutputStream();
-			new XMLEmotionMLWriter().write(element, out);
-			XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(new ByteArrayInputStream(out.toByteArray()));
-			
-			XMLEventWriter writer = jsonOutputFactory.createXMLEventWriter(stream);
-			writer.add(reader);
-			reader.close();
-			writer.close();
+			JsonWriter writer = new JsonWriter(new OutputStreamWriter(stream, "UTF-8"));
+			writer.setIndent("\t");
+			writer.beginObject();
+			writer.name(element.getNodeName());
+			writeElement(writer, element, new NamespaceSupport());
+			writer.endObject();
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLException("Unable to write the given Element in JSON: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Writes the value of the given Element, for instance after the name of its property.
+	 * @param writer
+	 * @param element
+	 * @param namespaces the namespaces in scope, the ones of the Element are popped after writing it
+	 * @throws EmotionMLException if the Element or one of its descendants has a text before one of
+	 *             its child elements
+	 * @throws IOException
+	 */
+	public void writeElement(JsonWriter writer, Element element, NamespaceSupport namespaces) throws EmotionMLException, IOException
+	{
+		namespaces.pushContext();
+
+		List<Attr> declarations = new ArrayList<Attr>();
+		List<Attr> attributes = new ArrayList<Attr>();
+		NamedNodeMap map = element.getAttributes();
+		for(int i = 0; i < map.getLength(); i++)
+		{
+			Attr attribute = (Attr) map.item(i);
+			if (isDeclaration(attribute))
+			{
+				if (!isRedundant(attribute, namespaces)) // like a Transformer, xmlns="" is only written to undeclare a default namespace
+					declarations.add(attribute);
+			}
+			else attributes.add(attribute);
 		}
-		catch(Exception e)
+
+		List<Object> children = getChildren(element);
+		List<String> fixups = getNamespaceFixups(element, attributes, declarations, namespaces);
+		if (declarations.isEmpty() && fixups.isEmpty() && attributes.isEmpty() && !hasElement(children))
+			writeText(writer, children.isEmpty() ? null : (String) children.get(0));
+		else
 		{
-			throw new EmotionMLException("Unable to write the given Element in JSON: "+e.getLocalizedMessage());
+			writer.beginObject();
+			for(Attr declaration : declarations)
+				writer.name("@" + declaration.getName()).value(declaration.getValue());
+			for(int i = 0; i < fixups.size(); i += 2)
+				writer.name(fixups.get(i).equals("") ? "@xmlns" : "@xmlns:" + fixups.get(i)).value(fixups.get(i + 1));
+			for(Attr attribute : attributes)
+				writer.name("@" + attribute.getName()).value(attribute.getValue());
+			writeChildren(writer, children, namespaces);
+			writer.endObject();
 		}
+
+		namespaces.popContext();
 	}
 
+
+	/**
+	 * Writes the given children, which are Elements followed by at most one text. The Elements with
+	 * the same name are written together, in an array if there are several of them.
+	 */
+	private void writeChildren(JsonWriter writer, List<Object> children, NamespaceSupport namespaces) throws EmotionMLException, IOException
+	{
+		Map<String, List<Element>> elements = new LinkedHashMap<String, List<Element>>();
+		String text = null;
+		for(Object child : children)
+			if (child instanceof String)
+				text = (String) child;
+			else
+			{
+				String name = ((Element) child).getNodeName();
+				List<Element> named = elements.get(name);
+				if (named == null)
+					elements.put(name, named = new ArrayList<Element>());
+				named.add((Element) child);
+			}
+
+		for(Map.Entry<String, List<Element>> entry : elements.entrySet())
+		{
+			writer.name(entry.getKey());
+			List<Element> named = entry.getValue();
+			if (named.size() == 1)
+				writeElement(writer, named.get(0), namespaces);
+			else
+			{
+				writer.beginArray();
+				for(Element element : named)
+					writeElement(writer, element, namespaces);
+				writer.endArray();
+			}
+		}
+
+		if (text != null)
+		{
+			writer.name("$");
+			writeText(writer, text);
+		}
+	}
+
+
+	/**
+	 * Writes the given text, as a number or a boolean if it looks like one.
+	 * @param writer
+	 * @param text the text, or null for an empty element
+	 * @throws IOException
+	 */
+	public void writeText(JsonWriter writer, String text) throws IOException
+	{
+		if (text == null)
+			writer.nullValue();
+		else if (text.equals("true") || text.equals("false"))
+			writer.value(Boolean.parseBoolean(text));
+		else if (NUMBER.matcher(text).matches())
+		{
+			if (text.indexOf('.') == -1 && text.indexOf('e') == -1 && text.indexOf('E') == -1)
+				writer.value(new BigInteger(text));
+			else writer.value(new BigDecimal(text));
+		}
+		else writer.value(text);
+	}
+
+
+	/**
+	 * Returns the children of the given Element: its child Elements followed by its text, which is
+	 * the concatenation of its texts. If the Element has child Elements, the blank texts between them
+	 * are ignored.
+	 * @throws EmotionMLException if a text that is not blank comes before a child Element
+	 */
+	private static List<Object> getChildren(Element element) throws EmotionMLException
+	{
+		boolean hasElement = false;
+		for(Node child = element.getFirstChild(); child != null && !hasElement; child = child.getNextSibling())
+			hasElement = child instanceof Element;
+
+		List<Object> ret = new ArrayList<Object>();
+		StringBuilder text = new StringBuilder();
+		for(Node child = element.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			if (child instanceof Element)
+			{
+				if (!text.toString().trim().isEmpty())
+					throw new EmotionMLException("Unable to write the element <" + element.getNodeName() + "> in JSON since it has the text \"" +
+													text.toString().trim() + "\" before its child element <" + child.getNodeName() +
+													">, and JSON only keeps the text after the child elements");
+				text.setLength(0);
+				ret.add(child);
+			}
+			else if (child instanceof Text)
+				text.append(((Text) child).getData());
+		}
+		if (text.length() > 0 && !(hasElement && text.toString().trim().isEmpty()))
+			ret.add(text.toString());
+		return ret;
+	}
+
+
+	/**
+	 * Tests whether the given children contain an Element.
+	 */
+	private static boolean hasElement(List<Object> children)
+	{
+		for(Object child : children)
+			if (child instanceof Element)
+				return true;
+		return false;
+	}
+
+
+	/**
+	 * Tests whether the given attribute is a namespace declaration.
+	 */
+	private static boolean isDeclaration(Attr attribute)
+	{
+		String name = attribute.getName();
+		return name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":");
+	}
+
+
+	/**
+	 * Tests whether the given namespace declaration undeclares a default namespace that is not declared.
+	 */
+	private static boolean isRedundant(Attr declaration, NamespaceSupport namespaces)
+	{
+		String uri = namespaces.getURI("");
+		return declaration.getName().equals(XMLConstants.XMLNS_ATTRIBUTE) && declaration.getValue().equals("") && (uri == null || uri.equals(""));
+	}
+
+
+	/**
+	 * Declares the namespaces of the given element in the given scope, and returns the ones that
+	 * are used by the element or its attributes but that are not declared, like an XML serializer
+	 * would.
+	 * @return a list of prefix, uri, prefix, uri...
+	 */
+	private static List<String> getNamespaceFixups(Element element, List<Attr> attributes, List<Attr> declarations, NamespaceSupport namespaces)
+	{
+		for(Attr declaration : declarations)
+		{
+			String name = declaration.getName();
+			namespaces.declarePrefix(name.equals(XMLConstants.XMLNS_ATTRIBUTE) ? "" : name.substring(XMLConstants.XMLNS_ATTRIBUTE.length() + 1), declaration.getValue());
+		}
+
+		List<String> ret = new ArrayList<String>();
+		addNamespaceFixup(element.getPrefix(), element.getNamespaceURI(), namespaces, ret);
+		for(Attr attribute : attributes)
+			if (attribute.getPrefix() != null)
+				addNamespaceFixup(attribute.getPrefix(), attribute.getNamespaceURI(), namespaces, ret);
+		return ret;
+	}
+
+
+	/**
+	 * Adds a declaration of the given namespace if it is not declared in the given scope.
+	 */
+	private static void addNamespaceFixup(String prefix, String uri, NamespaceSupport namespaces, List<String> fixups)
+	{
+		prefix = prefix == null ? "" : prefix;
+		uri = uri == null ? "" : uri;
+		if (prefix.equals(XMLConstants.XML_NS_PREFIX))
+			return;
+
+		String declared = namespaces.getURI(prefix);
+		if (!uri.equals(declared == null ? "" : declared))
+		{
+			namespaces.declarePrefix(prefix, uri);
+			fixups.add(prefix);
+			fixups.add(uri);
+		}
+	}
 }
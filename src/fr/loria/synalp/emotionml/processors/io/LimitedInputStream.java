@@ -0,0 +1,89 @@
+package fr.loria.synalp.emotionml.processors.io;
+
+import java.io.*;
+
+/**
+ * A LimitedInputStream fails as soon as more than a maximum number of bytes are read from the
+ * stream it wraps.
+ * @author Alexandre Denis
+ */
+class LimitedInputStream extends FilterInputStream
+{
+	private long remaining;
+	private final long maxBytes;
+
+
+	/**
+	 * @param stream
+	 * @param maxBytes the maximum number of bytes that can be read
+	 */
+	LimitedInputStream(InputStream stream, long maxBytes)
+	{
+		super(stream);
+		this.remaining = maxBytes;
+		this.maxBytes = maxBytes;
+	}
+
+
+	@Override
+	public int read() throws IOException
+	{
+		int ret = super.read();
+		if (ret != -1)
+			consume(1);
+		return ret;
+	}
+
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		int ret = super.read(b, off, len);
+		if (ret > 0)
+			consume(ret);
+		return ret;
+	}
+
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long ret = super.skip(n);
+		consume(ret);
+		return ret;
+	}
+
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+
+	/**
+	 * Counts the given number of read bytes.
+	 */
+	private void consume(long bytes) throws LimitExceededException
+	{
+		remaining -= bytes;
+		if (remaining < 0)
+			throw new LimitExceededException("the document is larger than " + maxBytes + " bytes");
+	}
+
+
+	/**
+	 * The IOException thrown when the stream is larger than the maximum.
+	 * @author Alexandre Denis
+	 */
+	static class LimitExceededException extends IOException
+	{
+		private static final long serialVersionUID = 1L;
+
+
+		LimitExceededException(String message)
+		{
+			super(message);
+		}
+	}
+}
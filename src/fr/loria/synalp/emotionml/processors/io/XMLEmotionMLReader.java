@@ -2,30 +2,189 @@ package fr.loria.synalp.emotionml.processors.io;
 
 import java.io.*;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.*;
 
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
+import org.xml.sax.*;
 
 import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+import fr.loria.synalp.emotionml.processors.io.LimitedInputStream.LimitExceededException;
 
 /**
- * A XMLEmotionMLReader is an EmotionMLReader that reads the InputStream by using a DocumentBuilder.
+ * A XMLEmotionMLReader is an EmotionMLReader that reads the InputStream with a SAX parser and builds
+ * its DOM Element like a DocumentBuilder would. Each thread keeps its own parser, which is reset
+ * after each parse. Since the documents may come from untrusted sources, the DTDs are rejected,
+ * hence no entity is declared and no external resource is loaded, and the documents larger than a
+ * maximum number of bytes, whose elements are nested deeper than a maximum depth, or whose attribute
+ * values are longer than a maximum length are rejected as soon as the limit is reached, such that
+ * the time and the memory of a read are bounded. It may also record the location of each element,
+ * which is then reported by the diagnostics of the validation. An XMLEmotionMLReader can be shared
+ * by concurrent importers. The limits of the reader of an importer also apply to the documents it
+ * imports with an XMLStreamReader.
  * @author Alexandre Denis
  *
  */
 public class XMLEmotionMLReader implements EmotionMLReader
 {
+	/**
+	 * The key of the user data of the elements holding their location as an int[] { line, column },
+	 * when the locations are recorded.
+	 */
+	public static final String LOCATION = "fr.loria.synalp.emotionml.location";
+
+	private static final String DISALLOW_DOCTYPE = "http://apache.org/xml/features/disallow-doctype-decl";
+	private static final String LOAD_EXTERNAL_DTD = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+	private static final String EXTERNAL_GENERAL_ENTITIES = "http://xml.org/sax/features/external-general-entities";
+	private static final String EXTERNAL_PARAMETER_ENTITIES = "http://xml.org/sax/features/external-parameter-entities";
+	private static final String NAMESPACE_PREFIXES = "http://xml.org/sax/features/namespace-prefixes";
+	private static final String LEXICAL_HANDLER = "http://xml.org/sax/properties/lexical-handler";
+
+	private static final SAXParserFactory parserFactory = createParserFactory();
+	private static final DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+	private static final ThreadLocal<Parser> parsers = new ThreadLocal<Parser>(); // the reset Parser of each thread
+
+	private volatile long maxSize = 256L * 1024 * 1024;
+	private volatile int maxDepth = 256;
+	private volatile int maxAttributeLength = 16 * 1024 * 1024;
+	private volatile boolean recordLocations;
+
+
+	/**
+	 * The parser of a thread, with the DocumentBuilder creating its Documents.
+	 */
+	private static class Parser
+	{
+		private SAXParser parser;
+		private DocumentBuilder builder;
+		private DomBuilder handler = new DomBuilder();
+	}
+
+
+	/**
+	 * Returns the maximum number of bytes of a document.
+	 * @return 256 MB by default
+	 */
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+
+	/**
+	 * Sets the maximum number of bytes of a document.
+	 * @param maxSize a number of bytes, Long.MAX_VALUE for no limit
+	 * @return this XMLEmotionMLReader for chaining
+	 */
+	public XMLEmotionMLReader setMaxSize(long maxSize)
+	{
+		this.maxSize = maxSize;
+		return this;
+	}
+
+
+	/**
+	 * Returns the maximum number of nested elements of a document, the root included.
+	 * @return 256 by default
+	 */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+
+
+	/**
+	 * Sets the maximum number of nested elements of a document, the root included.
+	 * @param maxDepth a number of elements, Integer.MAX_VALUE for no limit
+	 * @return this XMLEmotionMLReader for chaining
+	 */
+	public XMLEmotionMLReader setMaxDepth(int maxDepth)
+	{
+		this.maxDepth = maxDepth;
+		return this;
+	}
+
+
+	/**
+	 * Returns the maximum number of characters of an attribute value.
+	 * @return 16 M characters by default
+	 */
+	public int getMaxAttributeLength()
+	{
+		return maxAttributeLength;
+	}
+
+
+	/**
+	 * Sets the maximum number of characters of an attribute value.
+	 * @param maxAttributeLength a number of characters, Integer.MAX_VALUE for no limit
+	 * @return this XMLEmotionMLReader for chaining
+	 */
+	public XMLEmotionMLReader setMaxAttributeLength(int maxAttributeLength)
+	{
+		this.maxAttributeLength = maxAttributeLength;
+		return this;
+	}
+
+
+	/**
+	 * Tests whether the location of each element is recorded.
+	 * @return false by default
+	 */
+	public boolean isRecordingLocations()
+	{
+		return recordLocations;
+	}
+
+
+	/**
+	 * Sets whether the location of each element is recorded in its user data (see {@link #LOCATION}),
+	 * such that the Diagnostics of a validation give the line and column of the failures. It costs
+	 * an array per element, hence it is disabled by default.
+	 * @param recordLocations
+	 * @return this XMLEmotionMLReader for chaining
+	 */
+	public XMLEmotionMLReader setRecordLocations(boolean recordLocations)
+	{
+		this.recordLocations = recordLocations;
+		return this;
+	}
+
+
+	/**
+	 * Returns the given stream, failing once more bytes than the maximum size of a document have
+	 * been read from it. It applies the limit of this reader to the documents read otherwise, for
+	 * instance with an XMLStreamReader.
+	 * @param stream
+	 * @return the given stream if there is no limit
+	 */
+	public InputStream limit(InputStream stream)
+	{
+		return maxSize == Long.MAX_VALUE ? stream : new LimitedInputStream(stream, maxSize);
+	}
+
 
 	@Override
 	public Element read(InputStream stream) throws EmotionMLException, IOException
 	{
-		DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-		builderFactory.setNamespaceAware(true);
 		try
 		{
-			DocumentBuilder builder = builderFactory.newDocumentBuilder();
-			return builder.parse(stream).getDocumentElement(); // this can hang when parsing documents containing entities
+			Parser parser = getParser();
+			XMLReader reader = parser.parser.getXMLReader();
+			reader.setContentHandler(parser.handler);
+			reader.setProperty(LEXICAL_HANDLER, parser.handler);
+			parser.handler.reset(parser.builder.newDocument(), maxDepth, maxAttributeLength, recordLocations);
+			reader.parse(new InputSource(limit(stream)));
+			Element ret = parser.handler.getDocument().getDocumentElement();
+
+			parser.parser.reset();
+			parser.builder.reset();
+			parsers.set(parser);
+			return ret;
+		}
+		catch (LimitExceededException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
 		}
 		catch (SAXException e)
 		{
@@ -38,4 +197,73 @@ public class XMLEmotionMLReader implements EmotionMLReader
 		}
 	}
 
+
+	/**
+	 * Takes the Parser of the current thread, or creates it. The Parser is given back once it has
+	 * been reset, hence a failed read discards it.
+	 */
+	private static Parser getParser() throws ParserConfigurationException, SAXException
+	{
+		Parser ret = parsers.get();
+		if (ret != null)
+		{
+			parsers.remove();
+			return ret;
+		}
+
+		ret = new Parser();
+		synchronized (parserFactory) // the factories are not thread-safe
+		{
+			ret.parser = parserFactory.newSAXParser();
+		}
+		synchronized (builderFactory)
+		{
+			ret.builder = builderFactory.newDocumentBuilder();
+		}
+		return ret;
+	}
+
+
+	/**
+	 * Creates the factory of the SAX parsers, reporting the namespace declarations as attributes
+	 * like a DocumentBuilder keeps them, and loading no external resource.
+	 */
+	private static SAXParserFactory createParserFactory()
+	{
+		SAXParserFactory ret = SAXParserFactory.newInstance();
+		ret.setNamespaceAware(true);
+		ret.setXIncludeAware(false);
+		try
+		{
+			ret.setFeature(NAMESPACE_PREFIXES, true);
+			ret.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		}
+		catch (Exception e)
+		{
+			throw new IllegalStateException("Unable to configure the SAX parsers: " + e.getLocalizedMessage(), e);
+		}
+
+		// the DomBuilder rejects the DTDs anyway, these features only reject them earlier
+		setOptionalFeature(ret, DISALLOW_DOCTYPE, true);
+		setOptionalFeature(ret, LOAD_EXTERNAL_DTD, false);
+		setOptionalFeature(ret, EXTERNAL_GENERAL_ENTITIES, false);
+		setOptionalFeature(ret, EXTERNAL_PARAMETER_ENTITIES, false);
+		return ret;
+	}
+
+
+	/**
+	 * Sets the given feature of the given factory, if its parsers support it.
+	 */
+	private static void setOptionalFeature(SAXParserFactory factory, String feature, boolean value)
+	{
+		try
+		{
+			factory.setFeature(feature, value);
+		}
+		catch (Exception e)
+		{
+			// not supported by this parser
+		}
+	}
 }
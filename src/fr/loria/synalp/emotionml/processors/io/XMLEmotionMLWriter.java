@@ -12,23 +12,101 @@ import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
 
 /**
  * An XMLEmotionMLWriter is an EmotionMLWriter that writes the Elements using a Transformer instance.
+ * The TransformerFactory is looked up once, and each thread keeps its own Transformer, which is
+ * reset after each write, such that writing small elements does not pay for the factory lookup and
+ * the Transformer creation. The Elements are indented by 4 spaces by default. An XMLEmotionMLWriter
+ * can be shared by concurrent exporters.
  * @author Alexandre Denis
  *
  */
 public class XMLEmotionMLWriter implements EmotionMLWriter
 {
+	private static final String INDENT_AMOUNT = "{http://xml.apache.org/xslt}indent-amount";
+	private static final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+	private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>(); // the reset Transformer of each thread
+
+	private volatile boolean indent = true;
+	private volatile int indentAmount = 4;
+
+
+	/**
+	 * Creates a new XMLEmotionMLWriter indenting by 4 spaces.
+	 */
+	public XMLEmotionMLWriter()
+	{
+
+	}
+
+
+	/**
+	 * Creates a new XMLEmotionMLWriter.
+	 * @param indent whether the Elements are indented
+	 * @param indentAmount the number of spaces per level of indentation
+	 */
+	public XMLEmotionMLWriter(boolean indent, int indentAmount)
+	{
+		setIndent(indent);
+		setIndentAmount(indentAmount);
+	}
+
+
+	/**
+	 * Tests whether the Elements are indented.
+	 * @return true by default
+	 */
+	public boolean isIndent()
+	{
+		return indent;
+	}
+
+
+	/**
+	 * Sets whether the Elements are indented.
+	 * @param indent
+	 * @return this XMLEmotionMLWriter for chaining
+	 */
+	public XMLEmotionMLWriter setIndent(boolean indent)
+	{
+		this.indent = indent;
+		return this;
+	}
+
+
+	/**
+	 * Returns the number of spaces per level of indentation.
+	 * @return 4 by default
+	 */
+	public int getIndentAmount()
+	{
+		return indentAmount;
+	}
+
+
+	/**
+	 * Sets the number of spaces per level of indentation, used when the Elements are indented.
+	 * @param indentAmount a positive or null number of spaces
+	 * @return this XMLEmotionMLWriter for chaining
+	 */
+	public XMLEmotionMLWriter setIndentAmount(int indentAmount)
+	{
+		if (indentAmount < 0)
+			throw new IllegalArgumentException("the indent amount must be positive or null: " + indentAmount);
+		this.indentAmount = indentAmount;
+		return this;
+	}
+
 
 	@Override
 	public void write(Element element, OutputStream stream) throws EmotionMLException
 	{
-		TransformerFactory transformerFactory = TransformerFactory.newInstance();
-		Transformer transformer;
 		try
 		{
-			transformer = transformerFactory.newTransformer();
-			transformer.setOutputProperty("indent", "yes");
-			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+			Transformer transformer = getTransformer();
+			transformer.setOutputProperty(OutputKeys.INDENT, indent ? "yes" : "no"); // reset does not restore all the implementations' defaults
+			transformer.setOutputProperty(INDENT_AMOUNT, Integer.toString(indentAmount));
 			transformer.transform(new DOMSource(element), new StreamResult(stream));
+			transformer.reset();
+			transformers.set(transformer);
 		}
 		catch (TransformerConfigurationException e)
 		{
@@ -40,4 +118,25 @@ public class XMLEmotionMLWriter implements EmotionMLWriter
 		}
 	}
 
+
+	/**
+	 * Takes the Transformer of the current thread, or creates it. The Transformer is given back once
+	 * it has been reset, hence a failed write discards it.
+	 * @return a reset Transformer
+	 * @throws TransformerConfigurationException
+	 */
+	private static Transformer getTransformer() throws TransformerConfigurationException
+	{
+		Transformer ret = transformers.get();
+		if (ret != null)
+		{
+			transformers.remove();
+			return ret;
+		}
+
+		synchronized (transformerFactory) // a TransformerFactory is not thread-safe
+		{
+			return transformerFactory.newTransformer();
+		}
+	}
 }
@@ -0,0 +1,385 @@
+package fr.loria.synalp.emotionml.processors.json;
+
+import static fr.loria.synalp.emotionml.EmotionMLDocument.*;
+
+import java.io.IOException;
+import java.util.*;
+
+import javax.xml.parsers.*;
+
+import org.w3c.dom.Document;
+import org.xml.sax.helpers.NamespaceSupport;
+
+import com.google.gson.stream.JsonWriter;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+import fr.loria.synalp.emotionml.info.Info;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.JsonEmotionMLWriter;
+import fr.loria.synalp.emotionml.vocabularies.*;
+
+/**
+ * A JsonEmotionMLEmitter writes EmotionML objects in JSON with a Gson JsonWriter, without building
+ * DOM Elements. The JSON is the one the JsonEmotionMLWriter writes for the Elements the
+ * EmotionMLExporter builds for the same objects: the same properties in the same order, with the
+ * attributes in alphabetical order like the ones of a DOM Element. The &lt;info&gt; elements are
+ * still built by the exporter, since it may export them differently, then written by the
+ * JsonEmotionMLWriter. Like the JsonEmotionMLWriter, it groups all the descriptors of a type in a
+ * single property and rejects the documents having a text before one of their emotions.
+ * @author Alexandre Denis
+ */
+class JsonEmotionMLEmitter
+{
+	// the vocabulary types in the alphabetical order of their descriptor sets
+	private static final VocabularyType[] SORTED_TYPES = { VocabularyType.ACTION_TENDENCY, VocabularyType.APPRAISAL, VocabularyType.CATEGORY,
+			VocabularyType.DIMENSION };
+
+	private EmotionMLExporter exporter;
+	private JsonEmotionMLWriter elementWriter = new JsonEmotionMLWriter();
+	private NamespaceSupport namespaces = new NamespaceSupport();
+	private Document infoDocument;
+
+
+	/**
+	 * Creates a new JsonEmotionMLEmitter.
+	 * @param exporter the exporter which exports the Info objects
+	 */
+	JsonEmotionMLEmitter(EmotionMLExporter exporter)
+	{
+		this.exporter = exporter;
+		namespaces.declarePrefix("", NAMESPACE);
+	}
+
+
+	/**
+	 * Writes the given EmotionMLDocument as a JSON object.
+	 * @param document
+	 * @param writer
+	 */
+	void emit(EmotionMLDocument document, JsonWriter writer) throws EmotionMLException, IOException
+	{
+		List<Emotion> emotions = new ArrayList<Emotion>();
+		StringBuilder text = new StringBuilder();
+		for(EmotionNode emotionNode : document.getEmotionNodes())
+			if (emotionNode instanceof EmotionText)
+				text.append(((EmotionText) emotionNode).getContent());
+			else if (emotionNode instanceof Emotion)
+			{
+				if (!text.toString().trim().isEmpty())
+					throw new EmotionMLException("Unable to write the element <emotionml> in JSON since it has the text \"" + text.toString().trim() +
+													"\" before its child element <emotion>, and JSON only keeps the text after the child elements");
+				text.setLength(0);
+				emotions.add((Emotion) emotionNode);
+			}
+			else System.err.println("Error: cannot export " + emotionNode + " because objects of class " + emotionNode.getClass() + " cannot be exported");
+		boolean hasElement = document.hasInfo() || !document.getVocabularies().isEmpty() || !emotions.isEmpty();
+
+		writer.beginObject();
+		writer.name("emotionml").beginObject();
+		writer.name("@xmlns").value(NAMESPACE);
+		writeDescriptorSets(document, writer);
+		writer.name("@version").value(VERSION);
+
+		if (document.hasInfo())
+			writeInfo(document.getInfo(), writer);
+
+		Collection<Vocabulary> vocabularies = document.getVocabularies();
+		if (!vocabularies.isEmpty())
+		{
+			writer.name("vocabulary");
+			if (vocabularies.size() > 1)
+				writer.beginArray();
+			for(Vocabulary vocabulary : vocabularies)
+				write(vocabulary, writer);
+			if (vocabularies.size() > 1)
+				writer.endArray();
+		}
+
+		if (!emotions.isEmpty())
+		{
+			writer.name("emotion");
+			if (emotions.size() > 1)
+				writer.beginArray();
+			for(Emotion emotion : emotions)
+				write(emotion, false, writer);
+			if (emotions.size() > 1)
+				writer.endArray();
+		}
+
+		if (text.length() > 0 && !(hasElement && text.toString().trim().isEmpty()))
+		{
+			writer.name("$");
+			elementWriter.writeText(writer, text.toString());
+		}
+		writer.endObject();
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the given Emotion as a standalone JSON object.
+	 * @param emotion
+	 * @param writer
+	 */
+	void emit(Emotion emotion, JsonWriter writer) throws EmotionMLException, IOException
+	{
+		writer.beginObject();
+		writer.name("emotion");
+		write(emotion, true, writer);
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the value of the given Emotion.
+	 * @param emotion
+	 * @param standalone true if the emotion is the root, hence declares its namespace
+	 * @param writer
+	 */
+	private void write(Emotion emotion, boolean standalone, JsonWriter writer) throws EmotionMLException, IOException
+	{
+		List<String> atts = new ArrayList<String>();
+		for(VocabularyType type : SORTED_TYPES)
+			if (emotion.hasVocabularySetURI(type))
+				addAttribute(atts, type.getSet(), emotion.getDescriptorSetURI(type).toString());
+
+		Timestamp timestamp = emotion.getTimestamp();
+		boolean isLong = timestamp.isLong();
+		if (timestamp.hasDuration())
+			addAttribute(atts, "duration", isLong ? Long.toString(timestamp.getDurationAsLong()) : timestamp.getDuration().toString());
+		if (timestamp.hasEnd())
+			addAttribute(atts, "end", isLong ? Long.toString(timestamp.getEndAsLong()) : timestamp.getEnd().toString());
+
+		List<ExpressedThrough> expressedThrough = emotion.getExpressedThrough();
+		if (!expressedThrough.isEmpty())
+			addAttribute(atts, "expressed-through", format(expressedThrough));
+
+		if (emotion.hasId())
+			addAttribute(atts, "id", emotion.getId());
+		if (timestamp.hasOffsetToStart())
+			addAttribute(atts, "offset-to-start", isLong ? Long.toString(timestamp.getOffsetToStartAsLong()) : timestamp.getOffsetToStart().toString());
+		if (timestamp.hasStart())
+			addAttribute(atts, "start", isLong ? Long.toString(timestamp.getStartAsLong()) : timestamp.getStart().toString());
+		if (timestamp.hasTimeRefAnchorPoint())
+			addAttribute(atts, "time-ref-anchor-point", timestamp.getTimeRefAnchorPoint().toString());
+		if (timestamp.hasTimeRefURI())
+			addAttribute(atts, "time-ref-uri", timestamp.getTimeRefURI().toString());
+		if (emotion.hasVersion())
+			addAttribute(atts, "version", emotion.getVersion());
+
+		List<EmotionDescriptor> descriptors = emotion.getDescriptors();
+		List<Reference> references = emotion.getReferences();
+		boolean hasElement = emotion.hasInfo() || !descriptors.isEmpty() || !references.isEmpty();
+		String text = emotion.hasText() ? emotion.getText().getContent() : null;
+		if (text != null && (text.isEmpty() || hasElement && text.trim().isEmpty()))
+			text = null;
+		if (!standalone && atts.isEmpty() && !hasElement)
+		{
+			elementWriter.writeText(writer, text);
+			return;
+		}
+
+		writer.beginObject();
+		if (standalone)
+			writer.name("@xmlns").value(NAMESPACE);
+		writeAttributes(atts, writer);
+
+		if (emotion.hasInfo())
+			writeInfo(emotion.getInfo(), writer);
+
+		Map<VocabularyType, List<EmotionDescriptor>> typedDescriptors = new LinkedHashMap<VocabularyType, List<EmotionDescriptor>>();
+		for(EmotionDescriptor descriptor : descriptors)
+		{
+			List<EmotionDescriptor> typed = typedDescriptors.get(descriptor.getType());
+			if (typed == null)
+				typedDescriptors.put(descriptor.getType(), typed = new ArrayList<EmotionDescriptor>());
+			typed.add(descriptor);
+		}
+
+		for(Map.Entry<VocabularyType, List<EmotionDescriptor>> entry : typedDescriptors.entrySet())
+		{
+			writer.name(entry.getKey().toString());
+			List<EmotionDescriptor> typed = entry.getValue();
+			if (typed.size() == 1)
+				write(typed.get(0), writer);
+			else
+			{
+				writer.beginArray();
+				for(EmotionDescriptor descriptor : typed)
+					write(descriptor, writer);
+				writer.endArray();
+			}
+		}
+
+		if (!references.isEmpty())
+		{
+			writer.name("reference");
+			if (references.size() > 1)
+				writer.beginArray();
+			for(Reference reference : references)
+				write(reference, writer);
+			if (references.size() > 1)
+				writer.endArray();
+		}
+
+		if (text != null)
+		{
+			writer.name("$");
+			elementWriter.writeText(writer, text);
+		}
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the value of the given EmotionDescriptor.
+	 */
+	private void write(EmotionDescriptor descriptor, JsonWriter writer) throws IOException
+	{
+		writer.beginObject();
+		if (descriptor.hasConfidence())
+			writer.name("@confidence").value(String.valueOf(descriptor.getConfidenceAsFloat()));
+		writer.name("@name").value(descriptor.getName());
+		if (descriptor.hasValue())
+			writer.name("@value").value(String.valueOf(descriptor.getValueAsFloat()));
+
+		if (descriptor.hasTrace())
+		{
+			Trace trace = descriptor.getTrace();
+			writer.name("trace").beginObject();
+			writer.name("@freq").value(trace.getFrequency() + "Hz");
+			writer.name("@samples").value(TraceCodec.format(trace.getSamples()));
+			writer.endObject();
+		}
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the value of the given Reference.
+	 */
+	private void write(Reference reference, JsonWriter writer) throws IOException
+	{
+		writer.beginObject();
+		if (reference.hasMediaType())
+			writer.name("@media-type").value(reference.getMediaType());
+		if (reference.getRole() != null)
+			writer.name("@role").value(reference.getRole().toString());
+		writer.name("@uri").value(reference.getURI().toString());
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the value of the given Vocabulary.
+	 */
+	private void write(Vocabulary vocabulary, JsonWriter writer) throws EmotionMLException, IOException
+	{
+		writer.beginObject();
+		writer.name("@id").value(vocabulary.getId());
+		writer.name("@type").value(vocabulary.getType().toString());
+
+		if (vocabulary.hasInfo())
+			writeInfo(vocabulary.getInfo(), writer);
+
+		Collection<VocabularyItem> items = vocabulary.getItems();
+		if (!items.isEmpty())
+		{
+			writer.name("item");
+			if (items.size() > 1)
+				writer.beginArray();
+			for(VocabularyItem item : items)
+			{
+				writer.beginObject();
+				writer.name("@name").value(item.getName());
+				if (item.hasInfo())
+					writeInfo(item.getInfo(), writer);
+				writer.endObject();
+			}
+			if (items.size() > 1)
+				writer.endArray();
+		}
+		writer.endObject();
+	}
+
+
+	/**
+	 * Writes the given Info as the DOM Element the exporter exports for it.
+	 */
+	private void writeInfo(Info info, JsonWriter writer) throws EmotionMLException, IOException
+	{
+		if (infoDocument == null)
+			infoDocument = createDOMDocument();
+		writer.name("info");
+		elementWriter.writeElement(writer, exporter.exportInfo(info, infoDocument), namespaces);
+	}
+
+
+/////// Attributes
+
+	/**
+	 * Adds the attribute with given name and value.
+	 */
+	private static void addAttribute(List<String> atts, String name, String value)
+	{
+		atts.add(name);
+		atts.add(value);
+	}
+
+
+	/**
+	 * Writes the given attributes as "@" properties.
+	 * @param atts a list of name, value, name, value...
+	 */
+	private static void writeAttributes(List<String> atts, JsonWriter writer) throws IOException
+	{
+		for(int i = 0; i < atts.size(); i += 2)
+			writer.name("@" + atts.get(i)).value(atts.get(i + 1));
+	}
+
+
+	/**
+	 * Writes the descriptor sets of the given referrer, in alphabetical order.
+	 */
+	private static void writeDescriptorSets(VocabularyReferrer referrer, JsonWriter writer) throws IOException
+	{
+		for(VocabularyType type : SORTED_TYPES)
+			if (referrer.hasVocabularySetURI(type))
+				writer.name("@" + type.getSet()).value(referrer.getDescriptorSetURI(type).toString());
+	}
+
+
+/////// Utilities
+
+	/**
+	 * Formats the list of given ExpressedThrough items as space-separated values.
+	 */
+	private static String format(List<ExpressedThrough> expressedThrough)
+	{
+		StringBuilder ret = new StringBuilder();
+		ret.append(expressedThrough.get(0));
+		for(int i = 1; i < expressedThrough.size(); i++)
+			ret.append(" ").append(expressedThrough.get(i));
+		return ret.toString();
+	}
+
+
+	/**
+	 * Creates the DOM Document owning the &lt;info&gt; elements.
+	 */
+	private static Document createDOMDocument() throws EmotionMLException
+	{
+		DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
+		builderFactory.setNamespaceAware(true);
+		try
+		{
+			return builderFactory.newDocumentBuilder().newDocument();
+		}
+		catch (ParserConfigurationException e)
+		{
+			throw new EmotionMLException("Unable to create the document of the info elements: " + e.getLocalizedMessage());
+		}
+	}
+}
@@ -1,10 +1,21 @@
 package fr.loria.synalp.emotionml.processors.json;
 
+import java.io.*;
+
+import com.google.gson.stream.JsonWriter;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
 import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
 import fr.loria.synalp.emotionml.processors.io.JsonEmotionMLWriter;
 
 /**
- * A JsonEmotionMLExporter is an EmotionMLExporter whose writer is a JsonEmotionMLWriter.
+ * A JsonEmotionMLExporter is an EmotionMLExporter that writes the EmotionML objects in JSON. The
+ * objects are validated without building DOM Elements, with the same results as the
+ * EmotionMLValidator, then written directly with a Gson JsonWriter, giving the same JSON as the
+ * JsonEmotionMLWriter writes for the DOM Elements. The writer set with setWriter, a
+ * JsonEmotionMLWriter by default, is only used by the methods writing DOM Elements.
  * @author Alexandre Denis
  */
 public class JsonEmotionMLExporter extends EmotionMLExporter
@@ -27,4 +38,61 @@ public class JsonEmotionMLExporter extends EmotionMLExporter
 		super(validator);
 		setWriter(new JsonEmotionMLWriter());
 	}
+
+
+	/**
+	 * Exports the given EmotionMLDocument by writing it directly in JSON.
+	 */
+	@Override
+	public void export(EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		validateContent(document);
+		long start = startStage();
+		OutputStream counted = count(stream);
+		try
+		{
+			JsonWriter writer = createWriter(counted);
+			new JsonEmotionMLEmitter(this).emit(document, writer);
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLException("Unable to write the given document in JSON: " + e.getLocalizedMessage());
+		}
+		endStage(Stage.WRITE, start, countEmotions(document), getCount(counted));
+	}
+
+
+	/**
+	 * Exports the given Emotion by writing it directly in JSON.
+	 */
+	@Override
+	public void export(Emotion emotion, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		validateContent(emotion);
+		long start = startStage();
+		OutputStream counted = count(stream);
+		try
+		{
+			JsonWriter writer = createWriter(counted);
+			new JsonEmotionMLEmitter(this).emit(emotion, writer);
+			writer.flush();
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLException("Unable to write the given emotion in JSON: " + e.getLocalizedMessage());
+		}
+		endStage(Stage.WRITE, start, 1, getCount(counted));
+	}
+
+
+	/**
+	 * Creates a JsonWriter writing to the given stream like the JsonEmotionMLWriter.
+	 */
+	private static JsonWriter createWriter(OutputStream stream) throws UnsupportedEncodingException
+	{
+		JsonWriter ret = new JsonWriter(new OutputStreamWriter(stream, "UTF-8"));
+		ret.setIndent("\t");
+		return ret;
+	}
 }
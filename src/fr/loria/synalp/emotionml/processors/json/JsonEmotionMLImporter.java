@@ -1,10 +1,20 @@
 package fr.loria.synalp.emotionml.processors.json;
 
+import java.io.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
 import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
 import fr.loria.synalp.emotionml.processors.io.JsonEmotionMLReader;
 
 /**
- * A JsonEmotionMLImporter is an EmotionMLImporter whose reader is a JsonEmotionMLReader.
+ * A JsonEmotionMLImporter is an EmotionMLImporter whose reader is a JsonEmotionMLReader. The
+ * streams are however not converted into DOM Elements: they are read directly with a Gson
+ * JsonReader whose events are validated and imported in a single pass by an
+ * EmotionMLContentHandler, with the same checks as the EmotionMLValidator. If another reader is set
+ * with setReader, the streams are read by it as DOM Elements and imported like the EmotionMLImporter
+ * does.
  * @author Alexandre Denis
  */
 public class JsonEmotionMLImporter extends EmotionMLImporter
@@ -27,4 +37,52 @@ public class JsonEmotionMLImporter extends EmotionMLImporter
 		super(validator);
 		setReader(new JsonEmotionMLReader());
 	}
+
+
+	/**
+	 * Imports an EmotionMLDocument from given JSON InputStream.
+	 */
+	@Override
+	public EmotionMLDocument importDocument(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
+	{
+		if (!readsDirectly() || gathersFailures())
+			return super.importDocument(stream);
+
+		long start = startStage();
+		InputStream counted = count(stream);
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, false);
+		new JsonPump(counted, handler).pumpAll();
+		EmotionMLDocument ret = handler.getDocument();
+		endStage(Stage.SINGLE_PASS, start, countEmotions(ret), getCount(counted));
+		return ret;
+	}
+
+
+	/**
+	 * Imports an Emotion from given JSON InputStream.
+	 */
+	@Override
+	public Emotion importEmotion(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
+	{
+		if (!readsDirectly() || gathersFailures())
+			return super.importEmotion(stream);
+
+		long start = startStage();
+		InputStream counted = count(stream);
+		EmotionMLContentHandler handler = new EmotionMLContentHandler(this, true);
+		new JsonPump(counted, handler).pumpAll();
+		Emotion ret = handler.getEmotion();
+		endStage(Stage.SINGLE_PASS, start, 1, getCount(counted));
+		return ret;
+	}
+
+
+	/**
+	 * Tests whether the streams are read directly, that is whether the reader is the default
+	 * JsonEmotionMLReader.
+	 */
+	private boolean readsDirectly()
+	{
+		return getReader().getClass() == JsonEmotionMLReader.class;
+	}
 }
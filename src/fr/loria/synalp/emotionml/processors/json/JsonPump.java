@@ -0,0 +1,269 @@
+package fr.loria.synalp.emotionml.processors.json;
+
+import java.io.*;
+import java.util.*;
+
+import javax.xml.XMLConstants;
+
+import org.xml.sax.*;
+import org.xml.sax.helpers.*;
+
+import com.google.gson.stream.*;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+
+/**
+ * A JsonPump reads JSON with a Gson JsonReader and pushes it as SAX events to a ContentHandler. The
+ * JSON is interpreted with the conventions of the JsonEmotionMLWriter (the ones of StAXON): an
+ * element is a property whose value is either a primitive (its text), null (an empty element), an
+ * object or an array of such values (repeated elements). In an object, the properties starting with
+ * '@' are the attributes and must come first, the "$" properties are texts, and the other
+ * properties are child elements. Namespaces are declared with "@xmlns" and "@xmlns:prefix"
+ * attributes.
+ * @author Alexandre Denis
+ */
+class JsonPump
+{
+	private static final String ATTRIBUTE_PREFIX = "@";
+	private static final String TEXT_PROPERTY = "$";
+	private static final String MULTIPLE_PI = "xml-multiple";
+
+	private JsonReader reader;
+	private ContentHandler handler;
+	private NamespaceSupport namespaces = new NamespaceSupport();
+	private String[] parts = new String[3];
+	private int depth;
+	private int roots;
+
+
+	/**
+	 * Creates a new JsonPump.
+	 * @param stream
+	 * @param handler
+	 * @throws EmotionMLException if the encoding is not supported
+	 */
+	JsonPump(InputStream stream, ContentHandler handler) throws EmotionMLException
+	{
+		try
+		{
+			this.reader = new JsonReader(new InputStreamReader(stream, "UTF-8"));
+			this.handler = handler;
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Pumps the whole JSON document.
+	 * @throws EmotionMLException if the stream cannot be read
+	 */
+	void pumpAll() throws EmotionMLException
+	{
+		try
+		{
+			handler.startDocument();
+			reader.beginObject();
+			while(reader.hasNext()) // an empty array is no element, hence there may be several properties
+				readValue(reader.nextName());
+			if (roots == 0)
+				throw new EmotionMLException("Unable to read stream: no root element");
+			reader.endObject(); // like the JsonEmotionMLReader, what follows the root object is ignored
+			handler.endDocument();
+		}
+		catch (IOException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
+		}
+		catch (IllegalStateException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
+		}
+		catch (SAXException e)
+		{
+			throw new EmotionMLException("Unable to read stream: " + e.getLocalizedMessage());
+		}
+	}
+
+
+	/**
+	 * Reads the value of a property, that is one element or an array of elements with given name.
+	 */
+	private void readValue(String name) throws IOException, SAXException, EmotionMLException
+	{
+		if (reader.peek() == JsonToken.BEGIN_ARRAY)
+		{
+			handler.processingInstruction(MULTIPLE_PI, name);
+			reader.beginArray();
+			while(reader.hasNext())
+			{
+				if (reader.peek() == JsonToken.BEGIN_ARRAY)
+					throw new EmotionMLException("Unable to read stream: nested arrays are not allowed for " + name);
+				readElement(name);
+			}
+			reader.endArray();
+		}
+		else readElement(name);
+	}
+
+
+	/**
+	 * Reads an element with given name.
+	 */
+	private void readElement(String name) throws IOException, SAXException, EmotionMLException
+	{
+		checkName(name);
+		if (depth == 0 && ++roots > 1)
+			throw new EmotionMLException("Unable to read stream: more than one root element");
+		depth++;
+		namespaces.pushContext();
+
+		List<String> prefixes = new ArrayList<String>();
+		AttributesImpl attributes = new AttributesImpl();
+		String property = null;
+		if (reader.peek() == JsonToken.BEGIN_OBJECT)
+		{
+			reader.beginObject();
+			while(reader.hasNext() && property == null)
+			{
+				String key = reader.nextName();
+				if (key.startsWith(ATTRIBUTE_PREFIX))
+					readAttribute(key.substring(ATTRIBUTE_PREFIX.length()), attributes, prefixes);
+				else property = key;
+			}
+			resolveAttributes(attributes);
+			startElement(name, attributes);
+
+			while(property != null)
+			{
+				if (property.equals(TEXT_PROPERTY))
+					characters(readText(property));
+				else if (property.startsWith(ATTRIBUTE_PREFIX))
+					throw new EmotionMLException("Unable to read stream: attribute " + property + " of " + name + " must precede its content");
+				else readValue(property);
+				property = reader.hasNext() ? reader.nextName() : null;
+			}
+			reader.endObject();
+		}
+		else
+		{
+			startElement(name, attributes);
+			if (reader.peek() == JsonToken.NULL)
+				reader.nextNull();
+			else characters(readText(name));
+		}
+
+		handler.endElement(getURI(name, false), parts[1], name);
+		for(String prefix : prefixes)
+			handler.endPrefixMapping(prefix);
+		namespaces.popContext();
+		depth--;
+	}
+
+
+	/**
+	 * Reads an attribute or a namespace declaration.
+	 */
+	private void readAttribute(String name, AttributesImpl attributes, List<String> prefixes) throws IOException, SAXException, EmotionMLException
+	{
+		checkName(name);
+		String value = readText(ATTRIBUTE_PREFIX + name);
+		if (name.equals(XMLConstants.XMLNS_ATTRIBUTE) || name.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+		{
+			String prefix = name.equals(XMLConstants.XMLNS_ATTRIBUTE) ? "" : name.substring(XMLConstants.XMLNS_ATTRIBUTE.length() + 1);
+			if (prefixes.contains(prefix))
+				throw new EmotionMLException("Unable to read stream: namespace " + name + " is declared twice");
+			prefixes.add(prefix);
+			namespaces.declarePrefix(prefix, value);
+			handler.startPrefixMapping(prefix, value);
+		}
+		else
+		{
+			if (attributes.getIndex(name) != -1)
+				throw new EmotionMLException("Unable to read stream: attribute " + name + " is specified twice");
+			attributes.addAttribute("", "", name, "CDATA", value);
+		}
+	}
+
+
+	/**
+	 * Resolves the namespaces of the given attributes, once all the namespaces of the element have
+	 * been declared.
+	 */
+	private void resolveAttributes(AttributesImpl attributes) throws EmotionMLException
+	{
+		for(int i = 0; i < attributes.getLength(); i++)
+		{
+			attributes.setURI(i, getURI(attributes.getQName(i), true));
+			attributes.setLocalName(i, parts[1]);
+		}
+	}
+
+
+	/**
+	 * Starts an element with given name and attributes.
+	 */
+	private void startElement(String name, Attributes attributes) throws SAXException, EmotionMLException
+	{
+		handler.startElement(getURI(name, false), parts[1], name, attributes);
+	}
+
+
+	/**
+	 * Pushes the given text.
+	 */
+	private void characters(String text) throws SAXException
+	{
+		if (!text.equals(""))
+			handler.characters(text.toCharArray(), 0, text.length());
+	}
+
+
+	/**
+	 * Reads a primitive value as a text, numbers are kept as written.
+	 */
+	private String readText(String property) throws IOException, EmotionMLException
+	{
+		switch (reader.peek())
+		{
+			case STRING:
+			case NUMBER:
+				return reader.nextString();
+
+			case BOOLEAN:
+				return String.valueOf(reader.nextBoolean());
+
+			default:
+				throw new EmotionMLException("Unable to read stream: expected a text for " + property + " but found " + reader.peek());
+		}
+	}
+
+
+	/**
+	 * Returns the namespace URI of the given qualified name, and stores its local name in parts[1].
+	 */
+	private String getURI(String qName, boolean attribute) throws EmotionMLException
+	{
+		if (namespaces.processName(qName, parts, attribute) == null)
+			throw new EmotionMLException("Unable to read stream: unbound prefix in " + qName);
+		return parts[0];
+	}
+
+
+	/**
+	 * Checks that the given String is an XML name.
+	 */
+	private static void checkName(String name) throws EmotionMLException
+	{
+		boolean valid = name.length() > 0 && (Character.isLetter(name.charAt(0)) || name.charAt(0) == '_');
+		for(int i = 1; i < name.length() && valid; i++)
+		{
+			char c = name.charAt(i);
+			valid = Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+		}
+		if (!valid)
+			throw new EmotionMLException("Unable to read stream: invalid name " + name);
+	}
+}
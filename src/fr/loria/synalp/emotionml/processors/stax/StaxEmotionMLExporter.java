@@ -0,0 +1,58 @@
+package fr.loria.synalp.emotionml.processors.stax;
+
+import java.io.OutputStream;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * A StaxEmotionMLExporter is an EmotionMLExporter that writes the EmotionML objects as a stream of
+ * XML instead of building DOM Elements and writing them with a Transformer. The objects are
+ * validated before being written, with the same results as the EmotionMLValidator, and the written
+ * bytes are the same as the ones of the EmotionMLExporter, but the DOM tree is never built, which
+ * saves both memory and time on large documents. The writer set with setWriter is not used.
+ * @author Alexandre Denis
+ * @see fr.loria.synalp.emotionml.processors.EmotionMLExporter#stream(EmotionMLDocument, OutputStream)
+ */
+public class StaxEmotionMLExporter extends EmotionMLExporter
+{
+
+	/**
+	 * Creates a new StaxEmotionMLExporter with a default EmotionMLValidator.
+	 */
+	public StaxEmotionMLExporter()
+	{
+		super();
+	}
+
+
+	/**
+	 * Creates a new StaxEmotionMLExporter with the given EmotionMLValidator.
+	 * @param validator
+	 */
+	public StaxEmotionMLExporter(EmotionMLValidator validator)
+	{
+		super(validator);
+	}
+
+
+	/**
+	 * Exports the given EmotionMLDocument by writing it directly in XML.
+	 */
+	@Override
+	public void export(EmotionMLDocument document, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		exportXML(document, stream);
+	}
+
+
+	/**
+	 * Exports the given Emotion by writing it directly in XML.
+	 */
+	@Override
+	public void export(Emotion emotion, OutputStream stream) throws EmotionMLValidationException, EmotionMLException
+	{
+		exportXML(emotion, stream);
+	}
+}
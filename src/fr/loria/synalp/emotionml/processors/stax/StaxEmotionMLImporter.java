@@ -0,0 +1,91 @@
+package fr.loria.synalp.emotionml.processors.stax;
+
+import java.io.*;
+
+import javax.xml.stream.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * A StaxEmotionMLImporter is an EmotionMLImporter that reads streams with an XMLStreamReader
+ * instead of reading them as DOM Elements. Each document is validated and imported in a single pass
+ * (see EmotionMLContentHandler): the validation gives the same results as the EmotionMLValidator
+ * and the imported objects are the same, but the DOM tree is never built, which saves both memory
+ * and time on large documents.
+ * @author Alexandre Denis
+ */
+public class StaxEmotionMLImporter extends EmotionMLImporter
+{
+
+	/**
+	 * Creates a new StaxEmotionMLImporter with a default EmotionMLValidator.
+	 */
+	public StaxEmotionMLImporter()
+	{
+		super();
+	}
+
+
+	/**
+	 * Creates a new StaxEmotionMLImporter with the given EmotionMLValidator.
+	 * @param validator
+	 */
+	public StaxEmotionMLImporter(EmotionMLValidator validator)
+	{
+		super(validator);
+	}
+
+
+	/**
+	 * Imports an EmotionMLDocument from given InputStream by reading it with an XMLStreamReader.
+	 */
+	@Override
+	public EmotionMLDocument importDocument(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
+	{
+		XMLStreamReader reader = readStream(stream);
+		try
+		{
+			return importDocument(reader);
+		}
+		finally
+		{
+			close(reader);
+		}
+	}
+
+
+	/**
+	 * Imports an Emotion from given InputStream by reading it with an XMLStreamReader.
+	 */
+	@Override
+	public Emotion importEmotion(InputStream stream) throws IOException, EmotionMLValidationException, EmotionMLException
+	{
+		XMLStreamReader reader = readStream(stream);
+		try
+		{
+			return importEmotion(reader);
+		}
+		finally
+		{
+			close(reader);
+		}
+	}
+
+
+	/**
+	 * Closes the given XMLStreamReader, the underlying stream is not closed.
+	 */
+	private static void close(XMLStreamReader reader)
+	{
+		try
+		{
+			reader.close();
+		}
+		catch (XMLStreamException e)
+		{
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import javax.xml.parsers.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLValidationException;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * Validates many documents concurrently with a single EmotionMLValidator and checks that each
+ * validation gives the same result as when it is performed alone. All the documents use the same
+ * emotion identifiers and refer to their own local vocabulary, hence a validation that would see
+ * the state of another one would report duplicate identifiers or missing vocabularies.
+ */
+public class TestConcurrentValidation
+{
+	private static final int DOCUMENTS = 64;
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 200;
+
+
+	@Test
+	public void testSharedValidator() throws Exception
+	{
+		final EmotionMLValidator validator = new EmotionMLValidator();
+		final List<String> sources = new ArrayList<String>();
+		for(int i = 0; i < DOCUMENTS; i++)
+			sources.add(createSource(i));
+
+		final List<String> expected = new ArrayList<String>();
+		for(String source : sources)
+			expected.add(validate(validator, source));
+
+		// check that the documents do not all give the same result
+		assertEquals("valid document", expected.get(0));
+		assertTrue(expected.get(1).contains("174:"));
+		assertTrue(expected.get(2).contains("212:"));
+		assertTrue(expected.get(3).contains("\"missing\""));
+		assertTrue(expected.get(4).contains("no defined local document"));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+		for(int t = 0; t < THREADS; t++)
+		{
+			final Random random = new Random(t);
+			futures.add(executor.submit(new Callable<List<String>>()
+			{
+				@Override
+				public List<String> call() throws Exception
+				{
+					List<String> errors = new ArrayList<String>();
+					for(int round = 0; round < ROUNDS; round++)
+					{
+						int i = random.nextInt(DOCUMENTS);
+						String result = validate(validator, sources.get(i));
+						if (!result.equals(expected.get(i)))
+							errors.add("document " + i + ": expected <" + expected.get(i) + "> but was <" + result + ">");
+					}
+					return errors;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		List<String> errors = new ArrayList<String>();
+		for(Future<List<String>> future : futures)
+			errors.addAll(future.get());
+		assertTrue(errors.toString(), errors.isEmpty());
+	}
+
+
+	/**
+	 * Validates the given source with the given validator, as a document or as an emotion.
+	 * @return a description of the result
+	 */
+	private static String validate(EmotionMLValidator validator, String source) throws Exception
+	{
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Element element = factory.newDocumentBuilder().parse(new ByteArrayInputStream(source.getBytes("UTF-8"))).getDocumentElement();
+
+		try
+		{
+			if (element.getLocalName().equals("emotion"))
+			{
+				validator.validateEmotion(element);
+				return "valid emotion";
+			}
+			else
+			{
+				validator.validateDocument(element);
+				return "valid document";
+			}
+		}
+		catch (EmotionMLValidationException e)
+		{
+			ValidationResult result = e.getValidationResult();
+			return result.getSchemaErrorMessage() + " / " + result.getAssertionErrorMessage();
+		}
+	}
+
+
+	/**
+	 * Creates the source of the i-th document: a valid document, a document with a duplicate
+	 * identifier, with an unknown category or with a missing local vocabulary, or a standalone
+	 * emotion which cannot refer to a local vocabulary.
+	 */
+	private static String createSource(int i)
+	{
+		String category = i % 5 == 2 ? "unknown" : "joy" + i;
+		String set = i % 5 == 3 ? "#missing" : "#voc" + i;
+		String secondId = i % 5 == 1 ? "e1" : "e2";
+
+		if (i % 5 == 4)
+			return "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\" id=\"e1\" category-set=\"#voc" + i + "\">" +
+					"<category name=\"joy" + i + "\"/></emotion>";
+		else return "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\" category-set=\"" + set + "\">" +
+					"<vocabulary type=\"category\" id=\"voc" + i + "\"><item name=\"joy" + i + "\"/><item name=\"fear" + i + "\"/></vocabulary>" +
+					"<emotion id=\"e1\"><category name=\"joy" + i + "\"/></emotion>" +
+					"<emotion id=\"" + secondId + "\"><category name=\"" + category + "\"/></emotion>" +
+					"</emotionml>";
+	}
+}
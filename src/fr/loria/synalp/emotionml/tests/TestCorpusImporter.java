@@ -0,0 +1,127 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+
+public class TestCorpusImporter
+{
+
+	@Test
+	public void testSameAsSequential() throws Exception
+	{
+		EmotionMLImporter importer = new EmotionMLImporter();
+		EmotionMLExporter exporter = new EmotionMLExporter(new NullValidator());
+		CorpusImporter corpusImporter = new CorpusImporter(4).setMaxPending(3);
+		try
+		{
+			CorpusIterator iterator = corpusImporter.importDirectory(new File("tests"), "**.{emotionml,xml}", true);
+			List<File> files = new ArrayList<File>();
+			while(iterator.hasNext())
+			{
+				CorpusEntry entry = iterator.next();
+				files.add(entry.getFile());
+				try
+				{
+					String expected = exporter.export(importer.importDocument(entry.getFile()));
+					assertTrue(entry.toString(), entry.isImported());
+					assertEquals(expected, exporter.export(entry.getDocument()));
+				}
+				catch (EmotionMLValidationException e)
+				{
+					assertEquals(e.getMessage(), entry.getException().getMessage());
+					assertNotNull(entry.getValidationResult());
+				}
+				catch (EmotionMLException e)
+				{
+					assertEquals(e.getMessage(), entry.getException().getMessage());
+				}
+			}
+			assertTrue(files.size() > 80);
+			assertTrue(files.contains(new File("tests/fail/fail_105.xml")));
+			List<File> sorted = new ArrayList<File>(files);
+			Collections.sort(sorted);
+			assertEquals(sorted, files);
+
+			// in the order of completion
+			Set<File> completed = new HashSet<File>();
+			for(CorpusIterator i = corpusImporter.importFiles(files, false); i.hasNext();)
+				completed.add(i.next().getFile());
+			assertEquals(new HashSet<File>(files), completed);
+		}
+		finally
+		{
+			corpusImporter.close();
+		}
+	}
+
+
+	@Test
+	public void testClose() throws Exception
+	{
+		CorpusImporter corpusImporter = new CorpusImporter(2);
+		CorpusIterator iterator = corpusImporter.importDirectory(new File("tests"), null, true);
+		assertTrue(iterator.hasNext());
+		assertEquals(new File("tests/annotation_of_text.emotionml"), iterator.next().getFile());
+		iterator.close();
+		assertFalse(iterator.hasNext());
+		corpusImporter.close();
+	}
+
+
+	@Test(timeout = 60000)
+	public void testError() throws Exception
+	{
+		final File failing = new File("tests/fail/fail_105.xml");
+		CorpusImporter corpusImporter = new CorpusImporter(2)
+		{
+			@Override
+			protected EmotionMLImporter createImporter()
+			{
+				return new EmotionMLImporter()
+				{
+					@Override
+					public EmotionMLDocument importDocument(File file) throws IOException, EmotionMLValidationException, EmotionMLException
+					{
+						if (file.equals(failing))
+							throw new OutOfMemoryError("too large");
+						else return super.importDocument(file);
+					}
+				};
+			}
+		};
+
+		try
+		{
+			List<File> files = new ArrayList<File>(Arrays.asList(new File("tests/fail").listFiles()));
+			for(boolean ordered : new boolean[] { true, false })
+			{
+				int entries = 0;
+				int errors = 0;
+				for(CorpusIterator i = corpusImporter.importFiles(files, ordered); i.hasNext();)
+					try
+					{
+						assertFalse(i.next().getFile().equals(failing));
+						entries++;
+					}
+					catch (OutOfMemoryError e)
+					{
+						errors++;
+					}
+				assertEquals(1, errors);
+				assertEquals(files.size() - 1, entries);
+			}
+		}
+		finally
+		{
+			corpusImporter.close();
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.util.*;
+
+import javax.xml.stream.XMLInputFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.*;
+import fr.loria.synalp.emotionml.processors.json.*;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLExporter;
+
+/**
+ * Checks that a validator gathering the failures reports the same first failures as a validator
+ * stopping at the first one, and that it gives the code, path, value and location of each failure,
+ * the code being the one starting the message, and that the schema validator kept by the thread
+ * does not keep the diagnostics of its last validation. The single-pass processors either validate a
+ * DOM Element instead or reject such a validator.
+ */
+public class TestDiagnostics
+{
+	private static final String DOCUMENT = "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" category-set=\"#local\" version=\"1.0\">\n" +
+			"\t<vocabulary id=\"local\" type=\"category\">\n" +
+			"\t\t<item name=\"happy\"/>\n" +
+			"\t</vocabulary>\n" +
+			"\t<emotion id=\"e1\" version=\"2.0\">\n" +
+			"\t\t<category name=\"happy\" confidence=\"2\"/>\n" +
+			"\t</emotion>\n" +
+			"\t<emotion id=\"e1\">\n" +
+			"\t\t<category name=\"sad\" value=\"-1\"/>\n" +
+			"\t</emotion>\n" +
+			"</emotionml>";
+
+
+	@Test
+	public void testSameFirstFailure() throws Exception
+	{
+		EmotionMLValidator firstValidator = new EmotionMLValidator();
+		EmotionMLValidator allValidator = new EmotionMLValidator().setMaxDiagnostics(100);
+		XMLEmotionMLReader reader = new XMLEmotionMLReader();
+
+		List<File> files = new ArrayList<File>(Arrays.asList(new File("tests").listFiles()));
+		files.addAll(Arrays.asList(new File("tests/fail").listFiles()));
+		int failures = 0;
+		for(File file : files)
+		{
+			if (!file.isFile())
+				continue;
+
+			ValidationResult first;
+			ValidationResult all;
+			try
+			{
+				first = validate(firstValidator, reader, file);
+				all = validate(allValidator, reader, file);
+			}
+			catch (EmotionMLException e) // not well-formed
+			{
+				continue;
+			}
+			if (first == null)
+			{
+				assertNull(file.toString(), all);
+				continue;
+			}
+
+			failures++;
+			assertEquals(file.toString(), first.toString(), all.toString());
+			assertFalse(all.getDiagnostics().isEmpty());
+			assertTrue(first.getDiagnostics().isEmpty());
+			if (!all.isAssertionValid())
+			{
+				Diagnostic diagnostic = getFirst(all.getDiagnostics(), false);
+				assertEquals(all.getAssertionErrorMessage(), diagnostic.getMessage());
+				assertTrue(diagnostic.getPath().startsWith("/"));
+			}
+			for(Diagnostic diagnostic : all.getDiagnostics())
+				if (diagnostic.getCode() != null)
+					assertTrue(diagnostic.toString(), diagnostic.getMessage().startsWith(diagnostic.getCode() + ":"));
+				else assertFalse(diagnostic.toString(), diagnostic.getMessage().matches("[0-9]+:.*")); // "-1:" for no assertion
+		}
+		assertTrue(failures > 60);
+	}
+
+
+	@Test
+	public void testAllFailures() throws Exception
+	{
+		EmotionMLValidator validator = new EmotionMLValidator().setMaxDiagnostics(100);
+		ValidationResult result = validate(validator, DOCUMENT, true);
+		assertFalse(result.isTruncated());
+
+		List<Diagnostic> diagnostics = getAll(result.getDiagnostics(), false);
+		assertEquals(diagnostics.toString(), 5, diagnostics.size());
+		assertDiagnostic(diagnostics.get(0), "172", "/emotionml/emotion[1]", "2.0", 5);
+		assertDiagnostic(diagnostics.get(1), "300", "/emotionml/emotion[1]/category[1]", "2", 6);
+		assertDiagnostic(diagnostics.get(2), "174", "/emotionml/emotion[2]", "e1", 8);
+		assertDiagnostic(diagnostics.get(3), "212", "/emotionml/emotion[2]/category[1]", "sad", 9);
+		assertDiagnostic(diagnostics.get(4), "500", "/emotionml/emotion[2]/category[1]", "-1", 9);
+		assertEquals(result.getAssertionErrorMessage(), diagnostics.get(0).getMessage());
+
+		// the first failure only
+		result = validate(new EmotionMLValidator(), DOCUMENT, true);
+		assertEquals(diagnostics.get(0).getMessage(), result.getAssertionErrorMessage());
+		assertTrue(result.getDiagnostics().isEmpty());
+
+		// no location
+		result = validate(validator, DOCUMENT, false);
+		assertEquals(-1, getFirst(result.getDiagnostics(), false).getLine());
+		assertEquals("/emotionml/emotion[1]", getFirst(result.getDiagnostics(), false).getPath());
+	}
+
+
+	@Test
+	public void testMaxDiagnostics() throws Exception
+	{
+		ValidationResult result = validate(new EmotionMLValidator().setMaxDiagnostics(2), DOCUMENT, false);
+		List<Diagnostic> diagnostics = getAll(result.getDiagnostics(), false);
+		assertEquals(2, diagnostics.size());
+		assertTrue(result.isTruncated());
+		assertEquals("300", diagnostics.get(1).getCode());
+	}
+
+
+	@Test
+	public void testSchemaFailures() throws Exception
+	{
+		String document = DOCUMENT.replace("<item name=\"happy\"/>", "<item name=\"happy\" foo=\"1\"/><unknown/>");
+		ValidationResult result = validate(new EmotionMLValidator().setMaxDiagnostics(100), document, false);
+		assertFalse(result.isSchemaValid());
+		Diagnostic diagnostic = getFirst(result.getDiagnostics(), true);
+		assertTrue(diagnostic.getCode(), diagnostic.getCode().startsWith("cvc-"));
+		assertEquals(result.getSchemaErrorMessage(), diagnostic.getMessage());
+		assertEquals("/emotionml/vocabulary[1]/item[1]", diagnostic.getPath());
+		assertTrue(result.getDiagnostics().size() > 5);
+	}
+
+
+	@Test
+	public void testReleasedDiagnostics() throws Exception
+	{
+		EmotionMLValidator validator = new EmotionMLValidator().setMaxDiagnostics(100);
+		String document = DOCUMENT.replace("<item name=\"happy\"/>", "<item name=\"happy\" foo=\"1\"/>");
+		WeakReference<Diagnostic> diagnostic = new WeakReference<Diagnostic>(getFirst(validate(validator, document, false).getDiagnostics(), true));
+		for(int i = 0; i < 20 && diagnostic.get() != null; i++)
+		{
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(diagnostic.get());
+	}
+
+
+	@Test
+	public void testSinglePass() throws Exception
+	{
+		EmotionMLValidator validator = new EmotionMLValidator().setMaxDiagnostics(100);
+		String expected = validate(validator, DOCUMENT, false).getDiagnostics().toString();
+		Element element = new XMLEmotionMLReader().read(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")));
+
+		// the fused imports, the direct JSON imports and the exports without DOM Elements validate a DOM Element instead
+		assertEquals(expected, getFailure(new EmotionMLImporter(validator).setFused(true), DOCUMENT.getBytes("UTF-8")).getDiagnostics().toString());
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		new JsonEmotionMLWriter().write(element, json);
+		assertEquals(expected, getFailure(new JsonEmotionMLImporter(validator), json.toByteArray()).getDiagnostics().toString());
+		EmotionMLDocument document = new EmotionMLImporter().importDocument(element);
+		for(EmotionMLExporter exporter : new EmotionMLExporter[] { new StaxEmotionMLExporter(validator), new JsonEmotionMLExporter(validator) })
+		{
+			try
+			{
+				exporter.export(document);
+				fail();
+			}
+			catch (EmotionMLValidationException e)
+			{
+				assertTrue(getAll(e.getValidationResult().getDiagnostics(), false).size() > 1);
+			}
+		}
+
+		// the StAX imports and the streams cannot go on after a failure
+		try
+		{
+			new EmotionMLImporter(validator).importDocument(XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(DOCUMENT)));
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+		try
+		{
+			new EmotionMLImporter(validator).stream(new ByteArrayInputStream(DOCUMENT.getBytes("UTF-8")));
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+		try
+		{
+			new EmotionMLExporter(validator).stream(new EmotionMLDocument(), new ByteArrayOutputStream());
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			// expected
+		}
+	}
+
+
+	private static ValidationResult getFailure(EmotionMLImporter importer, byte[] document) throws Exception
+	{
+		try
+		{
+			importer.importDocument(new ByteArrayInputStream(document));
+			fail();
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getValidationResult();
+		}
+	}
+
+
+	private static void assertDiagnostic(Diagnostic diagnostic, String code, String path, String value, int line)
+	{
+		assertFalse(diagnostic.isSchemaFailure());
+		assertEquals(diagnostic.toString(), code, diagnostic.getCode());
+		assertEquals(path, diagnostic.getPath());
+		assertEquals(value, diagnostic.getValue());
+		assertEquals(line, diagnostic.getLine());
+		assertTrue(diagnostic.getColumn() > 0);
+	}
+
+
+	private static Diagnostic getFirst(List<Diagnostic> diagnostics, boolean schemaFailure)
+	{
+		return getAll(diagnostics, schemaFailure).get(0);
+	}
+
+
+	private static List<Diagnostic> getAll(List<Diagnostic> diagnostics, boolean schemaFailure)
+	{
+		List<Diagnostic> ret = new ArrayList<Diagnostic>();
+		for(Diagnostic diagnostic : diagnostics)
+			if (diagnostic.isSchemaFailure() == schemaFailure)
+				ret.add(diagnostic);
+		return ret;
+	}
+
+
+	private static ValidationResult validate(EmotionMLValidator validator, String document, boolean recordLocations) throws Exception
+	{
+		Element element = new XMLEmotionMLReader().setRecordLocations(recordLocations).read(new ByteArrayInputStream(document.getBytes("UTF-8")));
+		try
+		{
+			validator.validateDocument(element);
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getValidationResult();
+		}
+	}
+
+
+	/**
+	 * Validates the given file, as an emotion if it is not an EmotionML document.
+	 */
+	private static ValidationResult validate(EmotionMLValidator validator, XMLEmotionMLReader reader, File file) throws Exception
+	{
+		InputStream stream = new FileInputStream(file);
+		Element element = reader.read(stream);
+		stream.close();
+		try
+		{
+			if (element.getLocalName().equals("emotion"))
+				validator.validateEmotion(element);
+			else validator.validateDocument(element);
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getValidationResult();
+		}
+	}
+}
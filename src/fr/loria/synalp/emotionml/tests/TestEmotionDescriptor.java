@@ -0,0 +1,136 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.Emotion;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.vocabularies.VocabularyType;
+
+public class TestEmotionDescriptor
+{
+
+	@Test
+	public void testPrimitiveAndFloatAccessors()
+	{
+		Dimension dimension = new Dimension("arousal", (Float) null);
+		assertFalse(dimension.hasValue());
+		assertNull(dimension.getValue());
+		assertTrue(Float.isNaN(dimension.getValueAsFloat()));
+
+		dimension.setValue(0.25f);
+		assertTrue(dimension.hasValue());
+		assertEquals(Float.valueOf(0.25f), dimension.getValue());
+		assertEquals(0.25f, dimension.getValueAsFloat(), 0);
+
+		dimension.setValue((Float) null);
+		assertFalse(dimension.hasValue());
+		assertNull(dimension.getValue());
+
+		dimension.setConfidence(Float.valueOf(0.5f));
+		assertTrue(dimension.hasConfidence());
+		assertFalse(dimension.hasValue());
+		assertEquals(0.5f, new Dimension(dimension).getConfidenceAsFloat(), 0);
+
+		dimension.setConfidence((Float) null);
+		assertFalse(dimension.hasConfidence());
+		assertTrue(Float.isNaN(dimension.getConfidenceAsFloat()));
+	}
+
+
+	@Test
+	public void testEmotionIndex()
+	{
+		Category fear = new Category("fear");
+		Category fear2 = new Category("fear", 0.5f);
+		Dimension arousal = new Dimension("arousal", 0.2f);
+		Appraisal fearAppraisal = new Appraisal("fear", 0.1f);
+		Emotion emotion = new Emotion(fearAppraisal, fear, arousal, fear2);
+
+		assertEquals(Arrays.asList(fear, fear2), emotion.getCategories());
+		assertSame(emotion.getCategories(), emotion.getCategories());
+		assertEquals(Arrays.asList(arousal), emotion.getDimensions());
+		assertTrue(emotion.getActionTendencies().isEmpty());
+		assertSame(fear, emotion.getDescriptor("fear", VocabularyType.CATEGORY));
+		assertSame(fearAppraisal, emotion.getDescriptor("fear"));
+
+		emotion.remove(fear);
+		emotion.remove(fearAppraisal);
+		assertSame(fear2, emotion.getDescriptor("fear"));
+		assertEquals(Arrays.asList(fear2), emotion.getCategories());
+		assertEquals(Arrays.asList(arousal, fear2), emotion.getDescriptors());
+		assertEquals(1, new Emotion(emotion).getCategories().size());
+
+		try
+		{
+			emotion.getCategories().add(fear);
+			fail("the categories should not be modifiable");
+		}
+		catch (UnsupportedOperationException e)
+		{
+			assertNull(emotion.getDescriptor("fear", VocabularyType.APPRAISAL));
+		}
+	}
+
+
+	@Test
+	public void testLiveViews()
+	{
+		Emotion emotion = new Emotion();
+		List<ActionTendency> actionTendencies = emotion.getActionTendencies();
+		List<? extends EmotionDescriptor> appraisals = emotion.getDescriptors(VocabularyType.APPRAISAL);
+		assertTrue(actionTendencies.isEmpty());
+		assertTrue(appraisals.isEmpty());
+
+		ActionTendency approach = new ActionTendency("approach", 0.3f);
+		Appraisal novelty = new Appraisal("novelty", 0.6f);
+		emotion.add(approach);
+		emotion.add(novelty);
+		assertEquals(Arrays.asList(approach), actionTendencies);
+		assertEquals(Arrays.asList(novelty), appraisals);
+		assertTrue(emotion.getCategories().isEmpty());
+
+		emotion.remove(approach);
+		assertTrue(actionTendencies.isEmpty());
+	}
+
+
+	@Test
+	public void testModifiableDescriptors()
+	{
+		Category fear = new Category("fear");
+		Category fear2 = new Category("fear", 0.5f);
+		Dimension arousal = new Dimension("arousal", 0.2f);
+		Emotion emotion = new Emotion(arousal, fear2);
+		List<EmotionDescriptor> descriptors = emotion.getDescriptors();
+		List<Category> categories = emotion.getCategories();
+
+		descriptors.add(0, fear);
+		assertEquals(Arrays.asList(fear, fear2), categories);
+		assertSame(fear, emotion.getDescriptor("fear", VocabularyType.CATEGORY));
+		assertSame(fear, emotion.getDescriptor("fear"));
+
+		descriptors.remove(fear);
+		assertEquals(Arrays.asList(fear2), categories);
+		assertSame(fear2, emotion.getDescriptor("fear"));
+
+		Appraisal novelty = new Appraisal("novelty", 0.6f);
+		descriptors.set(1, novelty);
+		assertTrue(categories.isEmpty());
+		assertNull(emotion.getDescriptor("fear"));
+		assertEquals(Arrays.asList(novelty), emotion.getAppraisals());
+		assertEquals(Arrays.asList(arousal, novelty), descriptors);
+
+		for(Iterator<EmotionDescriptor> it = descriptors.iterator(); it.hasNext();)
+			if (it.next() == arousal)
+				it.remove();
+		assertTrue(emotion.getDimensions().isEmpty());
+
+		descriptors.clear();
+		assertTrue(emotion.getAppraisals().isEmpty());
+		assertNull(emotion.getDescriptor("novelty"));
+	}
+}
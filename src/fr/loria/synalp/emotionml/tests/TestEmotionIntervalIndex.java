@@ -0,0 +1,77 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.*;
+
+public class TestEmotionIntervalIndex
+{
+
+	@Test
+	public void testQueries()
+	{
+		Emotion a = createEmotion(0, 100, -1);
+		Emotion b = createEmotion(50, -1, 10); // ends at 60
+		Emotion c = createEmotion(200, -1, -1); // point at 200
+		Emotion d = createEmotion(50, 300, -1);
+		Emotion e = new Emotion(); // no start, not indexed
+
+		EmotionMLDocument document = new EmotionMLDocument();
+		document.addAll(Arrays.asList(c, a, b, e));
+		EmotionIntervalIndex index = new EmotionIntervalIndex(document);
+		assertTrue(index.add(d));
+		assertFalse(index.add(e));
+		assertEquals(4, index.size());
+
+		assertEquals(Arrays.asList(a, b, d), index.getOverlapping(55, 60));
+		assertEquals(Arrays.asList(d), index.getOverlapping(101, 199));
+		assertEquals(Arrays.asList(d, c), index.getContaining(200));
+		assertEquals(Arrays.asList(a, b, d, c), index.getOverlapping(Long.MIN_VALUE, Long.MAX_VALUE));
+		assertTrue(index.getOverlapping(301, 1000).isEmpty());
+		assertTrue(index.getOverlapping(60, 50).isEmpty());
+	}
+
+
+	@Test
+	public void testIncrementalInsertion()
+	{
+		EmotionIntervalIndex index = new EmotionIntervalIndex();
+		List<Emotion> emotions = new ArrayList<Emotion>();
+		for(int i = 0; i < 1000; i++)
+		{
+			Emotion emotion = createEmotion((i * 7919) % 1000, -1, 5);
+			emotions.add(emotion);
+			index.add(emotion);
+		}
+
+		for(int time = 0; time < 1010; time += 3)
+		{
+			Set<Emotion> expected = new HashSet<Emotion>();
+			for(Emotion emotion : emotions)
+				if (emotion.getTimestamp().getStartAsLong() <= time && emotion.getTimestamp().getStartAsLong() + 5 >= time)
+					expected.add(emotion);
+			List<Emotion> result = index.getContaining(time);
+			assertEquals(expected.size(), result.size());
+			assertEquals(expected, new HashSet<Emotion>(result));
+		}
+	}
+
+
+	/**
+	 * Creates an Emotion with given start, end and duration, negative values being absent.
+	 */
+	private static Emotion createEmotion(long start, long end, long duration)
+	{
+		Emotion ret = new Emotion();
+		ret.getTimestamp().setStart(start);
+		if (end >= 0)
+			ret.getTimestamp().setEnd(end);
+		if (duration >= 0)
+			ret.getTimestamp().setDuration(duration);
+		return ret;
+	}
+}
@@ -0,0 +1,145 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.Emotion;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * Checks that an EmotionIterator returns the emotions in document order, that it stops at the
+ * first invalid content with an EmotionMLIterationException, including the checks performed at the
+ * end of the document, and that closing it closes the stream.
+ */
+public class TestEmotionIterator
+{
+	private static final String START = "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\" "
+			+ "category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\">";
+	private static final String END = "</emotionml>";
+
+
+	@Test
+	public void testOrder() throws Exception
+	{
+		StringBuilder document = new StringBuilder(START);
+		for(int i = 0; i < 100; i++)
+			document.append("<emotion id=\"e").append(i).append("\"><category name=\"fear\"/></emotion>");
+		document.append(END);
+
+		EmotionIterator iterator = new EmotionMLImporter().stream(toStream(document.toString()));
+		for(int i = 0; i < 100; i++)
+		{
+			assertTrue(iterator.hasNext());
+			assertEquals("e" + i, iterator.next().getId());
+		}
+		assertFalse(iterator.hasNext());
+		try
+		{
+			iterator.next();
+			fail("there should be no more emotions");
+		}
+		catch (NoSuchElementException e)
+		{
+			// expected
+		}
+		iterator.close();
+	}
+
+
+	@Test
+	public void testFailure() throws Exception
+	{
+		String document = START + "<emotion id=\"e1\"><category name=\"fear\"/></emotion><emotion id=\"e2\"><category name=\"joy\"/></emotion>"
+				+ "<emotion id=\"e3\"><category name=\"fear\"/></emotion>" + END;
+		EmotionIterator iterator = new EmotionMLImporter().stream(toStream(document));
+		assertEquals("e1", iterator.next().getId());
+		EmotionMLIterationException failure = getFailure(iterator);
+		assertTrue(failure.getCause() instanceof EmotionMLValidationException);
+		assertEquals(getRejection(document).toString(), failure.getCause().getMessage());
+		assertSame(failure, getFailure(iterator)); // the iteration stays failed
+		iterator.close();
+	}
+
+
+	@Test
+	public void testLateDeclaration() throws Exception
+	{
+		// the emotion id is checked against the vocabulary id only at the end of the document, and the
+		// schema does not see the duplicate since the emotions are validated on their own
+		String document = START + "<emotion id=\"e1\"><category name=\"fear\"/></emotion><emotion id=\"e2\"><category name=\"anger\"/></emotion>"
+				+ "<vocabulary type=\"category\" id=\"e2\"><item name=\"x\"/></vocabulary>" + END;
+		EmotionIterator iterator = new EmotionMLImporter().stream(toStream(document));
+		assertEquals("e1", iterator.next().getId());
+		assertEquals("e2", iterator.next().getId());
+		ValidationResult result = ((EmotionMLValidationException) getFailure(iterator).getCause()).getValidationResult();
+		assertEquals(getRejection(document).getAssertionErrorMessage(), result.getAssertionErrorMessage());
+		assertTrue(result.getAssertionErrorMessage().startsWith("174:"));
+		iterator.close();
+	}
+
+
+	@Test
+	public void testClose() throws Exception
+	{
+		final boolean[] closed = new boolean[1];
+		InputStream stream = new ByteArrayInputStream((START + "<emotion><category name=\"fear\"/></emotion>" + END).getBytes("UTF-8"))
+		{
+			@Override
+			public void close() throws IOException
+			{
+				closed[0] = true;
+				super.close();
+			}
+		};
+
+		EmotionIterator iterator = new EmotionMLImporter().stream(stream);
+		assertTrue(iterator.hasNext());
+		iterator.close();
+		assertTrue(closed[0]);
+		assertFalse(iterator.hasNext());
+	}
+
+
+	private static EmotionMLIterationException getFailure(EmotionIterator iterator)
+	{
+		try
+		{
+			Emotion emotion = iterator.next();
+			fail("the iteration should fail: " + emotion);
+			return null;
+		}
+		catch (EmotionMLIterationException e)
+		{
+			return e;
+		}
+	}
+
+
+	/**
+	 * Returns the ValidationResult of the rejection of the given document by a whole import.
+	 */
+	private static ValidationResult getRejection(String document) throws Exception
+	{
+		try
+		{
+			new EmotionMLImporter().importDocument(toStream(document));
+			fail("the document should be rejected");
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getValidationResult();
+		}
+	}
+
+
+	private static InputStream toStream(String xml) throws UnsupportedEncodingException
+	{
+		return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+	}
+}
@@ -0,0 +1,41 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.generator.EmotionMLGenerator;
+import fr.loria.synalp.emotionml.processors.EmotionMLImporter;
+
+public class TestEmotionMLGenerator
+{
+
+	@Test
+	public void testDeterministicAndValid() throws Exception
+	{
+		EmotionMLGenerator generator = new EmotionMLGenerator(7).setEmotionCount(200).setTraceLength(20);
+		String streamed = generate(generator);
+		assertEquals(streamed, generate(new EmotionMLGenerator(7).setEmotionCount(200).setTraceLength(20)));
+		assertEquals(streamed, generator.createExporter().export(generator.generate()));
+		assertFalse(streamed.equals(generate(generator.setSeed(8))));
+
+		EmotionMLDocument document = new EmotionMLImporter().importDocument(streamed);
+		assertEquals(200, document.getEmotions().size());
+		assertEquals(2, document.getVocabularies().size());
+		assertTrue(document.hasInfo());
+	}
+
+
+	/**
+	 * Generates the document of the given generator in a String.
+	 */
+	private static String generate(EmotionMLGenerator generator) throws Exception
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		generator.generate(stream);
+		return stream.toString("UTF-8");
+	}
+}
@@ -0,0 +1,103 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+/**
+ * Checks that the failures keyed by their assertion code give the same messages as before, with a
+ * stack trace unless it is not wanted, and that a fast-fail validator rejects the same documents with the same results, without stack
+ * trace, even when its thread reuses its schema validator between valid and invalid documents.
+ */
+public class TestFastFail
+{
+	@Test
+	public void testKeyedFailure()
+	{
+		EmotionMLFormatException keyed = new EmotionMLFormatException(502, "The value is \"", "12 Hz", "\"");
+		assertEquals("502: The value is \"12 Hz\"", keyed.getMessage());
+		assertEquals(502, keyed.getCode());
+		assertTrue(keyed.getStackTrace().length > 0);
+
+		EmotionMLFormatException stackless = new EmotionMLFormatException(502, new Object[] { "The value is \"", "12 Hz", "\"" }, false);
+		assertEquals(keyed.getMessage(), stackless.getMessage());
+		assertEquals(0, stackless.getStackTrace().length);
+
+		EmotionMLFormatException legacy = new EmotionMLFormatException("210: If the <category> element is used");
+		assertEquals(210, legacy.getCode());
+		assertEquals(-1, new EmotionMLFormatException("Unable to validate").getCode());
+		assertTrue(legacy.getStackTrace().length > 0);
+	}
+
+
+	@Test
+	public void testSameResults() throws Exception
+	{
+		EmotionMLValidator validator = new EmotionMLValidator();
+		EmotionMLValidator fastValidator = new EmotionMLValidator().setFastFail(true);
+		XMLEmotionMLReader reader = new XMLEmotionMLReader();
+		Element valid = read(reader, new File("tests/info_element.emotionml"));
+
+		int failures = 0;
+		for(File file : new File("tests/fail").listFiles())
+		{
+			Element element;
+			try
+			{
+				element = read(reader, file);
+			}
+			catch (EmotionMLException e) // not well-formed
+			{
+				continue;
+			}
+
+			EmotionMLValidationException expected = validate(validator, element);
+			EmotionMLValidationException actual = validate(fastValidator, element);
+			if (expected == null)
+			{
+				assertNull(file.toString(), actual);
+				continue;
+			}
+
+			failures++;
+			assertEquals(file.toString(), expected.getMessage(), actual.getMessage());
+			assertEquals(expected.getValidationResult().toString(), actual.getValidationResult().toString());
+			assertTrue(expected.getStackTrace().length > 0);
+			assertEquals(0, actual.getStackTrace().length);
+			assertNull(validate(fastValidator, valid));
+		}
+		assertTrue(failures > 60);
+	}
+
+
+	private static Element read(XMLEmotionMLReader reader, File file) throws Exception
+	{
+		InputStream stream = new FileInputStream(file);
+		Element ret = reader.read(stream);
+		stream.close();
+		return ret;
+	}
+
+
+	private static EmotionMLValidationException validate(EmotionMLValidator validator, Element element)
+	{
+		try
+		{
+			if (element.getLocalName().equals("emotion"))
+				validator.validateEmotion(element);
+			else validator.validateDocument(element);
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.Test;
+
+import com.google.gson.stream.*;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.EmotionDescriptor;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.JsonEmotionMLWriter;
+import fr.loria.synalp.emotionml.processors.json.*;
+
+/**
+ * Checks that the JsonEmotionMLExporter writes the same JSON from the EmotionML objects as the
+ * JsonEmotionMLWriter writes from their DOM Elements, that a text before an emotion is rejected
+ * while a text after them is kept, that the descriptors of a type are grouped in a single property,
+ * and that an emotion with a text survives a JSON round trip.
+ */
+public class TestJsonExport
+{
+	@Test
+	public void testSameAsDom() throws Exception
+	{
+		EmotionMLImporter importer = new EmotionMLImporter(new NullValidator());
+		EmotionMLExporter domExporter = new EmotionMLExporter().setWriter(new JsonEmotionMLWriter());
+		EmotionMLExporter exporter = new JsonEmotionMLExporter();
+		int documents = 0;
+		for(File file : new File("tests").listFiles())
+		{
+			if (!file.isFile())
+				continue;
+
+			EmotionMLDocument document;
+			try
+			{
+				document = importer.importDocument(file);
+			}
+			catch (EmotionMLException e) // not well-formed
+			{
+				continue;
+			}
+
+			String expected = getOutcome(domExporter, document);
+			assertEquals(file.toString(), expected, getOutcome(exporter, document));
+			if (expected.startsWith("{"))
+				assertUniqueProperties(expected);
+			for(EmotionNode emotionNode : document.getEmotionNodes())
+				if (emotionNode instanceof Emotion)
+					assertEquals(getOutcome(domExporter, (Emotion) emotionNode), getOutcome(exporter, (Emotion) emotionNode));
+			documents++;
+		}
+		assertTrue(documents >= 8);
+	}
+
+
+	@Test
+	public void testInterleavedText() throws Exception
+	{
+		String xml = "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\" category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\">"
+				+ "before <emotion><category name=\"anger\"/></emotion> middle <emotion><category name=\"fear\"/></emotion> after</emotionml>";
+		EmotionMLDocument document = new EmotionMLImporter().importDocument(xml);
+		for(EmotionMLExporter exporter : new EmotionMLExporter[] { new JsonEmotionMLExporter(), new EmotionMLExporter().setWriter(new JsonEmotionMLWriter()) })
+			try
+			{
+				exporter.export(document);
+				fail("the text before the emotions should be rejected");
+			}
+			catch (EmotionMLException e)
+			{
+				assertTrue(e.getMessage(), e.getMessage().contains("\"before\" before its child element <emotion>"));
+			}
+
+		xml = xml.replace("before ", "\n\t").replace(" middle ", "\n\t");
+		document = new EmotionMLImporter().importDocument(xml);
+		String json = new JsonEmotionMLExporter().export(document);
+		assertEquals(json, new EmotionMLExporter().setWriter(new JsonEmotionMLWriter()).export(document));
+		assertUniqueProperties(json);
+
+		List<EmotionNode> emotionNodes = new JsonEmotionMLImporter().importDocument(new ByteArrayInputStream(json.getBytes("UTF-8"))).getEmotionNodes();
+		assertEquals(3, emotionNodes.size());
+		assertTrue(emotionNodes.get(0) instanceof Emotion);
+		assertTrue(emotionNodes.get(1) instanceof Emotion);
+		assertEquals(" after", ((EmotionText) emotionNodes.get(2)).getContent());
+	}
+
+
+	@Test
+	public void testGroupedDescriptors() throws Exception
+	{
+		String xml = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\" category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\" "
+				+ "dimension-set=\"http://www.w3.org/TR/emotion-voc/xml#pad-dimensions\"><category name=\"anger\"/>"
+				+ "<dimension name=\"arousal\" value=\"0.5\"/><category name=\"fear\"/><dimension name=\"pleasure\" value=\"0.2\"/></emotion>";
+		Emotion emotion = new EmotionMLImporter().importEmotion(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		String json = new JsonEmotionMLExporter().export(emotion);
+		assertEquals(json, new EmotionMLExporter().setWriter(new JsonEmotionMLWriter()).export(emotion));
+		assertUniqueProperties(json);
+
+		Emotion imported = new JsonEmotionMLImporter().importEmotion(new ByteArrayInputStream(json.getBytes("UTF-8")));
+		List<String> names = new ArrayList<String>();
+		for(EmotionDescriptor descriptor : imported.getDescriptors())
+			names.add(descriptor.getName());
+		assertEquals(Arrays.asList("anger", "fear", "arousal", "pleasure"), names);
+	}
+
+
+	@Test
+	public void testTextRoundTrip() throws Exception
+	{
+		String xml = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\" category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\" id=\"e1\">"
+				+ "<category name=\"fear\" value=\"0.4\"/><reference uri=\"http://www.example.com/a\"/>afraid of the dark</emotion>";
+		Emotion emotion = new EmotionMLImporter().importEmotion(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		assertTrue(emotion.hasText());
+
+		EmotionMLExporter exporter = new JsonEmotionMLExporter();
+		String json = exporter.export(emotion);
+		assertUniqueProperties(json);
+		Emotion imported = new JsonEmotionMLImporter().importEmotion(new ByteArrayInputStream(json.getBytes("UTF-8")));
+		assertEquals("afraid of the dark", imported.getText().getContent());
+		assertEquals(json, exporter.export(imported));
+
+		EmotionMLExporter xmlExporter = new EmotionMLExporter();
+		assertEquals(xmlExporter.export(emotion), xmlExporter.export(imported));
+	}
+
+
+	/**
+	 * Returns the export of the given EmotionMLDocument, or the message of its rejection or failure.
+	 */
+	private static String getOutcome(EmotionMLExporter exporter, EmotionMLDocument document)
+	{
+		try
+		{
+			return exporter.export(document);
+		}
+		catch (EmotionMLException e)
+		{
+			return e.getMessage();
+		}
+	}
+
+
+	/**
+	 * Returns the export of the given Emotion, or the message of its rejection or failure.
+	 */
+	private static String getOutcome(EmotionMLExporter exporter, Emotion emotion)
+	{
+		try
+		{
+			return exporter.export(emotion);
+		}
+		catch (EmotionMLException e)
+		{
+			return e.getMessage();
+		}
+	}
+
+
+	/**
+	 * Asserts that no object of the given JSON has the same property twice.
+	 */
+	private static void assertUniqueProperties(String json) throws IOException
+	{
+		JsonReader reader = new JsonReader(new StringReader(json));
+		assertUniqueProperties(reader);
+		assertEquals(JsonToken.END_DOCUMENT, reader.peek());
+		reader.close();
+	}
+
+
+	private static void assertUniqueProperties(JsonReader reader) throws IOException
+	{
+		switch (reader.peek())
+		{
+			case BEGIN_OBJECT:
+				Set<String> names = new HashSet<String>();
+				reader.beginObject();
+				while(reader.hasNext())
+				{
+					String name = reader.nextName();
+					assertTrue(name, names.add(name));
+					assertUniqueProperties(reader);
+				}
+				reader.endObject();
+				break;
+
+			case BEGIN_ARRAY:
+				reader.beginArray();
+				while(reader.hasNext())
+					assertUniqueProperties(reader);
+				reader.endArray();
+				break;
+
+			default:
+				reader.skipValue();
+		}
+	}
+}
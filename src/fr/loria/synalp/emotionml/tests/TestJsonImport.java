@@ -0,0 +1,124 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.*;
+import fr.loria.synalp.emotionml.processors.json.JsonEmotionMLImporter;
+
+/**
+ * Checks that the JsonEmotionMLImporter, which reads the JSON directly, gives the same documents
+ * and the same rejections as the EmotionMLImporter reading it with a JsonEmotionMLReader, that
+ * converts it with StAXON, on the JSON form of the test corpus, and that it uses the reader set
+ * with setReader.
+ */
+public class TestJsonImport
+{
+	@Test
+	public void testSameAsStaxon() throws Exception
+	{
+		EmotionMLImporter importer = new JsonEmotionMLImporter();
+		EmotionMLImporter staxonImporter = new EmotionMLImporter().setReader(new JsonEmotionMLReader());
+		int accepted = 0;
+		int rejected = 0;
+		for(String directory : new String[] { "tests", "tests/fail", "tests/external" })
+			for(File file : new File(directory).listFiles())
+			{
+				if (!file.isFile())
+					continue;
+
+				byte[] data = toJson(file);
+				if (data == null)
+					continue;
+
+				for(boolean emotion : new boolean[] { false, true })
+				{
+					String expected = getOutcome(staxonImporter, data, emotion);
+					assertEquals(file + " emotion=" + emotion, expected, getOutcome(importer, data, emotion));
+					if (expected.startsWith("accepted"))
+						accepted++;
+					else if (expected.startsWith("rejected"))
+						rejected++;
+				}
+			}
+		assertTrue(accepted + " accepted", accepted >= 7);
+		assertTrue(rejected + " rejected", rejected > 60);
+	}
+
+
+	@Test
+	public void testSetReader() throws Exception
+	{
+		final int[] reads = new int[1];
+		EmotionMLImporter importer = new JsonEmotionMLImporter().setReader(new JsonEmotionMLReader()
+		{
+			@Override
+			public Element read(InputStream stream) throws EmotionMLException, IOException
+			{
+				reads[0]++;
+				return super.read(stream);
+			}
+		});
+
+		byte[] data = toJson(new File("tests/info_element.emotionml"));
+		assertEquals(getOutcome(new JsonEmotionMLImporter(), data, false), getOutcome(importer, data, false));
+		assertEquals(1, reads[0]);
+	}
+
+
+	/**
+	 * Returns the JSON form of the given XML file, as written by the JsonEmotionMLWriter.
+	 * @return null if the file is not well-formed, or has a text before one of its elements
+	 */
+	private static byte[] toJson(File file) throws IOException
+	{
+		InputStream stream = new FileInputStream(file);
+		try
+		{
+			ByteArrayOutputStream ret = new ByteArrayOutputStream();
+			new JsonEmotionMLWriter().write(new XMLEmotionMLReader().read(stream), ret);
+			return ret.toByteArray();
+		}
+		catch (EmotionMLException e)
+		{
+			return null;
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+
+
+	/**
+	 * Imports the given data as a document or as an emotion and returns the exported result, or
+	 * the message of the rejection. The documents that cannot be read are reported without
+	 * message, since the readers word it differently.
+	 */
+	private static String getOutcome(EmotionMLImporter importer, byte[] data, boolean emotion) throws Exception
+	{
+		EmotionMLExporter exporter = new EmotionMLExporter(new NullValidator());
+		try
+		{
+			if (emotion)
+				return "accepted " + exporter.export(importer.importEmotion(new ByteArrayInputStream(data)));
+			else return "accepted " + exporter.export(importer.importDocument(new ByteArrayInputStream(data)));
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return "rejected " + e.getMessage();
+		}
+		catch (EmotionMLException e)
+		{
+			if (e.getMessage().startsWith("Unable to read stream"))
+				return "unreadable";
+			else return "failed " + e.getMessage();
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.*;
+
+import org.junit.*;
+import org.w3c.dom.*;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.EmotionMLValidationException;
+import fr.loria.synalp.emotionml.generator.EmotionMLGenerator;
+import fr.loria.synalp.emotionml.processors.*;
+
+/**
+ * Validates large documents with a sequential and a parallel EmotionMLValidator and checks that they
+ * report the same failure, especially when several emotions fail or share identifiers.
+ */
+public class TestParallelValidation
+{
+	private static final int EMOTIONS = 1000;
+
+	private static byte[] source;
+	private static ForkJoinPool pool;
+
+
+	@BeforeClass
+	public static void setUp() throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		new EmotionMLGenerator(7).setEmotionCount(EMOTIONS).setLocalVocabularyCount(3).generate(out);
+		source = out.toByteArray();
+		pool = new ForkJoinPool(4);
+	}
+
+
+	@AfterClass
+	public static void tearDown()
+	{
+		pool.shutdown();
+	}
+
+
+	@Test
+	public void testValid() throws Exception
+	{
+		assertEquals("valid document", compare(parse()));
+	}
+
+
+	@Test
+	public void testDuplicateIdentifiers() throws Exception
+	{
+		List<Element> emotions = parse();
+		setIdentifiers(emotions);
+		emotions.get(700).setAttribute("id", "e300");
+		emotions.get(900).setAttribute("id", "e100");
+		String result = compare(emotions);
+		assertTrue(result, result.contains("174:") && result.contains("\"e300\""));
+	}
+
+
+	@Test
+	public void testFailureBeforeDuplicate() throws Exception
+	{
+		List<Element> emotions = parse();
+		setIdentifiers(emotions);
+		emotions.get(500).setAttribute("version", "2.0");
+		emotions.get(700).setAttribute("id", "e300");
+		assertTrue(compare(emotions).contains("172:"));
+
+		// the failure of the emotion with the duplicate identifier comes first in the emotion
+		emotions.get(500).removeAttribute("version");
+		emotions.get(700).setAttribute("version", "2.0");
+		assertTrue(compare(emotions).contains("172:"));
+	}
+
+
+	@Test
+	public void testDuplicateBeforeFailure() throws Exception
+	{
+		List<Element> emotions = parse();
+		setIdentifiers(emotions);
+		emotions.get(400).setAttribute("id", "e399");
+		emotions.get(401).setAttribute("version", "2.0");
+		emotions.get(999).setAttribute("expressed-through", "");
+		assertTrue(compare(emotions).contains("174:"));
+	}
+
+
+	@Test
+	public void testInfoIdentifier() throws Exception
+	{
+		List<Element> emotions = parse();
+		setIdentifiers(emotions);
+		for(Element emotion : emotions)
+			removeInfo(emotion);
+		Element info = emotions.get(600).getOwnerDocument().createElementNS(EmotionMLDocument.NAMESPACE, "info");
+		info.setAttribute("id", "e100");
+		emotions.get(600).insertBefore(info, emotions.get(600).getFirstChild());
+		emotions.get(800).setAttribute("category-set", "#missing");
+		assertTrue(compare(emotions).contains("306:"));
+
+		info.setAttribute("id", "info");
+		assertTrue(compare(emotions).contains("\"missing\""));
+	}
+
+
+	/**
+	 * Validates the document of the given emotions sequentially and in parallel, and returns the
+	 * common result.
+	 */
+	private static String compare(List<Element> emotions)
+	{
+		Element root = emotions.get(0).getOwnerDocument().getDocumentElement();
+		String expected = validate(new EmotionMLValidator(), root);
+		assertEquals(expected, validate(new EmotionMLValidator().setPool(pool), root));
+		return expected;
+	}
+
+
+	private static String validate(EmotionMLValidator validator, Element root)
+	{
+		try
+		{
+			validator.validateDocument(root);
+			return "valid document";
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getMessage();
+		}
+	}
+
+
+	private static void setIdentifiers(List<Element> emotions)
+	{
+		for(int i = 0; i < emotions.size(); i++)
+			emotions.get(i).setAttribute("id", "e" + i);
+	}
+
+
+	private static void removeInfo(Element emotion)
+	{
+		for(Node child = emotion.getFirstChild(); child != null; child = child.getNextSibling())
+			if (child instanceof Element && child.getLocalName().equals("info"))
+			{
+				emotion.removeChild(child);
+				return;
+			}
+	}
+
+
+	/**
+	 * Parses a fresh copy of the generated document and returns its emotions.
+	 */
+	private static List<Element> parse() throws Exception
+	{
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Document doc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(source));
+
+		List<Element> ret = new ArrayList<Element>();
+		NodeList children = doc.getDocumentElement().getChildNodes();
+		for(int i = 0; i < children.getLength(); i++)
+			if (children.item(i) instanceof Element && children.item(i).getLocalName().equals("emotion"))
+				ret.add((Element) children.item(i));
+		assertEquals(EMOTIONS, ret.size());
+		return ret;
+	}
+}
@@ -0,0 +1,85 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.ProcessingListener.Stage;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLExporter;
+
+public class TestProcessingListener
+{
+	private static final String DOCUMENT = "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\" category-set=\"#local\">"
+			+ "<vocabulary type=\"category\" id=\"local\"><item name=\"a\"/><item name=\"b\"/></vocabulary>"
+			+ "<emotion><category name=\"a\"/></emotion>" + "<emotion><category name=\"b\"/></emotion>" + "</emotionml>";
+
+
+	@Test
+	public void testImportStages() throws Exception
+	{
+		HistogramProcessingListener listener = new HistogramProcessingListener();
+		EmotionMLImporter importer = new EmotionMLImporter();
+		importer.setListener(listener);
+		importer.importDocument(DOCUMENT);
+
+		for(Stage stage : new Stage[] { Stage.READ, Stage.SCHEMA_VALIDATION, Stage.ASSERTION_VALIDATION, Stage.BUILD })
+			assertEquals(stage.toString(), 1, listener.getCount(stage));
+		assertEquals(0, listener.getCount(Stage.SINGLE_PASS));
+		assertEquals(DOCUMENT.getBytes().length, listener.getTotalBytes(Stage.READ));
+		assertEquals(2, listener.getTotalElements(Stage.BUILD));
+		assertEquals(2, listener.getTotalElements(Stage.ASSERTION_VALIDATION));
+		assertTrue(listener.getPercentile(Stage.READ, 99) >= listener.getPercentile(Stage.READ, 50));
+		assertTrue(listener.getPercentile(Stage.READ, 100) > 0);
+
+		// the local vocabulary is imported by the resolution of the document set, then reused
+		assertEquals(1, listener.getCacheMisses());
+		assertTrue(listener.getCacheHits() >= 2);
+
+		listener.reset();
+		importer.setFused(true).importDocument(DOCUMENT);
+		assertEquals(1, listener.getCount(Stage.SINGLE_PASS));
+		assertEquals(0, listener.getCount(Stage.BUILD));
+		assertEquals(2, listener.getTotalElements(Stage.SINGLE_PASS));
+		assertEquals(0, listener.getCacheMisses()); // the single pass imports the vocabulary as it reads it
+		assertTrue(listener.getCacheHits() >= 2);
+	}
+
+
+	@Test
+	public void testExportStages() throws Exception
+	{
+		EmotionMLDocument document = new EmotionMLImporter().importDocument(DOCUMENT);
+		HistogramProcessingListener listener = new HistogramProcessingListener();
+		EmotionMLExporter exporter = new EmotionMLExporter();
+		exporter.setListener(listener);
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		exporter.export(document, stream);
+
+		assertEquals(1, listener.getCount(Stage.EXPORT));
+		assertEquals(1, listener.getCount(Stage.WRITE));
+		assertEquals(stream.size(), listener.getTotalBytes(Stage.WRITE));
+		assertTrue(listener.dump().contains("WRITE"));
+
+		listener.reset();
+		exporter = new StaxEmotionMLExporter();
+		exporter.setListener(listener);
+		stream = new ByteArrayOutputStream();
+		exporter.export(document, stream);
+		assertEquals(1, listener.getCount(Stage.SINGLE_PASS));
+		assertEquals(stream.size(), listener.getTotalBytes(Stage.WRITE));
+	}
+
+
+	@Test
+	public void testNullListener() throws Exception
+	{
+		EmotionMLImporter importer = new EmotionMLImporter();
+		assertSame(NullProcessingListener.INSTANCE, importer.getListener());
+		assertSame(NullProcessingListener.INSTANCE, importer.getValidator().getListener());
+		assertEquals(2, importer.importDocument(DOCUMENT).getEmotions().size());
+	}
+}
@@ -0,0 +1,148 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.processors.SchemaRegistry;
+
+/**
+ * Checks that the SchemaRegistry compiles the EmotionML Schema once and shares it, counts the hits
+ * and misses, and compiles it again after a failed compilation. Since the registry is static, each
+ * test loads it in its own class loader, where it has not been compiled yet.
+ */
+public class TestSchemaRegistry
+{
+	@Test
+	public void testSharing() throws Exception
+	{
+		final Class<?> registry = new RegistryLoader().loadRegistry();
+		assertEquals(Boolean.FALSE, call(registry, "isCompiled"));
+		assertEquals(-1L, call(registry, "getCompilationTime"));
+
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<Object>> schemas = new ArrayList<Future<Object>>();
+		for(int i = 0; i < 8; i++)
+			schemas.add(executor.submit(new Callable<Object>()
+			{
+				@Override
+				public Object call() throws Exception
+				{
+					start.await();
+					return TestSchemaRegistry.call(registry, "getSchema");
+				}
+			}));
+		start.countDown();
+
+		Object schema = schemas.get(0).get();
+		assertNotNull(schema);
+		for(Future<Object> other : schemas)
+			assertSame(schema, other.get());
+		executor.shutdown();
+
+		long misses = (Long) call(registry, "getMissCount");
+		assertTrue(misses >= 1);
+		assertEquals(8, misses + (Long) call(registry, "getHitCount"));
+		assertEquals(Boolean.TRUE, call(registry, "isCompiled"));
+		assertTrue((Long) call(registry, "getCompilationTime") >= 0);
+
+		assertSame(schema, call(registry, "getSchema"));
+		assertEquals(misses, call(registry, "getMissCount"));
+		assertEquals(9 - misses, call(registry, "getHitCount"));
+
+		// the registry of the tests is shared as well
+		assertSame(SchemaRegistry.getSchema(), SchemaRegistry.getSchema());
+	}
+
+
+	@Test
+	public void testRetry() throws Exception
+	{
+		RegistryLoader loader = new RegistryLoader();
+		Class<?> registry = loader.loadRegistry();
+
+		loader.hideSchema = true;
+		for(int i = 0; i < 2; i++)
+			try
+			{
+				call(registry, "getSchema");
+				fail("the schema should not be found");
+			}
+			catch (RuntimeException e)
+			{
+				assertEquals(Boolean.FALSE, call(registry, "isCompiled"));
+			}
+		assertEquals(2L, call(registry, "getMissCount"));
+
+		loader.hideSchema = false;
+		Object schema = call(registry, "getSchema");
+		assertNotNull(schema);
+		assertSame(schema, call(registry, "getSchema"));
+		assertEquals(3L, call(registry, "getMissCount"));
+		assertEquals(1L, call(registry, "getHitCount"));
+	}
+
+
+	/**
+	 * Calls the given static method of the given class, throwing the RuntimeException it throws.
+	 */
+	private static Object call(Class<?> registry, String method) throws Exception
+	{
+		try
+		{
+			return registry.getMethod(method).invoke(null);
+		}
+		catch (InvocationTargetException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			else throw e;
+		}
+	}
+
+
+	/**
+	 * A class loader loading the classes of the class path again, which can hide the EmotionML XSD.
+	 */
+	private static class RegistryLoader extends URLClassLoader
+	{
+		private volatile boolean hideSchema;
+
+
+		public RegistryLoader() throws MalformedURLException
+		{
+			super(getClassPath(), ClassLoader.getSystemClassLoader().getParent());
+		}
+
+
+		public Class<?> loadRegistry() throws ClassNotFoundException
+		{
+			return loadClass(SchemaRegistry.class.getName());
+		}
+
+
+		@Override
+		public URL getResource(String name)
+		{
+			if (hideSchema && name.endsWith(".xsd"))
+				return null;
+			else return super.getResource(name);
+		}
+
+
+		private static URL[] getClassPath() throws MalformedURLException
+		{
+			List<URL> ret = new ArrayList<URL>();
+			for(String path : System.getProperty("java.class.path").split(File.pathSeparator))
+				ret.add(new File(path).toURI().toURL());
+			return ret.toArray(new URL[ret.size()]);
+		}
+	}
+}
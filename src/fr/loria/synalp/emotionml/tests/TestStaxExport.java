@@ -0,0 +1,116 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.*;
+import fr.loria.synalp.emotionml.descriptors.*;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLExporter;
+import fr.loria.synalp.emotionml.vocabularies.predefined.Big6;
+
+public class TestStaxExport
+{
+	private static final String BIG6 = "http://www.w3.org/TR/emotion-voc/xml#big6";
+
+
+	@Test
+	public void testSameBytes() throws Exception
+	{
+		EmotionMLImporter importer = new EmotionMLImporter();
+		for(File file : new File("tests").listFiles())
+		{
+			if (!file.getName().endsWith(".emotionml"))
+				continue;
+
+			EmotionMLDocument document;
+			try
+			{
+				document = importer.importDocument(new FileInputStream(file));
+			}
+			catch (EmotionMLException e)
+			{
+				continue; // some examples are not well-formed or use names that the vocabularies do not declare
+			}
+			assertEquals(file.getName(), exportDOM(document), exportStax(document));
+			assertEquals(file.getName(), exportDOM(document), exportStream(document));
+			for(Emotion emotion : document.getEmotions()) // the emotions may refer to the local vocabularies of the document
+				assertEquals(file.getName(), new EmotionMLExporter(new NullValidator()).export(emotion), new StaxEmotionMLExporter(new NullValidator()).export(emotion));
+		}
+	}
+
+
+	@Test
+	public void testSpecialCharacters() throws Exception
+	{
+		EmotionMLDocument document = new EmotionMLDocument();
+		document.setCategorySetURI(BIG6);
+		document.add(new EmotionText("a < b & c > \"d\"\r\n\u0085\u00e9\u20ac\ud83d\ude00 "));
+		Emotion emotion = new Emotion(Big6.FEAR);
+		emotion.setId("\u00e91");
+		emotion.setText(new EmotionText("text\n"));
+		document.add(emotion);
+		assertEquals(exportDOM(document), exportStax(document));
+		assertEquals(exportDOM(document), exportStream(document));
+	}
+
+
+	@Test
+	public void testStreamRejectsInvalidEmotion() throws Exception
+	{
+		EmotionMLDocument document = new EmotionMLDocument();
+		document.setCategorySetURI(BIG6);
+		EmotionWriter writer = new EmotionMLExporter().stream(document, new ByteArrayOutputStream());
+		writer.write(new Emotion(Big6.FEAR));
+		try
+		{
+			writer.write(new Emotion(new Category("unknown")));
+			fail("the emotion should not be valid");
+		}
+		catch (EmotionMLValidationException e)
+		{
+			assertFalse(e.getValidationResult().isAssertionValid());
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+
+	/**
+	 * Exports the given document through the DOM and the Transformer.
+	 */
+	private static String exportDOM(EmotionMLDocument document) throws Exception
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new EmotionMLExporter().export(document, stream);
+		return stream.toString("UTF-8");
+	}
+
+
+	/**
+	 * Exports the given document directly.
+	 */
+	private static String exportStax(EmotionMLDocument document) throws Exception
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new StaxEmotionMLExporter().export(document, stream);
+		return stream.toString("UTF-8");
+	}
+
+
+	/**
+	 * Exports the given document through an EmotionWriter.
+	 */
+	private static String exportStream(EmotionMLDocument document) throws Exception
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new EmotionMLExporter().stream(document, stream).close();
+		return stream.toString("UTF-8");
+	}
+}
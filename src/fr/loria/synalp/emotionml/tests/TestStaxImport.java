@@ -0,0 +1,219 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.Emotion;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+import fr.loria.synalp.emotionml.processors.stax.StaxEmotionMLImporter;
+
+/**
+ * Checks that the StAX import gives the same documents and the same rejections as the DOM import on
+ * the test corpus, that it rejects the documents declaring a DTD, hence resolves no external
+ * entity, and that it enforces the same limits as the XMLEmotionMLReader.
+ */
+public class TestStaxImport
+{
+	private static final String EMOTION = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\" category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\">"
+			+ "<category name=\"fear\"/>&x;</emotion>";
+
+
+	@Test
+	public void testSameAsDom() throws Exception
+	{
+		EmotionMLImporter importer = new EmotionMLImporter();
+		EmotionMLImporter staxImporter = new StaxEmotionMLImporter();
+		int accepted = 0;
+		int rejected = 0;
+		for(String directory : new String[] { "tests", "tests/fail", "tests/external" })
+			for(File file : new File(directory).listFiles())
+			{
+				if (!file.isFile())
+					continue;
+
+				byte[] data = readBytes(file);
+				for(boolean emotion : new boolean[] { false, true })
+				{
+					String expected = getOutcome(importer, data, emotion);
+					assertEquals(file + " emotion=" + emotion, expected, getOutcome(staxImporter, data, emotion));
+					if (expected.startsWith("accepted"))
+						accepted++;
+					else if (expected.startsWith("rejected"))
+						rejected++;
+				}
+			}
+		assertTrue(accepted + " accepted", accepted >= 8);
+		assertTrue(rejected + " rejected", rejected > 60);
+	}
+
+
+	@Test
+	public void testRejectedDTD() throws Exception
+	{
+		File secret = File.createTempFile("secret", ".txt");
+		try
+		{
+			Writer writer = new OutputStreamWriter(new FileOutputStream(secret), "UTF-8");
+			writer.write("secret");
+			writer.close();
+
+			String document = "<?xml version=\"1.0\"?><!DOCTYPE emotion [<!ENTITY x SYSTEM \"" + secret.toURI() + "\">]>" + EMOTION;
+			assertRejected(new StaxEmotionMLImporter(), document);
+			assertRejected(new EmotionMLImporter(), document);
+			assertRejected(new StaxEmotionMLImporter(), "<!DOCTYPE emotion SYSTEM \"" + secret.toURI() + "\">" + EMOTION.replace("&x;", ""));
+
+			EmotionIterator iterator = new EmotionMLImporter().stream(toStream("<!DOCTYPE emotionml [<!ENTITY x SYSTEM \"" + secret.toURI() + "\">]>"
+					+ "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\">" + EMOTION + "</emotionml>"));
+			try
+			{
+				iterator.hasNext();
+				fail("the document should be rejected");
+			}
+			catch (EmotionMLIterationException e)
+			{
+				assertTrue(e.getMessage(), e.getMessage().contains("DOCTYPE is disallowed"));
+			}
+			iterator.close();
+		}
+		finally
+		{
+			secret.delete();
+		}
+	}
+
+
+	@Test
+	public void testSameLimits() throws Exception
+	{
+		String valid = EMOTION.replace("&x;", "");
+		StringBuilder deep = new StringBuilder(valid.substring(0, valid.indexOf('>') + 1));
+		for(int i = 0; i < 100000; i++)
+			deep.append("<info>");
+
+		assertSameRejection(new XMLEmotionMLReader(), deep.toString());
+		assertSameRejection(new XMLEmotionMLReader().setMaxDepth(1), valid);
+		assertSameRejection(new XMLEmotionMLReader().setMaxAttributeLength(40), valid);
+		assertSameRejection(new XMLEmotionMLReader().setMaxAttributeLength(34), valid); // the namespace declaration
+		assertSameRejection(new XMLEmotionMLReader().setMaxSize(valid.length() - 1), valid);
+
+		XMLEmotionMLReader reader = new XMLEmotionMLReader().setMaxDepth(2).setMaxAttributeLength(46).setMaxSize(valid.length());
+		assertEquals(new EmotionMLImporter().setReader(reader).importEmotion(toStream(valid)).toString(),
+						new StaxEmotionMLImporter().setReader(reader).importEmotion(toStream(valid)).toString());
+
+		EmotionIterator iterator = new EmotionMLImporter().setReader(new XMLEmotionMLReader().setMaxDepth(1))
+				.stream(toStream("<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\">" + valid + "</emotionml>"));
+		try
+		{
+			iterator.hasNext();
+			fail("the document should be rejected");
+		}
+		catch (EmotionMLIterationException e)
+		{
+			assertEquals("Unable to read stream: the elements are nested deeper than 1 levels", e.getCause().getMessage());
+		}
+		iterator.close();
+	}
+
+
+	/**
+	 * Asserts that the DOM and the StAX importers with the given reader both reject the given
+	 * emotion while reading it, with the same message.
+	 */
+	private static void assertSameRejection(XMLEmotionMLReader reader, String xml) throws Exception
+	{
+		String expected = getReadFailure(new EmotionMLImporter().setReader(reader), xml);
+		assertTrue(expected, expected.startsWith("Unable to read stream: "));
+		assertEquals(expected, getReadFailure(new StaxEmotionMLImporter().setReader(reader), xml));
+	}
+
+
+	private static String getReadFailure(EmotionMLImporter importer, String xml) throws Exception
+	{
+		try
+		{
+			importer.importEmotion(toStream(xml));
+			fail("the emotion should be rejected: " + xml);
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			fail("the emotion should not be read: " + e.getMessage());
+			return null;
+		}
+		catch (EmotionMLException e)
+		{
+			return e.getMessage();
+		}
+	}
+
+
+	/**
+	 * Imports the given data as a document or as an emotion and returns the exported result, or
+	 * the message of the rejection. The documents that are not well-formed are reported without
+	 * message, since the parsers word it differently.
+	 */
+	private static String getOutcome(EmotionMLImporter importer, byte[] data, boolean emotion) throws Exception
+	{
+		EmotionMLExporter exporter = new EmotionMLExporter(new NullValidator());
+		try
+		{
+			if (emotion)
+				return "accepted " + exporter.export(importer.importEmotion(new ByteArrayInputStream(data)));
+			else return "accepted " + exporter.export(importer.importDocument(new ByteArrayInputStream(data)));
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return "rejected " + e.getMessage();
+		}
+		catch (EmotionMLException e)
+		{
+			if (e.getMessage().startsWith("Unable to read stream"))
+				return "unreadable";
+			else return "failed " + e.getMessage();
+		}
+	}
+
+
+	private static byte[] readBytes(File file) throws IOException
+	{
+		ByteArrayOutputStream ret = new ByteArrayOutputStream();
+		InputStream stream = new FileInputStream(file);
+		byte[] buffer = new byte[4096];
+		for(int read = stream.read(buffer); read != -1; read = stream.read(buffer))
+			ret.write(buffer, 0, read);
+		stream.close();
+		return ret.toByteArray();
+	}
+
+
+	private static InputStream toStream(String xml) throws UnsupportedEncodingException
+	{
+		return new ByteArrayInputStream(xml.getBytes("UTF-8"));
+	}
+
+
+	/**
+	 * Asserts that the given importer rejects the given emotion as a document with a DTD.
+	 */
+	private static void assertRejected(EmotionMLImporter importer, String xml) throws Exception
+	{
+		try
+		{
+			Emotion emotion = importer.importEmotion(toStream(xml));
+			fail("the emotion should be rejected: " + emotion);
+		}
+		catch (EmotionMLValidationException e)
+		{
+			fail("the emotion should not be read: " + e.getMessage());
+		}
+		catch (EmotionMLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to read stream: DOCTYPE is disallowed"));
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.descriptors.Timestamp;
+
+public class TestTimestamp
+{
+
+	@Test
+	public void testLongAccessors()
+	{
+		Timestamp timestamp = new Timestamp();
+		timestamp.setStart(1200);
+		assertTrue(timestamp.hasStart());
+		assertFalse(timestamp.hasEnd());
+		assertEquals(1200, timestamp.getStartAsLong());
+		assertEquals(BigInteger.valueOf(1200), timestamp.getStart());
+		assertNull(timestamp.getEnd());
+		assertEquals(0, timestamp.getEndAsLong());
+		assertTrue(timestamp.isLong());
+
+		timestamp.setStart((BigInteger) null);
+		assertFalse(timestamp.hasStart());
+		assertFalse(timestamp.hasDefinition());
+	}
+
+
+	@Test
+	public void testBigIntegerFallback()
+	{
+		BigInteger big = BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE);
+		Timestamp timestamp = new Timestamp();
+		timestamp.setEnd(big);
+		timestamp.setOffsetToStart(BigInteger.valueOf(Long.MIN_VALUE));
+		assertFalse(timestamp.isLong());
+		assertEquals(big, timestamp.getEnd());
+		assertEquals(Long.MIN_VALUE, timestamp.getOffsetToStartAsLong());
+
+		Timestamp copy = new Timestamp(timestamp);
+		timestamp.setEnd(5);
+		assertTrue(timestamp.isLong());
+		assertEquals(big, copy.getEnd());
+		assertEquals(BigInteger.valueOf(5), timestamp.getEnd());
+	}
+}
@@ -0,0 +1,134 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.processors.TraceCodec;
+
+/**
+ * Checks that a TraceCodec parses the samples attributes bit for bit like Float.parseFloat applied
+ * to the parts of String.split(" "), with the same invalid sample and the same NumberFormatException,
+ * and that it formats the samples like String.valueOf.
+ */
+public class TestTraceCodec
+{
+	private static final String[] SAMPLES = { "", " ", "  ", "0.5", "0.5 ", "0.5  ", " 0.5", "0.5  0.25", "0.5 0.25 1", "0 1 0.0 1.0",
+			"+0.5", "-0.5", "-0", "-0.0", "+0", "+", "-", "--1", "+-1", "16777216", "16777217", "0.16777216", "0.16777217", "1677721.6",
+			"0.000016777216", "0.1234567891", "0.12345678912", "0.0000000001", "0.00000000001", "0.30000001", "0.1 0.2 0.3 0.4 0.5 0.6 0.7 0.8 0.9",
+			"1e-3", "1E0", "0x1p-2", "NaN", "Infinity", "-Infinity", ".5", "5.", ".", "1.2.3", "0.5f", "0.5d", "0,5", "a", "0.5 a 2", "2 0.5 a",
+			"1.0000001", "0.99999999", "00000000000000000000.5", "0.50000000000000000000" };
+
+
+	@Test
+	public void testSameAsSplit()
+	{
+		TraceCodec codec = new TraceCodec();
+		for(String samples : SAMPLES)
+			assertSameAsSplit(codec, samples);
+
+		Random random = new Random(0);
+		for(int i = 0; i < 20000; i++)
+		{
+			StringBuilder samples = new StringBuilder();
+			int count = 1 + random.nextInt(5);
+			for(int j = 0; j < count; j++)
+			{
+				if (j > 0)
+					samples.append(random.nextInt(10) == 0 ? "  " : " ");
+				samples.append(createDecimal(random));
+			}
+			if (random.nextInt(10) == 0)
+				samples.append(' ');
+			assertSameAsSplit(codec, samples.toString());
+		}
+	}
+
+
+	@Test
+	public void testFormat()
+	{
+		Random random = new Random(0);
+		float[] samples = new float[1000];
+		for(int i = 0; i < samples.length; i++)
+			samples[i] = random.nextInt(3) == 0 ? Float.intBitsToFloat(random.nextInt()) : random.nextFloat();
+
+		StringBuilder expected = new StringBuilder();
+		for(int i = 0; i < samples.length; i++)
+			expected.append(i == 0 ? "" : " ").append(String.valueOf(samples[i]));
+		assertEquals(expected.toString(), TraceCodec.format(samples));
+		assertEquals("", TraceCodec.format(new float[0]));
+	}
+
+
+	/**
+	 * Asserts that the given codec parses the given samples like split and Float.parseFloat.
+	 */
+	private static void assertSameAsSplit(TraceCodec codec, String samples)
+	{
+		String[] parts = samples.split(" ");
+		float[] expected = new float[parts.length];
+		String invalid = null;
+		NumberFormatException malformed = null;
+		for(int i = 0; i < parts.length; i++)
+			try
+			{
+				expected[i] = Float.parseFloat(parts[i]);
+				if (invalid == null && (expected[i] < 0 || expected[i] > 1))
+					invalid = parts[i];
+			}
+			catch (NumberFormatException e)
+			{
+				if (malformed == null)
+					malformed = e;
+				if (invalid == null)
+					invalid = parts[i];
+			}
+
+		codec.parse(samples);
+		assertEquals("\"" + samples + "\"", invalid == null, codec.isValid());
+		assertEquals("\"" + samples + "\"", invalid, codec.getInvalidSample());
+		try
+		{
+			float[] actual = codec.getSamples();
+			assertNull("\"" + samples + "\" should be malformed", malformed);
+			assertEquals("\"" + samples + "\"", expected.length, actual.length);
+			for(int i = 0; i < expected.length; i++)
+				assertEquals("\"" + parts[i] + "\"", Float.floatToRawIntBits(expected[i]), Float.floatToRawIntBits(actual[i]));
+		}
+		catch (NumberFormatException e)
+		{
+			assertNotNull("\"" + samples + "\" should not be malformed", malformed);
+			assertEquals(malformed.getMessage(), e.getMessage());
+		}
+	}
+
+
+	/**
+	 * Creates a random decimal, around the limits of the exact conversion: up to 12 digits, up to
+	 * 11 decimals, with an optional sign and some exponents.
+	 */
+	private static String createDecimal(Random random)
+	{
+		StringBuilder ret = new StringBuilder();
+		int sign = random.nextInt(8);
+		if (sign == 0)
+			ret.append('-');
+		else if (sign == 1)
+			ret.append('+');
+
+		int digits = 1 + random.nextInt(12);
+		int point = random.nextInt(digits + 2) - 1; // no point if -1 or digits
+		for(int i = 0; i < digits; i++)
+		{
+			if (i == point)
+				ret.append('.');
+			ret.append((char) ('0' + (i == 0 && random.nextBoolean() ? random.nextInt(2) : random.nextInt(10))));
+		}
+		if (random.nextInt(20) == 0)
+			ret.append('e').append(random.nextInt(5) - 2);
+		return ret.toString();
+	}
+}
@@ -0,0 +1,204 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.VocabularyCache;
+
+public class TestVocabularyCache
+{
+	private static final URI A = URI.create("http://example.org/a");
+	private static final URI B = URI.create("http://example.org/b");
+	private static final URI C = URI.create("http://example.org/c");
+
+
+	@Test
+	public void testSingleFlight() throws Exception
+	{
+		final VocabularyCache cache = new VocabularyCache();
+		final AtomicInteger loads = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final Callable<EmotionMLDocument> loader = new Callable<EmotionMLDocument>()
+		{
+			@Override
+			public EmotionMLDocument call() throws Exception
+			{
+				loads.incrementAndGet();
+				Thread.sleep(100);
+				return new EmotionMLDocument();
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<EmotionMLDocument>> futures = new ArrayList<Future<EmotionMLDocument>>();
+		for(int i = 0; i < 8; i++)
+			futures.add(executor.submit(new Callable<EmotionMLDocument>()
+			{
+				@Override
+				public EmotionMLDocument call() throws Exception
+				{
+					start.await();
+					return cache.get(A, loader);
+				}
+			}));
+		start.countDown();
+		executor.shutdown();
+
+		Set<EmotionMLDocument> documents = new HashSet<EmotionMLDocument>();
+		for(Future<EmotionMLDocument> future : futures)
+			documents.add(future.get());
+
+		assertEquals(1, loads.get());
+		assertEquals(1, documents.size());
+		assertEquals(8, cache.getHitCount() + cache.getMissCount());
+	}
+
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception
+	{
+		VocabularyCache cache = new VocabularyCache(2, 1, TimeUnit.HOURS, 1, 1, TimeUnit.HOURS);
+		cache.get(A, new Loader());
+		cache.get(B, new Loader());
+		cache.get(A, new Loader());
+		cache.get(C, new Loader());
+
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+		assertNotNull(cache.getIfPresent(A));
+		assertNull(cache.getIfPresent(B));
+		assertNotNull(cache.getIfPresent(C));
+		assertEquals(1, cache.getHitCount());
+		assertEquals(3, cache.getMissCount());
+	}
+
+
+	@Test
+	public void testTimeToLive() throws Exception
+	{
+		VocabularyCache cache = new VocabularyCache(2, 0, TimeUnit.SECONDS, 1, 1, TimeUnit.HOURS);
+		Loader loader = new Loader();
+		cache.get(A, loader);
+		cache.get(A, loader);
+		assertEquals(2, loader.loads);
+	}
+
+
+	@Test
+	public void testFailureCaching() throws Exception
+	{
+		VocabularyCache cache = new VocabularyCache(2, 1, TimeUnit.HOURS, 1, 1, TimeUnit.HOURS);
+		Loader loader = new Loader();
+		loader.fail = true;
+		for(int i = 0; i < 3; i++)
+		{
+			try
+			{
+				cache.get(A, loader);
+				fail("the failure should be reported");
+			}
+			catch (EmotionMLResolutionException e)
+			{
+				assertEquals("unreachable", e.getMessage());
+			}
+		}
+		assertEquals(1, loader.loads);
+		assertEquals(2, cache.getHitCount());
+		assertNull(cache.getIfPresent(A));
+
+		// without backoff, the failure is retried
+		cache = new VocabularyCache(2, 1, TimeUnit.HOURS, 0, 0, TimeUnit.SECONDS);
+		loader = new Loader();
+		loader.fail = true;
+		try
+		{
+			cache.get(A, loader);
+			fail("the failure should be reported");
+		}
+		catch (EmotionMLResolutionException e)
+		{
+		}
+		loader.fail = false;
+		assertNotNull(cache.get(A, loader));
+		assertEquals(2, loader.loads);
+	}
+
+
+	@Test(timeout = 20000)
+	public void testCircularLoad() throws Exception
+	{
+		final VocabularyCache cache = new VocabularyCache();
+		Callable<EmotionMLDocument> loader = new Callable<EmotionMLDocument>()
+		{
+			@Override
+			public EmotionMLDocument call() throws EmotionMLException
+			{
+				return cache.get(A, new Loader());
+			}
+		};
+		try
+		{
+			cache.get(A, loader);
+			fail("the circular load should be reported");
+		}
+		catch (EmotionMLResolutionException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("circular vocabulary reference"));
+		}
+	}
+
+
+	@Test
+	public void testLoadingNotEvicted() throws Exception
+	{
+		final VocabularyCache cache = new VocabularyCache(1, 1, TimeUnit.HOURS, 1, 1, TimeUnit.HOURS);
+		final EmotionMLDocument document = new EmotionMLDocument();
+		cache.get(A, new Callable<EmotionMLDocument>()
+		{
+			@Override
+			public EmotionMLDocument call() throws EmotionMLException
+			{
+				cache.get(B, new Loader());
+				cache.get(C, new Loader());
+				return document;
+			}
+		});
+
+		assertSame(document, cache.getIfPresent(A));
+		assertNull(cache.getIfPresent(B));
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		cache.get(B, new Loader());
+		assertEquals(1, cache.size());
+		assertNull(cache.getIfPresent(A));
+	}
+
+
+	/**
+	 * A loader counting its loads, which fails on demand.
+	 */
+	private static class Loader implements Callable<EmotionMLDocument>
+	{
+		private int loads;
+		private boolean fail;
+
+
+		@Override
+		public EmotionMLDocument call() throws EmotionMLException
+		{
+			loads++;
+			if (fail)
+				throw new EmotionMLResolutionException("unreachable");
+			else return new EmotionMLDocument();
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.net.URI;
+
+import org.junit.*;
+
+import fr.loria.synalp.emotionml.EmotionMLDocument;
+import fr.loria.synalp.emotionml.exceptions.*;
+import fr.loria.synalp.emotionml.processors.*;
+import fr.loria.synalp.emotionml.vocabularies.Vocabulary;
+
+public class TestVocabularyCatalog
+{
+	private static final String HEADER = "<emotionml xmlns=\"http://www.w3.org/2009/10/emotionml\" version=\"1.0\" ";
+
+	private File directory;
+
+
+	@Before
+	public void setUp() throws IOException
+	{
+		VocabularyCatalog.getDefault().setOffline(true);
+		directory = File.createTempFile("catalog", "");
+		directory.delete();
+		directory.mkdir();
+	}
+
+
+	@After
+	public void tearDown()
+	{
+		VocabularyCatalog.getDefault().setOffline(false);
+		VocabularyCatalog.getDefault().removeDirectory(directory);
+		File file = new File(directory, "example.org/vocabularies.xml");
+		file.delete();
+		file.getParentFile().delete();
+		directory.delete();
+	}
+
+
+	@Test
+	public void testPredefinedVocabularies() throws Exception
+	{
+		assertTrue(VocabularyCatalog.getDefault().contains(EmotionMLDocument.VOCABULARY_URI));
+		importDocument("category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\"><emotion><category name=\"anger\"/></emotion></emotionml>");
+		importDocument("dimension-set=\"http://www.w3.org/TR/emotion-voc/xml#pad-dimensions\"><emotion><dimension name=\"arousal\" value=\"0.2\"/></emotion></emotionml>");
+
+		String message = getAssertionError("category-set=\"http://www.w3.org/TR/emotion-voc/xml#big6\"><emotion><category name=\"love\"/></emotion></emotionml>");
+		assertTrue(message, message.startsWith("212:"));
+	}
+
+
+	@Test
+	public void testCatalogDirectory() throws Exception
+	{
+		File file = new File(directory, "example.org/vocabularies.xml");
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write(HEADER + "><vocabulary type=\"category\" id=\"mine\"><item name=\"bored\"/></vocabulary></emotionml>");
+		writer.close();
+
+		String document = "category-set=\"http://example.org/vocabularies.xml#mine\"><emotion><category name=\"bored\"/></emotion></emotionml>";
+		String message = getAssertionError(document);
+		assertTrue(message, message.contains("the catalog is offline"));
+
+		VocabularyCatalog.getDefault().addDirectory(directory);
+		VocabularyCache.getDefault().invalidate(new URI("http://example.org/vocabularies.xml"));
+		assertTrue(VocabularyCatalog.getDefault().contains(new URI("http://example.org/vocabularies.xml")));
+		importDocument(document);
+	}
+
+
+	@Test
+	public void testTraversal() throws Exception
+	{
+		File file = new File(directory, "example.org/vocabularies.xml");
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+		File outside = File.createTempFile("outside", ".xml", directory.getParentFile());
+		try
+		{
+			VocabularyCatalog catalog = new VocabularyCatalog().addDirectory(directory);
+			assertTrue(catalog.contains(new URI("http://example.org/vocabularies.xml")));
+			assertTrue(catalog.contains(new URI("http://example.org/other/../vocabularies.xml")));
+
+			for(String path : new String[] { "/../../", "/a/../../../", "/%2e%2e/%2e%2e/", "/..%2f..%2f" })
+			{
+				URI uri = new URI("http://example.org" + path + outside.getName());
+				assertFalse(uri.toString(), catalog.contains(uri));
+				assertNull(uri.toString(), catalog.lookup(uri));
+			}
+		}
+		finally
+		{
+			outside.delete();
+		}
+	}
+
+
+	@Test(timeout = 20000)
+	public void testCircularReference() throws Exception
+	{
+		File file = new File(directory, "example.org/vocabularies.xml");
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		writer.write(HEADER + "category-set=\"http://example.org/vocabularies.xml#mine\"><vocabulary type=\"category\" id=\"mine\">"
+				+ "<item name=\"bored\"/></vocabulary><emotion><category name=\"bored\"/></emotion></emotionml>");
+		writer.close();
+
+		VocabularyCatalog catalog = new VocabularyCatalog().addDirectory(directory).setOffline(true);
+		try
+		{
+			new VocabularyResolver(catalog).retrieveVocabulary(new URI("http://example.org/vocabularies.xml#mine"));
+			fail("the circular reference should be reported");
+		}
+		catch (EmotionMLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("circular vocabulary reference"));
+		}
+	}
+
+
+	@Test
+	public void testCatalogCache() throws Exception
+	{
+		URI uri = new URI("http://example.org/vocabularies.xml");
+		VocabularyCatalog catalog = new VocabularyCatalog().register(uri, createDocument("first"));
+		VocabularyCatalog otherCatalog = new VocabularyCatalog().register(uri, createDocument("second"));
+
+		URI vocabularyURI = new URI("http://example.org/vocabularies.xml#mine");
+		assertEquals("first", getItem(new VocabularyResolver(catalog).retrieveVocabulary(vocabularyURI)));
+		assertEquals("second", getItem(new VocabularyResolver(otherCatalog).retrieveVocabulary(vocabularyURI)));
+		assertEquals("first", getItem(new VocabularyResolver(catalog).retrieveVocabulary(vocabularyURI)));
+		assertNotSame(catalog.getCache(), otherCatalog.getCache());
+		assertSame(VocabularyCatalog.getDefault().getCache(), VocabularyCache.getDefault());
+		assertSame(VocabularyCache.getDefault(), new VocabularyResolver().getCache());
+	}
+
+
+	/**
+	 * Creates a document with a category vocabulary "mine" of a single item.
+	 */
+	private static EmotionMLDocument createDocument(String item) throws Exception
+	{
+		return importDocument("><vocabulary type=\"category\" id=\"mine\"><item name=\"" + item + "\"/></vocabulary></emotionml>");
+	}
+
+
+	/**
+	 * Returns the name of the single item of the given vocabulary.
+	 */
+	private static String getItem(Vocabulary vocabulary)
+	{
+		return vocabulary.getItems().iterator().next().getName();
+	}
+
+
+	/**
+	 * Imports the document with given root attributes and content.
+	 */
+	private static EmotionMLDocument importDocument(String rest) throws Exception
+	{
+		return new EmotionMLImporter().importDocument(HEADER + rest);
+	}
+
+
+	/**
+	 * Returns the assertion error of the document with given root attributes and content.
+	 */
+	private static String getAssertionError(String rest) throws Exception
+	{
+		try
+		{
+			importDocument(rest);
+			fail("the document should not be valid");
+			return null;
+		}
+		catch (EmotionMLValidationException e)
+		{
+			return e.getValidationResult().getAssertionErrorMessage();
+		}
+	}
+}
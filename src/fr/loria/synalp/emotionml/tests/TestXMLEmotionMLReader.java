@@ -0,0 +1,76 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.exceptions.EmotionMLException;
+import fr.loria.synalp.emotionml.processors.io.XMLEmotionMLReader;
+
+public class TestXMLEmotionMLReader
+{
+	private static final String EMOTION = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\"><category name=\"happiness\"/></emotion>";
+
+
+	@Test
+	public void testRejectedDTD() throws Exception
+	{
+		String laughs = "<?xml version=\"1.0\"?><!DOCTYPE lolz [<!ENTITY lol \"lol\"><!ENTITY lol2 \"&lol;&lol;&lol;&lol;&lol;&lol;&lol;&lol;\">"
+				+ "<!ENTITY lol3 \"&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;&lol2;\">]><lolz>&lol3;</lolz>";
+		assertRejected(new XMLEmotionMLReader(), laughs);
+		assertRejected(new XMLEmotionMLReader(), "<!DOCTYPE emotion SYSTEM \"http://example.org/emotion.dtd\">" + EMOTION);
+		assertEquals("emotion", read(new XMLEmotionMLReader(), EMOTION).getLocalName());
+	}
+
+
+	@Test
+	public void testLimits() throws Exception
+	{
+		XMLEmotionMLReader reader = new XMLEmotionMLReader().setMaxDepth(2);
+		assertEquals("category", ((Element) read(reader, EMOTION).getFirstChild()).getLocalName());
+		assertRejected(reader.setMaxDepth(1), EMOTION);
+
+		reader.setMaxDepth(256).setMaxAttributeLength(35); // the namespace declaration is the longest attribute
+		read(reader, EMOTION);
+		assertRejected(reader.setMaxAttributeLength(34), EMOTION);
+
+		reader.setMaxAttributeLength(Integer.MAX_VALUE).setMaxSize(EMOTION.length());
+		read(reader, EMOTION);
+		assertRejected(reader.setMaxSize(EMOTION.length() - 1), EMOTION);
+
+		StringBuilder deep = new StringBuilder();
+		for(int i = 0; i < 100000; i++)
+			deep.append("<a>");
+		assertRejected(new XMLEmotionMLReader(), deep.toString());
+		assertEquals("emotion", read(new XMLEmotionMLReader(), EMOTION).getLocalName());
+	}
+
+
+	/**
+	 * Reads the given String with the given reader.
+	 */
+	private static Element read(XMLEmotionMLReader reader, String xml) throws Exception
+	{
+		return reader.read(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+	}
+
+
+	/**
+	 * Asserts that the given reader rejects the given String.
+	 */
+	private static void assertRejected(XMLEmotionMLReader reader, String xml) throws Exception
+	{
+		try
+		{
+			read(reader, xml);
+			fail("the document should be rejected: " + xml);
+		}
+		catch (EmotionMLException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Unable to read stream"));
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package fr.loria.synalp.emotionml.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import fr.loria.synalp.emotionml.processors.io.*;
+
+public class TestXMLEmotionMLWriter
+{
+	private static final String EMOTION = "<emotion xmlns=\"http://www.w3.org/2009/10/emotionml\"><category name=\"happiness\"/></emotion>";
+
+
+	@Test
+	public void testOptions() throws Exception
+	{
+		Element element = new XMLEmotionMLReader().read(new ByteArrayInputStream(EMOTION.getBytes("UTF-8")));
+		XMLEmotionMLWriter writer = new XMLEmotionMLWriter();
+		String indented = write(writer, element);
+		assertTrue(indented, indented.contains("\n    <category"));
+		assertEquals(indented, write(writer, element));
+
+		String compact = write(new XMLEmotionMLWriter(false, 4), element);
+		assertFalse(compact, compact.contains("\n"));
+		assertTrue(compact, compact.contains("><category"));
+
+		// the Transformer of the thread is reset between the writes
+		assertTrue(write(writer.setIndentAmount(2), element).contains("\n  <category"));
+		assertEquals(compact, write(writer.setIndent(false), element));
+		assertEquals(indented, write(writer.setIndent(true).setIndentAmount(4), element));
+	}
+
+
+	/**
+	 * Writes the given Element with the given writer.
+	 */
+	private static String write(XMLEmotionMLWriter writer, Element element) throws Exception
+	{
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		writer.write(element, stream);
+		return stream.toString("UTF-8").replace("\r\n", "\n");
+	}
+}